@@ -0,0 +1,286 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class ConcurrentPrimHashmap defines a thread-safe variant of the fixed-size hashmap.
+ * Buckets are published through an AtomicReferenceArray, so get() never takes a lock
+ * and always sees fully constructed nodes. Writers lock only the stripe that owns the
+ * bucket (bucket index modulo the number of stripes), and the item count comes from a
+ * StripedCapacity counter which enforces the max capacity exactly. Keys are hashed
+ * by a HashStrategy, HashStrategy.SPREAD unless another is given.
+ *
+ * The map supports the same functions as PrimHashmap:
+ *
+ * constructor (size) - Initializes new hashmap
+ * constructor (size, strategy) - Initializes new hashmap whose keys are hashed by a HashStrategy
+ * set(key, val) - Maps a String key to an ArbObj val
+ * get(key) - Retrieves the ArbObj that this String key maps to
+ * delete(key) - deletes the key-val mapping
+ * load() - finds the load factor, a measure of how full the map is
+ */
+public class ConcurrentPrimHashmap<ArbObj> {
+
+    private static final int MAX_STRIPES = 64; // upper bound on number of write locks
+
+    private final int hashmapSize;                    // underlying array length
+    private final AtomicReferenceArray<Node<ArbObj>> table; // bucket heads
+    private final Object[] locks;                     // one lock per bucket group
+    private final StripedCapacity capacity;           // item count and capacity check
+    private final int maxCapacity;                    // max capacity as specified by user
+    private final HashStrategy strategy;              // turns a key into the hash that picks its bucket
+
+    /**
+     * Constructor ConcurrentPrimHashmap initializes all fields to 0 or null if no size
+     * is specified, and waits for the constructor(size) function to be called on the
+     * object for any operations to be performed.
+     */
+    public ConcurrentPrimHashmap() {
+        this.hashmapSize = 0;
+        this.table = null;
+        this.locks = null;
+        this.capacity = null;
+        this.maxCapacity = 0;
+        this.strategy = HashStrategy.SPREAD;
+    }
+
+    /**
+     * Constructor ConcurrentPrimHashmap(sz) initializes all fields given the
+     * user-specified max capacity of the hashmap.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     */
+    public ConcurrentPrimHashmap(int size) {
+        this(size, HashStrategy.SPREAD);
+    }
+
+    /**
+     * Constructor ConcurrentPrimHashmap(sz, strategy) initializes all fields given the
+     * user-specified max capacity of the hashmap and the strategy used to hash its keys.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     * @param strategy
+     *  Hashes the keys, e.g. HashStrategy.sipHash() for keys an attacker controls.
+     */
+    public ConcurrentPrimHashmap(int size, HashStrategy strategy) {
+        if (strategy == null) throw new NullPointerException("strategy");
+
+        this.strategy = strategy;
+        this.hashmapSize = PrimHashmap.findNextPowerOfTwo(size);
+        this.table = new AtomicReferenceArray<Node<ArbObj>>(hashmapSize);
+        this.maxCapacity = size;
+
+        int stripes = Math.max(1, Math.min(MAX_STRIPES, hashmapSize));
+        this.locks = new Object[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new Object();
+        }
+        this.capacity = new StripedCapacity(size, stripes);
+    }
+
+    /**
+     * Function constructor() will call the ConcurrentPrimHashmap constructor taking size
+     * as a parameter, which specified the max capacity of the hashmap to be created.
+     *
+     * @param size
+     *      Specifies max capacity of hashmap to be created.
+     *
+     * @return a ConcurrentPrimHashmap object with specified size
+     */
+    public final ConcurrentPrimHashmap<ArbObj> constructor(int size) {
+        return new ConcurrentPrimHashmap<ArbObj>(size);
+    }
+
+    /**
+     * Function set will map a String to an arbitrary object value, and put the pair
+     * within the hashmap for the user to access later. Only the stripe owning the
+     * bucket is locked.
+     *
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to, arbitrary object of user's choice
+     *
+     * @return true on successful set, false on unsuccessful set
+     */
+    public boolean set(String key, ArbObj value) {
+        if (table == null || hashmapSize == 0) return false;
+
+        int hashVal = strategy.hash(key);
+        int putIndex = hashVal & (hashmapSize - 1);
+        int stripe = putIndex & (locks.length - 1);
+
+        synchronized (locks[stripe]) {
+            Node<ArbObj> head = table.get(putIndex);
+
+            // Override value if duplicate found.
+            for (Node<ArbObj> iter = head; iter != null; iter = iter.next) {
+                if (iter.hash == hashVal && iter.key.equals(key)) {
+                    iter.value = value;
+                    return true;
+                }
+            }
+
+            // Max capacity check
+            if (!capacity.reserve(stripe)) return false;
+
+            // Prepend so readers walking the old chain are never disturbed
+            Node<ArbObj> newNode = new Node<ArbObj>(hashVal, key, value, head);
+            table.set(putIndex, newNode);
+        }
+
+        return true;
+    }
+
+    /**
+     * Function get will retrieve the arbitrary object associated with a given key.
+     * It never blocks, even while writers are updating the same bucket.
+     *
+     * @param key
+     *      Key whose value is to be retrieved.
+     *
+     * @return The value associated with the specified key, or null if no such value
+     *         exists for this particular key.
+     */
+    public ArbObj get(String key) {
+        if (table == null || hashmapSize == 0) return null;
+
+        int hashVal = strategy.hash(key);
+        Node<ArbObj> iter = table.get(hashVal & (hashmapSize - 1));
+
+        while (iter != null) {
+            if (iter.hash == hashVal && iter.key.equals(key)) {
+                return iter.value;
+            }
+            iter = iter.next;
+        }
+
+        return null;
+    }
+
+    /**
+     * Function delete will remove the key-value entry for a given key. Unlinking a
+     * node leaves its next pointer intact, so concurrent readers that are standing on
+     * it can keep walking the chain.
+     *
+     * @param key
+     *      Key for which the key-value entry in the map is to be deleted.
+     *
+     * @return The value associated with the specified key on succesful delete,
+     *         or null if there was no such key-value pair to begin with.
+     */
+    public ArbObj delete(String key) {
+        if (table == null || hashmapSize == 0) return null;
+
+        int hashVal = strategy.hash(key);
+        int putIndex = hashVal & (hashmapSize - 1);
+        int stripe = putIndex & (locks.length - 1);
+
+        synchronized (locks[stripe]) {
+            Node<ArbObj> prev = null;
+            Node<ArbObj> iter = table.get(putIndex);
+
+            while (iter != null) {
+                if (iter.hash == hashVal && iter.key.equals(key)) {
+                    if (prev == null) {
+                        table.set(putIndex, iter.next);
+                    } else {
+                        prev.next = iter.next;
+                    }
+                    capacity.release(stripe);
+                    return iter.value;
+                }
+                prev = iter;
+                iter = iter.next;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Function getNumItems() is a getter function for the number of items
+     * currently in the hashmap (occupancy). It is exact when no writer is running.
+     *
+     * @return number of items in hashmap.
+     */
+    public int getNumItems() {
+        return (capacity == null) ? 0 : capacity.reserved();
+    }
+
+    /**
+     * Function getHashmapSize() is a getter function for the max capacity
+     * of this hashmap.
+     *
+     * @return user-specified max capacity of current hashmap.
+     */
+    public int getHashmapSize() {
+        return this.maxCapacity;
+    }
+
+    /**
+     * Function getTrueSize() is a getter function for the true size
+     * (closest power of 2) of the underlying table of the hashmap.
+     * This is used for test purposes!
+     *
+     * @return true size of hashmap.
+     */
+    public int getTrueSize() {
+        return this.hashmapSize;
+    }
+
+    /**
+     * Function getHashStrategy() is a getter function for the strategy that hashes
+     * the keys of this hashmap.
+     *
+     * @return the hash strategy.
+     */
+    public HashStrategy getHashStrategy() {
+        return this.strategy;
+    }
+
+    /**
+     * Function load will return the load factor (numItems/capacity) of the hashmap.
+     *
+     * @return Load factor as described above in float format.
+     */
+    public float load() {
+        if (table == null || maxCapacity == 0) {
+            return 0;
+        }
+        return getNumItems() / (float) maxCapacity;
+    }
+
+    /**
+     * Class Node is a singly linked bucket entry. The key and hash never change;
+     * value and next are volatile so lock-free readers see the latest writes.
+     */
+    private static final class Node<ArbObj> {
+
+        private final int hash;         // cached strategy hash of the key
+        private final String key;       // origin key for this value
+        private volatile ArbObj value;  // value stored in the node
+        private volatile Node<ArbObj> next; // reference to next node in bucket
+
+        /**
+         * Constructor Node will initialize all member variables.
+         *
+         * @param hash
+         *      The hash of the key, from the map's HashStrategy.
+         * @param key
+         *      The origin key for the value stored in this node.
+         * @param value
+         *      The value to be stored in this node.
+         * @param next
+         *      The node that follows this one in the bucket.
+         */
+        Node(int hash, String key, ArbObj value, Node<ArbObj> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * ConcurrentPrimHashmapTest will serve as the JUnit Test Suite corresponding to the
+ * thread-safe variant, ConcurrentPrimHashmap.
+ *
+ * Functions tested: constructor(size), set(key, val), get(key), delete(key), load()
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class ConcurrentPrimHashmapTest {
+
+    /**
+     * Test #1: Tests the single-threaded semantics match PrimHashmap.
+     */
+    @Test
+    public void testBasicOperations() throws Exception {
+        ConcurrentPrimHashmap<String> hashmap = new ConcurrentPrimHashmap<String>().constructor(2);
+        assertEquals(2, hashmap.getTrueSize());
+        assertTrue(hashmap.set("FB", "aaa"));
+        assertTrue(hashmap.set("Ea", "bbb"));
+        assertFalse(hashmap.set("c", "ccc"));
+        assertTrue(hashmap.set("Ea", "newbbb"));
+
+        assertEquals("aaa", hashmap.get("FB"));
+        assertEquals("newbbb", hashmap.get("Ea"));
+        assertEquals(1.0, hashmap.load(), 0);
+
+        assertEquals("aaa", hashmap.delete("FB"));
+        assertEquals(null, hashmap.delete("FB"));
+        assertEquals(1, hashmap.getNumItems());
+        assertTrue(hashmap.set("c", "ccc"));
+    }
+
+    /**
+     * Test #2: Tests operations on a ConcurrentPrimHashmap with no allocated space.
+     */
+    @Test
+    public void testNonexistentMap() throws Exception {
+        ConcurrentPrimHashmap<String> hashmap = new ConcurrentPrimHashmap<>();
+        assertFalse(hashmap.set("can't", "do"));
+        assertEquals(null, hashmap.get("can't"));
+        assertEquals(null, hashmap.delete("can't"));
+        assertEquals(0, hashmap.load(), 0);
+    }
+
+    /**
+     * Test #3: Tests many threads racing to fill the map. Exactly maxCapacity
+     * distinct keys must be accepted, no more and no less.
+     */
+    @Test
+    public void testCapacityEnforcedUnderContention() throws Exception {
+        final int capacity = 1000;
+        final ConcurrentPrimHashmap<Integer> hashmap = new ConcurrentPrimHashmap<>(capacity);
+        final AtomicInteger accepted = new AtomicInteger();
+
+        runThreads(8, new ThreadBody() {
+            public void run(int id) {
+                for (int i = 0; i < 500; i++) {
+                    if (hashmap.set("t" + id + "-" + i, i)) accepted.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(capacity, accepted.get());
+        assertEquals(capacity, hashmap.getNumItems());
+    }
+
+    /**
+     * Test #4: Tests concurrent set/delete churn on disjoint keys keeps every
+     * surviving key readable and the count exact.
+     */
+    @Test
+    public void testConcurrentChurn() throws Exception {
+        final ConcurrentPrimHashmap<Integer> hashmap = new ConcurrentPrimHashmap<>(4096);
+
+        runThreads(4, new ThreadBody() {
+            public void run(int id) {
+                for (int round = 0; round < 50; round++) {
+                    for (int i = 0; i < 200; i++) {
+                        assertTrue(hashmap.set(id + ":" + i, i));
+                    }
+                    for (int i = 0; i < 200; i += 2) {
+                        assertEquals(Integer.valueOf(i), hashmap.delete(id + ":" + i));
+                    }
+                }
+            }
+        });
+
+        assertEquals(400, hashmap.getNumItems());
+        for (int id = 0; id < 4; id++) {
+            for (int i = 0; i < 200; i++) {
+                Integer expected = (i % 2 == 0) ? null : Integer.valueOf(i);
+                assertEquals(expected, hashmap.get(id + ":" + i));
+            }
+        }
+    }
+
+    /**
+     * Test #5: Tests threads whose total demand equals maxCapacity exactly, over
+     * many rounds. The capacity is a single chunk, so all threads but the one that
+     * borrows it must wait for it to be banked rather than give up: every reserve
+     * must succeed. The StripedCapacity counter is driven directly, as the race
+     * window is too narrow to hit reliably through set().
+     */
+    @Test
+    public void testExactDemandFillsCapacity() throws Exception {
+        final int threads = 8;
+        final AtomicReference<StripedCapacity> current = new AtomicReference<>();
+        final AtomicInteger refused = new AtomicInteger();
+        final CyclicBarrier start = new CyclicBarrier(threads, new Runnable() {
+            public void run() {
+                current.set(new StripedCapacity(threads * 2, threads));
+            }
+        });
+        final CyclicBarrier finish = new CyclicBarrier(threads);
+
+        runThreads(threads, new ThreadBody() {
+            public void run(int id) throws Exception {
+                for (int r = 0; r < 100000; r++) {
+                    start.await();
+                    StripedCapacity capacity = current.get();
+                    for (int i = 0; i < 2; i++) {
+                        if (!capacity.reserve(id)) refused.incrementAndGet();
+                    }
+                    finish.await();
+                }
+            }
+        });
+        assertEquals(0, refused.get());
+        assertEquals(threads * 2, current.get().reserved());
+        assertFalse(current.get().reserve(0));
+
+        final ConcurrentPrimHashmap<Integer> hashmap = new ConcurrentPrimHashmap<>(threads * 4);
+        runThreads(threads, new ThreadBody() {
+            public void run(int id) {
+                for (int i = 0; i < 4; i++) {
+                    assertTrue(hashmap.set("t" + id + "-" + i, i));
+                }
+            }
+        });
+        assertEquals(threads * 4, hashmap.getNumItems());
+    }
+
+    /**
+     * Interface ThreadBody is the work each test thread performs. It is shared with
+     * the other multi-threaded test suites.
+     */
+    interface ThreadBody {
+        void run(int id) throws Exception;
+    }
+
+    /**
+     * Helper function runThreads starts the threads together, waits for them
+     * and rethrows the first failure seen by any of them.
+     *
+     * @param threads
+     *      Number of threads to run.
+     * @param body
+     *      Work performed by each thread, given its id.
+     */
+    static void runThreads(int threads, final ThreadBody body) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final Throwable[] failure = new Throwable[1];
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        body.run(id);
+                    } catch (Throwable e) {
+                        synchronized (failure) {
+                            if (failure[0] == null) failure[0] = e;
+                        }
+                    }
+                }
+            });
+            workers[t].start();
+        }
+
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        if (failure[0] instanceof Exception) throw (Exception) failure[0];
+        if (failure[0] != null) throw new AssertionError(failure[0]);
+    }
+}
@@ -0,0 +1,931 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class DurablePrimHashmap is a PrimHashmap whose contents survive a crash. Every
+ * set and delete that changes the map is appended to a write-ahead log in a
+ * directory, and opening the directory again replays the last snapshot followed by
+ * the log. Values are stored through a ValueCodec, like PrimHashmapSnapshot.
+ *
+ * Files, numbered by generation g:
+ *
+ * snapshot-g.phs - a PrimHashmapSnapshot of the map after every log below g
+ * log-g.wal      - header (magic "PHW1", version, generation), then records:
+ *                  body length (4 bytes), CRC32 of the body (4 bytes), and a body
+ *                  of op (1 byte), key length (varint), key (WTF-8) and, for a set,
+ *                  value length + 1 (varint, 0 for null) and value (codec bytes)
+ * LOCK           - held while the map is open, so one process owns the directory
+ *
+ * When a log record reaches the disk is decided by the FsyncPolicy:
+ *
+ * EVERY_OP - set and delete return once their record is forced to disk. Writers
+ *            that arrive while a force is running are committed together by the
+ *            next one (group commit), so the cost is shared between threads
+ * INTERVAL - records are buffered and a background thread writes and forces them
+ *            every intervalMillis; a crash loses at most that much
+ * NEVER    - each record is handed to the operating system at once but never
+ *            forced, so it survives a crash of the process but not of the machine
+ *
+ * Keys are written in Utf8's WTF-8 form, so a key with an unpaired surrogate is
+ * replayed exactly as it was set rather than merged with another key.
+ *
+ * A crash can leave a torn record at the end of the newest log. Replay stops at the
+ * first record whose length or checksum does not match and cuts the log there.
+ *
+ * Once the log outgrows the compaction threshold, a background thread starts a new
+ * log and folds the old snapshot and logs into a new snapshot. Writers only wait for
+ * the switch to the new log; the snapshot is built from the files, in a private map,
+ * and then atomically renamed into place before the old files are deleted. If the
+ * switch fails, every later write fails, since there is no log to append to; if
+ * only building the snapshot fails, the old files stay in place and close() reports
+ * the error.
+ *
+ * The map supports the following functions:
+ *
+ * open(directory, size, codec), open(directory, size, codec, policy, intervalMillis)
+ * set(key, val), get(key), delete(key), containsKey(key), forEach(action)
+ * sync() - forces every record written so far to disk
+ * compact() - replaces the snapshot and logs with a fresh snapshot
+ * close() - syncs and releases the directory
+ */
+public final class DurablePrimHashmap<ArbObj> implements Closeable {
+
+    /**
+     * Enum FsyncPolicy tells when log records are forced to disk.
+     */
+    public enum FsyncPolicy { EVERY_OP, INTERVAL, NEVER }
+
+    static final int LOG_MAGIC = 0x50485731;  // "PHW1"
+    static final int LOG_VERSION = 1;
+    static final int LOG_HEADER_BYTES = 16;
+
+    private static final byte OP_SET = 1;
+    private static final byte OP_DELETE = 2;
+    private static final int RECORD_HEADER_BYTES = 8;          // body length and CRC32
+    private static final int BUFFER_BYTES = 64 * 1024;         // pending records written out at this size
+    private static final int REPLAY_BUFFER_BYTES = 1 << 20;    // log read size during replay
+    private static final long DEFAULT_COMPACT_BYTES = 64L << 20; // log size that triggers compaction
+
+    private final Path directory;           // directory holding the files
+    private final ValueCodec<ArbObj> codec; // turns values into bytes
+    private final FsyncPolicy policy;       // when records are forced
+    private final PrimHashmap<ArbObj> map;  // current contents, guarded by this
+    private final FileChannel lockChannel;  // LOCK file, held while open
+    private final FileLock directoryLock;   // lock on the LOCK file
+    private final ScheduledExecutorService background; // interval syncs and compactions
+    private final Object syncLock = new Object();      // one force at a time, taken before this
+    private final Object compactLock = new Object();   // one compaction at a time, taken before syncLock
+    private final CRC32 crc = new CRC32();  // checksums records, guarded by this
+
+    private FileChannel log;                // log being appended to, guarded by this
+    private int generation;                 // generation of that log
+    private int snapshotGeneration;         // generation of the newest snapshot, guarded by compactLock
+    private ByteBuffer pending;             // records not yet written to the log, guarded by this
+    private long logBytes;                  // size of the log including pending records
+    private long appendedSeq;               // number of records appended, guarded by this
+    private volatile long syncedSeq;        // records up to this one are on disk
+    private long compactBytes = DEFAULT_COMPACT_BYTES; // 0 disables automatic compaction
+    private boolean compactionQueued;       // a background compaction is pending, guarded by this
+    private volatile IOException failure;   // first write failure, fails every later write
+    private volatile IOException compactionFailure; // last background compaction failure, reported by close()
+    private boolean closed;                 // guarded by this
+
+    /**
+     * Constructor DurablePrimHashmap takes a recovered map and the open log.
+     */
+    private DurablePrimHashmap(Path directory, ValueCodec<ArbObj> codec, FsyncPolicy policy, long intervalMillis,
+                               PrimHashmap<ArbObj> map, FileChannel lockChannel, FileLock directoryLock,
+                               int snapshotGeneration, int generation, FileChannel log) {
+        this.directory = directory;
+        this.codec = codec;
+        this.policy = policy;
+        this.map = map;
+        this.lockChannel = lockChannel;
+        this.directoryLock = directoryLock;
+        this.snapshotGeneration = snapshotGeneration;
+        this.generation = generation;
+        this.log = log;
+        this.logBytes = LOG_HEADER_BYTES;
+        this.pending = ByteBuffer.allocate(BUFFER_BYTES);
+
+        this.background = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "DurablePrimHashmap " + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (policy == FsyncPolicy.INTERVAL) {
+            background.scheduleWithFixedDelay(this::syncQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Function open recovers the map stored in a directory, or creates an empty one,
+     * forcing every change to disk before it returns.
+     *
+     * @param directory
+     *      Directory of the map, created if missing.
+     * @param size
+     *      Max capacity of a new map; an existing map keeps the capacity it was
+     *      created with.
+     * @param codec
+     *      Turns values into bytes and back; must match the codec the map was
+     *      written with.
+     *
+     * @return the open map.
+     */
+    public static <V> DurablePrimHashmap<V> open(Path directory, int size, ValueCodec<V> codec)
+            throws IOException {
+        return open(directory, size, codec, FsyncPolicy.EVERY_OP, 0);
+    }
+
+    /**
+     * Function open recovers the map stored in a directory, or creates an empty one.
+     *
+     * @param directory
+     *      Directory of the map, created if missing.
+     * @param size
+     *      Max capacity of a new map; an existing map keeps the capacity it was
+     *      created with.
+     * @param codec
+     *      Turns values into bytes and back; must match the codec the map was
+     *      written with.
+     * @param policy
+     *      When log records are forced to disk.
+     * @param intervalMillis
+     *      Time between forces for FsyncPolicy.INTERVAL, ignored otherwise.
+     *
+     * @return the open map.
+     *
+     * @throws IOException if the directory is in use, or a snapshot or a log other
+     *         than the newest one is damaged.
+     */
+    public static <V> DurablePrimHashmap<V> open(Path directory, int size, ValueCodec<V> codec,
+                                                 FsyncPolicy policy, long intervalMillis) throws IOException {
+        if (codec == null) throw new NullPointerException("codec");
+        if (policy == null) throw new NullPointerException("policy");
+        if (policy == FsyncPolicy.INTERVAL && intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be positive: " + intervalMillis);
+        }
+
+        Files.createDirectories(directory);
+        FileChannel lockChannel = FileChannel.open(directory.resolve("LOCK"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock directoryLock = null;
+        try {
+            directoryLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by this JVM, reported below like a lock held by another process
+        }
+        if (directoryLock == null) {
+            lockChannel.close();
+            throw new IOException("Directory is in use by another DurablePrimHashmap: " + directory);
+        }
+
+        try {
+            // Leftovers of a compaction that did not finish
+            for (Path file : list(directory, "snapshot-", ".tmp")) {
+                Files.delete(file);
+            }
+
+            List<Integer> snapshots = generations(directory, "snapshot-", ".phs");
+            PrimHashmap<V> map;
+            int snapshotGeneration;
+            if (snapshots.isEmpty()) {
+                // A new map: an empty snapshot records its capacity
+                map = new PrimHashmap<V>(size);
+                snapshotGeneration = 0;
+                writeSnapshot(directory, map, codec, 0);
+            } else {
+                snapshotGeneration = snapshots.get(snapshots.size() - 1);
+                map = readSnapshot(directory, codec, snapshotGeneration);
+            }
+
+            List<Integer> logs = replayable(directory, snapshotGeneration);
+            for (int i = 0; i < logs.size(); i++) {
+                replay(directory, logs.get(i), map, codec, i == logs.size() - 1);
+            }
+            deleteBefore(directory, snapshotGeneration);
+
+            int generation = logs.isEmpty() ? snapshotGeneration : logs.get(logs.size() - 1) + 1;
+            FileChannel log = createLog(directory, generation);
+            return new DurablePrimHashmap<V>(directory, codec, policy, intervalMillis, map,
+                    lockChannel, directoryLock, snapshotGeneration, generation, log);
+        } catch (IOException | RuntimeException e) {
+            directoryLock.release();
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Function set will map a String to an arbitrary object value and log the change.
+     * With FsyncPolicy.EVERY_OP it returns once the change is on disk.
+     *
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to, arbitrary object of user's choice
+     *
+     * @return true on successful set, false if the map is full.
+     *
+     * @throws UncheckedIOException if the log cannot be written.
+     */
+    public boolean set(String key, ArbObj value) {
+        long seq;
+        synchronized (this) {
+            checkWritable();
+            if (!map.set(key, value)) return false;
+
+            seq = append(OP_SET, key, value);
+        }
+        commit(seq);
+        return true;
+    }
+
+    /**
+     * Function get will retrieve the arbitrary object associated with a given key.
+     *
+     * @param key
+     *      Key whose value is to be retrieved.
+     *
+     * @return The value associated with the specified key, or null if no such value
+     *         exists for this particular key.
+     */
+    public synchronized ArbObj get(String key) {
+        return map.get(key);
+    }
+
+    /**
+     * Function delete will remove the key-value entry for a given key and log the
+     * change. Deleting an absent key writes nothing.
+     *
+     * @param key
+     *      Key for which the key-value entry in the map is to be deleted.
+     *
+     * @return The value associated with the specified key on succesful delete,
+     *         or null if there was no such key-value pair to begin with.
+     *
+     * @throws UncheckedIOException if the log cannot be written.
+     */
+    public ArbObj delete(String key) {
+        long seq;
+        ArbObj value;
+        synchronized (this) {
+            checkWritable();
+            int before = map.getNumItems();
+            value = map.delete(key);
+            if (map.getNumItems() == before) return null;
+
+            seq = append(OP_DELETE, key, null);
+        }
+        commit(seq);
+        return value;
+    }
+
+    /**
+     * Function containsKey tells whether a key is present in the map, even when it
+     * is mapped to null.
+     *
+     * @param key
+     *      The key to look for.
+     *
+     * @return true if the key is in the map.
+     */
+    public synchronized boolean containsKey(String key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * Function forEach will call an action on every key-value pair while the map is
+     * locked, so the action must not use this map.
+     *
+     * @param action
+     *      Called with each key and its value.
+     */
+    public synchronized void forEach(BiConsumer<? super String, ? super ArbObj> action) {
+        map.forEach(action);
+    }
+
+    /**
+     * Function sync writes out every buffered record and forces the log to disk.
+     * Concurrent callers share one force.
+     */
+    public void sync() throws IOException {
+        syncTo(Long.MAX_VALUE);
+    }
+
+    /**
+     * Function compact writes the current contents as a new snapshot and deletes the
+     * snapshot and logs it replaces. It runs on the calling thread, but writers are
+     * only held up while the log is switched.
+     */
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            int last;
+            synchronized (syncLock) {
+                synchronized (this) {
+                    if (closed) throw new IllegalStateException("Map is closed");
+                    last = rotate();
+                }
+            }
+
+            // Everything up to the old log is in closed files: rebuild it on the side
+            PrimHashmap<ArbObj> copy = readSnapshot(directory, codec, snapshotGeneration);
+            for (int g = snapshotGeneration; g <= last; g++) {
+                if (Files.exists(logPath(directory, g))) replay(directory, g, copy, codec, false);
+            }
+            writeSnapshot(directory, copy, codec, last + 1);
+
+            snapshotGeneration = last + 1;
+            deleteBefore(directory, snapshotGeneration);
+            compactionFailure = null;
+        }
+    }
+
+    /**
+     * Function setCompactionThreshold sets the log size at which a background
+     * compaction starts.
+     *
+     * @param bytes
+     *      Log size in bytes, 0 to only compact when compact() is called.
+     */
+    public synchronized void setCompactionThreshold(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("Threshold must not be negative: " + bytes);
+
+        this.compactBytes = bytes;
+    }
+
+    /**
+     * Function close syncs the log, waits for a running compaction and releases the
+     * directory. Closing twice does nothing.
+     *
+     * @throws IOException if the log cannot be synced, or if the last background
+     *         compaction failed; the directory is released either way.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+
+        background.shutdown();
+        try {
+            background.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (compactLock) {
+            try {
+                if (failure == null) sync();
+            } finally {
+                synchronized (this) {
+                    log.close();
+                }
+                directoryLock.release();
+                lockChannel.close();
+            }
+        }
+
+        IOException compactionError = compactionFailure;
+        if (compactionError != null) throw compactionError;
+    }
+
+    /**
+     * Function getNumItems() is a getter function for the number of items
+     * currently in the hashmap (occupancy).
+     *
+     * @return number of items in hashmap.
+     */
+    public synchronized int getNumItems() {
+        return map.getNumItems();
+    }
+
+    /**
+     * Function getHashmapSize() is a getter function for the max capacity of the
+     * hashmap.
+     *
+     * @return max capacity of the hashmap.
+     */
+    public synchronized int getHashmapSize() {
+        return map.getHashmapSize();
+    }
+
+    /**
+     * Function getLogBytes() is a getter function for the size of the current log,
+     * buffered records included.
+     *
+     * @return bytes in the current log.
+     */
+    public synchronized long getLogBytes() {
+        return this.logBytes;
+    }
+
+    /**
+     * Function getFsyncPolicy() is a getter function for when records are forced.
+     *
+     * @return the fsync policy.
+     */
+    public FsyncPolicy getFsyncPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * Function load will return the load factor (numItems/capacity) of the hashmap.
+     *
+     * @return Load factor as described above in float format.
+     */
+    public synchronized float load() {
+        return map.load();
+    }
+
+    /**
+     * Helper function append encodes a record into the pending buffer. The caller
+     * holds the lock of this map.
+     *
+     * @return the sequence number of the record.
+     */
+    private long append(byte op, String key, ArbObj value) {
+        int keyBytes = Utf8.encodedLength(key);
+        int valueBytes = (value == null) ? 0 : codec.encodedLength(value);
+        int maxBody = 1 + 5 + keyBytes + 5 + valueBytes;
+        reserve(RECORD_HEADER_BYTES + maxBody);
+
+        int start = pending.position();
+        pending.position(start + RECORD_HEADER_BYTES);
+        pending.put(op);
+        putVarInt(pending, keyBytes);
+        Utf8.encode(key, pending, pending.position());
+        pending.position(pending.position() + keyBytes);
+        if (op == OP_SET) {
+            putVarInt(pending, (value == null) ? 0 : valueBytes + 1);
+            if (value != null) {
+                codec.encode(value, pending, pending.position());
+                pending.position(pending.position() + valueBytes);
+            }
+        }
+
+        int bodyBytes = pending.position() - start - RECORD_HEADER_BYTES;
+        crc.reset();
+        crc.update(pending.array(), start + RECORD_HEADER_BYTES, bodyBytes);
+        pending.putInt(start, bodyBytes);
+        pending.putInt(start + 4, (int) crc.getValue());
+        logBytes += RECORD_HEADER_BYTES + bodyBytes;
+
+        try {
+            if (policy == FsyncPolicy.NEVER || pending.position() >= BUFFER_BYTES) writePending();
+        } catch (IOException e) {
+            fail(e);
+        }
+        if (compactBytes > 0 && logBytes >= compactBytes && !compactionQueued) {
+            compactionQueued = true;
+            background.execute(this::compactQueued);
+        }
+        return ++appendedSeq;
+    }
+
+    /**
+     * Helper function commit waits, for FsyncPolicy.EVERY_OP, until a record is on
+     * disk. A writer whose record was forced by another writer's sync returns at once.
+     */
+    private void commit(long seq) {
+        if (policy != FsyncPolicy.EVERY_OP || syncedSeq >= seq) return;
+
+        try {
+            syncTo(seq);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Helper function syncTo writes out the pending records and forces the log,
+     * unless a record at least as new as seq has been forced meanwhile. The force
+     * runs without the lock of this map, so writers keep appending the records the
+     * next force will commit.
+     */
+    private void syncTo(long seq) throws IOException {
+        synchronized (syncLock) {
+            if (syncedSeq >= seq) return;
+
+            long upTo;
+            FileChannel channel;
+            synchronized (this) {
+                if (failure != null) throw failure;
+
+                upTo = appendedSeq;
+                if (syncedSeq >= upTo) return;
+                writePending();
+                channel = log;
+            }
+            channel.force(false);
+            syncedSeq = upTo;
+        }
+    }
+
+    /**
+     * Helper function syncQuietly is the FsyncPolicy.INTERVAL timer task; a failure
+     * is kept and reported by the next write.
+     */
+    private void syncQuietly() {
+        try {
+            syncTo(Long.MAX_VALUE);
+        } catch (IOException e) {
+            synchronized (this) {
+                if (failure == null) failure = e;
+            }
+        }
+    }
+
+    /**
+     * Helper function compactQueued is the background compaction task. A failure is
+     * kept and reported by close(), unless a later compaction succeeds; the old files
+     * are still complete, so the next threshold crossing retries.
+     */
+    private void compactQueued() {
+        try {
+            compact();
+        } catch (IOException e) {
+            compactionFailure = e;
+        } catch (IllegalStateException e) {
+            // The map was closed before the compaction started
+        } finally {
+            synchronized (this) {
+                compactionQueued = false;
+            }
+        }
+    }
+
+    /**
+     * Helper function rotate forces and closes the current log and starts the next
+     * generation. The caller holds syncLock and the lock of this map. A failure part
+     * way leaves no log to append to, so it fails every later write.
+     *
+     * @return the generation of the log that was closed.
+     */
+    private int rotate() throws IOException {
+        if (failure != null) throw failure;
+
+        try {
+            writePending();
+            log.force(false);
+            log.close();
+            syncedSeq = appendedSeq;
+
+            int closedGeneration = generation;
+            generation++;
+            log = createLog(directory, generation);
+            logBytes = LOG_HEADER_BYTES;
+            return closedGeneration;
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Helper function writePending hands the pending records to the operating system.
+     * The caller holds the lock of this map.
+     */
+    private void writePending() throws IOException {
+        pending.flip();
+        while (pending.hasRemaining()) {
+            log.write(pending);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Helper function reserve grows the pending buffer to fit a record.
+     */
+    private void reserve(int bytes) {
+        if (pending.remaining() >= bytes) return;
+
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+        pending.flip();
+        larger.put(pending);
+        pending = larger;
+    }
+
+    /**
+     * Helper function checkWritable rejects writes after close() or a log failure.
+     */
+    private void checkWritable() {
+        if (closed) throw new IllegalStateException("Map is closed");
+        if (failure != null) throw new UncheckedIOException("Log failed earlier", failure);
+    }
+
+    /**
+     * Helper function fail remembers the first log failure and reports it. Later
+     * writes fail too, since the log no longer matches the map.
+     */
+    private void fail(IOException e) {
+        synchronized (this) {
+            if (failure == null) failure = e;
+        }
+        throw new UncheckedIOException(e);
+    }
+
+    /**
+     * Helper function createLog creates an empty log with its header on disk.
+     */
+    private static FileChannel createLog(Path directory, int generation) throws IOException {
+        FileChannel log = FileChannel.open(logPath(directory, generation), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES);
+        header.putInt(LOG_MAGIC).putInt(LOG_VERSION).putLong(generation).flip();
+        while (header.hasRemaining()) {
+            log.write(header);
+        }
+        log.force(false);
+        syncDirectory(directory);
+        return log;
+    }
+
+    /**
+     * Helper function replay applies the records of one log to a map, reading it in
+     * large sequential blocks. A bad record at the end of the newest log is a write
+     * cut short by a crash: the log is truncated there. Anywhere else it is damage.
+     */
+    private static <V> void replay(Path directory, int generation, PrimHashmap<V> map, ValueCodec<V> codec,
+                                   boolean newest) throws IOException {
+        try (FileChannel channel = FileChannel.open(logPath(directory, generation),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            LogReader reader = new LogReader(channel);
+            long valid = 0;
+
+            ByteBuffer header = reader.require(LOG_HEADER_BYTES);
+            if (header != null && header.getInt(header.position()) == LOG_MAGIC
+                    && header.getInt(header.position() + 4) == LOG_VERSION
+                    && header.getLong(header.position() + 8) == generation) {
+                header.position(header.position() + LOG_HEADER_BYTES);
+                valid = LOG_HEADER_BYTES;
+
+                CRC32 crc = new CRC32();
+                while (true) {
+                    ByteBuffer buffer = reader.require(RECORD_HEADER_BYTES);
+                    if (buffer == null) break;
+
+                    int bodyBytes = buffer.getInt(buffer.position());
+                    int expected = buffer.getInt(buffer.position() + 4);
+                    if (bodyBytes < 2 || bodyBytes > channel.size() - valid - RECORD_HEADER_BYTES) break;
+                    buffer = reader.require(RECORD_HEADER_BYTES + bodyBytes);
+                    if (buffer == null) break;
+
+                    int body = buffer.position() + RECORD_HEADER_BYTES;
+                    crc.reset();
+                    crc.update(buffer.array(), body, bodyBytes);
+                    if ((int) crc.getValue() != expected || !apply(buffer, body, bodyBytes, map, codec)) break;
+
+                    buffer.position(body + bodyBytes);
+                    valid += RECORD_HEADER_BYTES + bodyBytes;
+                }
+            }
+
+            if (valid < channel.size()) {
+                if (!newest) throw new IOException("Log " + generation + " is corrupt at byte " + valid);
+                channel.truncate(valid);
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Helper function apply decodes one record body and applies it to a map.
+     *
+     * @return false if the body is malformed.
+     *
+     * @throws IOException if a set does not fit the map's capacity.
+     */
+    private static <V> boolean apply(ByteBuffer buffer, int offset, int length, PrimHashmap<V> map,
+                                     ValueCodec<V> codec) throws IOException {
+        int end = offset + length;
+        byte op = buffer.get(offset++);
+        if (op != OP_SET && op != OP_DELETE) return false;
+
+        long keyField = getVarInt(buffer, offset, end);
+        if (keyField < 0) return false;
+        int keyBytes = (int) keyField;
+        offset += (int) (keyField >>> 32);
+        if (keyBytes > end - offset) return false;
+        String key = Utf8.decode(buffer, offset, keyBytes);
+        offset += keyBytes;
+
+        if (op == OP_DELETE) {
+            if (offset != end) return false;
+            map.delete(key);
+            return true;
+        }
+
+        long valueField = getVarInt(buffer, offset, end);
+        if (valueField < 0) return false;
+        int valueBytes = (int) valueField - 1;
+        offset += (int) (valueField >>> 32);
+        if ((valueBytes < 0) ? offset != end : valueBytes != end - offset) return false;
+        if (valueBytes > 0 && codec.fixedLength() >= 0 && valueBytes != codec.fixedLength()) return false;
+
+        V value = (valueBytes < 0) ? null : codec.decode(buffer, offset, valueBytes);
+        if (!map.set(key, value)) throw new IOException("Log does not fit the capacity of the map");
+        return true;
+    }
+
+    /**
+     * Helper function getVarInt reads a varint at an absolute offset.
+     *
+     * @return the value in the low 32 bits and its byte count in the high 32 bits, or
+     *         -1 if it is malformed or runs past end.
+     */
+    private static long getVarInt(ByteBuffer buffer, int offset, int end) {
+        int value = 0;
+        for (int shift = 0, i = offset; shift < 32 && i < end; shift += 7, i++) {
+            byte b = buffer.get(i);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) return -1;
+                return ((long) (i - offset + 1) << 32) | value;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Helper function putVarInt writes a non-negative int in 7-bit groups, low group
+     * first, so short lengths take a single byte.
+     */
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Helper function readSnapshot loads the snapshot of a generation.
+     */
+    private static <V> PrimHashmap<V> readSnapshot(Path directory, ValueCodec<V> codec, int generation)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotPath(directory, generation), StandardOpenOption.READ)) {
+            return PrimHashmapSnapshot.readFrom(channel, codec);
+        }
+    }
+
+    /**
+     * Helper function writeSnapshot writes a snapshot to a temporary file, forces it,
+     * and renames it into place, so a snapshot file is always complete.
+     */
+    private static <V> void writeSnapshot(Path directory, PrimHashmap<V> map, ValueCodec<V> codec,
+                                          int generation) throws IOException {
+        Path temporary = directory.resolve("snapshot-" + generation + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            PrimHashmapSnapshot.writeTo(map, codec, channel);
+            channel.force(false);
+        }
+        Files.move(temporary, snapshotPath(directory, generation), StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(directory);
+    }
+
+    /**
+     * Helper function deleteBefore deletes the snapshots and logs that a snapshot of
+     * the given generation replaces.
+     */
+    private static void deleteBefore(Path directory, int generation) throws IOException {
+        for (int old : generations(directory, "snapshot-", ".phs")) {
+            if (old < generation) Files.delete(snapshotPath(directory, old));
+        }
+        for (int old : generations(directory, "log-", ".wal")) {
+            if (old < generation) Files.delete(logPath(directory, old));
+        }
+    }
+
+    /**
+     * Helper function replayable lists, in order, the logs a snapshot of the given
+     * generation does not cover yet.
+     */
+    private static List<Integer> replayable(Path directory, int snapshotGeneration) throws IOException {
+        List<Integer> logs = new ArrayList<>();
+        for (int g : generations(directory, "log-", ".wal")) {
+            if (g >= snapshotGeneration) logs.add(g);
+        }
+        return logs;
+    }
+
+    /**
+     * Helper function generations lists the generation numbers of the files named
+     * prefix + number + suffix, in increasing order.
+     */
+    private static List<Integer> generations(Path directory, String prefix, String suffix) throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        for (Path file : list(directory, prefix, suffix)) {
+            String name = file.getFileName().toString();
+            try {
+                numbers.add(Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length())));
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    /**
+     * Helper function list finds the files named prefix + anything + suffix.
+     */
+    private static List<Path> list(Path directory, String prefix, String suffix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Helper function syncDirectory forces the directory entries, so created and
+     * renamed files survive a crash. Not every platform can open a directory; there
+     * the rename is left to the file system.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened on this platform
+        }
+    }
+
+    private static Path logPath(Path directory, int generation) {
+        return directory.resolve("log-" + generation + ".wal");
+    }
+
+    private static Path snapshotPath(Path directory, int generation) {
+        return directory.resolve("snapshot-" + generation + ".phs");
+    }
+
+    /**
+     * Class LogReader hands out the bytes of a log through one large heap buffer,
+     * reading more only when the next record is not buffered yet.
+     */
+    private static final class LogReader {
+
+        private final FileChannel channel; // log being replayed
+        private ByteBuffer buffer;         // read bytes between position and limit
+
+        /**
+         * Constructor LogReader starts with an empty buffer.
+         */
+        LogReader(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(REPLAY_BUFFER_BYTES);
+            this.buffer.limit(0);
+        }
+
+        /**
+         * Function require makes sure the next bytes are buffered.
+         *
+         * @return the buffer, positioned at the first of those bytes, or null if the
+         *         log ends first.
+         */
+        ByteBuffer require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return buffer;
+
+            if (bytes > buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(bytes);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    return null;
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * DurablePrimHashmapTest will serve as the JUnit Test Suite corresponding to the
+ * write-ahead logged map, DurablePrimHashmap.
+ *
+ * Functions tested: open(directory, size, codec), open(directory, size, codec, policy,
+ * intervalMillis), set(key, val), get(key), delete(key), sync(), compact(), close()
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class DurablePrimHashmapTest {
+
+    /**
+     * Test #1: Tests sets, overwrites, deletes and null values survive closing and
+     * opening the directory again, and that an open directory cannot be opened twice.
+     */
+    @Test
+    public void testReopen() throws Exception {
+        Path directory = Files.createTempDirectory("durable");
+        try {
+            try (DurablePrimHashmap<String> hashmap = DurablePrimHashmap.open(directory, 100, ValueCodec.STRING)) {
+                assertEquals(DurablePrimHashmap.FsyncPolicy.EVERY_OP, hashmap.getFsyncPolicy());
+                for (int i = 0; i < 50; i++) {
+                    assertTrue(hashmap.set("key" + i, "value" + i));
+                }
+                assertTrue(hashmap.set("key3", "changed"));
+                assertEquals("value4", hashmap.delete("key4"));
+                assertNull(hashmap.delete("absent"));
+                assertTrue(hashmap.set("nothing", null));
+                assertTrue(hashmap.set("caf\u00e9 \ud83d\ude00", "\u65e5\u672c"));
+
+                try {
+                    DurablePrimHashmap.open(directory, 100, ValueCodec.STRING);
+                    fail("Directory should be locked");
+                } catch (IOException e) {
+                    // Expected
+                }
+            }
+
+            // The capacity comes from the directory, not the size passed in
+            try (DurablePrimHashmap<String> hashmap = DurablePrimHashmap.open(directory, 5, ValueCodec.STRING)) {
+                assertEquals(100, hashmap.getHashmapSize());
+                assertEquals(51, hashmap.getNumItems());
+                assertEquals("value0", hashmap.get("key0"));
+                assertEquals("changed", hashmap.get("key3"));
+                assertFalse(hashmap.containsKey("key4"));
+                assertTrue(hashmap.containsKey("nothing"));
+                assertNull(hashmap.get("nothing"));
+                assertEquals("\u65e5\u672c", hashmap.get("caf\u00e9 \ud83d\ude00"));
+
+                // A full map logs nothing for a rejected set
+                for (int i = 0; hashmap.getNumItems() < 100; i++) {
+                    assertTrue(hashmap.set("fill" + i, "x"));
+                }
+                assertFalse(hashmap.set("overflow", "x"));
+            }
+
+            try (DurablePrimHashmap<String> hashmap = DurablePrimHashmap.open(directory, 100, ValueCodec.STRING)) {
+                assertEquals(100, hashmap.getNumItems());
+                assertFalse(hashmap.containsKey("overflow"));
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Test #2: Tests recovery from a crash image: a copy of the files taken after
+     * sync(), with a torn record at the end of the log. Replay keeps every complete
+     * record, cuts the torn one off, and the recovered map keeps logging correctly.
+     */
+    @Test
+    public void testTornLog() throws Exception {
+        Path directory = Files.createTempDirectory("durable");
+        Path crash = Files.createTempDirectory("crash");
+        try {
+            try (DurablePrimHashmap<Long> hashmap = DurablePrimHashmap.open(directory, 1000, ValueCodec.LONG,
+                    DurablePrimHashmap.FsyncPolicy.NEVER, 0)) {
+                for (int i = 0; i < 200; i++) {
+                    hashmap.set("key" + i, (long) i);
+                }
+                hashmap.delete("key0");
+                hashmap.sync();
+                copyDirectory(directory, crash);
+            }
+
+            // Half a record: its length promises more bytes than the file holds
+            Path log = newest(crash, "log-");
+            long intact = Files.size(log);
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.APPEND)) {
+                ByteBuffer torn = ByteBuffer.allocate(12);
+                torn.putInt(40).putInt(0x12345678).putInt(0x01046B65).flip();
+                channel.write(torn);
+            }
+
+            try (DurablePrimHashmap<Long> hashmap = DurablePrimHashmap.open(crash, 1000, ValueCodec.LONG)) {
+                assertEquals(intact, Files.size(log));
+                assertEquals(199, hashmap.getNumItems());
+                assertFalse(hashmap.containsKey("key0"));
+                assertEquals(Long.valueOf(199), hashmap.get("key199"));
+                hashmap.set("after", -1L);
+            }
+            try (DurablePrimHashmap<Long> hashmap = DurablePrimHashmap.open(crash, 1000, ValueCodec.LONG)) {
+                assertEquals(200, hashmap.getNumItems());
+                assertEquals(Long.valueOf(-1), hashmap.get("after"));
+            }
+
+            // A damaged record in a log that newer logs follow is not a torn write
+            try (FileChannel channel = FileChannel.open(crash.resolve("log-0.wal"), StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[] {0x7F}), DurablePrimHashmap.LOG_HEADER_BYTES + 8);
+            }
+            try {
+                DurablePrimHashmap.open(crash, 1000, ValueCodec.LONG).close();
+                fail("A corrupt older log should be reported");
+            } catch (IOException e) {
+                // Expected
+            }
+        } finally {
+            deleteDirectory(directory);
+            deleteDirectory(crash);
+        }
+    }
+
+    /**
+     * Test #3: Tests compaction folds the logs into one snapshot, by hand and in the
+     * background once the log passes the threshold, while writers keep going.
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        Path directory = Files.createTempDirectory("durable");
+        try {
+            try (DurablePrimHashmap<Integer> hashmap = DurablePrimHashmap.open(directory, 500, ValueCodec.INTEGER,
+                    DurablePrimHashmap.FsyncPolicy.INTERVAL, 5)) {
+                for (int round = 0; round < 20; round++) {
+                    for (int i = 0; i < 500; i++) {
+                        hashmap.set("key" + i, round);
+                    }
+                }
+                assertTrue(hashmap.getLogBytes() > 100000);
+
+                hashmap.compact();
+                assertEquals(DurablePrimHashmap.LOG_HEADER_BYTES, hashmap.getLogBytes());
+                assertEquals(1, count(directory, "snapshot-"));
+                assertEquals(1, count(directory, "log-"));
+                Path compacted = newest(directory, "snapshot-");
+
+                // Background compactions while a writer is running
+                hashmap.setCompactionThreshold(20000);
+                AtomicReference<Throwable> error = new AtomicReference<>();
+                Thread writer = new Thread(() -> {
+                    try {
+                        for (int round = 20; round < 60; round++) {
+                            for (int i = 0; i < 500; i++) {
+                                hashmap.set("key" + i, round);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        error.set(t);
+                    }
+                });
+                writer.start();
+                writer.join();
+                assertNull(error.get());
+
+                // The writer outran the threshold, so a compaction was queued
+                long deadline = System.currentTimeMillis() + 10000;
+                while (compacted.equals(newest(directory, "snapshot-")) && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertNotEquals(compacted, newest(directory, "snapshot-"));
+            }
+
+            try (DurablePrimHashmap<Integer> hashmap = DurablePrimHashmap.open(directory, 500, ValueCodec.INTEGER)) {
+                assertEquals(500, hashmap.getNumItems());
+                for (int i = 0; i < 500; i++) {
+                    assertEquals(Integer.valueOf(59), hashmap.get("key" + i));
+                }
+                assertTrue(count(directory, "log-") <= 3);
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Test #4: Tests concurrent writers under FsyncPolicy.EVERY_OP (group commit)
+     * all reach the disk, and that a closed map rejects writes.
+     */
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        Path directory = Files.createTempDirectory("durable");
+        try {
+            DurablePrimHashmap<Integer> hashmap = DurablePrimHashmap.open(directory, 4000, ValueCodec.INTEGER);
+            Thread[] threads = new Thread[4];
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            for (int t = 0; t < threads.length; t++) {
+                final int thread = t;
+                threads[t] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 250; i++) {
+                            assertTrue(hashmap.set("t" + thread + "-" + i, i));
+                        }
+                    } catch (Throwable e) {
+                        error.set(e);
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertNull(error.get());
+            hashmap.close();
+            hashmap.close();
+
+            try {
+                hashmap.set("late", 1);
+                fail("A closed map should reject writes");
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+
+            try (DurablePrimHashmap<Integer> reopened = DurablePrimHashmap.open(directory, 4000, ValueCodec.INTEGER)) {
+                assertEquals(1000, reopened.getNumItems());
+                assertEquals(Integer.valueOf(249), reopened.get("t3-249"));
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Test #5: Tests keys with unpaired surrogates come back exactly from the log
+     * and from a compacted snapshot, distinct from each other and from "a?".
+     */
+    @Test
+    public void testUnpairedSurrogateKeys() throws Exception {
+        String[] keys = {"a\uD800", "a\uDC00", "a?", "\uDC00\uD800"};
+        Path directory = Files.createTempDirectory("durable");
+        try {
+            try (DurablePrimHashmap<Integer> hashmap = DurablePrimHashmap.open(directory, 16, ValueCodec.INTEGER)) {
+                for (int i = 0; i < keys.length; i++) {
+                    assertTrue(hashmap.set(keys[i], i));
+                }
+            }
+
+            for (int round = 0; round < 2; round++) {
+                try (DurablePrimHashmap<Integer> hashmap = DurablePrimHashmap.open(directory, 16, ValueCodec.INTEGER)) {
+                    assertEquals(keys.length, hashmap.getNumItems());
+                    for (int i = 0; i < keys.length; i++) {
+                        assertEquals(Integer.valueOf(i), hashmap.get(keys[i]));
+                    }
+                    hashmap.compact();
+                }
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Test #6: Tests a compaction that cannot start a new log fails every later
+     * write, and that a failed background compaction is reported by close(), with
+     * no acknowledged record lost in either case.
+     */
+    @Test
+    public void testCompactionFailures() throws Exception {
+        Path directory = Files.createTempDirectory("durable");
+        try {
+            Path blocker;
+            try (DurablePrimHashmap<Integer> hashmap = DurablePrimHashmap.open(directory, 100, ValueCodec.INTEGER,
+                    DurablePrimHashmap.FsyncPolicy.NEVER, 0)) {
+                assertTrue(hashmap.set("before", 1));
+                blocker = blockNextLog(directory);
+                try {
+                    hashmap.compact();
+                    fail("The next log already exists");
+                } catch (IOException e) {
+                    // Expected
+                }
+                try {
+                    hashmap.set("after", 2);
+                    fail("Writes should fail once the log is lost");
+                } catch (UncheckedIOException e) {
+                    // Expected
+                }
+            }
+            Files.delete(blocker);
+
+            DurablePrimHashmap<Integer> hashmap = DurablePrimHashmap.open(directory, 100, ValueCodec.INTEGER,
+                    DurablePrimHashmap.FsyncPolicy.NEVER, 0);
+            assertEquals(Integer.valueOf(1), hashmap.get("before"));
+            assertFalse(hashmap.containsKey("after"));
+            blocker = blockNextLog(directory);
+            hashmap.setCompactionThreshold(1);
+            assertTrue(hashmap.set("queued", 3));
+
+            // Wait for the queued compaction to fail: close() would cancel it
+            long deadline = System.currentTimeMillis() + 10000;
+            boolean failed = false;
+            while (!failed && System.currentTimeMillis() < deadline) {
+                try {
+                    hashmap.sync();
+                    Thread.sleep(10);
+                } catch (IOException e) {
+                    failed = true;
+                }
+            }
+            assertTrue(failed);
+            try {
+                hashmap.close();
+                fail("The failed background compaction should be reported");
+            } catch (IOException e) {
+                // Expected
+            }
+            Files.delete(blocker);
+
+            try (DurablePrimHashmap<Integer> reopened = DurablePrimHashmap.open(directory, 100, ValueCodec.INTEGER)) {
+                assertEquals(2, reopened.getNumItems());
+                assertEquals(Integer.valueOf(3), reopened.get("queued"));
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private static Path blockNextLog(Path directory) throws IOException {
+        String name = newest(directory, "log-").getFileName().toString();
+        int next = Integer.parseInt(name.substring("log-".length(), name.indexOf('.'))) + 1;
+        return Files.createFile(directory.resolve("log-" + next + ".wal"));
+    }
+
+    private static Path newest(Path directory, String prefix) throws IOException {
+        Path newest = null;
+        long newestGeneration = -1;
+        for (Path file : list(directory)) {
+            String name = file.getFileName().toString();
+            if (!name.startsWith(prefix)) continue;
+
+            long generation = Long.parseLong(name.substring(prefix.length(), name.indexOf('.')));
+            if (generation > newestGeneration) {
+                newest = file;
+                newestGeneration = generation;
+            }
+        }
+        return newest;
+    }
+
+    private static int count(Path directory, String prefix) throws IOException {
+        int count = 0;
+        for (Path file : list(directory)) {
+            if (file.getFileName().toString().startsWith(prefix)) count++;
+        }
+        return count;
+    }
+
+    private static void copyDirectory(Path from, Path to) throws IOException {
+        for (Path file : list(from)) {
+            if (!file.getFileName().toString().equals("LOCK")) Files.copy(file, to.resolve(file.getFileName()));
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        for (Path file : list(directory)) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+}
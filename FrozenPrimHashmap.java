@@ -0,0 +1,179 @@
+import java.util.function.BiConsumer;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class FrozenPrimHashmap is an immutable, read-only copy of a PrimHashmap, made by
+ * PrimHashmap.freeze(). It is meant for maps that are loaded once and then only read,
+ * typically from many threads.
+ *
+ * The entries are packed into three flat arrays (keys, cached hashes, values) of
+ * at least twice as many slots as entries, and found by linear probing. A lookup
+ * therefore skips the NodeList and HashmapNode indirections of PrimHashmap, touches
+ * consecutive slots, and at a load of at most 0.5 usually finds its key (or an
+ * empty slot) on the first or second probe. Keys are hashed by the same HashStrategy
+ * as the map they were frozen from, and their hashes are copied rather than computed
+ * again.
+ *
+ * Every field is final and the arrays are filled before the constructor returns, so
+ * the Java memory model guarantees any thread that sees the object sees all of its
+ * entries: a FrozenPrimHashmap can be shared freely without synchronization. The
+ * values themselves are shared with the source map, not copied.
+ *
+ * The map supports the following functions:
+ *
+ * get(key) - Retrieves the ArbObj that this String key maps to
+ * containsKey(key) - tells whether a key is present, even when mapped to null
+ * forEach(action) - calls an action on every key-value pair
+ */
+public final class FrozenPrimHashmap<ArbObj> {
+
+    private final String[] keys;        // key in each slot, null marks an empty slot
+    private final int[] hashes;         // cached hash of the key in each slot
+    private final Object[] values;      // value in each slot, parallel to the keys
+    private final int mask;             // number of slots - 1
+    private final int numItems;         // number of entries
+    private final HashStrategy strategy; // hashes the keys, same as the source map
+
+    /**
+     * Constructor FrozenPrimHashmap copies every entry a cursor over a map visits.
+     *
+     * @param cursor
+     *      Cursor over the source map, positioned before its first entry.
+     * @param numItems
+     *      Number of entries in the source map.
+     * @param strategy
+     *      Strategy that hashed the keys of the source map.
+     */
+    FrozenPrimHashmap(PrimHashmap<ArbObj>.Cursor cursor, int numItems, HashStrategy strategy) {
+        int slots = PrimHashmap.findNextPowerOfTwo(Math.max(2, numItems * 2));
+        if (slots < 2 * numItems) throw new IllegalStateException("Too many entries to freeze: " + numItems);
+
+        String[] keys = new String[slots];
+        int[] hashes = new int[slots];
+        Object[] values = new Object[slots];
+        int mask = slots - 1;
+
+        int count = 0;
+        while (cursor.advance()) {
+            int hashVal = cursor.hash();
+            int index = hashVal & mask;
+            while (keys[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = cursor.key();
+            hashes[index] = hashVal;
+            values[index] = cursor.value();
+            count++;
+        }
+        if (count != numItems) {
+            throw new IllegalStateException("Hashmap was modified while it was being frozen");
+        }
+
+        this.keys = keys;
+        this.hashes = hashes;
+        this.values = values;
+        this.mask = mask;
+        this.numItems = numItems;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Function get will retrieve the arbitrary object associated with a given key.
+     *
+     * @param key
+     *      Key whose value is to be retrieved.
+     *
+     * @return The value associated with the specified key, or null if no such value
+     *         exists for this particular key.
+     */
+    @SuppressWarnings("unchecked")
+    public ArbObj get(String key) {
+        int slot = findSlot(key);
+        return (slot < 0) ? null : (ArbObj) values[slot];
+    }
+
+    /**
+     * Function containsKey tells whether a key is present in the map, even when it
+     * is mapped to null.
+     *
+     * @param key
+     *      The key to look for.
+     *
+     * @return true if the key is in the map.
+     */
+    public boolean containsKey(String key) {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * Function forEach will call an action on every key-value pair in the map, in
+     * slot order.
+     *
+     * @param action
+     *      Called with each key and its value.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super String, ? super ArbObj> action) {
+        for (int slot = 0; slot <= mask; slot++) {
+            if (keys[slot] != null) action.accept(keys[slot], (ArbObj) values[slot]);
+        }
+    }
+
+    /**
+     * Function getNumItems() is a getter function for the number of items in the
+     * hashmap.
+     *
+     * @return number of items in hashmap.
+     */
+    public int getNumItems() {
+        return this.numItems;
+    }
+
+    /**
+     * Function getTrueSize() is a getter function for the number of slots, a power
+     * of two at least twice the number of items. This is used for test purposes!
+     *
+     * @return number of slots.
+     */
+    public int getTrueSize() {
+        return this.mask + 1;
+    }
+
+    /**
+     * Function getHashStrategy() is a getter function for the strategy that hashes
+     * the keys of this hashmap.
+     *
+     * @return the hash strategy.
+     */
+    public HashStrategy getHashStrategy() {
+        return this.strategy;
+    }
+
+    /**
+     * Function load will return the fraction of slots in use, at most 0.5.
+     *
+     * @return Load factor as described above in float format.
+     */
+    public float load() {
+        return numItems / (float) (mask + 1);
+    }
+
+    /**
+     * Helper function findSlot probes from a key's home slot until it finds the key
+     * or an empty slot. At least half the slots are empty, so the probe ends.
+     *
+     * @return index of the slot holding the key, or -1 if the key is absent.
+     */
+    private int findSlot(String key) {
+        int hashVal = strategy.hash(key);
+        int index = hashVal & mask;
+        while (true) {
+            String slotKey = keys[index];
+            if (slotKey == null) return -1;
+            if (hashes[index] == hashVal && slotKey.equals(key)) return index;
+
+            index = (index + 1) & mask;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * FrozenPrimHashmapTest will serve as the JUnit Test Suite corresponding to the
+ * read-only copy made by PrimHashmap.freeze(), FrozenPrimHashmap.
+ *
+ * Functions tested: freeze(), get(key), containsKey(key), forEach(action), load()
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class FrozenPrimHashmapTest {
+
+    /**
+     * Test #1: Tests a frozen map holds exactly the entries of its source, including
+     * null values, and does not change with it.
+     */
+    @Test
+    public void testFreezeCopiesContents() throws Exception {
+        PrimHashmap<String> hashmap = new PrimHashmap<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            hashmap.set("key" + i, "value" + i);
+        }
+        hashmap.set("key7", null);
+
+        FrozenPrimHashmap<String> frozen = hashmap.freeze();
+        assertEquals(1000, frozen.getNumItems());
+        assertEquals(2048, frozen.getTrueSize());
+        assertTrue(frozen.load() <= 0.5f);
+        assertSame(hashmap.getHashStrategy(), frozen.getHashStrategy());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i == 7 ? null : "value" + i, frozen.get("key" + i));
+        }
+        assertTrue(frozen.containsKey("key7"));
+        assertFalse(frozen.containsKey("key1000"));
+        assertEquals(null, frozen.get("missing"));
+
+        // The source stays usable and independent
+        hashmap.delete("key1");
+        hashmap.set("key2", "changed");
+        assertEquals("value1", frozen.get("key1"));
+        assertEquals("value2", frozen.get("key2"));
+
+        final Map<String, String> seen = new HashMap<>();
+        frozen.forEach((key, value) -> seen.put(key, value));
+        assertEquals(1000, seen.size());
+        assertEquals("value999", seen.get("key999"));
+
+        FrozenPrimHashmap<String> empty = new PrimHashmap<String>(10).freeze();
+        assertEquals(0, empty.getNumItems());
+        assertEquals(null, empty.get("a"));
+        assertFalse(empty.containsKey(""));
+    }
+
+    /**
+     * Test #2: Tests colliding keys, custom strategies and a growable map caught in
+     * the middle of a resize all freeze correctly.
+     */
+    @Test
+    public void testFreezeUnusualMaps() throws Exception {
+        HashStrategy constant = new HashStrategy() {
+            public int hash(String key) {
+                return 42;
+            }
+        };
+        PrimHashmap<Integer> colliding = new PrimHashmap<>(50, constant);
+        for (int i = 0; i < 50; i++) {
+            colliding.set("c" + i, i);
+        }
+        FrozenPrimHashmap<Integer> frozenColliding = colliding.freeze();
+        for (int i = 0; i < 50; i++) {
+            assertEquals(Integer.valueOf(i), frozenColliding.get("c" + i));
+        }
+        assertFalse(frozenColliding.containsKey("c50"));
+
+        PrimHashmap<Integer> growing = PrimHashmap.growable(512);
+        for (int i = 0; i < 513; i++) {
+            growing.set("g" + i, i);
+        }
+        assertTrue(growing.isResizing());
+        FrozenPrimHashmap<Integer> frozenGrowing = growing.freeze();
+        assertEquals(513, frozenGrowing.getNumItems());
+        for (int i = 0; i < 513; i++) {
+            assertEquals(Integer.valueOf(i), frozenGrowing.get("g" + i));
+        }
+    }
+
+    /**
+     * Test #3: Tests many threads can read a frozen map handed over without any
+     * synchronization of their own.
+     */
+    @Test
+    public void testConcurrentReads() throws Exception {
+        PrimHashmap<Integer> hashmap = new PrimHashmap<>(10000);
+        for (int i = 0; i < 10000; i++) {
+            hashmap.set("key" + i, i);
+        }
+        final FrozenPrimHashmap<Integer> frozen = hashmap.freeze();
+
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            final int offset = t;
+            readers[t] = new Thread(() -> {
+                for (int round = 0; round < 20; round++) {
+                    for (int i = offset; i < 10000; i += 4) {
+                        Integer value = frozen.get("key" + i);
+                        if (value == null || value != i) errors.incrementAndGet();
+                    }
+                }
+            });
+            readers[t].start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(0, errors.get());
+    }
+}
@@ -0,0 +1,198 @@
+import java.security.SecureRandom;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Interface HashStrategy defines how a String key is turned into the 32-bit hash
+ * that the fixed-size hashmaps mask down to a bucket index. Only the low bits of the
+ * hash pick the bucket, so a strategy must spread every input bit into them.
+ *
+ * Built-in strategies:
+ *
+ * IDENTITY - String.hashCode() unchanged, the original behavior
+ * SPREAD - String.hashCode() run through the murmur3 finalizer (the default)
+ * seeded() - SPREAD mixed with a per-instance random seed
+ * sipHash() - SipHash-2-4 over the characters, keyed with a random 128-bit key
+ *
+ * The first three are functions of String.hashCode(), which String caches, so they
+ * cost a few multiplies per call; keys with equal hashCode() values still collide.
+ * Only sipHash() defends against keys built to collide, at the price of hashing the
+ * whole key on every call. Use it for keys an attacker controls.
+ */
+public interface HashStrategy {
+
+    /**
+     * Function hash computes the hash of a key.
+     *
+     * @param key
+     *      The key to hash.
+     *
+     * @return the 32-bit hash; every bit should depend on the whole key.
+     */
+    int hash(String key);
+
+    HashStrategy IDENTITY = new HashStrategy() {
+        public int hash(String key) {
+            return key.hashCode();
+        }
+    };
+
+    HashStrategy SPREAD = new Spread(0);
+
+    /**
+     * Function seeded creates a SPREAD strategy with a random seed, so bucket
+     * positions differ from one map instance to the next.
+     *
+     * @return a new seeded strategy.
+     */
+    static HashStrategy seeded() {
+        return new Spread(new SecureRandom().nextInt());
+    }
+
+    /**
+     * Function sipHash creates a SipHash-2-4 strategy with a random key.
+     *
+     * @return a new keyed strategy.
+     */
+    static HashStrategy sipHash() {
+        SecureRandom random = new SecureRandom();
+        return new SipHash(random.nextLong(), random.nextLong());
+    }
+
+    /**
+     * Function mix is the murmur3 32-bit finalizer: every input bit affects every
+     * output bit with probability close to one half.
+     *
+     * @param h
+     *      The value to mix.
+     *
+     * @return the mixed value.
+     */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Class Spread mixes String.hashCode() with an optional seed.
+     */
+    final class Spread implements HashStrategy {
+
+        private final int seed; // xor-ed into the hashCode() before mixing
+
+        /**
+         * Constructor Spread creates the strategy for a given seed.
+         *
+         * @param seed
+         *      Seed, 0 gives the same hashes as SPREAD.
+         */
+        public Spread(int seed) {
+            this.seed = seed;
+        }
+
+        public int hash(String key) {
+            return mix(key.hashCode() ^ seed);
+        }
+
+        /**
+         * Function getSeed returns the seed of this strategy.
+         */
+        public int getSeed() {
+            return seed;
+        }
+    }
+
+    /**
+     * Class SipHash computes SipHash-2-4 over the UTF-16 code units of the key, four
+     * characters to a 64-bit word, and folds the result to 32 bits.
+     */
+    final class SipHash implements HashStrategy {
+
+        private final long k0;  // first half of the 128-bit key
+        private final long k1;  // second half of the 128-bit key
+
+        /**
+         * Constructor SipHash creates the strategy for a given 128-bit key.
+         *
+         * @param k0
+         *      First half of the key.
+         * @param k1
+         *      Second half of the key.
+         */
+        public SipHash(long k0, long k1) {
+            this.k0 = k0;
+            this.k1 = k1;
+        }
+
+        public int hash(String key) {
+            long v0 = k0 ^ 0x736f6d6570736575L;
+            long v1 = k1 ^ 0x646f72616e646f6dL;
+            long v2 = k0 ^ 0x6c7967656e657261L;
+            long v3 = k1 ^ 0x7465646279746573L;
+
+            // One word per four characters, then a last word holding the leftovers
+            int words = (key.length() >>> 2) + 1;
+            for (int w = 0; w < words; w++) {
+                long m = word(key, w * 4);
+                v3 ^= m;
+                for (int round = 0; round < 2; round++) {
+                    v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+                    v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+                    v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+                    v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+                }
+                v0 ^= m;
+            }
+
+            v2 ^= 0xff;
+            for (int round = 0; round < 4; round++) {
+                v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+                v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+                v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+                v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+            }
+
+            long h = v0 ^ v1 ^ v2 ^ v3;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        /**
+         * Helper function word packs the four characters starting at an index into a
+         * little-endian word. The last word packs the leftover characters and puts the
+         * key's length in bytes into its top byte.
+         */
+        private static long word(String key, int from) {
+            int length = key.length();
+            if (from + 4 <= length) {
+                return key.charAt(from)
+                        | (long) key.charAt(from + 1) << 16
+                        | (long) key.charAt(from + 2) << 32
+                        | (long) key.charAt(from + 3) << 48;
+            }
+
+            long m = (long) (length * 2) << 56;
+            for (int i = from; i < length; i++) {
+                m |= (long) key.charAt(i) << (16 * (i - from));
+            }
+            return m;
+        }
+
+        /**
+         * Function getK0 returns the first half of the key.
+         */
+        public long getK0() {
+            return k0;
+        }
+
+        /**
+         * Function getK1 returns the second half of the key.
+         */
+        public long getK1() {
+            return k1;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * HashStrategyTest will serve as the JUnit Test Suite corresponding to the pluggable
+ * key hashing, HashStrategy.
+ *
+ * Functions tested: hash(key), mix(h), seeded(), sipHash(), constructor(size, strategy)
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class HashStrategyTest {
+
+    /**
+     * Test #1: Tests SPREAD breaks up keys whose hashCode() values only differ in the
+     * high bits, which IDENTITY puts into a single bucket.
+     */
+    @Test
+    public void testSpreadBreaksUpLowBitClusters() throws Exception {
+        String[] keys = highBitKeys(960);
+
+        PrimHashmap<Integer> identity = new PrimHashmap<>(1024, HashStrategy.IDENTITY);
+        PrimHashmap<Integer> spread = new PrimHashmap<>(1024);
+        assertSame(HashStrategy.SPREAD, spread.getHashStrategy());
+        PrimHashmapMetrics identityMetrics = identity.enableMetrics();
+        PrimHashmapMetrics spreadMetrics = spread.enableMetrics();
+        for (int i = 0; i < keys.length; i++) {
+            assertTrue(identity.set(keys[i], i));
+            assertTrue(spread.set(keys[i], i));
+        }
+
+        assertEquals(960, identityMetrics.snapshot().getMaxChainLength());
+        assertTrue(spreadMetrics.snapshot().getMaxChainLength() <= 8);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(Integer.valueOf(i), spread.get(keys[i]));
+        }
+    }
+
+    /**
+     * Test #2: Tests seeded strategies are functions of hashCode(), so equal hashCode()
+     * values still collide, while different seeds place keys differently.
+     */
+    @Test
+    public void testSeeded() throws Exception {
+        // "FB" and "Ea" have the same hashCode()!
+        HashStrategy seeded = new HashStrategy.Spread(42);
+        assertEquals(seeded.hash("FB"), seeded.hash("Ea"));
+        assertEquals(HashStrategy.SPREAD.hash("FB"), new HashStrategy.Spread(0).hash("FB"));
+        assertNotEquals(HashStrategy.SPREAD.hash("key"), seeded.hash("key"));
+        assertEquals(HashStrategy.mix("key".hashCode()), HashStrategy.SPREAD.hash("key"));
+
+        PrimProbeHashmap<String> hashmap = new PrimProbeHashmap<>(8, HashStrategy.seeded());
+        assertTrue(hashmap.set("FB", "a"));
+        assertTrue(hashmap.set("Ea", "b"));
+        assertEquals("a", hashmap.get("FB"));
+        assertEquals("b", hashmap.get("Ea"));
+    }
+
+    /**
+     * Test #3: Tests SipHash against the reference vectors (the UTF-16LE bytes of the
+     * key are the message) and that it separates keys with equal hashCode() values.
+     */
+    @Test
+    public void testSipHash() throws Exception {
+        HashStrategy sip = new HashStrategy.SipHash(0x0706050403020100L, 0x0f0e0d0c0b0a0908L);
+        assertEquals(fold(0x726fdb47dd0e0e31L), sip.hash(""));
+        assertEquals(fold(0x93f5f5799a932462L), sip.hash("\u0100\u0302\u0504\u0706"));
+
+        assertNotEquals(sip.hash("FB"), sip.hash("Ea"));
+        assertNotEquals(sip.hash("FB"), HashStrategy.sipHash().hash("FB"));
+
+        PrimIntHashmap hashmap = new PrimIntHashmap(4, HashStrategy.sipHash());
+        assertTrue(hashmap.set("FB", 1));
+        assertTrue(hashmap.set("Ea", 2));
+        assertEquals(2, hashmap.getInt("Ea", 0));
+        assertTrue(hashmap.delete("FB"));
+        assertEquals(0, hashmap.getInt("FB", 0));
+    }
+
+    /**
+     * Test #4: Tests ConcurrentPrimHashmap and PrimCacheHashmap default to SPREAD,
+     * accept other strategies, and stay correct on keys that IDENTITY would pile into
+     * one bucket.
+     */
+    @Test
+    public void testOtherMapsTakeStrategies() throws Exception {
+        String[] keys = highBitKeys(500);
+
+        assertSame(HashStrategy.SPREAD, new ConcurrentPrimHashmap<Integer>(16).getHashStrategy());
+        assertSame(HashStrategy.SPREAD, new ConcurrentPrimHashmap<Integer>().getHashStrategy());
+        assertSame(HashStrategy.SPREAD,
+                new PrimCacheHashmap<Integer>(16, PrimCacheHashmap.EvictionPolicy.LRU).getHashStrategy());
+
+        for (HashStrategy strategy : new HashStrategy[] {HashStrategy.SPREAD, HashStrategy.sipHash()}) {
+            ConcurrentPrimHashmap<Integer> concurrent = new ConcurrentPrimHashmap<>(500, strategy);
+            PrimCacheHashmap<Integer> cache = new PrimCacheHashmap<>(500, PrimCacheHashmap.EvictionPolicy.CLOCK,
+                    strategy);
+            assertSame(strategy, concurrent.getHashStrategy());
+            assertSame(strategy, cache.getHashStrategy());
+            for (int i = 0; i < keys.length; i++) {
+                assertTrue(concurrent.set(keys[i], i));
+                assertTrue(cache.set(keys[i], i));
+            }
+            for (int i = 0; i < keys.length; i++) {
+                assertEquals(Integer.valueOf(i), concurrent.get(keys[i]));
+                assertEquals(Integer.valueOf(i), cache.get(keys[i]));
+            }
+            assertEquals(Integer.valueOf(7), concurrent.delete(keys[7]));
+            assertEquals(Integer.valueOf(7), cache.delete(keys[7]));
+            assertNull(concurrent.get(keys[7]));
+            assertNull(cache.get(keys[7]));
+        }
+    }
+
+    /**
+     * Test #5: Tests OffHeapPrimHashmap defaults to SPREAD and stays correct under
+     * SipHash on keys that IDENTITY would pile into one probe cluster.
+     */
+    @Test
+    public void testOffHeapTakesStrategies() throws Exception {
+        String[] keys = highBitKeys(500);
+
+        try (OffHeapPrimHashmap<Integer> spread = new OffHeapPrimHashmap<>(16, 8, ValueCodec.INTEGER)) {
+            assertSame(HashStrategy.SPREAD, spread.getHashStrategy());
+        }
+
+        HashStrategy sip = HashStrategy.sipHash();
+        try (OffHeapPrimHashmap<Integer> hashmap = new OffHeapPrimHashmap<>(500, 16, 4, ValueCodec.INTEGER, sip)) {
+            assertSame(sip, hashmap.getHashStrategy());
+            for (int i = 0; i < keys.length; i++) {
+                assertTrue(hashmap.set(keys[i], i));
+            }
+            assertEquals(Integer.valueOf(7), hashmap.delete(keys[7]));
+            for (int i = 0; i < keys.length; i++) {
+                assertEquals((i == 7) ? null : Integer.valueOf(i), hashmap.get(keys[i]));
+            }
+        }
+    }
+
+    /**
+     * Helper function highBitKeys builds three-character keys whose hashCode() values
+     * are i << 16, so their low 16 bits are all zero.
+     */
+    private static String[] highBitKeys(int count) {
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            int target = i << 16;
+            int c0 = target / 961;
+            int rest = target - c0 * 961;
+            keys[i] = new String(new char[] {(char) c0, (char) (rest / 31), (char) (rest % 31)});
+            assertEquals(target, keys[i].hashCode());
+        }
+        return keys;
+    }
+
+    /**
+     * Helper function fold folds a 64-bit SipHash result to 32 bits, as SipHash does.
+     */
+    private static int fold(long h) {
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.Arrays;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class LatencyHistogram records non-negative values (latencies in nanoseconds) in
+ * log-linear buckets, in the style of HdrHistogram: values below 32 get a bucket
+ * each, and every power of two above that is split into 32 equal sub-buckets. Any
+ * recorded value is therefore reported within about 3% of its true value, using a
+ * fixed array of counts no matter how many values are recorded.
+ *
+ * Recording is meant for a single thread; other threads may read the figures at
+ * any time, but then see an approximate view.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;                      // log2 of sub-buckets per power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;       // sub-buckets per power of two
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS]; // number of values in each bucket
+    private long totalCount;                          // number of values recorded
+    private long sum;                                 // sum of the values recorded
+    private long max;                                 // largest value recorded
+
+    /**
+     * Function recordValue adds one value to the histogram. Negative values are
+     * recorded as 0.
+     *
+     * @param value
+     *      The value to record.
+     */
+    public void recordValue(long value) {
+        if (value < 0) value = 0;
+
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Function getTotalCount returns how many values were recorded.
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Function getMaxValue returns the largest value recorded, exactly.
+     */
+    public long getMaxValue() {
+        return max;
+    }
+
+    /**
+     * Function getMean returns the mean of the values recorded, exactly.
+     *
+     * @return the mean, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        return (totalCount == 0) ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * Function getValueAtPercentile finds the value that the given percentage of the
+     * recorded values are at or below.
+     *
+     * @param percentile
+     *      A percentage between 0 and 100.
+     *
+     * @return the largest value of the bucket holding that rank, capped at the maximum
+     *         recorded, or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) return 0;
+
+        double clamped = Math.min(100, Math.max(0, percentile));
+        long rank = Math.max(1, (long) Math.ceil(clamped / 100 * totalCount));
+
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(highestValueOf(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * Function reset forgets every recorded value.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * Function copy returns an independent histogram holding the same values.
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        System.arraycopy(counts, 0, copy.counts, 0, BUCKETS);
+        copy.totalCount = totalCount;
+        copy.sum = sum;
+        copy.max = max;
+        return copy;
+    }
+
+    /**
+     * Helper function indexOf finds the bucket for a value.
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Helper function highestValueOf finds the largest value that falls in a bucket.
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) return index;
+
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((SUB_BUCKETS + sub) << (exponent - SUB_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class MappedPrimHashmap defines a persistent, file-backed OffHeapPrimHashmap. The
+ * header and the fixed-size slot table are memory-mapped from a file, so reopening
+ * the file makes every entry available immediately: there is no pass that calls
+ * set() for each entry, the OS simply pages the table in on demand.
+ *
+ * File layout: the 64 byte slab header, followed by the slot segments back to back.
+ * The header records the hash strategy the same way PrimHashmapSnapshot does, so a
+ * file comes back with the strategy it was created with, secret SipHash key included.
+ *
+ * The map supports the following functions on top of OffHeapPrimHashmap:
+ *
+ * create(file, size, ...) - Creates a new, empty file-backed hashmap
+ * create(file, size, ..., strategy) - Same, with keys hashed by a built-in HashStrategy
+ * open(file, codec) - Reopens an existing file for reading and writing
+ * openReadOnly(file, codec) - Maps an existing file read-only, for sharing between processes
+ * force() - Flushes every change to disk and marks the file clean
+ * close() - Flushes (if writable) and unmaps the file
+ *
+ * Crash safety: the first change after a force() clears the header's clean flag and
+ * forces the header, so no changed slot page can reach the disk while the file still
+ * claims to be clean. Pages changed after a force() are written back by the OS in
+ * any order, so a crash can leave a key both moved and not moved by a delete's
+ * backward shift, an entry lost, or a slot that straddles two pages half-written.
+ * A file reopened without the clean flag is therefore rebuilt: every used slot is
+ * validated and re-inserted into a fresh table, which open() writes back and forces
+ * and openReadOnly() keeps in a private in-memory copy. Entries that were forced
+ * before the crash come back exactly. A change made after the last force() may be
+ * lost, and a value torn across a page boundary is only caught if it no longer
+ * decodes, since slots carry no checksum.
+ */
+public class MappedPrimHashmap<ArbObj> extends OffHeapPrimHashmap<ArbObj> {
+
+    private final FileChannel channel; // channel the file was mapped from
+    private final boolean readOnly;    // true if mapped with MapMode.READ_ONLY
+    private boolean dirty;             // true if changed since the last force()
+
+    /**
+     * Constructor MappedPrimHashmap wraps the mapped header and segments.
+     */
+    private MappedPrimHashmap(FileChannel channel, ByteBuffer header, ByteBuffer[] segments,
+                              ValueCodec<ArbObj> codec, HashStrategy strategy, boolean readOnly) {
+        super(header, segments, codec, strategy);
+        this.channel = channel;
+        this.readOnly = readOnly;
+        this.dirty = false;
+
+        // An unclean shutdown may have left the slots themselves inconsistent
+        if (header.getInt(H_CLEAN) == 0) {
+            rebuild();
+            if (!readOnly) {
+                dirty = true;
+                force();
+            }
+        }
+    }
+
+    /**
+     * Function create makes a new file holding an empty hashmap. An existing file
+     * at the same path is overwritten.
+     *
+     * @param file
+     *      Path of the file to create.
+     * @param size
+     *      Specifies the max capacity of the hashmap to be created.
+     * @param maxKeyBytes
+     *      Widest key that will be stored, in UTF-8 bytes.
+     * @param maxValueBytes
+     *      Widest value that will be stored, in encoded bytes.
+     * @param codec
+     *      Codec for the values.
+     *
+     * @return the new, writable hashmap.
+     */
+    public static <V> MappedPrimHashmap<V> create(Path file, int size, int maxKeyBytes,
+                                                  int maxValueBytes, ValueCodec<V> codec)
+            throws IOException {
+        return create(file, size, maxKeyBytes, maxValueBytes, codec, HashStrategy.SPREAD);
+    }
+
+    /**
+     * Function create makes a new file holding an empty hashmap whose keys are hashed
+     * by a HashStrategy. An existing file at the same path is overwritten.
+     *
+     * @param file
+     *      Path of the file to create.
+     * @param size
+     *      Specifies the max capacity of the hashmap to be created.
+     * @param maxKeyBytes
+     *      Widest key that will be stored, in UTF-8 bytes.
+     * @param maxValueBytes
+     *      Widest value that will be stored, in encoded bytes.
+     * @param codec
+     *      Codec for the values.
+     * @param strategy
+     *      IDENTITY, SPREAD, seeded() or sipHash(); a custom strategy cannot be
+     *      stored in the file.
+     *
+     * @return the new, writable hashmap.
+     */
+    public static <V> MappedPrimHashmap<V> create(Path file, int size, int maxKeyBytes,
+                                                  int maxValueBytes, ValueCodec<V> codec,
+                                                  HashStrategy strategy) throws IOException {
+        if (strategy == null) throw new NullPointerException("strategy");
+        if (PrimHashmapSnapshot.kindOf(strategy) == PrimHashmapSnapshot.KIND_CUSTOM) {
+            throw new IllegalArgumentException("Only built-in hash strategies can be stored in a file");
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            writeHeader(header, size, maxKeyBytes, maxValueBytes, strategy);
+            header.putInt(H_CLEAN, 1);
+
+            // Mapping past the end grows the file, the new bytes read as zero (empty)
+            ByteBuffer[] segments = mapSegments(channel, header, FileChannel.MapMode.READ_WRITE);
+            return new MappedPrimHashmap<V>(channel, header, segments, codec, strategy, false);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Function open reopens an existing file for reading and writing. The map is
+     * usable as soon as this returns.
+     *
+     * @param file
+     *      Path of a file made by create().
+     * @param codec
+     *      Codec for the values, the same one the file was written with.
+     *
+     * @return the reopened, writable hashmap.
+     */
+    public static <V> MappedPrimHashmap<V> open(Path file, ValueCodec<V> codec) throws IOException {
+        return open(file, codec, false);
+    }
+
+    /**
+     * Function openReadOnly maps an existing file read-only. Several processes can
+     * map the same file this way and share one copy of the table in the page cache.
+     * A file that was not cleanly forced is copied into memory and rebuilt there
+     * instead, leaving the file untouched. Any set() or delete() throws an
+     * UnsupportedOperationException.
+     *
+     * @param file
+     *      Path of a file made by create().
+     * @param codec
+     *      Codec for the values, the same one the file was written with.
+     *
+     * @return the read-only hashmap.
+     */
+    public static <V> MappedPrimHashmap<V> openReadOnly(Path file, ValueCodec<V> codec)
+            throws IOException {
+        return open(file, codec, true);
+    }
+
+    /**
+     * Function force writes every change made through this map to the file and then
+     * marks the file clean. Once force() returns, the contents as of that moment
+     * survive a crash. Changes made after it are not guaranteed: reopening the file
+     * after a crash rebuilds the table from the slots that are still intact.
+     */
+    public void force() {
+        ensureOpen();
+        if (readOnly || !dirty) return;
+
+        for (ByteBuffer segment : getSegments()) {
+            ((MappedByteBuffer) segment).force();
+        }
+
+        // Only mark the file clean once every slot is on disk
+        MappedByteBuffer header = (MappedByteBuffer) getHeader();
+        header.putInt(H_CLEAN, 1);
+        header.force();
+        dirty = false;
+    }
+
+    /**
+     * Function isReadOnly tells whether the file was mapped read-only.
+     *
+     * @return true if set() and delete() are refused.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Function close flushes a writable map with force(), unmaps the file and closes
+     * the channel.
+     */
+    @Override
+    public void close() {
+        if (getSegments() != null) {
+            force();
+            super.close();
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Function ensureWritable refuses changes on a read-only mapping, and clears the
+     * clean flag before the first change after a force().
+     */
+    @Override
+    void ensureWritable() {
+        ensureOpen();
+        if (readOnly) {
+            throw new UnsupportedOperationException("Hashmap file is mapped read-only");
+        }
+        if (!dirty) {
+            // The cleared flag must be on disk before any slot page can be written back
+            MappedByteBuffer header = (MappedByteBuffer) getHeader();
+            header.putInt(H_CLEAN, 0);
+            header.force();
+            dirty = true;
+        }
+    }
+
+    /**
+     * Helper function open maps an existing file in the requested mode and checks
+     * that the file is as long as its header says.
+     */
+    private static <V> MappedPrimHashmap<V> open(Path file, ValueCodec<V> codec, boolean readOnly)
+            throws IOException {
+        FileChannel channel = readOnly
+                ? FileChannel.open(file, StandardOpenOption.READ)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("File too short for a hashmap header: " + file);
+            }
+
+            MappedByteBuffer header = channel.map(mode, 0, HEADER_BYTES);
+            if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION) {
+                throw new IOException("Not a PrimHashmap file: " + file);
+            }
+
+            int slotWidth = slotWidth(header.getInt(H_MAX_KEY_BYTES), header.getInt(H_MAX_VALUE_BYTES));
+            long expected = HEADER_BYTES + (long) slotWidth * header.getInt(H_TABLE_SIZE);
+            if (channel.size() < expected) {
+                throw new IOException("Hashmap file is truncated: " + file);
+            }
+
+            HashStrategy strategy = PrimHashmapSnapshot.getStrategy(header, H_HASH_STRATEGY);
+            ByteBuffer[] segments = mapSegments(channel, header, mode);
+            if (readOnly && header.getInt(H_CLEAN) == 0) {
+                // The rebuild cannot write to the file, so it works on a private copy
+                return new MappedPrimHashmap<V>(channel, copy(header), copy(segments), codec, strategy, true);
+            }
+            return new MappedPrimHashmap<V>(channel, header, segments, codec, strategy, readOnly);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Helper function copy moves mapped segments into direct buffers and unmaps them.
+     */
+    private static ByteBuffer[] copy(ByteBuffer[] segments) {
+        ByteBuffer[] copies = new ByteBuffer[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            copies[i] = copy(segments[i]);
+        }
+        return copies;
+    }
+
+    /**
+     * Helper function copy moves a mapped buffer into a direct buffer and unmaps it.
+     */
+    private static ByteBuffer copy(ByteBuffer mapped) {
+        ByteBuffer copy = ByteBuffer.allocateDirect(mapped.capacity());
+        copy.put(mapped.duplicate());
+        free(mapped);
+        return copy;
+    }
+
+    /**
+     * Helper function mapSegments maps the slot segments that follow the header.
+     */
+    private static ByteBuffer[] mapSegments(FileChannel channel, ByteBuffer header,
+                                            FileChannel.MapMode mode) throws IOException {
+        int hashmapSize = header.getInt(H_TABLE_SIZE);
+        int slotWidth = slotWidth(header.getInt(H_MAX_KEY_BYTES), header.getInt(H_MAX_VALUE_BYTES));
+        int segmentBytes = segmentBytes(slotWidth, hashmapSize);
+
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(slotWidth, hashmapSize)];
+        for (int i = 0; i < segments.length; i++) {
+            long position = HEADER_BYTES + (long) i * segmentBytes;
+            segments[i] = channel.map(mode, position, segmentBytes);
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,225 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * MappedPrimHashmapTest will serve as the JUnit Test Suite corresponding to the
+ * memory-mapped, persistent variant, MappedPrimHashmap.
+ *
+ * Functions tested: create(...), open(...), openReadOnly(...), force(), close()
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class MappedPrimHashmapTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test #1: Tests entries written before close() are all there after reopening,
+     * and the reopened map can keep changing.
+     */
+    @Test
+    public void testReopen() throws Exception {
+        Path file = folder.newFile("map.bin").toPath();
+
+        MappedPrimHashmap<String> hashmap = MappedPrimHashmap.create(file, 100, 16, 32, ValueCodec.STRING);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(hashmap.set("key" + i, "value" + i));
+        }
+        assertFalse(hashmap.set("key100", "value100"));
+        assertEquals("value7", hashmap.delete("key7"));
+        hashmap.close();
+
+        MappedPrimHashmap<String> reopened = MappedPrimHashmap.open(file, ValueCodec.STRING);
+        assertEquals(99, reopened.getNumItems());
+        assertEquals(100, reopened.getHashmapSize());
+        assertEquals("value42", reopened.get("key42"));
+        assertEquals(null, reopened.get("key7"));
+
+        assertTrue(reopened.set("key7", "back"));
+        reopened.close();
+
+        MappedPrimHashmap<String> again = MappedPrimHashmap.open(file, ValueCodec.STRING);
+        assertEquals("back", again.get("key7"));
+        assertEquals(1.0, again.load(), 0);
+        again.close();
+    }
+
+    /**
+     * Test #2: Tests a read-only mapping sees the data and refuses every change.
+     */
+    @Test
+    public void testReadOnly() throws Exception {
+        Path file = folder.newFile("readonly.bin").toPath();
+
+        MappedPrimHashmap<Integer> writer = MappedPrimHashmap.create(file, 8, 8, 4, ValueCodec.INTEGER);
+        assertTrue(writer.set("a", 1));
+        writer.close();
+
+        MappedPrimHashmap<Integer> reader = MappedPrimHashmap.openReadOnly(file, ValueCodec.INTEGER);
+        assertTrue(reader.isReadOnly());
+        assertEquals(Integer.valueOf(1), reader.get("a"));
+        try {
+            reader.set("b", 2);
+            fail("Expected a read-only mapping to refuse set()");
+        } catch (UnsupportedOperationException expected) {
+            // mapped read-only
+        }
+        try {
+            reader.delete("a");
+            fail("Expected a read-only mapping to refuse delete()");
+        } catch (UnsupportedOperationException expected) {
+            // mapped read-only
+        }
+        reader.close();
+    }
+
+    /**
+     * Test #3: Tests a file left dirty (changed after the last force, never closed)
+     * is still readable, with the table rebuilt from the slots.
+     */
+    @Test
+    public void testDirtyFileIsReadable() throws Exception {
+        Path file = folder.newFile("dirty.bin").toPath();
+
+        MappedPrimHashmap<Integer> writer = MappedPrimHashmap.create(file, 16, 8, 4, ValueCodec.INTEGER);
+        assertTrue(writer.set("a", 1));
+        writer.force();
+        assertTrue(writer.set("b", 2));
+        assertTrue(writer.set("c", 3));
+
+        // Simulates a crash: the writer is never closed, its changes are unflushed
+        MappedPrimHashmap<Integer> reader = MappedPrimHashmap.openReadOnly(file, ValueCodec.INTEGER);
+        assertEquals(3, reader.getNumItems());
+        assertEquals(Integer.valueOf(3), reader.get("c"));
+        reader.close();
+        writer.close();
+    }
+
+    /**
+     * Test #4: Tests opening a file that is not a hashmap fails cleanly.
+     */
+    @Test(expected = IOException.class)
+    public void testOpenGarbage() throws Exception {
+        Path file = folder.newFile("garbage.bin").toPath();
+        Files.write(file, new byte[128]);
+        MappedPrimHashmap.open(file, ValueCodec.INTEGER);
+    }
+
+    /**
+     * Test #5: Tests a file damaged the way unordered page write-back can damage it
+     * (a key left twice by a torn backward shift, a key moved out of its probe
+     * sequence, a half-written slot, a garbage slot) is rebuilt on open, keeping
+     * every intact entry exactly once.
+     */
+    @Test
+    public void testDirtyFileIsRebuilt() throws Exception {
+        Path file = folder.newFile("torn.bin").toPath();
+        try (MappedPrimHashmap<Integer> writer = MappedPrimHashmap.create(file, 16, 8, 4, ValueCodec.INTEGER)) {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(writer.set("k" + i, i));
+            }
+        }
+
+        int width = OffHeapPrimHashmap.slotWidth(8, 4);
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        int[] empty = new int[16];
+        int emptyCount = 0;
+        int[] slotOf = new int[10];
+        for (int slot = 0; slot < 16; slot++) {
+            int base = OffHeapPrimHashmap.HEADER_BYTES + slot * width;
+            if (bytes.get(base) == 0) {
+                empty[emptyCount++] = slot;
+            } else {
+                slotOf[bytes.get(base + 13) - '0'] = slot;
+            }
+        }
+
+        // k1 is left twice, k3 is moved away from its probe sequence, k2 is torn and
+        // an empty slot is marked used with garbage in it
+        copySlot(bytes, width, slotOf[1], empty[0]);
+        copySlot(bytes, width, slotOf[3], empty[1]);
+        bytes.put(OffHeapPrimHashmap.HEADER_BYTES + slotOf[3] * width, (byte) 0);
+        bytes.putInt(OffHeapPrimHashmap.HEADER_BYTES + slotOf[2] * width + 4, 12345);
+        bytes.put(OffHeapPrimHashmap.HEADER_BYTES + empty[2] * width, (byte) 1);
+        bytes.putShort(OffHeapPrimHashmap.HEADER_BYTES + empty[2] * width + 2, (short) 200);
+        bytes.putInt(OffHeapPrimHashmap.H_CLEAN, 0);
+        Files.write(file, bytes.array());
+
+        try (MappedPrimHashmap<Integer> reader = MappedPrimHashmap.openReadOnly(file, ValueCodec.INTEGER)) {
+            assertEquals(9, reader.getNumItems());
+            assertEquals(Integer.valueOf(3), reader.get("k3"));
+        }
+        assertEquals(0, ByteBuffer.wrap(Files.readAllBytes(file)).getInt(OffHeapPrimHashmap.H_CLEAN));
+
+        try (MappedPrimHashmap<Integer> hashmap = MappedPrimHashmap.open(file, ValueCodec.INTEGER)) {
+            assertEquals(9, hashmap.getNumItems());
+            assertNull(hashmap.get("k2"));
+            for (int i = 0; i < 10; i++) {
+                if (i != 2) assertEquals(Integer.valueOf(i), hashmap.get("k" + i));
+            }
+            assertEquals(Integer.valueOf(1), hashmap.delete("k1"));
+            assertNull(hashmap.get("k1"));
+        }
+
+        // The rebuilt table was forced, so the next open finds a clean file
+        assertEquals(1, ByteBuffer.wrap(Files.readAllBytes(file)).getInt(OffHeapPrimHashmap.H_CLEAN));
+        try (MappedPrimHashmap<Integer> hashmap = MappedPrimHashmap.openReadOnly(file, ValueCodec.INTEGER)) {
+            assertEquals(8, hashmap.getNumItems());
+            assertEquals(Integer.valueOf(9), hashmap.get("k9"));
+        }
+    }
+
+    /**
+     * Test #6: Tests the hash strategy is stored in the file and comes back on open,
+     * and that a custom strategy, which could not be restored, is refused.
+     */
+    @Test
+    public void testHashStrategyIsStored() throws Exception {
+        Path file = folder.newFile("strategy.bin").toPath();
+        HashStrategy.SipHash sip = new HashStrategy.SipHash(1, 2);
+        try (MappedPrimHashmap<Integer> hashmap = MappedPrimHashmap.create(file, 64, 8, 4, ValueCodec.INTEGER, sip)) {
+            assertSame(sip, hashmap.getHashStrategy());
+            for (int i = 0; i < 64; i++) {
+                assertTrue(hashmap.set("key" + i, i));
+            }
+        }
+
+        try (MappedPrimHashmap<Integer> hashmap = MappedPrimHashmap.openReadOnly(file, ValueCodec.INTEGER)) {
+            HashStrategy.SipHash stored = (HashStrategy.SipHash) hashmap.getHashStrategy();
+            assertEquals(1, stored.getK0());
+            assertEquals(2, stored.getK1());
+            for (int i = 0; i < 64; i++) {
+                assertEquals(Integer.valueOf(i), hashmap.get("key" + i));
+            }
+        }
+
+        try (MappedPrimHashmap<Integer> hashmap = MappedPrimHashmap.create(file, 8, 8, 4, ValueCodec.INTEGER)) {
+            assertSame(HashStrategy.SPREAD, hashmap.getHashStrategy());
+        }
+        try {
+            MappedPrimHashmap.create(file, 8, 8, 4, ValueCodec.INTEGER, key -> key.length());
+            fail("A custom strategy cannot be stored");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private static void copySlot(ByteBuffer bytes, int width, int from, int to) {
+        for (int i = 0; i < width; i++) {
+            bytes.put(OffHeapPrimHashmap.HEADER_BYTES + to * width + i,
+                    bytes.get(OffHeapPrimHashmap.HEADER_BYTES + from * width + i));
+        }
+    }
+}
@@ -0,0 +1,705 @@
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class OffHeapPrimHashmap defines a fixed-size hashmap whose entries live outside
+ * of the Java heap, in a slab of direct ByteBuffers preallocated from the max
+ * capacity. Each slot has a fixed width and holds the key as length-prefixed UTF-8
+ * bytes, its cached hash, and the value encoded by a ValueCodec (a fixed-width
+ * primitive or a length-prefixed blob). The heap footprint is a handful of objects,
+ * no matter how many entries the map holds, so GC pauses do not grow with it.
+ *
+ * Collisions are resolved with linear probing and backward-shift deletion, like
+ * PrimProbeHashmap. Keys are hashed by a HashStrategy, HashStrategy.SPREAD unless
+ * another is given; the strategy's kind and seed or key are kept in the header.
+ * The map supports the following functions:
+ *
+ * set(key, val) - Maps a String key to an ArbObj val
+ * get(key) - Retrieves the ArbObj that this String key maps to
+ * delete(key) - deletes the key-val mapping
+ * load() - finds the load factor, a measure of how full the map is
+ * close() - frees the native memory, the map is unusable afterwards
+ */
+public class OffHeapPrimHashmap<ArbObj> implements Closeable {
+
+    static final int MAGIC = 0x50484D31;   // "PHM1"
+    static final int VERSION = 2;          // 2 added the hash strategy
+    static final int HEADER_BYTES = 64;    // header size, room left for later fields
+
+    // Header field offsets
+    static final int H_MAGIC = 0;
+    static final int H_VERSION = 4;
+    static final int H_MAX_CAPACITY = 8;
+    static final int H_TABLE_SIZE = 12;
+    static final int H_MAX_KEY_BYTES = 16;
+    static final int H_MAX_VALUE_BYTES = 20;
+    static final int H_NUM_ITEMS = 24;
+    static final int H_CLEAN = 28;         // used by MappedPrimHashmap
+    static final int H_HASH_STRATEGY = 32; // PrimHashmapSnapshot.STRATEGY_BYTES, see putStrategy
+
+    // Slot field offsets
+    private static final int S_USED = 0;       // byte, 1 if the slot is occupied
+    private static final int S_KEY_LENGTH = 2; // unsigned short
+    private static final int S_HASH = 4;       // int, strategy hash of the key
+    private static final int S_VALUE_LENGTH = 8; // int
+    private static final int S_KEY = 12;       // key bytes, followed by value bytes
+
+    private static final int MAX_KEY_BYTES = 0xFFFF;      // key length is a short
+    private static final int MAX_SEGMENT_BYTES = 1 << 30; // a ByteBuffer is int-indexed
+
+    private ByteBuffer header;        // geometry and item count
+    private ByteBuffer[] segments;    // slot storage, each holds slotsPerSegment slots
+    private final ValueCodec<ArbObj> codec; // turns values into bytes and back
+    private final HashStrategy strategy; // turns a key into the hash that picks its slot
+    private final int hashmapSize;    // number of slots, a power of two
+    private final int maxCapacity;    // max capacity as specified by user
+    private final int maxKeyBytes;    // widest key, in UTF-8 bytes
+    private final int maxValueBytes;  // widest encoded value
+    private final int slotWidth;      // bytes per slot
+    private final int segmentShift;   // log2(slotsPerSegment)
+    private final int segmentMask;    // slotsPerSegment - 1
+    private int numItems;             // Number of items currently in hashmap
+
+    /**
+     * Constructor OffHeapPrimHashmap(sz) allocates the slab for a codec with a fixed
+     * width, such as ValueCodec.INTEGER or ValueCodec.LONG.
+     *
+     * @param size
+     *      Specifies the max capacity of the hashmap to be created.
+     * @param maxKeyBytes
+     *      Widest key that will be stored, in UTF-8 bytes.
+     * @param codec
+     *      Fixed-width codec for the values.
+     */
+    public OffHeapPrimHashmap(int size, int maxKeyBytes, ValueCodec<ArbObj> codec) {
+        this(size, maxKeyBytes, fixedWidth(codec), codec);
+    }
+
+    /**
+     * Constructor OffHeapPrimHashmap(sz) allocates the slab for values of up to
+     * maxValueBytes encoded bytes each.
+     *
+     * @param size
+     *      Specifies the max capacity of the hashmap to be created.
+     * @param maxKeyBytes
+     *      Widest key that will be stored, in UTF-8 bytes.
+     * @param maxValueBytes
+     *      Widest value that will be stored, in encoded bytes.
+     * @param codec
+     *      Codec for the values.
+     */
+    public OffHeapPrimHashmap(int size, int maxKeyBytes, int maxValueBytes,
+                              ValueCodec<ArbObj> codec) {
+        this(size, maxKeyBytes, maxValueBytes, codec, HashStrategy.SPREAD);
+    }
+
+    /**
+     * Constructor OffHeapPrimHashmap(sz) allocates the slab for values of up to
+     * maxValueBytes encoded bytes each, with keys hashed by a HashStrategy.
+     *
+     * @param size
+     *      Specifies the max capacity of the hashmap to be created.
+     * @param maxKeyBytes
+     *      Widest key that will be stored, in UTF-8 bytes.
+     * @param maxValueBytes
+     *      Widest value that will be stored, in encoded bytes.
+     * @param codec
+     *      Codec for the values.
+     * @param strategy
+     *      Hashes the keys, e.g. HashStrategy.sipHash() for keys an attacker controls.
+     */
+    public OffHeapPrimHashmap(int size, int maxKeyBytes, int maxValueBytes,
+                              ValueCodec<ArbObj> codec, HashStrategy strategy) {
+        this(newHeader(size, maxKeyBytes, maxValueBytes, strategy), null, codec, strategy);
+    }
+
+    /**
+     * Constructor OffHeapPrimHashmap attaches to an existing header and slab. If no
+     * segments are given, zeroed direct segments are allocated for the header's
+     * geometry. This is how file-backed subclasses reuse the slot logic.
+     *
+     * @param header
+     *      Buffer holding a valid header at offset 0.
+     * @param segments
+     *      Slot storage laid out by segmentBytes(), or null to allocate it.
+     * @param codec
+     *      Codec for the values.
+     * @param strategy
+     *      Hash strategy the header records, or a custom one for an in-memory slab.
+     */
+    OffHeapPrimHashmap(ByteBuffer header, ByteBuffer[] segments, ValueCodec<ArbObj> codec,
+                       HashStrategy strategy) {
+        if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION) {
+            throw new IllegalArgumentException("Not a PrimHashmap slab (bad magic or version)");
+        }
+        if (strategy == null) throw new NullPointerException("strategy");
+
+        this.header = header;
+        this.codec = codec;
+        this.strategy = strategy;
+        this.maxCapacity = header.getInt(H_MAX_CAPACITY);
+        this.hashmapSize = header.getInt(H_TABLE_SIZE);
+        this.maxKeyBytes = header.getInt(H_MAX_KEY_BYTES);
+        this.maxValueBytes = header.getInt(H_MAX_VALUE_BYTES);
+        this.numItems = header.getInt(H_NUM_ITEMS);
+        this.slotWidth = slotWidth(maxKeyBytes, maxValueBytes);
+
+        int slotsPerSegment = slotsPerSegment(slotWidth, hashmapSize);
+        this.segmentShift = Integer.numberOfTrailingZeros(slotsPerSegment);
+        this.segmentMask = slotsPerSegment - 1;
+
+        this.segments = (segments == null) ? allocateSegments(slotWidth, hashmapSize) : segments;
+    }
+
+    /**
+     * Function set will map a String to an arbitrary object value, copying both into
+     * the native slab.
+     *
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to, arbitrary object of user's choice
+     *
+     * @return true on successful set, false on unsuccessful set
+     */
+    public boolean set(String key, ArbObj value) {
+        ensureWritable();
+        if (hashmapSize == 0) return false;
+        if (value == null) {
+            throw new IllegalArgumentException("Off-heap values cannot be null");
+        }
+
+        int keyLength = Utf8.encodedLength(key);
+        int valueLength = codec.encodedLength(value);
+        if (keyLength > maxKeyBytes) {
+            throw new IllegalArgumentException("Key is " + keyLength + " bytes, max is " + maxKeyBytes);
+        }
+        if (valueLength > maxValueBytes) {
+            throw new IllegalArgumentException("Value is " + valueLength + " bytes, max is " + maxValueBytes);
+        }
+
+        int hashVal = strategy.hash(key);
+        int mask = hashmapSize - 1;
+        int index = hashVal & mask;
+
+        // Walk the probe sequence until the key or an empty slot is found
+        for (int probes = 0; probes < hashmapSize; probes++) {
+            ByteBuffer segment = segments[index >>> segmentShift];
+            int base = (index & segmentMask) * slotWidth;
+
+            if (segment.get(base + S_USED) == 0) {
+                // Max capacity check
+                if (numItems >= maxCapacity) return false;
+
+                segment.putShort(base + S_KEY_LENGTH, (short) keyLength);
+                segment.putInt(base + S_HASH, hashVal);
+                Utf8.encode(key, segment, base + S_KEY);
+                writeValue(segment, base, value, valueLength);
+                segment.put(base + S_USED, (byte) 1);
+
+                numItems++;
+                header.putInt(H_NUM_ITEMS, numItems);
+                return true;
+            }
+
+            if (matches(segment, base, hashVal, key)) {
+                // Override value if duplicate found.
+                writeValue(segment, base, value, valueLength);
+                return true;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        // Every slot is taken by another key, so the map is full
+        return false;
+    }
+
+    /**
+     * Function get will retrieve the arbitrary object associated with a given key,
+     * decoding it from the native slab.
+     *
+     * @param key
+     *      Key whose value is to be retrieved.
+     *
+     * @return The value associated with the specified key, or null if no such value
+     *         exists for this particular key.
+     */
+    public ArbObj get(String key) {
+        ensureOpen();
+        int index = findSlot(key);
+        if (index < 0) return null;
+
+        return readValue(segments[index >>> segmentShift], (index & segmentMask) * slotWidth);
+    }
+
+    /**
+     * Function delete will remove the key-value entry for a given key. Later slots of
+     * the cluster are shifted back so that no tombstones are needed.
+     *
+     * @param key
+     *      Key for which the key-value entry in the map is to be deleted.
+     *
+     * @return The value associated with the specified key on succesful delete,
+     *         or null if there was no such key-value pair to begin with.
+     */
+    public ArbObj delete(String key) {
+        ensureWritable();
+        int hole = findSlot(key);
+        if (hole < 0) return null;
+
+        ArbObj deleted = readValue(segments[hole >>> segmentShift], (hole & segmentMask) * slotWidth);
+        markEmpty(hole);
+        numItems--;
+        header.putInt(H_NUM_ITEMS, numItems);
+
+        // Backward-shift: pull later entries of the cluster into the hole when
+        // their home slot does not lie between the hole and their current slot.
+        int mask = hashmapSize - 1;
+        int index = hole;
+        while (true) {
+            index = (index + 1) & mask;
+            ByteBuffer segment = segments[index >>> segmentShift];
+            int base = (index & segmentMask) * slotWidth;
+            if (segment.get(base + S_USED) == 0) break;
+
+            int home = segment.getInt(base + S_HASH) & mask;
+            boolean homeBetween = (hole <= index)
+                    ? (hole < home && home <= index)
+                    : (hole < home || home <= index);
+
+            if (!homeBetween) {
+                copySlot(index, hole);
+                markEmpty(index);
+                hole = index;
+            }
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Function close frees the native memory of the slab. Any later operation on the
+     * map throws an IllegalStateException.
+     */
+    public void close() {
+        if (segments == null) return;
+
+        for (ByteBuffer segment : segments) {
+            free(segment);
+        }
+        free(header);
+        segments = null;
+        header = null;
+    }
+
+    /**
+     * Function getNumItems() is a getter function for the number of items
+     * currently in the hashmap (occupancy).
+     *
+     * @return number of items in hashmap.
+     */
+    public int getNumItems() {
+        return this.numItems;
+    }
+
+    /**
+     * Function getHashmapSize() is a getter function for the max capacity
+     * of this hashmap.
+     *
+     * @return user-specified max capacity of current hashmap.
+     */
+    public int getHashmapSize() {
+        return this.maxCapacity;
+    }
+
+    /**
+     * Function getTrueSize() is a getter function for the true size
+     * (closest power of 2) of the underlying slot table of the hashmap.
+     *
+     * @return true size of hashmap.
+     */
+    public int getTrueSize() {
+        return this.hashmapSize;
+    }
+
+    /**
+     * Function getHashStrategy() is a getter function for the strategy that hashes
+     * the keys of this hashmap.
+     *
+     * @return the hash strategy.
+     */
+    public HashStrategy getHashStrategy() {
+        return this.strategy;
+    }
+
+    /**
+     * Function getOffHeapBytes() returns how many bytes of native memory the slab
+     * occupies, header included.
+     *
+     * @return native bytes used by this hashmap.
+     */
+    public long getOffHeapBytes() {
+        return HEADER_BYTES + (long) slotWidth * hashmapSize;
+    }
+
+    /**
+     * Function load will return the load factor (numItems/capacity) of the hashmap.
+     *
+     * @return Load factor as described above in float format.
+     */
+    public float load() {
+        if (maxCapacity == 0) {
+            return 0;
+        }
+        return numItems / (float) maxCapacity;
+    }
+
+    /**
+     * Function ensureOpen throws if the map has been closed.
+     */
+    void ensureOpen() {
+        if (segments == null) {
+            throw new IllegalStateException("Hashmap has been closed");
+        }
+    }
+
+    /**
+     * Function ensureWritable throws if the map cannot be modified. Read-only
+     * subclasses override it.
+     */
+    void ensureWritable() {
+        ensureOpen();
+    }
+
+    /**
+     * Function rebuild repairs a table that cannot be trusted, such as a file whose
+     * pages were written back in arbitrary order before a crash. Every used slot is
+     * validated (lengths in range, key bytes well formed, stored hash matching the
+     * key, value decodable) and re-inserted into a fresh, zeroed slab, which is then
+     * copied over the table. Invalid slots, and all but the first copy of a key that
+     * a torn backward shift left twice, are dropped.
+     *
+     * @return number of used slots that were dropped.
+     */
+    int rebuild() {
+        ByteBuffer[] fresh = allocateSegments(slotWidth, hashmapSize);
+        int mask = hashmapSize - 1;
+        int count = 0;
+        int dropped = 0;
+
+        for (int index = 0; index < hashmapSize; index++) {
+            ByteBuffer segment = segments[index >>> segmentShift];
+            int base = (index & segmentMask) * slotWidth;
+            if (segment.get(base + S_USED) == 0) continue;
+
+            String key = validKey(segment, base);
+            if (key == null || count >= maxCapacity) {
+                dropped++;
+                continue;
+            }
+
+            int hashVal = segment.getInt(base + S_HASH);
+            int target = hashVal & mask;
+            boolean duplicate = false;
+            while (fresh[target >>> segmentShift].get((target & segmentMask) * slotWidth + S_USED) != 0) {
+                if (matches(fresh[target >>> segmentShift], (target & segmentMask) * slotWidth, hashVal, key)) {
+                    duplicate = true;
+                    break;
+                }
+                target = (target + 1) & mask;
+            }
+            if (duplicate) {
+                dropped++;
+                continue;
+            }
+
+            copySlot(segment, base, fresh[target >>> segmentShift], (target & segmentMask) * slotWidth);
+            count++;
+        }
+
+        for (int i = 0; i < segments.length; i++) {
+            ByteBuffer target = segments[i].duplicate();
+            ByteBuffer source = fresh[i].duplicate();
+            target.clear();
+            source.clear();
+            target.put(source);
+            free(fresh[i]);
+        }
+        numItems = count;
+        header.putInt(H_NUM_ITEMS, count);
+        return dropped;
+    }
+
+    /**
+     * Function getHeader returns the header buffer, for subclasses that persist it.
+     *
+     * @return header buffer.
+     */
+    ByteBuffer getHeader() {
+        return header;
+    }
+
+    /**
+     * Function getSegments returns the slot buffers, for subclasses that persist them.
+     *
+     * @return slot buffers.
+     */
+    ByteBuffer[] getSegments() {
+        return segments;
+    }
+
+    /**
+     * Function newHeader builds a header buffer for a new, empty slab.
+     *
+     * @param size
+     *      Max capacity of the hashmap.
+     * @param maxKeyBytes
+     *      Widest key, in UTF-8 bytes.
+     * @param maxValueBytes
+     *      Widest value, in encoded bytes.
+     * @param strategy
+     *      Hash strategy of the keys.
+     *
+     * @return a direct buffer of HEADER_BYTES holding the header.
+     */
+    static ByteBuffer newHeader(int size, int maxKeyBytes, int maxValueBytes, HashStrategy strategy) {
+        ByteBuffer header = ByteBuffer.allocateDirect(HEADER_BYTES);
+        writeHeader(header, size, maxKeyBytes, maxValueBytes, strategy);
+        return header;
+    }
+
+    /**
+     * Function writeHeader fills in the header of a new, empty slab.
+     *
+     * @param header
+     *      Buffer of at least HEADER_BYTES to write the header into.
+     * @param size
+     *      Max capacity of the hashmap.
+     * @param maxKeyBytes
+     *      Widest key, in UTF-8 bytes.
+     * @param maxValueBytes
+     *      Widest value, in encoded bytes.
+     * @param strategy
+     *      Hash strategy of the keys.
+     */
+    static void writeHeader(ByteBuffer header, int size, int maxKeyBytes, int maxValueBytes,
+                            HashStrategy strategy) {
+        if (maxKeyBytes < 0 || maxKeyBytes > MAX_KEY_BYTES || maxValueBytes < 0) {
+            throw new IllegalArgumentException("Key or value width out of range");
+        }
+
+        header.putInt(H_MAGIC, MAGIC);
+        header.putInt(H_VERSION, VERSION);
+        header.putInt(H_MAX_CAPACITY, size);
+        header.putInt(H_TABLE_SIZE, PrimHashmap.findNextPowerOfTwo(size));
+        header.putInt(H_MAX_KEY_BYTES, maxKeyBytes);
+        header.putInt(H_MAX_VALUE_BYTES, maxValueBytes);
+        header.putInt(H_NUM_ITEMS, 0);
+        PrimHashmapSnapshot.putStrategy(header, H_HASH_STRATEGY, strategy);
+    }
+
+    /**
+     * Function allocateSegments allocates zeroed direct segments for a table.
+     */
+    static ByteBuffer[] allocateSegments(int slotWidth, int hashmapSize) {
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(slotWidth, hashmapSize)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocateDirect(segmentBytes(slotWidth, hashmapSize));
+        }
+        return segments;
+    }
+
+    /**
+     * Function slotWidth computes the bytes per slot, rounded up to 8 so slots can
+     * be copied a long at a time.
+     */
+    static int slotWidth(int maxKeyBytes, int maxValueBytes) {
+        return (S_KEY + maxKeyBytes + maxValueBytes + 7) & ~7;
+    }
+
+    /**
+     * Function slotsPerSegment computes how many slots fit one segment: the largest
+     * power of two whose slots stay within MAX_SEGMENT_BYTES, capped at the table size.
+     */
+    static int slotsPerSegment(int slotWidth, int hashmapSize) {
+        int slots = Integer.highestOneBit(MAX_SEGMENT_BYTES / slotWidth);
+        return Math.max(1, Math.min(slots, hashmapSize));
+    }
+
+    /**
+     * Function segmentCount computes how many segments hold the whole table.
+     */
+    static int segmentCount(int slotWidth, int hashmapSize) {
+        if (hashmapSize == 0) return 0;
+        return hashmapSize / slotsPerSegment(slotWidth, hashmapSize);
+    }
+
+    /**
+     * Function segmentBytes computes the size of one segment in bytes.
+     */
+    static int segmentBytes(int slotWidth, int hashmapSize) {
+        return slotsPerSegment(slotWidth, hashmapSize) * slotWidth;
+    }
+
+    /**
+     * Function free releases the native memory behind a direct buffer right away
+     * instead of waiting for the buffer to be garbage collected. On JVMs where the
+     * cleaner is not reachable, the memory is freed by the GC as usual.
+     *
+     * @param buffer
+     *      Direct (or mapped) buffer to free; must not be a slice or duplicate.
+     */
+    static void free(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (Exception e) {
+            // Leave the buffer to the garbage collector
+        }
+    }
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (Exception e) {
+            // Java 8 or a restricted runtime, fall back to GC-driven freeing
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * Helper function findSlot finds the slot holding a key.
+     *
+     * @return index of the slot, or -1 if the key is absent.
+     */
+    private int findSlot(String key) {
+        if (hashmapSize == 0) return -1;
+
+        int hashVal = strategy.hash(key);
+        int mask = hashmapSize - 1;
+        int index = hashVal & mask;
+
+        for (int probes = 0; probes < hashmapSize; probes++) {
+            ByteBuffer segment = segments[index >>> segmentShift];
+            int base = (index & segmentMask) * slotWidth;
+
+            if (segment.get(base + S_USED) == 0) return -1;
+            if (matches(segment, base, hashVal, key)) return index;
+
+            index = (index + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Helper function matches compares the cached hash first, and the key bytes
+     * only when the hashes agree.
+     */
+    private boolean matches(ByteBuffer segment, int base, int hashVal, String key) {
+        if (segment.getInt(base + S_HASH) != hashVal) return false;
+
+        int keyLength = segment.getShort(base + S_KEY_LENGTH) & 0xFFFF;
+        return Utf8.equals(key, segment, base + S_KEY, keyLength);
+    }
+
+    /**
+     * Helper function validKey checks that a used slot holds a complete entry.
+     *
+     * @return the slot's key, or null if the slot is damaged.
+     */
+    private String validKey(ByteBuffer segment, int base) {
+        int keyLength = segment.getShort(base + S_KEY_LENGTH) & 0xFFFF;
+        int valueLength = segment.getInt(base + S_VALUE_LENGTH);
+        if (keyLength > maxKeyBytes || valueLength < 0 || valueLength > maxValueBytes) return null;
+        if (codec.fixedLength() >= 0 && valueLength != codec.fixedLength()) return null;
+
+        // Decoding is lenient, so a key is only well formed if it encodes back to the same bytes
+        String key = Utf8.decode(segment, base + S_KEY, keyLength);
+        if (Utf8.encodedLength(key) != keyLength || !Utf8.equals(key, segment, base + S_KEY, keyLength)) {
+            return null;
+        }
+        if (segment.getInt(base + S_HASH) != strategy.hash(key)) return null;
+
+        try {
+            readValue(segment, base);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return key;
+    }
+
+    /**
+     * Helper function writeValue encodes a value into a slot.
+     */
+    private void writeValue(ByteBuffer segment, int base, ArbObj value, int valueLength) {
+        segment.putInt(base + S_VALUE_LENGTH, valueLength);
+        codec.encode(value, segment, valueOffset(base));
+    }
+
+    /**
+     * Helper function readValue decodes the value of a slot.
+     */
+    private ArbObj readValue(ByteBuffer segment, int base) {
+        return codec.decode(segment, valueOffset(base), segment.getInt(base + S_VALUE_LENGTH));
+    }
+
+    /**
+     * Helper function valueOffset finds where a slot's value starts, right after the
+     * room reserved for the widest key.
+     */
+    private int valueOffset(int base) {
+        return base + S_KEY + maxKeyBytes;
+    }
+
+    /**
+     * Helper function copySlot copies a whole slot, a long at a time.
+     */
+    private void copySlot(int from, int to) {
+        copySlot(segments[from >>> segmentShift], (from & segmentMask) * slotWidth,
+                segments[to >>> segmentShift], (to & segmentMask) * slotWidth);
+    }
+
+    /**
+     * Helper function copySlot copies a slot between two segments, which may belong
+     * to different slabs of the same geometry.
+     */
+    private void copySlot(ByteBuffer source, int fromBase, ByteBuffer target, int toBase) {
+        for (int i = 0; i < slotWidth; i += 8) {
+            target.putLong(toBase + i, source.getLong(fromBase + i));
+        }
+    }
+
+    /**
+     * Helper function markEmpty frees a slot. Only the used flag is reset; the rest
+     * is overwritten by the next insert.
+     */
+    private void markEmpty(int index) {
+        segments[index >>> segmentShift].put((index & segmentMask) * slotWidth + S_USED, (byte) 0);
+    }
+
+    /**
+     * Helper function fixedWidth checks a codec has a fixed width and returns it.
+     */
+    private static int fixedWidth(ValueCodec<?> codec) {
+        if (codec.fixedLength() < 0) {
+            throw new IllegalArgumentException("Codec has no fixed width, pass maxValueBytes");
+        }
+        return codec.fixedLength();
+    }
+}
@@ -0,0 +1,116 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * OffHeapPrimHashmapTest will serve as the JUnit Test Suite corresponding to the
+ * off-heap variant, OffHeapPrimHashmap.
+ *
+ * Functions tested: set(key, val), get(key), delete(key), load(), close()
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class OffHeapPrimHashmapTest {
+
+    /**
+     * Test #1: Tests fixed-width values: set, override, get, capacity rejection.
+     */
+    @Test
+    public void testFixedWidthValues() throws Exception {
+        OffHeapPrimHashmap<Long> hashmap = new OffHeapPrimHashmap<>(3, 16, ValueCodec.LONG);
+        assertEquals(4, hashmap.getTrueSize());
+        assertTrue(hashmap.set("a", 1L));
+        assertTrue(hashmap.set("b", 2L));
+        assertTrue(hashmap.set("a", 1L << 40));
+        assertTrue(hashmap.set("c", 3L));
+        assertFalse(hashmap.set("d", 4L));
+
+        assertEquals(Long.valueOf(1L << 40), hashmap.get("a"));
+        assertEquals(Long.valueOf(3L), hashmap.get("c"));
+        assertEquals(null, hashmap.get("d"));
+        assertEquals(1.0, hashmap.load(), 0);
+        hashmap.close();
+    }
+
+    /**
+     * Test #2: Tests variable-length blobs and non-ASCII keys round-trip.
+     */
+    @Test
+    public void testStringValuesAndUnicodeKeys() throws Exception {
+        OffHeapPrimHashmap<String> hashmap = new OffHeapPrimHashmap<>(8, 32, 64, ValueCodec.STRING);
+        assertTrue(hashmap.set("caf\u00e9", "latte"));
+        assertTrue(hashmap.set("\u6771\u4eac", "tokyo"));
+        assertTrue(hashmap.set("smile\ud83d\ude00", ""));
+        assertTrue(hashmap.set("caf\u00e9", "flat white"));
+
+        assertEquals("flat white", hashmap.get("caf\u00e9"));
+        assertEquals("tokyo", hashmap.get("\u6771\u4eac"));
+        assertEquals("", hashmap.get("smile\ud83d\ude00"));
+        assertEquals(null, hashmap.get("cafe"));
+        hashmap.close();
+    }
+
+    /**
+     * Test #3: Tests deletion within a collision cluster keeps the rest reachable.
+     */
+    @Test
+    public void testDeleteWithCollisions() throws Exception {
+        // "FB", "Ea" and "G#" all have the same hashCode()!
+        OffHeapPrimHashmap<Integer> hashmap = new OffHeapPrimHashmap<>(4, 8, ValueCodec.INTEGER);
+        assertTrue(hashmap.set("FB", 1));
+        assertTrue(hashmap.set("Ea", 2));
+        assertTrue(hashmap.set("G#", 3));
+
+        assertEquals(Integer.valueOf(1), hashmap.delete("FB"));
+        assertEquals(null, hashmap.delete("FB"));
+        assertEquals(Integer.valueOf(2), hashmap.get("Ea"));
+        assertEquals(Integer.valueOf(3), hashmap.get("G#"));
+        assertEquals(2, hashmap.getNumItems());
+        hashmap.close();
+    }
+
+    /**
+     * Test #4: Tests oversized keys are refused and a closed map is unusable.
+     */
+    @Test
+    public void testLimitsAndClose() throws Exception {
+        OffHeapPrimHashmap<Integer> hashmap = new OffHeapPrimHashmap<>(4, 4, ValueCodec.INTEGER);
+        try {
+            hashmap.set("too long", 1);
+            fail("Expected the key to be refused");
+        } catch (IllegalArgumentException expected) {
+            // key is 8 bytes, max is 4
+        }
+
+        hashmap.close();
+        hashmap.close();
+        try {
+            hashmap.get("a");
+            fail("Expected the closed map to refuse operations");
+        } catch (IllegalStateException expected) {
+            // map has been closed
+        }
+    }
+
+    /**
+     * Test #5: Tests churn over many entries against the expected contents.
+     */
+    @Test
+    public void testChurn() throws Exception {
+        OffHeapPrimHashmap<Integer> hashmap = new OffHeapPrimHashmap<>(2000, 12, ValueCodec.INTEGER);
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(hashmap.set("key" + i, i));
+        }
+        for (int i = 0; i < 2000; i += 3) {
+            assertEquals(Integer.valueOf(i), hashmap.delete("key" + i));
+        }
+        for (int i = 0; i < 2000; i++) {
+            Integer expected = (i % 3 == 0) ? null : Integer.valueOf(i);
+            assertEquals(expected, hashmap.get("key" + i));
+        }
+        hashmap.close();
+    }
+}
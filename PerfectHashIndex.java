@@ -0,0 +1,441 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class PerfectHashIndex is a minimal perfect hash function over a fixed set of
+ * String keys, built once and then only queried. It maps each of the n keys to its
+ * own index in [0, n), so the values of a static dictionary (config keys, feature
+ * flags, ...) can live in a plain array of exactly n slots:
+ *
+ *     PerfectHashIndex index = PerfectHashIndex.build(keys, 16);
+ *     values[index.indexOf(key)] = ...;
+ *
+ * The construction is BBHash ("fast and scalable minimal perfect hashing for
+ * massive key sets"). Level 0 is a bit array of gamma * n bits. Every key hashes to
+ * one bit of it; a bit hit by exactly one key is set and claims that key, and the
+ * keys that collided move on to level 1, sized for just them, and so on. A key's
+ * index is the number of set bits before its own bit (its rank), which a small
+ * table of counts per 512 bits answers with a few popcounts.
+ *
+ * With gamma = 1 (the default) the index takes about 2.9 bits per key, and a lookup
+ * reads 2.7 levels on average; a larger gamma trades space for fewer levels, e.g.
+ * gamma = 2 takes about 3.5 bits per key and reads 1.6 levels. Each level is built
+ * by all cores of the common fork-join pool, so large key sets (100M keys and more)
+ * build in seconds.
+ *
+ * A key that is not in the set still gets some index, or -1. With fingerprints
+ * enabled, the index also stores a few bits of an independent hash of every key,
+ * and indexOf returns -1 for all but about 1 in 2^bits unknown keys.
+ *
+ * All fields are final, so a built index can be shared between threads freely.
+ *
+ * The index supports the following functions:
+ *
+ * build(keys), build(keys, fingerprintBits), build(keys, fingerprintBits, gamma)
+ * indexOf(key) - the index of a key in [0, n), or -1 if the key is rejected
+ */
+public final class PerfectHashIndex {
+
+    private static final int MAX_LEVELS = 64;        // keys left over after these are retried with a new seed
+    private static final int MAX_ATTEMPTS = 4;       // seeds tried before the keys are declared not distinct
+    private static final int PARALLEL_LEAF = 1 << 14; // keys handled by one fork-join task
+    private static final int RANK_BLOCK = 8;         // words counted by one entry of ranks
+    private static final long MAX_LEVEL_BITS = 1L << 31; // bit positions are computed with 32-bit hashes
+    private static final long FINGERPRINT_SALT = 0x5bd1e9955bd1e995L;
+
+    private final long[] bits;       // set bits of all levels, one after the other
+    private final int[] ranks;       // number of set bits before each block of RANK_BLOCK words
+    private final long[] levelStart; // first bit of each level within bits
+    private final long[] levelSize;  // number of bits of each level, a multiple of 64
+    private final long[] fingerprints; // fingerprintBits bits per index, packed
+    private final int fingerprintBits; // bits per fingerprint, 0 if disabled
+    private final long seed;         // seed of the key hash
+    private final int numItems;      // number of keys
+
+    /**
+     * Constructor PerfectHashIndex takes the parts of an index that has been built.
+     */
+    private PerfectHashIndex(long[] bits, int[] ranks, long[] levelStart, long[] levelSize,
+                             int fingerprintBits, long seed, int numItems) {
+        this.bits = bits;
+        this.ranks = ranks;
+        this.levelStart = levelStart;
+        this.levelSize = levelSize;
+        this.fingerprintBits = fingerprintBits;
+        this.fingerprints = new long[(int) ((fingerprintBits * (long) numItems + 63) >>> 6)];
+        this.seed = seed;
+        this.numItems = numItems;
+    }
+
+    /**
+     * Function build creates an index over a set of keys, without fingerprints and
+     * with gamma = 1.
+     *
+     * @param keys
+     *      The keys, which must be distinct.
+     *
+     * @return the index.
+     */
+    public static PerfectHashIndex build(String[] keys) {
+        return build(keys, 0, 1.0);
+    }
+
+    /**
+     * Function build creates an index over a set of keys with gamma = 1.
+     *
+     * @param keys
+     *      The keys, which must be distinct.
+     * @param fingerprintBits
+     *      Bits of fingerprint per key, 0 to 32; 0 disables the check.
+     *
+     * @return the index.
+     */
+    public static PerfectHashIndex build(String[] keys, int fingerprintBits) {
+        return build(keys, fingerprintBits, 1.0);
+    }
+
+    /**
+     * Function build creates an index over a set of keys.
+     *
+     * @param keys
+     *      The keys, which must be distinct.
+     * @param fingerprintBits
+     *      Bits of fingerprint per key, 0 to 32; 0 disables the check.
+     * @param gamma
+     *      Bits per remaining key in each level, at least 1. Larger values build
+     *      faster and look up fewer levels, but take more space.
+     *
+     * @return the index.
+     */
+    public static PerfectHashIndex build(String[] keys, int fingerprintBits, double gamma) {
+        if (keys == null) throw new NullPointerException("keys");
+        if (fingerprintBits < 0 || fingerprintBits > 32) {
+            throw new IllegalArgumentException("fingerprintBits must be between 0 and 32: " + fingerprintBits);
+        }
+        if (!(gamma >= 1.0)) throw new IllegalArgumentException("gamma must be at least 1: " + gamma);
+        if (gamma * keys.length > MAX_LEVEL_BITS - 64) {
+            throw new IllegalArgumentException("Too many keys for one index: " + keys.length);
+        }
+
+        long[] hashes = new long[keys.length];
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long seed = attempt;
+            PerfectHashIndex index = tryBuild(keys, hashes, fingerprintBits, gamma, seed);
+            if (index != null) return index;
+        }
+        throw new IllegalArgumentException("Keys are not distinct");
+    }
+
+    /**
+     * Function indexOf finds the index of a key.
+     *
+     * @param key
+     *      The key to look up.
+     *
+     * @return the index of the key in [0, n) if it is in the set. For other keys,
+     *         -1 or, if no fingerprint rules it out, an arbitrary index.
+     */
+    public int indexOf(String key) {
+        long hash = hash(key, seed);
+        int index = find(hash);
+        if (index < 0 || (fingerprintBits != 0 && fingerprint(index) != fingerprintOf(hash))) return -1;
+        return index;
+    }
+
+    /**
+     * Function getNumItems() is a getter function for the number of keys in the index.
+     *
+     * @return number of keys.
+     */
+    public int getNumItems() {
+        return this.numItems;
+    }
+
+    /**
+     * Function getLevels() is a getter function for the number of levels.
+     *
+     * @return number of levels.
+     */
+    public int getLevels() {
+        return this.levelSize.length;
+    }
+
+    /**
+     * Function getFingerprintBits() is a getter function for the bits of fingerprint
+     * stored per key.
+     *
+     * @return bits per fingerprint, 0 if fingerprints are disabled.
+     */
+    public int getFingerprintBits() {
+        return this.fingerprintBits;
+    }
+
+    /**
+     * Function bitsPerKey will return the size of the index, fingerprints included,
+     * in bits per key.
+     *
+     * @return bits per key as described above in double format.
+     */
+    public double bitsPerKey() {
+        if (numItems == 0) return 0.0;
+        long total = 64L * bits.length + 32L * ranks.length + 64L * fingerprints.length;
+        return total / (double) numItems;
+    }
+
+    /**
+     * Helper function tryBuild builds the levels with one seed.
+     *
+     * @return the index, or null if some keys still collided after MAX_LEVELS levels.
+     */
+    private static PerfectHashIndex tryBuild(final String[] keys, final long[] hashes,
+                                             int fingerprintBits, double gamma, final long seed) {
+        parallel(keys.length, (lo, hi) -> {
+            for (int i = lo; i < hi; i++) {
+                hashes[i] = hash(keys[i], seed);
+            }
+        });
+
+        List<long[]> levels = new ArrayList<>();
+        int remaining = keys.length;
+        while (remaining > 0) {
+            if (levels.size() == MAX_LEVELS) return null;
+            long[] levelBits = buildLevel(hashes, remaining, levels.size(), gamma);
+            levels.add(levelBits);
+
+            // Keys whose bit was not set collided; keep them, in place, for the next level
+            int level = levels.size() - 1;
+            long size = 64L * levelBits.length;
+            int kept = 0;
+            for (int i = 0; i < remaining; i++) {
+                long position = position(hashes[i], level, size);
+                if ((levelBits[(int) (position >>> 6)] & (1L << position)) == 0) hashes[kept++] = hashes[i];
+            }
+            remaining = kept;
+        }
+
+        long[] levelStart = new long[levels.size()];
+        long[] levelSize = new long[levels.size()];
+        int words = 0;
+        for (int level = 0; level < levels.size(); level++) {
+            levelStart[level] = 64L * words;
+            levelSize[level] = 64L * levels.get(level).length;
+            words += levels.get(level).length;
+        }
+        long[] bits = new long[words];
+        int[] ranks = new int[(words + RANK_BLOCK - 1) / RANK_BLOCK];
+        int at = 0;
+        int count = 0;
+        for (long[] levelBits : levels) {
+            for (long word : levelBits) {
+                if (at % RANK_BLOCK == 0) ranks[at / RANK_BLOCK] = count;
+                bits[at++] = word;
+                count += Long.bitCount(word);
+            }
+        }
+
+        final PerfectHashIndex index = new PerfectHashIndex(bits, ranks, levelStart, levelSize,
+                fingerprintBits, seed, keys.length);
+        if (fingerprintBits != 0) index.fillFingerprints(keys);
+        return index;
+    }
+
+    /**
+     * Helper function buildLevel hashes the first count keys into a fresh level and
+     * returns its bits: set where exactly one key landed.
+     */
+    private static long[] buildLevel(final long[] hashes, int count, final int level, double gamma) {
+        final int words = (int) ((Math.max(64L, (long) Math.ceil(gamma * count)) + 63) >>> 6);
+        final long size = 64L * words;
+        final AtomicLongArray seen = new AtomicLongArray(words);
+        final AtomicLongArray collided = new AtomicLongArray(words);
+
+        parallel(count, (lo, hi) -> {
+            for (int i = lo; i < hi; i++) {
+                long position = position(hashes[i], level, size);
+                int word = (int) (position >>> 6);
+                long bit = 1L << position;
+                if ((orInto(seen, word, bit) & bit) != 0 && (collided.get(word) & bit) == 0) {
+                    orInto(collided, word, bit);
+                }
+            }
+        });
+
+        long[] levelBits = new long[words];
+        for (int word = 0; word < words; word++) {
+            levelBits[word] = seen.get(word) & ~collided.get(word);
+        }
+        return levelBits;
+    }
+
+    /**
+     * Helper function fillFingerprints stores the fingerprint of every key at its index.
+     */
+    private void fillFingerprints(final String[] keys) {
+        final AtomicLongArray packed = new AtomicLongArray(fingerprints.length);
+        parallel(keys.length, (lo, hi) -> {
+            for (int i = lo; i < hi; i++) {
+                long hash = hash(keys[i], seed);
+                int index = find(hash);
+                long value = fingerprintOf(hash) & 0xFFFFFFFFL;
+                long bit = (long) index * fingerprintBits;
+                int word = (int) (bit >>> 6);
+                int shift = (int) (bit & 63);
+                orInto(packed, word, value << shift);
+                if (shift + fingerprintBits > 64) orInto(packed, word + 1, value >>> (64 - shift));
+            }
+        });
+        for (int word = 0; word < fingerprints.length; word++) {
+            fingerprints[word] = packed.get(word);
+        }
+    }
+
+    /**
+     * Helper function find walks the levels until the bit of a hash is set, and
+     * returns the rank of that bit.
+     *
+     * @return the index for the hash, or -1 if its bit is clear on every level.
+     */
+    private int find(long hash) {
+        for (int level = 0; level < levelSize.length; level++) {
+            long position = levelStart[level] + position(hash, level, levelSize[level]);
+            if ((bits[(int) (position >>> 6)] & (1L << position)) != 0) return rank(position);
+        }
+        return -1;
+    }
+
+    /**
+     * Helper function fingerprint reads the fingerprint stored at an index.
+     */
+    private int fingerprint(int index) {
+        long bit = (long) index * fingerprintBits;
+        int word = (int) (bit >>> 6);
+        int shift = (int) (bit & 63);
+        long value = fingerprints[word] >>> shift;
+        if (shift + fingerprintBits > 64) value |= fingerprints[word + 1] << (64 - shift);
+        return (int) (value & ((1L << fingerprintBits) - 1));
+    }
+
+    /**
+     * Helper function fingerprintOf takes fingerprintBits bits of a hash independent of
+     * the level positions.
+     */
+    private int fingerprintOf(long hash) {
+        return (int) (mix64(hash ^ FINGERPRINT_SALT) & ((1L << fingerprintBits) - 1));
+    }
+
+    /**
+     * Helper function rank counts the set bits before a position.
+     */
+    private int rank(long position) {
+        int word = (int) (position >>> 6);
+        int block = word / RANK_BLOCK;
+        int count = ranks[block];
+        for (int i = block * RANK_BLOCK; i < word; i++) {
+            count += Long.bitCount(bits[i]);
+        }
+        return count + Long.bitCount(bits[word] & ((1L << position) - 1));
+    }
+
+    /**
+     * Helper function position picks the bit a hash lands on within a level, by
+     * scaling a 32-bit hash to the level size instead of taking a remainder.
+     */
+    private static long position(long hash, int level, long size) {
+        long levelHash = mix64(hash + (level + 1) * 0x9E3779B97F4A7C15L) >>> 32;
+        return (levelHash * size) >>> 32;
+    }
+
+    /**
+     * Helper function hash computes a 64-bit hash of a key's characters (FNV-1a,
+     * followed by the murmur3 64-bit finalizer).
+     */
+    private static long hash(String key, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        return mix64(h ^ key.length());
+    }
+
+    /**
+     * Helper function mix64 is the murmur3 64-bit finalizer.
+     */
+    private static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Helper function orInto sets bits of an atomic word.
+     *
+     * @return the word before the bits were set.
+     */
+    private static long orInto(AtomicLongArray array, int word, long mask) {
+        long old = array.get(word);
+        while ((old & mask) != mask && !array.compareAndSet(word, old, old | mask)) {
+            old = array.get(word);
+        }
+        return old;
+    }
+
+    /**
+     * Helper function parallel runs some work over the range [0, count), split into
+     * fork-join tasks of at most PARALLEL_LEAF indices.
+     */
+    private static void parallel(int count, RangeWork work) {
+        if (count <= PARALLEL_LEAF) {
+            work.leaf(0, count);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RangeTask(work, 0, count));
+        }
+    }
+
+    /**
+     * Interface RangeWork is the work done on one range of keys.
+     */
+    private interface RangeWork {
+        void leaf(int lo, int hi);
+    }
+
+    /**
+     * Class RangeTask halves its range of keys until the range is at most
+     * PARALLEL_LEAF long, then runs the work on it.
+     */
+    private static final class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RangeWork work;
+        private final int lo;   // first key index, inclusive
+        private final int hi;   // last key index, exclusive
+
+        /**
+         * Constructor RangeTask covers the keys [lo, hi).
+         */
+        RangeTask(RangeWork work, int lo, int hi) {
+            this.work = work;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= PARALLEL_LEAF) {
+                work.leaf(lo, hi);
+                return;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new RangeTask(work, lo, mid), new RangeTask(work, mid, hi));
+        }
+    }
+}
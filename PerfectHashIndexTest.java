@@ -0,0 +1,127 @@
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * PerfectHashIndexTest will serve as the JUnit Test Suite corresponding to the
+ * minimal perfect hash index over static key sets, PerfectHashIndex.
+ *
+ * Functions tested: build(keys), build(keys, fingerprintBits, gamma), indexOf(key),
+ * bitsPerKey()
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class PerfectHashIndexTest {
+
+    /**
+     * Test #1: Tests every key gets its own index in [0, n), for several gammas and
+     * sizes including a set large enough to build in parallel.
+     */
+    @Test
+    public void testMinimalPerfect() throws Exception {
+        int[] sizes = {1, 2, 63, 1000, 300000};
+        double[] gammas = {1.0, 2.0, 5.0};
+        for (int n : sizes) {
+            String[] keys = keys("key-", n);
+            for (double gamma : gammas) {
+                PerfectHashIndex index = PerfectHashIndex.build(keys, 0, gamma);
+                assertEquals(n, index.getNumItems());
+
+                BitSet used = new BitSet(n);
+                for (String key : keys) {
+                    int slot = index.indexOf(key);
+                    assertTrue(slot >= 0 && slot < n);
+                    assertFalse("Two keys share index " + slot, used.get(slot));
+                    used.set(slot);
+                }
+            }
+        }
+
+        // About 3 bits per key with the default gamma
+        PerfectHashIndex index = PerfectHashIndex.build(keys("flag.", 300000));
+        assertTrue(index.bitsPerKey() < 3.2);
+        assertTrue(PerfectHashIndex.build(keys("flag.", 300000), 0, 2.0).getLevels() < index.getLevels());
+
+        PerfectHashIndex empty = PerfectHashIndex.build(new String[0]);
+        assertEquals(0, empty.getNumItems());
+        assertEquals(-1, empty.indexOf("anything"));
+    }
+
+    /**
+     * Test #2: Tests fingerprints keep every key and reject about 1 in 2^bits of
+     * the keys outside the set.
+     */
+    @Test
+    public void testFingerprints() throws Exception {
+        String[] keys = keys("member-", 100000);
+        String[] strangers = keys("stranger-", 100000);
+
+        int[] widths = {1, 8, 13, 32};
+        for (int bits : widths) {
+            PerfectHashIndex index = PerfectHashIndex.build(keys, bits);
+            assertEquals(bits, index.getFingerprintBits());
+            BitSet used = new BitSet();
+            for (String key : keys) {
+                int slot = index.indexOf(key);
+                assertTrue(slot >= 0);
+                assertFalse(used.get(slot));
+                used.set(slot);
+            }
+
+            int accepted = 0;
+            for (String stranger : strangers) {
+                if (index.indexOf(stranger) >= 0) accepted++;
+            }
+            double expected = strangers.length / Math.pow(2, bits);
+            assertTrue("Accepted " + accepted + " strangers with " + bits + " bits",
+                    accepted <= 2 * expected + 20);
+        }
+
+        PerfectHashIndex plain = PerfectHashIndex.build(keys);
+        PerfectHashIndex checked = PerfectHashIndex.build(keys, 16);
+        assertEquals(plain.bitsPerKey() + 16, checked.bitsPerKey(), 0.01);
+    }
+
+    /**
+     * Test #3: Tests invalid arguments and duplicate keys are rejected.
+     */
+    @Test
+    public void testInvalidArguments() throws Exception {
+        try {
+            PerfectHashIndex.build(new String[] {"a", "b", "a"});
+            fail("Duplicate keys were accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            PerfectHashIndex.build(new String[] {"a"}, 33);
+            fail("33 fingerprint bits were accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            PerfectHashIndex.build(new String[] {"a"}, 0, 0.5);
+            fail("gamma below 1 was accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            PerfectHashIndex.build(null);
+            fail("Null keys were accepted");
+        } catch (NullPointerException expected) {
+        }
+    }
+
+    /**
+     * Helper function keys makes n distinct keys with a common prefix.
+     */
+    private static String[] keys(String prefix, int n) {
+        String[] keys = new String[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = prefix + i;
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,542 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class PrimArenaHashmap defines a compact storage mode for maps with many short
+ * keys. No String is kept per entry: the UTF-8 bytes of every key are copied into
+ * one shared byte array (the arena), and a slot only remembers the offset, length
+ * and hash of its key next to the value. For ASCII keys that is one byte per
+ * character plus 16 bytes per table slot, instead of a node, a String and its
+ * byte[] (roughly 70 bytes of headers and references) per entry in PrimHashmap.
+ *
+ * Slots use linear probing and backward-shift deletion, like PrimProbeTable. Keys
+ * are hashed and compared as UTF-8 bytes, so a key can be given as any CharSequence
+ * (a StringBuilder, a CharBuffer) or as a UTF-8 byte[] slice, and a lookup never
+ * allocates a String. The same key always finds the same entry, whichever form
+ * it is given in.
+ *
+ * CharSequence keys are encoded as WTF-8 (see Utf8): exactly UTF-8 for well-formed
+ * text, while an unpaired surrogate gets its own three bytes instead of the '?'
+ * that String.getBytes(UTF_8) writes. So "a\uD800", "a\uDC00" and "a?" are three
+ * different keys, and forEach hands back each key exactly as it was set. A byte[]
+ * key names the entry whose encoding it is.
+ *
+ * Deleting a key leaves its bytes in the arena as garbage. The arena is compacted
+ * when it runs out of room and at least half of it is garbage, or on compact().
+ *
+ * The map supports the following functions:
+ *
+ * constructor (size) - Initializes new hashmap
+ * set(key, val) - Maps a CharSequence or UTF-8 byte[] key to an ArbObj val
+ * get(key) - Retrieves the ArbObj that this key maps to
+ * delete(key) - deletes the key-val mapping
+ * compact() - drops the bytes of deleted keys from the arena
+ * load() - finds the load factor, a measure of how full the map is
+ */
+public class PrimArenaHashmap<ArbObj> {
+
+    private static final int EMPTY = -1;                      // key length of an empty slot
+    private static final int MIN_ARENA = 64;                  // smallest arena allocated
+    private static final int MAX_ARENA = Integer.MAX_VALUE - 8; // largest array the VM allows
+
+    private int hashmapSize;  // The true size of the hashmap - underlying array length
+    private int[] offsets;    // Arena offset of the key in each slot
+    private int[] lengths;    // Byte length of the key in each slot, EMPTY if free
+    private int[] hashes;     // Cached hash of the key in each slot
+    private Object[] values;  // Values stored in each slot, parallel to the keys
+    private int numItems;     // Number of items currently in hashmap
+    private int maxCapacity;  // max capacity as specified by user
+
+    private byte[] arena;         // UTF-8 bytes of every key, back to back
+    private ByteBuffer arenaView; // the arena wrapped for the Utf8 helpers
+    private int arenaUsed;        // bytes of the arena written so far
+    private int garbageBytes;     // bytes of the arena that belong to deleted keys
+
+    /**
+     * Constructor PrimArenaHashmap initializes all fields to 0 or null if no size is
+     * specified, and waits for the constructor(size) function to be called on the
+     * object for any operations to be performed.
+     */
+    public PrimArenaHashmap() {
+        this.hashmapSize = 0;
+        this.numItems = 0;
+        this.maxCapacity = 0;
+    }
+
+    /**
+     * Constructor PrimArenaHashmap(sz) initializes all fields given the user-specified
+     * max capacity of the hashmap. The arena starts small and doubles as keys arrive.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     */
+    public PrimArenaHashmap(int size) {
+        this(size, Math.min(size, 1024) * 16);
+    }
+
+    /**
+     * Constructor PrimArenaHashmap(sz, arenaBytes) initializes all fields given the
+     * user-specified max capacity of the hashmap and the expected total size of the
+     * keys, so that a map of known keys never copies its arena.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     * @param arenaBytes
+     *  Initial size of the arena in bytes, e.g. number of keys times average length.
+     */
+    public PrimArenaHashmap(int size, int arenaBytes) {
+        if (arenaBytes < 0) throw new IllegalArgumentException("Arena size must not be negative: " + arenaBytes);
+
+        this.hashmapSize = PrimHashmap.findNextPowerOfTwo(size);
+        this.offsets = new int[hashmapSize];
+        this.lengths = new int[hashmapSize];
+        this.hashes = new int[hashmapSize];
+        this.values = new Object[hashmapSize];
+        this.numItems = 0;
+        this.maxCapacity = size;
+        Arrays.fill(lengths, EMPTY);
+
+        this.arena = new byte[Math.min(Math.max(arenaBytes, MIN_ARENA), MAX_ARENA)];
+        this.arenaView = ByteBuffer.wrap(arena);
+    }
+
+    /**
+     * Function constructor() will call the PrimArenaHashmap constructor taking size as
+     * a parameter, which specified the max capacity of the hashmap to be created.
+     *
+     * @param size
+     *      Specifies max capacity of hashmap to be created.
+     *
+     * @return a PrimArenaHashmap object with specified size
+     */
+    public final PrimArenaHashmap<ArbObj> constructor(int size) {
+        return new PrimArenaHashmap<ArbObj>(size);
+    }
+
+    /**
+     * Function set will map a key to an arbitrary object value, copying the key's
+     * UTF-8 bytes into the arena if the key is new.
+     *
+     * @param key
+     *      Characters to use as key, e.g. a String or a reused StringBuilder.
+     * @param value
+     *      value that the key should map to, arbitrary object of user's choice
+     *
+     * @return true on successful set, false if the map or the arena is full
+     */
+    public boolean set(CharSequence key, ArbObj value) {
+        int hashVal = Utf8.hash(key);
+        int index = hashVal & (hashmapSize - 1);
+
+        for (int probes = 0; probes < hashmapSize; probes++) {
+            int length = lengths[index];
+            if (length == EMPTY) {
+                if (numItems >= maxCapacity) return false;
+
+                int bytes = Utf8.encodedLength(key);
+                if (!reserve(bytes)) return false;
+
+                Utf8.encode(key, arenaView, arenaUsed);
+                claim(index, hashVal, bytes, value);
+                return true;
+            }
+            if (hashes[index] == hashVal && Utf8.equals(key, arenaView, offsets[index], length)) {
+                values[index] = value;
+                return true;
+            }
+            index = (index + 1) & (hashmapSize - 1);
+        }
+
+        return false;
+    }
+
+    /**
+     * Function set will map a key given as UTF-8 bytes to an arbitrary object value.
+     * The bytes are copied, so the caller may reuse the array afterwards.
+     *
+     * @param key
+     *      UTF-8 bytes of the key.
+     * @param value
+     *      value that the key should map to, arbitrary object of user's choice
+     *
+     * @return true on successful set, false if the map or the arena is full
+     */
+    public boolean set(byte[] key, ArbObj value) {
+        int hashVal = Utf8.hash(key, 0, key.length);
+        int index = hashVal & (hashmapSize - 1);
+
+        for (int probes = 0; probes < hashmapSize; probes++) {
+            int length = lengths[index];
+            if (length == EMPTY) {
+                if (numItems >= maxCapacity || !reserve(key.length)) return false;
+
+                System.arraycopy(key, 0, arena, arenaUsed, key.length);
+                claim(index, hashVal, key.length, value);
+                return true;
+            }
+            if (hashes[index] == hashVal && bytesEqual(key, 0, key.length, index)) {
+                values[index] = value;
+                return true;
+            }
+            index = (index + 1) & (hashmapSize - 1);
+        }
+
+        return false;
+    }
+
+    /**
+     * Function get will retrieve the arbitrary object associated with a given key.
+     *
+     * @param key
+     *      Key whose value is to be retrieved.
+     *
+     * @return The value associated with the specified key, or null if no such value
+     *         exists for this particular key.
+     */
+    @SuppressWarnings("unchecked")
+    public ArbObj get(CharSequence key) {
+        int slot = findSlot(key);
+        return (slot < 0) ? null : (ArbObj) values[slot];
+    }
+
+    /**
+     * Function get will retrieve the arbitrary object associated with a key given as
+     * UTF-8 bytes.
+     *
+     * @param key
+     *      UTF-8 bytes of the key whose value is to be retrieved.
+     *
+     * @return The value associated with the specified key, or null if no such value
+     *         exists for this particular key.
+     */
+    public ArbObj get(byte[] key) {
+        return get(key, 0, key.length);
+    }
+
+    /**
+     * Function get will retrieve the arbitrary object associated with a key given as
+     * a slice of UTF-8 bytes, e.g. straight out of a network buffer.
+     *
+     * @param key
+     *      Array holding the UTF-8 bytes of the key.
+     * @param offset
+     *      Index of the first byte of the key.
+     * @param length
+     *      Number of bytes in the key.
+     *
+     * @return The value associated with the specified key, or null if no such value
+     *         exists for this particular key.
+     */
+    @SuppressWarnings("unchecked")
+    public ArbObj get(byte[] key, int offset, int length) {
+        int slot = findSlot(key, offset, length);
+        return (slot < 0) ? null : (ArbObj) values[slot];
+    }
+
+    /**
+     * Function containsKey tells whether a key is present in the map.
+     *
+     * @param key
+     *      The key to look for.
+     *
+     * @return true if the key is mapped to a value.
+     */
+    public boolean containsKey(CharSequence key) {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * Function containsKey tells whether a key given as UTF-8 bytes is present in
+     * the map.
+     *
+     * @param key
+     *      UTF-8 bytes of the key to look for.
+     *
+     * @return true if the key is mapped to a value.
+     */
+    public boolean containsKey(byte[] key) {
+        return findSlot(key, 0, key.length) >= 0;
+    }
+
+    /**
+     * Function delete will remove the key-value entry for a given key. The key's
+     * bytes stay in the arena until it is compacted.
+     *
+     * @param key
+     *      Key for which the key-value entry in the map is to be deleted.
+     *
+     * @return The value associated with the specified key on succesful delete,
+     *         or null if there was no such key-value pair to begin with.
+     */
+    public ArbObj delete(CharSequence key) {
+        return removeSlot(findSlot(key));
+    }
+
+    /**
+     * Function delete will remove the key-value entry for a key given as UTF-8 bytes.
+     *
+     * @param key
+     *      UTF-8 bytes of the key whose entry is to be deleted.
+     *
+     * @return The value associated with the specified key on succesful delete,
+     *         or null if there was no such key-value pair to begin with.
+     */
+    public ArbObj delete(byte[] key) {
+        return removeSlot(findSlot(key, 0, key.length));
+    }
+
+    /**
+     * Function forEach will call an action on every key-value pair in the map. Each
+     * key is decoded into a new String, so prefer the lookups for hot paths.
+     *
+     * @param action
+     *      Called with each key and its value. Must not modify the map.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super String, ? super ArbObj> action) {
+        for (int slot = 0; slot < hashmapSize; slot++) {
+            if (lengths[slot] == EMPTY) continue;
+            action.accept(Utf8.decode(arenaView, offsets[slot], lengths[slot]), (ArbObj) values[slot]);
+        }
+    }
+
+    /**
+     * Function compact copies the keys of the live entries into a fresh arena just
+     * large enough to hold them, dropping the bytes of deleted keys.
+     *
+     * @return number of arena bytes freed.
+     */
+    public int compact() {
+        if (arena == null) return 0;
+
+        int before = arena.length;
+        relocate(Math.max(arenaUsed - garbageBytes, MIN_ARENA));
+        return before - arena.length;
+    }
+
+    /**
+     * Function getArenaSize returns the size of the key arena in bytes.
+     */
+    public int getArenaSize() {
+        return (arena == null) ? 0 : arena.length;
+    }
+
+    /**
+     * Function getArenaUsed returns the bytes of the arena taken by keys, live or
+     * deleted.
+     */
+    public int getArenaUsed() {
+        return arenaUsed;
+    }
+
+    /**
+     * Function getGarbageBytes returns the bytes of the arena taken by deleted keys.
+     */
+    public int getGarbageBytes() {
+        return garbageBytes;
+    }
+
+    /**
+     * Function getNumItems() is a getter function for the number of items
+     * currently in the hashmap (occupancy).
+     *
+     * @return number of items in hashmap.
+     */
+    public int getNumItems() {
+        return this.numItems;
+    }
+
+    /**
+     * Function getHashmapSize() is a getter function for the max capacity
+     * of this hashmap.
+     *
+     * @return user-specified max capacity of current hashmap.
+     */
+    public int getHashmapSize() {
+        return this.maxCapacity;
+    }
+
+    /**
+     * Function getTrueSize() is a getter function for the true size
+     * (closest power of 2) of the underlying slot arrays of the hashmap.
+     * This is used for test purposes!
+     *
+     * @return true size of hashmap.
+     */
+    public int getTrueSize() {
+        return this.hashmapSize;
+    }
+
+    /**
+     * Function load will return the load factor (numItems/capacity) of the hashmap.
+     *
+     * @return Load factor as described above in float format.
+     */
+    public float load() {
+        if (maxCapacity == 0) {
+            return 0;
+        }
+        return numItems / (float) maxCapacity;
+    }
+
+    /**
+     * Helper function findSlot finds the slot holding a key given as characters.
+     *
+     * @return index of the slot, or -1 if the key is absent.
+     */
+    private int findSlot(CharSequence key) {
+        if (hashmapSize == 0) return -1;
+
+        int hashVal = Utf8.hash(key);
+        int index = hashVal & (hashmapSize - 1);
+        for (int probes = 0; probes < hashmapSize; probes++) {
+            int length = lengths[index];
+            if (length == EMPTY) return -1;
+            if (hashes[index] == hashVal && Utf8.equals(key, arenaView, offsets[index], length)) return index;
+
+            index = (index + 1) & (hashmapSize - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Helper function findSlot finds the slot holding a key given as UTF-8 bytes.
+     *
+     * @return index of the slot, or -1 if the key is absent.
+     */
+    private int findSlot(byte[] key, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > key.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array " + key.length);
+        }
+        if (hashmapSize == 0) return -1;
+
+        int hashVal = Utf8.hash(key, offset, length);
+        int index = hashVal & (hashmapSize - 1);
+        for (int probes = 0; probes < hashmapSize; probes++) {
+            if (lengths[index] == EMPTY) return -1;
+            if (hashes[index] == hashVal && bytesEqual(key, offset, length, index)) return index;
+
+            index = (index + 1) & (hashmapSize - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Helper function bytesEqual compares a byte slice with the key of a slot.
+     */
+    private boolean bytesEqual(byte[] key, int offset, int length, int slot) {
+        if (lengths[slot] != length) return false;
+
+        int stored = offsets[slot];
+        for (int i = 0; i < length; i++) {
+            if (arena[stored + i] != key[offset + i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Helper function claim fills an empty slot with a key just written at the end
+     * of the arena.
+     */
+    private void claim(int slot, int hashVal, int length, ArbObj value) {
+        offsets[slot] = arenaUsed;
+        lengths[slot] = length;
+        hashes[slot] = hashVal;
+        values[slot] = value;
+        arenaUsed += length;
+        numItems++;
+    }
+
+    /**
+     * Helper function removeSlot deletes the entry in a slot, shifting the following
+     * entries of the cluster back exactly like PrimProbeTable.removeSlot.
+     *
+     * @return the value that was deleted, or null if the slot is -1.
+     */
+    @SuppressWarnings("unchecked")
+    private ArbObj removeSlot(int hole) {
+        if (hole < 0) return null;
+
+        ArbObj deleted = (ArbObj) values[hole];
+        garbageBytes += lengths[hole];
+        lengths[hole] = EMPTY;
+        values[hole] = null;
+        numItems--;
+
+        int mask = hashmapSize - 1;
+        int index = hole;
+        while (true) {
+            index = (index + 1) & mask;
+            if (lengths[index] == EMPTY) break;
+
+            int home = hashes[index] & mask;
+            boolean homeBetween = (hole <= index)
+                    ? (hole < home && home <= index)
+                    : (hole < home || home <= index);
+
+            if (!homeBetween) {
+                offsets[hole] = offsets[index];
+                lengths[hole] = lengths[index];
+                hashes[hole] = hashes[index];
+                values[hole] = values[index];
+                lengths[index] = EMPTY;
+                values[index] = null;
+                hole = index;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Helper function reserve makes room for a key of the given length at the end of
+     * the arena. An arena that is at least half garbage is compacted in place of
+     * growing; otherwise it doubles, dropping the garbage on the way.
+     *
+     * @return false if the keys would not fit in the largest possible arena.
+     */
+    private boolean reserve(int length) {
+        if (length <= arena.length - arenaUsed) return true;
+
+        long live = (long) arenaUsed - garbageBytes;
+        if (live + length > MAX_ARENA) return false;
+
+        if (garbageBytes >= arenaUsed / 2 && live + length <= arena.length) {
+            relocate(arena.length);
+        } else {
+            long grown = arena.length;
+            while (grown < live + length) grown *= 2;
+            relocate((int) Math.min(grown, MAX_ARENA));
+        }
+        return true;
+    }
+
+    /**
+     * Helper function relocate moves the keys into a new arena of the given size,
+     * packing the live keys in slot order when there is garbage to drop.
+     */
+    private void relocate(int newLength) {
+        byte[] fresh;
+        if (garbageBytes == 0) {
+            fresh = Arrays.copyOf(arena, newLength);
+        } else {
+            fresh = new byte[newLength];
+            int used = 0;
+            for (int slot = 0; slot < hashmapSize; slot++) {
+                int length = lengths[slot];
+                if (length == EMPTY) continue;
+
+                System.arraycopy(arena, offsets[slot], fresh, used, length);
+                offsets[slot] = used;
+                used += length;
+            }
+            arenaUsed = used;
+            garbageBytes = 0;
+        }
+
+        arena = fresh;
+        arenaView = ByteBuffer.wrap(fresh);
+    }
+}
@@ -0,0 +1,185 @@
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * PrimArenaHashmapTest will serve as the JUnit Test Suite corresponding to the
+ * byte arena storage mode, PrimArenaHashmap.
+ *
+ * Functions tested: constructor(size), set(key, val), get(key), delete(key),
+ * containsKey(key), forEach(action), compact(), load()
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class PrimArenaHashmapTest {
+
+    /**
+     * Test #1: Tests set(), get() and delete() with the same keys given as a String,
+     * a StringBuilder and UTF-8 bytes, which must all find the same entry.
+     */
+    @Test
+    public void testKeyForms() throws Exception {
+        PrimArenaHashmap<Integer> hashmap = new PrimArenaHashmap<>(4);
+        assertTrue(hashmap.set("alpha", 1));
+        assertTrue(hashmap.set(new StringBuilder("beta"), 2));
+        assertTrue(hashmap.set("gamma".getBytes(StandardCharsets.UTF_8), 3));
+        assertTrue(hashmap.set("", 4));
+        assertEquals(4, hashmap.getNumItems());
+        assertEquals(1.0, hashmap.load(), 0.0);
+
+        assertEquals(Integer.valueOf(1), hashmap.get(new StringBuilder("alpha")));
+        assertEquals(Integer.valueOf(2), hashmap.get("beta".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Integer.valueOf(3), hashmap.get("gamma"));
+        assertEquals(Integer.valueOf(4), hashmap.get(new byte[0]));
+
+        byte[] packet = "xxbetayy".getBytes(StandardCharsets.UTF_8);
+        assertEquals(Integer.valueOf(2), hashmap.get(packet, 2, 4));
+        assertNull(hashmap.get(packet, 2, 3));
+
+        // Overriding through another form keeps a single entry
+        assertTrue(hashmap.set("alpha".getBytes(StandardCharsets.UTF_8), 10));
+        assertEquals(Integer.valueOf(10), hashmap.get("alpha"));
+        assertEquals(4, hashmap.getNumItems());
+
+        // Full map rejects new keys
+        assertFalse(hashmap.set("delta", 5));
+        assertEquals(Integer.valueOf(2), hashmap.delete(new StringBuilder("beta")));
+        assertFalse(hashmap.containsKey("beta".getBytes(StandardCharsets.UTF_8)));
+        assertNull(hashmap.delete("beta"));
+        assertTrue(hashmap.set("delta", 5));
+
+        PrimArenaHashmap<Integer> emptyHashmap = new PrimArenaHashmap<Integer>().constructor(0);
+        assertEquals(0, emptyHashmap.getTrueSize());
+        assertFalse(emptyHashmap.set("a", 1));
+        assertNull(emptyHashmap.get("a".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Test #2: Tests non-ASCII keys, including characters outside the BMP, match
+     * their UTF-8 bytes, and forEach() decodes them back.
+     */
+    @Test
+    public void testNonAsciiKeys() throws Exception {
+        String[] keys = {"caf\u00e9", "\u65e5\u672c", "\ud83d\ude00 smile", "plain"};
+        PrimArenaHashmap<String> hashmap = new PrimArenaHashmap<>(8);
+        for (String key : keys) {
+            assertTrue(hashmap.set(key, key.toUpperCase()));
+        }
+
+        for (String key : keys) {
+            assertEquals(key.toUpperCase(), hashmap.get(key.getBytes(StandardCharsets.UTF_8)));
+        }
+        assertNull(hashmap.get("cafe"));
+
+        final Map<String, String> seen = new HashMap<>();
+        hashmap.forEach((key, value) -> seen.put(key, value));
+        assertEquals(keys.length, seen.size());
+        for (String key : keys) {
+            assertEquals(key.toUpperCase(), seen.get(key));
+        }
+    }
+
+    /**
+     * Test #3: Tests deleted keys become garbage, which compact() and a full arena
+     * reclaim without losing live keys.
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        PrimArenaHashmap<Integer> hashmap = new PrimArenaHashmap<>(1000, 64);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(hashmap.set("key-" + i, i));
+        }
+        int used = hashmap.getArenaUsed();
+        assertTrue(hashmap.getArenaSize() >= used);
+
+        for (int i = 0; i < 1000; i += 2) {
+            hashmap.delete("key-" + i);
+        }
+        assertEquals(used, hashmap.getArenaUsed());
+        assertTrue(hashmap.getGarbageBytes() > 0);
+
+        assertTrue(hashmap.compact() > 0);
+        assertEquals(0, hashmap.getGarbageBytes());
+        assertEquals(used / 2, hashmap.getArenaUsed(), 10);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals((i % 2 == 0) ? null : Integer.valueOf(i), hashmap.get("key-" + i));
+        }
+
+        // Churn through many keys with a bounded number alive at a time
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(hashmap.set("churn-" + i, i));
+            hashmap.delete("churn-" + (i - 10));
+        }
+        assertTrue(hashmap.getArenaSize() < 64 * 1024);
+        assertEquals(510, hashmap.getNumItems());
+        assertEquals(Integer.valueOf(99999), hashmap.get("churn-99999"));
+        assertEquals(Integer.valueOf(999), hashmap.get("key-999"));
+    }
+
+    /**
+     * Test #4: Tests a random mix of operations against java.util.HashMap, so probe
+     * clusters are both built and shifted back by deletion.
+     */
+    @Test
+    public void testAgainstHashMap() throws Exception {
+        PrimArenaHashmap<Integer> hashmap = new PrimArenaHashmap<>(512);
+        Map<String, Integer> expected = new HashMap<>();
+        Random random = new Random(18);
+
+        for (int op = 0; op < 50000; op++) {
+            String key = "k" + random.nextInt(700);
+            if (random.nextBoolean()) {
+                boolean stored = hashmap.set(key, op);
+                assertEquals(expected.containsKey(key) || expected.size() < 512, stored);
+                if (stored) expected.put(key, op);
+            } else {
+                assertEquals(expected.remove(key), hashmap.delete(key.getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+
+        assertEquals(expected.size(), hashmap.getNumItems());
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), hashmap.get(entry.getKey()));
+        }
+    }
+
+    /**
+     * Test #5: Tests keys with unpaired surrogates stay distinct from each other and
+     * from '?', and come back from forEach exactly as they were set.
+     */
+    @Test
+    public void testUnpairedSurrogates() throws Exception {
+        String[] keys = {"a\uD800", "a\uDC00", "a?", "\uDC00\uD800", "\uD83D\uDE00", "\uD800"};
+        PrimArenaHashmap<Integer> hashmap = new PrimArenaHashmap<>(16);
+        for (int i = 0; i < keys.length; i++) {
+            assertTrue(hashmap.set(keys[i], i));
+        }
+        assertEquals(keys.length, hashmap.getNumItems());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(Integer.valueOf(i), hashmap.get(keys[i]));
+        }
+
+        Map<String, Integer> seen = new HashMap<>();
+        hashmap.forEach(seen::put);
+        assertEquals(keys.length, seen.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(Integer.valueOf(i), seen.get(keys[i]));
+        }
+
+        // Well-formed keys are plain UTF-8, so their byte[] form still matches
+        assertEquals(Integer.valueOf(2), hashmap.get("a?".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Integer.valueOf(4), hashmap.get("\uD83D\uDE00".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(Integer.valueOf(0), hashmap.delete("a\uD800"));
+        assertEquals(Integer.valueOf(2), hashmap.get("a?"));
+        assertEquals(Integer.valueOf(1), hashmap.get("a\uDC00"));
+    }
+}
@@ -0,0 +1,414 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class PrimCacheHashmap defines a bounded cache on top of the fixed-size hashmap.
+ * Where PrimHashmap rejects a set() once it holds maxCapacity items, this map makes
+ * room by evicting an entry chosen by its EvictionPolicy:
+ *
+ * LRU - evicts the least recently used entry (set or get)
+ * CLOCK - second chance: evicts the first entry, in slot order from a sweeping
+ *         hand, that has not been used since the hand last passed it
+ *
+ * All storage is allocated up front: maxCapacity entry slots held in parallel
+ * arrays, with bucket chains and the LRU list linked by slot index rather than by
+ * node objects, so the map never allocates after construction. Eviction is O(1)
+ * for LRU and amortized O(1) for CLOCK. Keys are hashed by a HashStrategy,
+ * HashStrategy.SPREAD unless another is given.
+ *
+ * get() takes no lock, but only CLOCK makes it a read. Under CLOCK a hit just sets
+ * the slot's reference bit (an idempotent store) and the hit/miss counters are
+ * LongAdders, so any number of threads may call get() and containsKey() at once,
+ * e.g. under the read side of a ReadWriteLock, as long as no set() or delete() runs
+ * meanwhile. Under LRU every hit moves the slot to the front of the recency list,
+ * so get() is a write: concurrent calls corrupt the list and must be serialized
+ * like set() and delete(). Like PrimHashmap, the map is not safe for concurrent
+ * modification.
+ *
+ * The map supports the following functions:
+ *
+ * constructor (size, policy) - Initializes new cache
+ * constructor (size, policy, strategy) - Initializes new cache whose keys are hashed by a HashStrategy
+ * set(key, val) - Maps a String key to an ArbObj val, evicting if full
+ * get(key) - Retrieves the ArbObj that this String key maps to
+ * delete(key) - deletes the key-val mapping
+ * load() - finds the load factor, a measure of how full the map is
+ * getHits(), getMisses(), getEvictions() - cache counters
+ */
+public class PrimCacheHashmap<ArbObj> {
+
+    /**
+     * Enum EvictionPolicy selects which entry makes room when the cache is full.
+     */
+    public enum EvictionPolicy {
+        LRU,
+        CLOCK
+    }
+
+    private static final int NONE = -1; // null link between slots
+
+    private final EvictionPolicy policy; // Eviction policy chosen at construction
+    private final int hashmapSize;       // Number of buckets - a power of two
+    private final int maxCapacity;       // max capacity as specified by user
+    private final HashStrategy strategy; // turns a key into the hash that picks its bucket
+    private int numItems;                // Number of items currently in hashmap
+
+    private final int[] bucketHead;      // First slot chained in each bucket
+    private final String[] keys;         // Key held in each slot, null if free
+    private final Object[] values;       // Value held in each slot
+    private final int[] hashes;          // Cached strategy hash of each slot's key
+    private final int[] chainNext;       // Next slot in the same bucket, or free list link
+
+    private final int[] lruPrev;         // LRU only: towards the most recently used slot
+    private final int[] lruNext;         // LRU only: towards the least recently used slot
+    private int lruHead;                 // Most recently used slot
+    private int lruTail;                 // Least recently used slot
+
+    private final boolean[] referenced;  // CLOCK only: used since the hand last passed
+    private int hand;                    // CLOCK only: next slot the hand inspects
+
+    private int freeHead;                // First never-used or freed slot
+    private final LongAdder hits;        // get() calls that found their key
+    private final LongAdder misses;      // get() calls that did not
+    private long evictions;              // entries evicted to make room
+
+    /**
+     * Constructor PrimCacheHashmap(sz, policy) allocates every slot given the
+     * user-specified max capacity.
+     *
+     * @param size
+     *      Specifies the max capacity of the cache to be created.
+     * @param policy
+     *      Which entry to evict when a set() finds the cache full.
+     */
+    public PrimCacheHashmap(int size, EvictionPolicy policy) {
+        this(size, policy, HashStrategy.SPREAD);
+    }
+
+    /**
+     * Constructor PrimCacheHashmap(sz, policy, strategy) allocates every slot given
+     * the user-specified max capacity, and hashes keys with the given strategy.
+     *
+     * @param size
+     *      Specifies the max capacity of the cache to be created.
+     * @param policy
+     *      Which entry to evict when a set() finds the cache full.
+     * @param strategy
+     *      Hashes the keys, e.g. HashStrategy.sipHash() for keys an attacker controls.
+     */
+    public PrimCacheHashmap(int size, EvictionPolicy policy, HashStrategy strategy) {
+        if (size < 0) throw new IllegalArgumentException("Negative capacity: " + size);
+        if (policy == null) throw new NullPointerException("policy");
+        if (strategy == null) throw new NullPointerException("strategy");
+
+        this.policy = policy;
+        this.strategy = strategy;
+        this.maxCapacity = size;
+        this.hashmapSize = PrimHashmap.findNextPowerOfTwo(size);
+        this.numItems = 0;
+
+        bucketHead = new int[hashmapSize];
+        Arrays.fill(bucketHead, NONE);
+        keys = new String[size];
+        values = new Object[size];
+        hashes = new int[size];
+
+        // Initially every slot is on the free list, in order
+        chainNext = new int[size];
+        for (int i = 0; i < size; i++) {
+            chainNext[i] = (i + 1 < size) ? i + 1 : NONE;
+        }
+        freeHead = (size > 0) ? 0 : NONE;
+
+        boolean lru = (policy == EvictionPolicy.LRU);
+        lruPrev = lru ? new int[size] : null;
+        lruNext = lru ? new int[size] : null;
+        lruHead = NONE;
+        lruTail = NONE;
+
+        referenced = lru ? null : new boolean[size];
+        hand = 0;
+
+        hits = new LongAdder();
+        misses = new LongAdder();
+    }
+
+    /**
+     * Function constructor() will call the PrimCacheHashmap constructor taking size and
+     * policy as parameters.
+     *
+     * @param size
+     *      Specifies max capacity of cache to be created.
+     * @param policy
+     *      Which entry to evict when a set() finds the cache full.
+     *
+     * @return a PrimCacheHashmap object with specified size
+     */
+    public final PrimCacheHashmap<ArbObj> constructor(int size, EvictionPolicy policy) {
+        return new PrimCacheHashmap<ArbObj>(size, policy);
+    }
+
+    /**
+     * Function set will map a String to an arbitrary object value. If the key is new
+     * and the cache is full, one entry is evicted first.
+     *
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to, arbitrary object of user's choice
+     *
+     * @return true on successful set, false only if the cache has capacity 0
+     */
+    public boolean set(String key, ArbObj value) {
+        if (maxCapacity == 0) return false;
+
+        int hashVal = strategy.hash(key);
+        int slot = findSlot(hashVal, key);
+        if (slot != NONE) {
+            values[slot] = value;
+            touch(slot);
+            return true;
+        }
+
+        if (freeHead == NONE) evict();
+
+        slot = freeHead;
+        freeHead = chainNext[slot];
+
+        int bucket = hashVal & (hashmapSize - 1);
+        keys[slot] = key;
+        values[slot] = value;
+        hashes[slot] = hashVal;
+        chainNext[slot] = bucketHead[bucket];
+        bucketHead[bucket] = slot;
+
+        if (policy == EvictionPolicy.LRU) {
+            linkFirst(slot);
+        } else {
+            referenced[slot] = true;
+        }
+
+        numItems++;
+        return true;
+    }
+
+    /**
+     * Function get will retrieve the arbitrary object associated with a given key, and
+     * mark the entry as recently used. Safe to call from several threads at once
+     * under CLOCK only; under LRU it reorders the recency list.
+     *
+     * @param key
+     *      Key whose value is to be retrieved.
+     *
+     * @return The value associated with the specified key, or null if no such value
+     *         exists for this particular key.
+     */
+    @SuppressWarnings("unchecked")
+    public ArbObj get(String key) {
+        int slot = (maxCapacity == 0) ? NONE : findSlot(strategy.hash(key), key);
+        if (slot == NONE) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        touch(slot);
+        return (ArbObj) values[slot];
+    }
+
+    /**
+     * Function containsKey tells whether a key is in the cache, without counting a
+     * hit or miss and without marking the entry as used.
+     *
+     * @param key
+     *      Key to look for.
+     *
+     * @return true if the key is mapped.
+     */
+    public boolean containsKey(String key) {
+        return maxCapacity != 0 && findSlot(strategy.hash(key), key) != NONE;
+    }
+
+    /**
+     * Function delete will remove the key-value entry for a given key.
+     *
+     * @param key
+     *      Key for which the key-value entry in the map is to be deleted.
+     *
+     * @return The value associated with the specified key on succesful delete,
+     *         or null if there was no such key-value pair to begin with.
+     */
+    @SuppressWarnings("unchecked")
+    public ArbObj delete(String key) {
+        int slot = (maxCapacity == 0) ? NONE : findSlot(strategy.hash(key), key);
+        if (slot == NONE) return null;
+
+        ArbObj deleted = (ArbObj) values[slot];
+        release(slot);
+        return deleted;
+    }
+
+    /**
+     * Function getPolicy returns the eviction policy chosen at construction.
+     */
+    public EvictionPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Function getHashStrategy returns the strategy that hashes the keys.
+     */
+    public HashStrategy getHashStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Function getHits returns how many get() calls found their key.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Function getMisses returns how many get() calls did not find their key.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Function getEvictions returns how many entries were evicted to make room.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Function getNumItems returns the number of items in the cache.
+     */
+    public int getNumItems() {
+        return numItems;
+    }
+
+    /**
+     * Function getHashmapSize returns the max capacity of the cache.
+     */
+    public int getHashmapSize() {
+        return maxCapacity;
+    }
+
+    /**
+     * Function getTrueSize returns the number of buckets.
+     */
+    public int getTrueSize() {
+        return hashmapSize;
+    }
+
+    /**
+     * Function load will return the load factor of the cache.
+     *
+     * @return (float) numItems / maxCapacity, or 0 for a cache of capacity 0.
+     */
+    public float load() {
+        if (maxCapacity == 0) return 0;
+        return (float) numItems / maxCapacity;
+    }
+
+    /**
+     * Helper function findSlot walks a bucket chain, comparing cached hashes before
+     * calling String.equals.
+     *
+     * @return the slot holding the key, or NONE.
+     */
+    private int findSlot(int hashVal, String key) {
+        for (int slot = bucketHead[hashVal & (hashmapSize - 1)]; slot != NONE; slot = chainNext[slot]) {
+            if (hashes[slot] == hashVal && keys[slot].equals(key)) return slot;
+        }
+        return NONE;
+    }
+
+    /**
+     * Helper function touch records a use of a slot: LRU moves it to the front of the
+     * recency list, CLOCK sets its reference bit. The bit is only stored when clear,
+     * so concurrent CLOCK hits on a hot slot do not keep dirtying its cache line.
+     */
+    private void touch(int slot) {
+        if (policy == EvictionPolicy.CLOCK) {
+            if (!referenced[slot]) referenced[slot] = true;
+        } else if (lruHead != slot) {
+            unlink(slot);
+            linkFirst(slot);
+        }
+    }
+
+    /**
+     * Helper function evict frees one slot when every slot is in use.
+     */
+    private void evict() {
+        int victim;
+        if (policy == EvictionPolicy.LRU) {
+            victim = lruTail;
+        } else {
+            // Give each used slot a second chance; at most one lap clears every bit
+            while (referenced[hand]) {
+                referenced[hand] = false;
+                hand = (hand + 1 == maxCapacity) ? 0 : hand + 1;
+            }
+            victim = hand;
+            hand = (hand + 1 == maxCapacity) ? 0 : hand + 1;
+        }
+
+        release(victim);
+        evictions++;
+    }
+
+    /**
+     * Helper function release removes a used slot from its bucket chain and from the
+     * eviction bookkeeping, then puts it on the free list.
+     */
+    private void release(int slot) {
+        int bucket = hashes[slot] & (hashmapSize - 1);
+        if (bucketHead[bucket] == slot) {
+            bucketHead[bucket] = chainNext[slot];
+        } else {
+            int prev = bucketHead[bucket];
+            while (chainNext[prev] != slot) prev = chainNext[prev];
+            chainNext[prev] = chainNext[slot];
+        }
+
+        if (policy == EvictionPolicy.LRU) {
+            unlink(slot);
+        } else {
+            referenced[slot] = false;
+        }
+
+        keys[slot] = null;
+        values[slot] = null;
+        chainNext[slot] = freeHead;
+        freeHead = slot;
+        numItems--;
+    }
+
+    /**
+     * Helper function linkFirst puts a slot at the front of the LRU list.
+     */
+    private void linkFirst(int slot) {
+        lruPrev[slot] = NONE;
+        lruNext[slot] = lruHead;
+        if (lruHead != NONE) lruPrev[lruHead] = slot;
+        lruHead = slot;
+        if (lruTail == NONE) lruTail = slot;
+    }
+
+    /**
+     * Helper function unlink takes a slot out of the LRU list.
+     */
+    private void unlink(int slot) {
+        int prev = lruPrev[slot];
+        int next = lruNext[slot];
+        if (prev == NONE) lruHead = next; else lruNext[prev] = next;
+        if (next == NONE) lruTail = prev; else lruPrev[next] = prev;
+    }
+}
@@ -0,0 +1,168 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * PrimCacheHashmapTest will serve as the JUnit Test Suite corresponding to the
+ * bounded cache variant, PrimCacheHashmap.
+ *
+ * Functions tested: set(key, val), get(key), delete(key), getHits(), getMisses(),
+ * getEvictions()
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class PrimCacheHashmapTest {
+
+    /**
+     * Test #1: Tests LRU evicts the least recently used entry, where a get() counts
+     * as a use.
+     */
+    @Test
+    public void testLruEviction() throws Exception {
+        PrimCacheHashmap<Integer> cache = new PrimCacheHashmap<>(3, PrimCacheHashmap.EvictionPolicy.LRU);
+        assertTrue(cache.set("a", 1));
+        assertTrue(cache.set("b", 2));
+        assertTrue(cache.set("c", 3));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+
+        // "b" is now the least recently used
+        assertTrue(cache.set("d", 4));
+        assertEquals(3, cache.getNumItems());
+        assertEquals(1, cache.getEvictions());
+        assertFalse(cache.containsKey("b"));
+        assertTrue(cache.containsKey("a"));
+
+        // Overriding "c" makes it recent, so "a" goes next
+        assertTrue(cache.set("c", 30));
+        assertTrue(cache.set("e", 5));
+        assertFalse(cache.containsKey("a"));
+        assertEquals(Integer.valueOf(30), cache.get("c"));
+        assertEquals(Integer.valueOf(4), cache.get("d"));
+        assertEquals(2, cache.getEvictions());
+    }
+
+    /**
+     * Test #2: Tests CLOCK gives referenced entries a second chance.
+     */
+    @Test
+    public void testClockEviction() throws Exception {
+        PrimCacheHashmap<Integer> cache = new PrimCacheHashmap<>(3, PrimCacheHashmap.EvictionPolicy.CLOCK);
+        cache.set("a", 1);
+        cache.set("b", 2);
+        cache.set("c", 3);
+
+        // Every bit is set, so the hand clears all of them and evicts "a"
+        cache.set("d", 4);
+        assertFalse(cache.containsKey("a"));
+
+        // "b" is used again, so the hand skips it and evicts "c"
+        cache.get("b");
+        cache.set("e", 5);
+        assertFalse(cache.containsKey("c"));
+        assertTrue(cache.containsKey("b"));
+        assertTrue(cache.containsKey("d"));
+        assertEquals(2, cache.getEvictions());
+        assertEquals(1.0, cache.load(), 0);
+    }
+
+    /**
+     * Test #3: Tests the hit and miss counters and that deleted slots are reused
+     * without evicting.
+     */
+    @Test
+    public void testCountersAndDelete() throws Exception {
+        for (PrimCacheHashmap.EvictionPolicy policy : PrimCacheHashmap.EvictionPolicy.values()) {
+            PrimCacheHashmap<String> cache = new PrimCacheHashmap<>(2, policy);
+            cache.set("FB", "x");
+            cache.set("Ea", "y");   // same hashCode() as "FB"
+            assertEquals("x", cache.get("FB"));
+            assertEquals(null, cache.get("G#"));
+            assertEquals("y", cache.delete("Ea"));
+            assertEquals(null, cache.delete("Ea"));
+
+            assertTrue(cache.set("G#", "z"));
+            assertEquals(0, cache.getEvictions());
+            assertEquals("z", cache.get("G#"));
+            assertEquals(2, cache.getHits());
+            assertEquals(1, cache.getMisses());
+        }
+    }
+
+    /**
+     * Test #4: Tests churn over many more keys than fit, against the policy's
+     * guarantee that the most recent entries survive.
+     */
+    @Test
+    public void testChurn() throws Exception {
+        for (PrimCacheHashmap.EvictionPolicy policy : PrimCacheHashmap.EvictionPolicy.values()) {
+            PrimCacheHashmap<Integer> cache = new PrimCacheHashmap<>(100, policy);
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(cache.set("key" + i, i));
+            }
+            assertEquals(100, cache.getNumItems());
+            assertEquals(900, cache.getEvictions());
+            assertEquals(Integer.valueOf(999), cache.get("key999"));
+            assertEquals(null, cache.get("key0"));
+        }
+
+        PrimCacheHashmap<Integer> empty = new PrimCacheHashmap<>(0, PrimCacheHashmap.EvictionPolicy.LRU);
+        assertFalse(empty.set("a", 1));
+        assertEquals(null, empty.get("a"));
+    }
+
+    /**
+     * Test #5: Tests concurrent CLOCK readers with no writer running: every hit and
+     * miss is counted, and the reference bits they set still protect the entries.
+     */
+    @Test
+    public void testConcurrentClockReaders() throws Exception {
+        final PrimCacheHashmap<Integer> cache = new PrimCacheHashmap<>(64, PrimCacheHashmap.EvictionPolicy.CLOCK);
+        for (int i = 0; i < 64; i++) {
+            assertTrue(cache.set("key" + i, i));
+        }
+
+        // One full sweep clears every bit (and evicts key0), so only the keys read
+        // below stay protected
+        assertTrue(cache.set("extra", -1));
+        assertEquals(Integer.valueOf(-1), cache.delete("extra"));
+
+        Thread[] readers = new Thread[4];
+        final Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int round = 0; round < 1000; round++) {
+                            for (int i = 32; i < 64; i++) {
+                                assertEquals(Integer.valueOf(i), cache.get("key" + i));
+                            }
+                            assertNull(cache.get("absent"));
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    }
+                }
+            });
+            readers[t].start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure[0]);
+        assertEquals(4 * 1000 * 32, cache.getHits());
+        assertEquals(4 * 1000, cache.getMisses());
+
+        // The unread keys are evicted before any key the readers used
+        for (int i = 0; i < 32; i++) {
+            assertTrue(cache.set("new" + i, i));
+        }
+        for (int i = 32; i < 64; i++) {
+            assertTrue(cache.containsKey("key" + i));
+        }
+    }
+}
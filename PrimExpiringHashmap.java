@@ -0,0 +1,324 @@
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class PrimExpiringHashmap defines a fixed-size hashmap whose entries can be given a
+ * time to live. It keeps its entries in a PrimHashmap and files every entry that has
+ * a deadline in a TimerWheel, so dropping stale entries never scans the table.
+ *
+ * Expired entries are removed in two ways:
+ *
+ * lazily - get(), containsKey() and delete() treat an expired entry as absent, and
+ *          remove it on the spot
+ * sweeping - expire() advances the timer wheel and removes every entry whose
+ *            deadline has passed, in time proportional to the number removed
+ *
+ * set() also sweeps when the map is full, so dead entries never hold on to
+ * capacity that a live one needs.
+ *
+ * The map supports the following functions:
+ *
+ * constructor (size) - Initializes new hashmap, with a 1 millisecond wheel tick
+ * set(key, val) - Maps a String key to an ArbObj val that never expires
+ * set(key, val, ttl, unit) - Maps a String key to an ArbObj val for the given time
+ * get(key) - Retrieves the ArbObj that this String key maps to
+ * delete(key) - deletes the key-val mapping
+ * expire() - removes every entry whose time to live has run out
+ * load() - finds the load factor, a measure of how full the map is
+ */
+public class PrimExpiringHashmap<ArbObj> {
+
+    private static final long NEVER = Long.MAX_VALUE; // deadline of an entry without TTL
+
+    private final PrimHashmap<TimedEntry<ArbObj>> entries; // key -> entry
+    private final TimerWheel wheel;                        // entries that have a deadline
+    private final LongSupplier clock;                      // current time in nanoseconds
+    private final long tickNanos;                          // length of one wheel tick
+    private final long origin;                             // clock reading at wheel tick 0
+    private final TimerWheel.Expiry sweeper;               // removes fired entries
+
+    /**
+     * Constructor PrimExpiringHashmap(sz) initializes an empty map with the given max
+     * capacity, timed by System.nanoTime() in 1 millisecond ticks.
+     *
+     * @param size
+     *      Specifies the max capacity of the hashmap to be created.
+     */
+    public PrimExpiringHashmap(int size) {
+        this(size, 1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructor PrimExpiringHashmap(sz, tick, unit) initializes an empty map with
+     * the given max capacity and wheel tick. The sweep removes an entry within one
+     * tick of its deadline; get() is exact regardless of the tick.
+     *
+     * @param size
+     *      Specifies the max capacity of the hashmap to be created.
+     * @param tick
+     *      Length of one timer wheel tick.
+     * @param unit
+     *      Unit of the tick.
+     */
+    public PrimExpiringHashmap(int size, long tick, TimeUnit unit) {
+        this(size, unit.toNanos(tick), System::nanoTime);
+    }
+
+    /**
+     * Constructor PrimExpiringHashmap(sz, tickNanos, clock) lets tests drive time.
+     */
+    PrimExpiringHashmap(int size, long tickNanos, LongSupplier clock) {
+        if (tickNanos <= 0) throw new IllegalArgumentException("Tick must be positive: " + tickNanos);
+
+        this.entries = new PrimHashmap<TimedEntry<ArbObj>>(size);
+        this.wheel = new TimerWheel();
+        this.clock = clock;
+        this.tickNanos = tickNanos;
+        this.origin = clock.getAsLong();
+        this.sweeper = new TimerWheel.Expiry() {
+            @SuppressWarnings("unchecked")
+            public void expired(TimerWheel.Node node) {
+                entries.delete(((TimedEntry<ArbObj>) node).key);
+            }
+        };
+    }
+
+    /**
+     * Function constructor() will call the PrimExpiringHashmap constructor taking size
+     * as a parameter, which specified the max capacity of the hashmap to be created.
+     *
+     * @param size
+     *      Specifies max capacity of hashmap to be created.
+     *
+     * @return a PrimExpiringHashmap object with specified size
+     */
+    public final PrimExpiringHashmap<ArbObj> constructor(int size) {
+        return new PrimExpiringHashmap<ArbObj>(size);
+    }
+
+    /**
+     * Function set will map a String to an arbitrary object value that never expires.
+     * Any time to live the key had before is cleared.
+     *
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to, arbitrary object of user's choice
+     *
+     * @return true on successful set, false on unsuccessful set
+     */
+    public boolean set(String key, ArbObj value) {
+        return put(key, value, NEVER);
+    }
+
+    /**
+     * Function set will map a String to an arbitrary object value for a limited time.
+     * Setting an existing key replaces both its value and its time to live.
+     *
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to, arbitrary object of user's choice
+     * @param ttl
+     *      How long the mapping lives; 0 or less means it is already expired.
+     * @param unit
+     *      Unit of the ttl.
+     *
+     * @return true on successful set, false on unsuccessful set
+     */
+    public boolean set(String key, ArbObj value, long ttl, TimeUnit unit) {
+        // Deadlines are compared by difference, like System.nanoTime() readings
+        long deadline = clock.getAsLong() + Math.min(unit.toNanos(ttl), Long.MAX_VALUE / 4);
+        return put(key, value, (deadline == NEVER) ? deadline - 1 : deadline);
+    }
+
+    /**
+     * Function get will retrieve the arbitrary object associated with a given key, as
+     * long as its time to live has not run out.
+     *
+     * @param key
+     *      Key whose value is to be retrieved.
+     *
+     * @return The value associated with the specified key, or null if no such value
+     *         exists for this particular key or it has expired.
+     */
+    public ArbObj get(String key) {
+        TimedEntry<ArbObj> entry = live(key);
+        return (entry == null) ? null : entry.value;
+    }
+
+    /**
+     * Function containsKey tells whether a key is mapped and has not expired.
+     *
+     * @param key
+     *      Key to look for.
+     *
+     * @return true if the key is mapped to a live entry.
+     */
+    public boolean containsKey(String key) {
+        return live(key) != null;
+    }
+
+    /**
+     * Function delete will remove the key-value entry for a given key.
+     *
+     * @param key
+     *      Key for which the key-value entry in the map is to be deleted.
+     *
+     * @return The value associated with the specified key on succesful delete, or null
+     *         if there was no such key-value pair or it had already expired.
+     */
+    public ArbObj delete(String key) {
+        TimedEntry<ArbObj> entry = entries.delete(key);
+        if (entry == null) return null;
+
+        wheel.cancel(entry);
+        return isExpired(entry, clock.getAsLong()) ? null : entry.value;
+    }
+
+    /**
+     * Function ttlRemaining tells how long a key has left to live.
+     *
+     * @param key
+     *      Key to look up.
+     * @param unit
+     *      Unit of the result.
+     *
+     * @return the remaining time to live, Long.MAX_VALUE if the key never expires,
+     *         or -1 if the key is absent or expired.
+     */
+    public long ttlRemaining(String key, TimeUnit unit) {
+        TimedEntry<ArbObj> entry = live(key);
+        if (entry == null) return -1;
+        if (entry.deadlineNanos == NEVER) return Long.MAX_VALUE;
+
+        return unit.convert(entry.deadlineNanos - clock.getAsLong(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Function expire removes every entry whose time to live has run out, up to the
+     * current wheel tick. Only the removed entries are visited.
+     *
+     * @return the number of entries removed.
+     */
+    public int expire() {
+        int before = entries.getNumItems();
+        wheel.advance(currentTick(), sweeper);
+        return before - entries.getNumItems();
+    }
+
+    /**
+     * Function getNumItems returns the number of items in the hashmap, including
+     * expired ones that have not been removed yet.
+     */
+    public int getNumItems() {
+        return entries.getNumItems();
+    }
+
+    /**
+     * Function getHashmapSize returns the max capacity of the hashmap.
+     */
+    public int getHashmapSize() {
+        return entries.getHashmapSize();
+    }
+
+    /**
+     * Function getTrueSize returns the size of the underlying table.
+     */
+    public int getTrueSize() {
+        return entries.getTrueSize();
+    }
+
+    /**
+     * Function load will return the load factor of the hashmap, counting expired
+     * entries that have not been removed yet.
+     *
+     * @return (float) numItems / maxCapacity
+     */
+    public float load() {
+        return entries.load();
+    }
+
+    /**
+     * Helper function put stores a value with an absolute deadline, sweeping expired
+     * entries first if the map is full.
+     */
+    private boolean put(String key, ArbObj value, long deadlineNanos) {
+        TimedEntry<ArbObj> entry = entries.get(key);
+        if (entry == null) {
+            entry = new TimedEntry<ArbObj>(key);
+            if (!entries.set(key, entry)) {
+                if (expire() == 0 || !entries.set(key, entry)) return false;
+            }
+        }
+
+        entry.value = value;
+        entry.deadlineNanos = deadlineNanos;
+        if (deadlineNanos == NEVER) {
+            wheel.cancel(entry);
+        } else {
+            wheel.schedule(entry, tickOf(deadlineNanos));
+        }
+        return true;
+    }
+
+    /**
+     * Helper function live looks up a key, removing its entry if it has expired.
+     *
+     * @return the entry, or null if the key is absent or expired.
+     */
+    private TimedEntry<ArbObj> live(String key) {
+        TimedEntry<ArbObj> entry = entries.get(key);
+        if (entry == null || entry.deadlineNanos == NEVER) return entry;
+
+        if (isExpired(entry, clock.getAsLong())) {
+            entries.delete(key);
+            wheel.cancel(entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Helper function isExpired tells whether an entry's deadline has passed.
+     */
+    private static boolean isExpired(TimedEntry<?> entry, long now) {
+        return entry.deadlineNanos != NEVER && entry.deadlineNanos - now <= 0;
+    }
+
+    /**
+     * Helper function currentTick converts the clock into wheel ticks.
+     */
+    private long currentTick() {
+        return (clock.getAsLong() - origin) / tickNanos;
+    }
+
+    /**
+     * Helper function tickOf finds the first tick at or after a deadline, so that an
+     * entry never fires before it has expired.
+     */
+    private long tickOf(long deadlineNanos) {
+        long elapsed = deadlineNanos - origin;
+        if (elapsed <= 0) return 0;
+        return (elapsed + tickNanos - 1) / tickNanos;
+    }
+
+    /**
+     * Class TimedEntry holds a value together with its deadline, and is itself the
+     * node filed in the timer wheel.
+     */
+    private static final class TimedEntry<ArbObj> extends TimerWheel.Node {
+        final String key;      // key the entry is mapped under
+        ArbObj value;          // value of the mapping
+        long deadlineNanos;    // clock reading at which the entry expires, or NEVER
+
+        /**
+         * Constructor TimedEntry creates an entry for a key.
+         */
+        TimedEntry(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * PrimExpiringHashmapTest will serve as the JUnit Test Suite corresponding to the
+ * time-to-live variant, PrimExpiringHashmap, and its TimerWheel.
+ *
+ * Functions tested: set(key, val, ttl, unit), get(key), delete(key), expire(),
+ * ttlRemaining(key, unit)
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class PrimExpiringHashmapTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Test #1: Tests get() stops returning an entry exactly when its TTL runs out,
+     * while entries without a TTL stay.
+     */
+    @Test
+    public void testLazyExpiry() throws Exception {
+        AtomicLong now = new AtomicLong(-5000 * MS);   // nanoTime may be negative
+        PrimExpiringHashmap<String> hashmap = new PrimExpiringHashmap<>(4, MS, now::get);
+
+        assertTrue(hashmap.set("session", "token", 100, TimeUnit.MILLISECONDS));
+        assertTrue(hashmap.set("forever", "value"));
+        assertEquals(100, hashmap.ttlRemaining("session", TimeUnit.MILLISECONDS));
+        assertEquals(Long.MAX_VALUE, hashmap.ttlRemaining("forever", TimeUnit.MILLISECONDS));
+
+        now.addAndGet(100 * MS - 1);
+        assertEquals("token", hashmap.get("session"));
+        now.addAndGet(1);
+        assertEquals(null, hashmap.get("session"));
+        assertEquals(1, hashmap.getNumItems());
+        assertEquals(-1, hashmap.ttlRemaining("session", TimeUnit.MILLISECONDS));
+
+        now.addAndGet(TimeUnit.DAYS.toNanos(365));
+        assertEquals("value", hashmap.get("forever"));
+    }
+
+    /**
+     * Test #2: Tests expire() removes exactly the entries whose TTL has run out, and
+     * that resetting or deleting a key takes it off its old deadline.
+     */
+    @Test
+    public void testSweep() throws Exception {
+        AtomicLong now = new AtomicLong();
+        PrimExpiringHashmap<Integer> hashmap = new PrimExpiringHashmap<>(1000, MS, now::get);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(hashmap.set("key" + i, i, i + 1, TimeUnit.SECONDS));
+        }
+        assertTrue(hashmap.set("key0", -1));           // no longer expires
+        assertEquals(Integer.valueOf(1), hashmap.delete("key1"));
+
+        now.set(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(8, hashmap.expire());             // key2 .. key9
+        assertEquals(0, hashmap.expire());
+        assertEquals(991, hashmap.getNumItems());
+        assertEquals(Integer.valueOf(-1), hashmap.get("key0"));
+        assertEquals(Integer.valueOf(10), hashmap.get("key10"));
+
+        now.set(TimeUnit.SECONDS.toNanos(1000));
+        assertEquals(990, hashmap.expire());
+        assertEquals(1, hashmap.getNumItems());
+    }
+
+    /**
+     * Test #3: Tests a full map sweeps expired entries instead of refusing a set().
+     */
+    @Test
+    public void testExpiredEntriesFreeCapacity() throws Exception {
+        AtomicLong now = new AtomicLong();
+        PrimExpiringHashmap<String> hashmap = new PrimExpiringHashmap<>(2, MS, now::get);
+        assertTrue(hashmap.set("a", "1", 5, TimeUnit.MILLISECONDS));
+        assertTrue(hashmap.set("b", "2"));
+        assertFalse(hashmap.set("c", "3"));
+
+        now.addAndGet(5 * MS);
+        assertTrue(hashmap.set("c", "3"));
+        assertEquals(null, hashmap.get("a"));
+        assertEquals(2, hashmap.getNumItems());
+        assertFalse(hashmap.set("d", "4"));
+    }
+
+    /**
+     * Test #4: Tests the timer wheel fires nodes on their tick across levels and the
+     * overflow list, and jumps over idle time.
+     */
+    @Test
+    public void testTimerWheel() throws Exception {
+        TimerWheel wheel = new TimerWheel();
+        long[] deadlines = {1, 63, 64, 65, 4095, 4096, 100000, 1L << 29, 1L << 31, 5L << 40};
+        TimerWheel.Node[] nodes = new TimerWheel.Node[deadlines.length];
+        for (int i = 0; i < deadlines.length; i++) {
+            nodes[i] = new TimerWheel.Node();
+            wheel.schedule(nodes[i], deadlines[i]);
+        }
+        TimerWheel.Node cancelled = new TimerWheel.Node();
+        wheel.schedule(cancelled, 70);
+        wheel.cancel(cancelled);
+
+        final long[] fired = new long[deadlines.length];
+        final int[] count = {0};
+        for (long target : new long[] {64, 5000, 1L << 30, 1L << 32, 6L << 40}) {
+            wheel.advance(target, node -> {
+                assertEquals(wheel.getCurrentTick(), node.deadline);
+                fired[count[0]++] = node.deadline;
+            });
+            assertEquals(target, wheel.getCurrentTick());
+        }
+
+        assertEquals(deadlines.length, count[0]);
+        assertArrayEquals(deadlines, fired);
+        assertEquals(0, wheel.size());
+        assertFalse(cancelled.isScheduled());
+    }
+}
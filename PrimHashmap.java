@@ -1,3 +1,25 @@
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /*
  * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
  *
@@ -5,17 +27,46 @@
  * using only primitive types. The map will support the following functions:
  *
  * constructor (size) - Initializes new hashmap
+ * constructor (size, strategy) - Initializes new hashmap whose keys are hashed by a HashStrategy
  * set(key, val) - Maps a String key to an ArbObj val
  * get(key) - Retrieves the ArbObj that this String key maps to
  * delete(key) - deletes the key-val mapping
+ * putIfAbsent, replace, computeIfAbsent, compute, merge - read-modify-write in one lookup
  * load() - finds the load factor, a measure of how full the map is
+ * setAll/getAll/deleteAll(keys, ...) - batch versions of set, get and delete
+ * forEach(action), cursor(), keySet(), values() - allocation-free iteration
+ * parallelForEach, parallelReduce, parallelSearch, stream() - multi-core bulk operations
+ * enableMetrics() - optional hit/miss counters, latency sampling and chain statistics
+ * freeze() - immutable, thread-safe copy laid out for fast reads
+ * growable(size) - opt-in mode that doubles the table instead of rejecting a set
+ *
+ * A growable map never fails a set for lack of room. When it fills up, it allocates
+ * a table twice as large and moves the old buckets over a few at a time on each later
+ * set and delete (incremental rehashing, as in Redis), so no single call pays for
+ * rehashing the whole map. While a resize is in progress a key lives in exactly one
+ * of the two tables: in the old one if its old bucket has not been moved yet, in the
+ * new one otherwise. get() and full scans (forEach, cursor, streams, freeze and the
+ * parallel operations) only read, walking the new table and the unmoved part of the
+ * old one, so a map that is not being written can be read from several threads.
  */
 public class PrimHashmap<ArbObj> {
 
+    private static final int BATCH_SORT_THRESHOLD = 64; // smaller batches are not sorted
+    private static final int PARALLEL_LEAF = 1024;      // buckets walked by one fork-join task
+    private static final int TREEIFY_THRESHOLD = 8;     // longer chains become TreeBuckets
+    private static final int UNTREEIFY_THRESHOLD = 6;   // shorter TreeBuckets become lists again
+    private static final int MAX_TABLE_SIZE = 1 << 30;  // largest power of two an array can hold
+    private static final int MIGRATE_STEP = 4;          // old buckets moved by each set/delete while resizing
+
     private int hashmapSize; // The true size of the hashmap - underlying array length
-    private Object[] table;  // Internal data structure: array to hold objects
+    private Object[] table;  // Internal data structure: array to hold objects, null until the first set
     private int numItems;    // Number of items currently in hashmap
     private int maxCapacity; // max capacity as specified by user
+    private HashStrategy strategy; // turns a key into the hash that picks its bucket
+    private PrimHashmapMetrics metrics; // instrumentation, null unless enabled
+    private boolean growable;  // true if a full map doubles its table instead of rejecting sets
+    private Object[] oldTable; // table being emptied by an incremental resize, null otherwise
+    private int migrateIndex;  // buckets of oldTable below this index have been moved
 
     /**
      * Constructor PrimHashmap initializes all fields to 0 or null if no size is specified,
@@ -27,20 +78,38 @@ public class PrimHashmap<ArbObj> {
         this.table = null;
         this.numItems = 0;
         this.maxCapacity = 0;
+        this.strategy = HashStrategy.SPREAD;
     }
 
     /**
      * Constructor PrimHashmap(sz) initializes all fields given the user-specified max
-     * capacity of the hashmap. 
+     * capacity of the hashmap. The table itself is only allocated by the first set, so
+     * creating a map that stays empty costs no more than the object itself.
      *
      * @param size
      *  Specifies the max capacity of the hashmap to be created.
      */
     public PrimHashmap(int size) {
+        this(size, HashStrategy.SPREAD);
+    }
+
+    /**
+     * Constructor PrimHashmap(sz, strategy) initializes all fields given the user-specified
+     * max capacity of the hashmap and the strategy used to hash its keys.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     * @param strategy
+     *  Hashes the keys, e.g. HashStrategy.sipHash() for keys an attacker controls.
+     */
+    public PrimHashmap(int size, HashStrategy strategy) {
+        if (strategy == null) throw new NullPointerException("strategy");
+
         hashmapSize = findNextPowerOfTwo(size);
-        table = new Object[hashmapSize];
+        table = null;
         numItems = 0;
         maxCapacity = size;
+        this.strategy = strategy;
     }
 
     /**
@@ -50,12 +119,57 @@ public class PrimHashmap<ArbObj> {
      * @param size
      *      Specifies max capacity of hashmap to be created.
      *
-     * @return a PrimHashmap object with specified size
+     * @return a PrimHashmap object with specified size. It needs a throwaway
+     *         PrimHashmap to be called on; withCapacity(size) and the PrimHashmap(size)
+     *         constructor create the map in one step.
      */
     public final PrimHashmap<ArbObj> constructor(int size) {
         return new PrimHashmap<ArbObj>(size);
     }
 
+    /**
+     * Function withCapacity creates a hashmap with the given max capacity in one step.
+     * Like the PrimHashmap(size) constructor, it allocates no table until the first set.
+     *
+     * @param size
+     *      Specifies max capacity of hashmap to be created.
+     *
+     * @return a PrimHashmap object with specified size
+     */
+    public static <V> PrimHashmap<V> withCapacity(int size) {
+        return new PrimHashmap<V>(size);
+    }
+
+    /**
+     * Function growable creates a hashmap that starts with room for the given number
+     * of items and doubles its capacity, incrementally, whenever it fills up.
+     *
+     * @param initialSize
+     *      Capacity before the first resize; at least 1 is used.
+     *
+     * @return a growable PrimHashmap object
+     */
+    public static <V> PrimHashmap<V> growable(int initialSize) {
+        return growable(initialSize, HashStrategy.SPREAD);
+    }
+
+    /**
+     * Function growable creates a growable hashmap whose keys are hashed by a given
+     * strategy.
+     *
+     * @param initialSize
+     *      Capacity before the first resize; at least 1 is used.
+     * @param strategy
+     *      Hashes the keys, e.g. HashStrategy.sipHash() for keys an attacker controls.
+     *
+     * @return a growable PrimHashmap object
+     */
+    public static <V> PrimHashmap<V> growable(int initialSize, HashStrategy strategy) {
+        PrimHashmap<V> map = new PrimHashmap<V>(Math.max(initialSize, 1), strategy);
+        map.growable = true;
+        return map;
+    }
+
     /**
      * Function set will map a String to an arbitrary object value, and put the pair within
      * the hashmap for the user to access later.
@@ -68,42 +182,316 @@ public class PrimHashmap<ArbObj> {
      * @return true on successful set, false on unsuccessful set
      */
     public boolean set(String key, ArbObj value) {
-        if (table == null) return false;
+        if (metrics != null) return setMeasured(key, value);
+        if (table == null && !allocateTable()) return false;
+
+        return setHashed(strategy.hash(key), key, value);
+    }
 
-        // Find index in table to insert key-value pair
-        int hashVal = key.hashCode();
-        int putIndex = findHashIndex(hashVal);
+    /**
+     * Function setRestored maps a key whose hash under this map's strategy is already
+     * known, as when PrimHashmapSnapshot loads entries written with the same strategy,
+     * so the key is not hashed a second time.
+     *
+     * @param hashVal
+     *      The key's hash, from the map's HashStrategy.
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to.
+     *
+     * @return true on successful set, false on unsuccessful set
+     */
+    boolean setRestored(int hashVal, String key, ArbObj value) {
+        if (table == null && !allocateTable()) return false;
 
-        NodeList list = null;
+        return setHashed(hashVal, key, value);
+    }
 
-        // If hash index has no list, create a new list for that index
-        if (table[putIndex] == null) {
+    /**
+     * Helper function allocateTable creates the table on the first set, sized to the
+     * power of two chosen by the constructor.
+     *
+     * @return true if the table now exists, false if the map has no capacity at all.
+     */
+    private boolean allocateTable() {
+        if (maxCapacity <= 0) return false;
 
-            NodeList newList = new NodeList();
-            table[putIndex] = newList;
+        table = new Object[hashmapSize];
+        return true;
+    }
 
-        }
+    /**
+     * Helper function for set() and setAll() that performs the set once the key's
+     * hash is known.
+     *
+     * @param hashVal
+     *      The key's hash, from the map's HashStrategy.
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to.
+     *
+     * @return true on successful set, false on unsuccessful set
+     */
+    private boolean setHashed(int hashVal, String key, ArbObj value) {
+        if (oldTable != null) migrateStep();
+
+        // Find the table and index to insert key-value pair
+        Object[] buckets = tableFor(hashVal);
+        int putIndex = hashVal & (buckets.length - 1);
 
         // Retrives list at hash index and checks for existence of duplicate
-        list = (NodeList) table[putIndex];
-        HashmapNode<ArbObj> duplicate = getNode(list, key);
+        NodeList list = bucket(buckets, putIndex);
+        HashmapNode<ArbObj> duplicate = getNode(list, hashVal, key);
 
         if (duplicate != null) {
             // Override value if duplicate found.
             duplicate.setValue(value);
-        } else {
-            // Max capacity check
-            if(numItems >= maxCapacity) return false;
+            return true;
+        }
+
+        // Max capacity check, a growable map doubles instead and places the key again
+        return addAbsent(buckets, putIndex, hashVal, key, value);
+    }
+
+    /**
+     * Helper function isFull tells, without changing anything, that a new key cannot
+     * be added: the map is at its max capacity and cannot grow.
+     *
+     * @return true if addAbsent would refuse any key.
+     */
+    private boolean isFull() {
+        return numItems >= maxCapacity && (!growable || hashmapSize >= MAX_TABLE_SIZE);
+    }
+
+    /**
+     * Helper function addNode appends a new node for a key known to be absent to the
+     * bucket of its hash, creating the bucket if needed.
+     *
+     * @param hashVal
+     *      The key's hash, from the map's HashStrategy.
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to.
+     */
+    private void addNode(int hashVal, String key, ArbObj value) {
+        Object[] buckets = tableFor(hashVal);
+        insertNode(buckets, hashVal & (buckets.length - 1), hashVal, key, value);
+    }
+
+    /**
+     * Helper function addAbsent adds a key known to be absent to the bucket a lookup
+     * already found, if it fits under the max capacity. Only when a full growable
+     * map has to start a resize, which moves buckets, is the bucket found again.
+     *
+     * @param buckets
+     *      The table holding the key's bucket.
+     * @param putIndex
+     *      Index of the bucket in that table.
+     * @param hashVal
+     *      The key's hash, from the map's HashStrategy.
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to.
+     *
+     * @return true if the key was added, false if the map is full.
+     */
+    private boolean addAbsent(Object[] buckets, int putIndex, int hashVal, String key, ArbObj value) {
+        if (numItems < maxCapacity) {
+            insertNode(buckets, putIndex, hashVal, key, value);
+            return true;
+        }
+        if (!growable || !startResize()) return false;
+
+        addNode(hashVal, key, value);
+        return true;
+    }
 
-            // Otherwise create a new node with value and append to list.
-            HashmapNode<ArbObj> newNode = new HashmapNode<ArbObj>(key, value);
-            list.append(newNode);
-            numItems++;
+    /**
+     * Helper function insertNode appends a new node for a key known to be absent to
+     * a bucket, creating the bucket if needed.
+     *
+     * @param buckets
+     *      The table holding the key's bucket.
+     * @param putIndex
+     *      Index of the bucket in that table.
+     * @param hashVal
+     *      The key's hash, from the map's HashStrategy.
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to.
+     */
+    private void insertNode(Object[] buckets, int putIndex, int hashVal, String key, ArbObj value) {
+        // If hash index has no list, create a new list for that index
+        NodeList list = bucket(buckets, putIndex);
+        if (list == null) {
+            list = new NodeList();
+            buckets[putIndex] = list;
+        }
+
+        // Otherwise create a new node with value and append to list.
+        HashmapNode<ArbObj> newNode = new HashmapNode<ArbObj>(hashVal, key, value);
+        list.append(newNode);
+        numItems++;
+
+        // A long chain gets a search tree on top of its list
+        if (list.size > TREEIFY_THRESHOLD && !list.isTree()) {
+            buckets[putIndex] = new TreeBucket(list);
+        }
+    }
+
+    /**
+     * Helper function removeNode unlinks a node from its bucket.
+     *
+     * @param buckets
+     *      The table holding the node's bucket.
+     * @param index
+     *      Index of the bucket in that table.
+     * @param target
+     *      The node to remove.
+     */
+    private void removeNode(Object[] buckets, int index, HashmapNode<ArbObj> target) {
+        NodeList list = bucket(buckets, index);
+        list.deleteNode(target);
+        numItems--;
+
+        // Reclaim the bucket once its last node is gone, drop the tree once it is short
+        if (list.isEmpty()) {
+            buckets[index] = null;
+        } else if (list.size < UNTREEIFY_THRESHOLD && list.isTree()) {
+            buckets[index] = ((TreeBucket) list).untreeify();
         }
+    }
+
+    /**
+     * Function isGrowable tells whether the map doubles its table when full instead
+     * of rejecting new keys.
+     *
+     * @return true for maps created by growable().
+     */
+    public boolean isGrowable() {
+        return this.growable;
+    }
+
+    /**
+     * Function isResizing tells whether an incremental resize is in progress. This
+     * is used for test purposes!
+     *
+     * @return true while buckets of the previous table remain to be moved.
+     */
+    boolean isResizing() {
+        return oldTable != null;
+    }
 
+    /**
+     * Helper function startResize doubles the table and the capacity of a full
+     * growable map. The buckets of the current table are moved later, by migrateStep.
+     *
+     * @return false if the table is already as large as an array can be.
+     */
+    private boolean startResize() {
+        if (oldTable != null) finishResize();
+        if (hashmapSize >= MAX_TABLE_SIZE) return false;
+
+        oldTable = table;
+        migrateIndex = 0;
+        hashmapSize = table.length * 2;
+        table = new Object[hashmapSize];
+        maxCapacity = (maxCapacity > Integer.MAX_VALUE / 2) ? Integer.MAX_VALUE : maxCapacity * 2;
         return true;
     }
 
+    /**
+     * Helper function migrateStep moves the next MIGRATE_STEP buckets of the old
+     * table. A map needs at least half its new capacity in sets to fill up again,
+     * while this moves every old bucket within a quarter of that, so a resize always
+     * completes before the next one is due.
+     */
+    private void migrateStep() {
+        int end = Math.min(migrateIndex + MIGRATE_STEP, oldTable.length);
+        while (migrateIndex < end) {
+            migrateBucket(migrateIndex++);
+        }
+        if (migrateIndex == oldTable.length) oldTable = null;
+    }
+
+    /**
+     * Helper function finishResize moves every bucket still in the old table.
+     */
+    private void finishResize() {
+        if (oldTable == null) return;
+
+        while (migrateIndex < oldTable.length) {
+            migrateBucket(migrateIndex++);
+        }
+        oldTable = null;
+    }
+
+    /**
+     * Helper function migrateBucket splits one bucket of the old table between the two
+     * buckets of the new table it maps to, index and index + oldTable.length, keeping
+     * the order of the nodes. Either half that is still long gets its search tree back.
+     */
+    @SuppressWarnings("unchecked")
+    private void migrateBucket(int index) {
+        NodeList list = (NodeList) oldTable[index];
+        if (list == null) return;
+        oldTable[index] = null;
+
+        NodeList low = null;
+        NodeList high = null;
+        HashmapNode<ArbObj> node = list.getFirst();
+        while (node != null) {
+            HashmapNode<ArbObj> next = node.next();
+            node.setPrev(null);
+            node.setNext(null);
+
+            if ((node.getHash() & oldTable.length) == 0) {
+                if (low == null) low = new NodeList();
+                low.append(node);
+            } else {
+                if (high == null) high = new NodeList();
+                high.append(node);
+            }
+            node = next;
+        }
+
+        table[index] = (low != null && low.size > TREEIFY_THRESHOLD) ? new TreeBucket(low) : low;
+        table[index + oldTable.length] = (high != null && high.size > TREEIFY_THRESHOLD) ? new TreeBucket(high) : high;
+    }
+
+    /**
+     * Helper function tableFor picks the table holding a hash's bucket: the old table
+     * while that bucket has not been moved yet, the current table otherwise.
+     */
+    private Object[] tableFor(int hashVal) {
+        if (oldTable != null && (hashVal & (oldTable.length - 1)) >= migrateIndex) return oldTable;
+        return table;
+    }
+
+    /**
+     * Helper function findNode looks up the node of a key whose hash is known, in
+     * whichever table holds its bucket. The table must exist.
+     */
+    private HashmapNode<ArbObj> findNode(int hashVal, String key) {
+        Object[] buckets = tableFor(hashVal);
+        return getNode(bucket(buckets, hashVal & (buckets.length - 1)), hashVal, key);
+    }
+
+    /**
+     * Helper function bucket reads one bucket of a table. Tables are Object arrays,
+     * since an array of the inner NodeList type cannot be created, so this is the one
+     * place a bucket is cast back.
+     */
+    @SuppressWarnings("unchecked")
+    private NodeList bucket(Object[] buckets, int index) {
+        return (NodeList) buckets[index];
+    }
+
     /**
      * Function getNumItems() is a getter function for the number of items 
      * currently in the hashmap (occupancy).
@@ -132,12 +520,22 @@ public class PrimHashmap<ArbObj> {
      * @return true size of hashmap.
      */
     public int getTrueSize() {
-        return this.table.length;
+        return this.hashmapSize;
+    }
+
+    /**
+     * Function getHashStrategy() is a getter function for the strategy that hashes
+     * the keys of this hashmap.
+     *
+     * @return the hash strategy.
+     */
+    public HashStrategy getHashStrategy() {
+        return this.strategy;
     }
 
     /**
-     * Function getTable() returns the underlying table array of the hashmap
-     * This is used for test purposes!
+     * Function getTable() returns the underlying table array of the hashmap, or
+     * null if nothing has been set yet. This is used for test purposes!
      * 
      * @return underlying array of hashmap.
      */
@@ -147,32 +545,27 @@ public class PrimHashmap<ArbObj> {
 
     /**
      * Helper function for both get() and delete() to find the HashmapNode that 
-     * contains a specified key in a specified list (position in table).
+     * contains a specified key in a specified list (position in table). The cached
+     * hash of each node is compared first, so String.equals only runs on a hash match.
+     * Buckets holding more than TREEIFY_THRESHOLD nodes are TreeBuckets, searched in
+     * O(log n) instead.
      *
      * @param list
      *      Reference to the NodeList head where this key was hashed to.
+     * @param hashVal
+     *      The key's hash, from the map's HashStrategy.
      * @param key
      *      The value of the key whose value to find within a HashmapNode.
      *
      * @return the HashmapNode object storing the value originating from key.
      *
      */
-    private HashmapNode<ArbObj> getNode(NodeList list, String key) {
+    @SuppressWarnings("unchecked")
+    private HashmapNode<ArbObj> getNode(NodeList list, int hashVal, String key) {
         if (list == null) return null;
 
-        // Retrieves head of list
-        HashmapNode<ArbObj> iter = list.getFirst();
-
-        // Iterates through list and finds value with this origin key
-        while (iter != null) {
-            if (iter.getOriginKey().equals(key)) {
-                return iter;
-            }
-
-            iter = iter.next();
-        }
-
-        return null;
+        // A plain list is scanned, a treeified bucket is searched
+        return list.find(hashVal, key);
     }
 
     /**
@@ -186,24 +579,33 @@ public class PrimHashmap<ArbObj> {
      * 
      */
     public ArbObj get(String key) {
+        if (metrics != null) return getMeasured(key);
         if (table == null) return null;
 
-        // Retrieve hash index 
-        int hashVal = key.hashCode();
-        int putIndex = findHashIndex(hashVal);
-
-        // Entry in table is null, so key-value cannot possibly exist
-        if (table[putIndex] == null) return null;
+        return getHashed(strategy.hash(key), key);
+    }
 
-        // Checks for existence of node and returns value
-        HashmapNode<ArbObj> target = getNode((NodeList) table[putIndex], key);
+    /**
+     * Helper function for get() and getAll() that performs the lookup once the key's
+     * hash is known.
+     *
+     * @param hashVal
+     *      The key's hash, from the map's HashStrategy.
+     * @param key
+     *      Key whose value is to be retrieved.
+     *
+     * @return The value associated with the specified key, or null.
+     */
+    private ArbObj getHashed(int hashVal, String key) {
+        // Checks for existence of node in the bucket of the hash and returns value
+        HashmapNode<ArbObj> target = findNode(hashVal, key);
         if (target == null) return null;
 
         return target.getValue();
     }
 
     /**
-     * Function get will retrieve the arbitrary object associated with a given key.
+     * Function delete will remove the key-value entry for a given key.
      *
      * @param key
      *      Key for which the key-value entry in the map is to be deleted.
@@ -213,101 +615,1052 @@ public class PrimHashmap<ArbObj> {
      * 
      */
     public ArbObj delete(String key) {
+        if (metrics != null) return deleteMeasured(key);
         if (table == null) return null;
 
-        // Retrieves hash index
-        int hashVal = key.hashCode();
-        int putIndex = findHashIndex(hashVal);
+        return deleteHashed(strategy.hash(key), key);
+    }
+
+    /**
+     * Helper function for delete() and deleteAll() that performs the delete once the
+     * key's hash is known.
+     *
+     * @param hashVal
+     *      The key's hash, from the map's HashStrategy.
+     * @param key
+     *      Key for which the key-value entry in the map is to be deleted.
+     *
+     * @return The deleted value, or null if there was no such key-value pair.
+     */
+    private ArbObj deleteHashed(int hashVal, String key) {
+        if (oldTable != null) migrateStep();
+
+        // Retrieves the table and hash index
+        Object[] buckets = tableFor(hashVal);
+        int putIndex = hashVal & (buckets.length - 1);
 
         // Entry in table is null, so key-value cannot possibly exist, no deletion 
-        if (table[putIndex] == null) return null;
+        if (buckets[putIndex] == null) return null;
 
         // Otherwise find node and delete from list, returning deleted node's value
-        NodeList list = (NodeList) table[putIndex];
+        NodeList list = bucket(buckets, putIndex);
 
-        HashmapNode<ArbObj> target = getNode(list, key);
+        HashmapNode<ArbObj> target = getNode(list, hashVal, key);
         if (target == null) return null;
 
-        list.deleteNode(target);
-        numItems--;
+        removeNode(buckets, putIndex, target);
         return target.getValue();   
     }
 
     /**
-     * Function findHashIndex will return a unique index in the table for a hashCode value.
+     * Function putIfAbsent will map a key to a value only if the key is not in the map
+     * yet, finding its bucket once.
      *
-     * @param hashVal
-     *      A String's hashCode() value.
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to, arbitrary object of user's choice
      *
-     * @return The index in the underlying table where this string will be hashed.
-     * 
+     * @return true if the key was absent and is now mapped to value, false if it was
+     *         already present (its value is kept) or the map is full.
      */
-    private int findHashIndex(int hashVal) {
-        return hashVal & (table.length-1);
+    public boolean putIfAbsent(String key, ArbObj value) {
+        if (table == null && !allocateTable()) return false;
+
+        int hashVal = strategy.hash(key);
+        if (oldTable != null) migrateStep();
+        Object[] buckets = tableFor(hashVal);
+        int index = hashVal & (buckets.length - 1);
+        if (getNode(bucket(buckets, index), hashVal, key) != null) return false;
+
+        return addAbsent(buckets, index, hashVal, key, value);
     }
 
     /**
-     * Function load will return the load factor (numItems/capacity) of the hashmap.
+     * Function replace will change the value of a key only if it currently maps to an
+     * expected value, as compared by equals().
      *
-     * @return Load factor as described above in float format.
-     * 
+     * @param key
+     *      Key whose value is to be replaced.
+     * @param expected
+     *      Value the key has to map to, may be null.
+     * @param value
+     *      New value of the key.
+     *
+     * @return true if the value was replaced.
      */
-    public float load() {
-        if (table == null || maxCapacity == 0) {
-            return 0;
-        }
-        float loadFactor = (numItems / (float) maxCapacity);
-        return loadFactor;
+    public boolean replace(String key, ArbObj expected, ArbObj value) {
+        if (table == null) return false;
+
+        HashmapNode<ArbObj> target = findNode(strategy.hash(key), key);
+        if (target == null || !Objects.equals(target.getValue(), expected)) return false;
+
+        target.setValue(value);
+        return true;
     }
 
     /**
-     * Function findNextPowerOfTwo will find the closest power of 2 to an integer.
-     * If the integer itself is a power of two, the original integer will be returned.
+     * Function computeIfAbsent will return the value of a key, first mapping an absent
+     * key to a value made by a function. The key's bucket is found once. The function
+     * is not called for a full fixed-capacity map, and a full growable map only grows
+     * once the function has returned a value to add. The function must not modify
+     * this map.
      *
-     * @param paramSize
-     *      The integer to find the closest power of two for.
+     * @param key
+     *      Key whose value is to be returned.
+     * @param mappingFunction
+     *      Makes the value of an absent key; returning null leaves the key absent.
      *
-     * @return int closest power of two to the paramSize
-     * 
+     * @return The value of the key (which may be null for a key already present), or
+     *         null if the key is absent and the map is full or the function gave null.
      */
-    private int findNextPowerOfTwo(int paramSize) {
-        return (int) Math.pow(2, Math.ceil(Math.log(paramSize) / Math.log(2)));
+    public ArbObj computeIfAbsent(String key, Function<? super String, ? extends ArbObj> mappingFunction) {
+        if (mappingFunction == null) throw new NullPointerException("mappingFunction");
+        if (table == null && !allocateTable()) return null;
+
+        int hashVal = strategy.hash(key);
+        if (oldTable != null) migrateStep();
+        Object[] buckets = tableFor(hashVal);
+        int index = hashVal & (buckets.length - 1);
+        HashmapNode<ArbObj> target = getNode(bucket(buckets, index), hashVal, key);
+        if (target != null) return target.getValue();
+        if (isFull()) return null;
+
+        ArbObj value = mappingFunction.apply(key);
+        if (value == null || !addAbsent(buckets, index, hashVal, key, value)) return null;
+        return value;
     }
 
     /**
-     * Class NodeList will serve as the LinkedList connections in each of the underlying 
-     * table indices of the hashmap. This linked list design is how the map avoids
-     * collisions. It consists of HashmapNodes, defined after this class. This will be
-     * a singly linked list.
+     * Function compute will map a key to a value computed from its current value
+     * (null if the key is absent), finding its bucket once. A null result removes the
+     * key. An absent key is not passed to the function when a fixed-capacity map is
+     * full, and a full growable map only grows once the function has returned a value
+     * to add. The function must not modify this map.
      *
-     * Will support the following operations:
-     *  append a HashmapNode
-     *  delete a HashmapNode
-     *  get the first HashmapNode in list
-     *  get the last HashmapNode in list
+     * @param key
+     *      Key whose value is to be computed.
+     * @param remappingFunction
+     *      Computes the new value from the key and its current value.
+     *
+     * @return The new value of the key, or null if the key is now absent.
      */
-    private class NodeList {
-        private HashmapNode front;  // leading node in the linked list
-        private HashmapNode back;   // tail node in the linked list
-        private int size;           // number of nodes in the list
+    public ArbObj compute(String key, BiFunction<? super String, ? super ArbObj, ? extends ArbObj> remappingFunction) {
+        if (remappingFunction == null) throw new NullPointerException("remappingFunction");
+        if (table == null && !allocateTable()) return null;
 
-        /**
-         * Constructor initializes all member variables.
-         */
-        public NodeList() {
-            this.front = null;
-            this.back = null;
-            this.size = 0;
+        int hashVal = strategy.hash(key);
+        if (oldTable != null) migrateStep();
+        Object[] buckets = tableFor(hashVal);
+        int index = hashVal & (buckets.length - 1);
+        HashmapNode<ArbObj> target = getNode(bucket(buckets, index), hashVal, key);
+
+        if (target == null) {
+            if (isFull()) return null;
+
+            ArbObj value = remappingFunction.apply(key, null);
+            if (value == null || !addAbsent(buckets, index, hashVal, key, value)) return null;
+            return value;
         }
 
-        /**
-         * Function append will append a node to the end of the list.
+        ArbObj value = remappingFunction.apply(key, target.getValue());
+        if (value == null) {
+            removeNode(buckets, index, target);
+        } else {
+            target.setValue(value);
+        }
+        return value;
+    }
+
+    /**
+     * Function merge will map an absent key (or one mapped to null) to a value, and
+     * otherwise combine its current value with the value, finding its bucket once.
+     * A null result removes the key, e.g. a counter that drops to zero. An absent key
+     * is not added when the map is full. The function must not modify this map.
+     *
+     * @param key
+     *      Key whose value is to be merged.
+     * @param value
+     *      Value of an absent key, and second argument of the function; not null.
+     * @param remappingFunction
+     *      Combines the current value with value.
+     *
+     * @return The new value of the key, or null if the key is now absent.
+     */
+    public ArbObj merge(String key, ArbObj value,
+                        BiFunction<? super ArbObj, ? super ArbObj, ? extends ArbObj> remappingFunction) {
+        if (value == null) throw new NullPointerException("value");
+        if (remappingFunction == null) throw new NullPointerException("remappingFunction");
+        if (table == null && !allocateTable()) return null;
+
+        int hashVal = strategy.hash(key);
+        if (oldTable != null) migrateStep();
+        Object[] buckets = tableFor(hashVal);
+        int index = hashVal & (buckets.length - 1);
+        HashmapNode<ArbObj> target = getNode(bucket(buckets, index), hashVal, key);
+
+        if (target == null) return addAbsent(buckets, index, hashVal, key, value) ? value : null;
+
+        ArbObj merged = (target.getValue() == null) ? value : remappingFunction.apply(target.getValue(), value);
+        if (merged == null) {
+            removeNode(buckets, index, target);
+        } else {
+            target.setValue(merged);
+        }
+        return merged;
+    }
+
+    /**
+     * Function enableMetrics turns on instrumentation of set(), get() and delete(),
+     * timing one in every 64 operations. Calling it again returns the same metrics.
+     *
+     * @return the metrics of this map.
+     */
+    public PrimHashmapMetrics enableMetrics() {
+        return enableMetrics(64);
+    }
+
+    /**
+     * Function enableMetrics turns on instrumentation of set(), get() and delete().
+     * Calling it again returns the existing metrics, whatever the interval.
+     *
+     * @param sampleInterval
+     *      Time one in this many operations; rounded up to a power of two.
+     *
+     * @return the metrics of this map.
+     */
+    public PrimHashmapMetrics enableMetrics(int sampleInterval) {
+        if (metrics == null) {
+            metrics = new PrimHashmapMetrics(new PrimHashmapMetrics.Source() {
+                public int[] lengthHistogram() {
+                    return chainLengthHistogram();
+                }
+
+                public int getNumItems() {
+                    return numItems;
+                }
+            }, sampleInterval);
+        }
+        return metrics;
+    }
+
+    /**
+     * Function disableMetrics turns instrumentation off again. Metrics obtained
+     * earlier keep their figures but stop changing.
+     */
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * Function getMetrics returns the metrics of this map.
+     *
+     * @return the metrics, or null if they are not enabled.
+     */
+    public PrimHashmapMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Helper function setMeasured is set() with instrumentation on.
+     */
+    private boolean setMeasured(String key, ArbObj value) {
+        long start = metrics.startSample();
+        boolean done = (table != null || allocateTable()) && setHashed(strategy.hash(key), key, value);
+        metrics.recordSet(start, done);
+        return done;
+    }
+
+    /**
+     * Helper function getMeasured is get() with instrumentation on. It looks up the
+     * node rather than the value, so a key mapped to null still counts as a hit.
+     */
+    private ArbObj getMeasured(String key) {
+        long start = metrics.startSample();
+        HashmapNode<ArbObj> target = null;
+        if (table != null) target = findNode(strategy.hash(key), key);
+        metrics.recordGet(start, target != null);
+        return (target == null) ? null : target.getValue();
+    }
+
+    /**
+     * Helper function deleteMeasured is delete() with instrumentation on.
+     */
+    private ArbObj deleteMeasured(String key) {
+        long start = metrics.startSample();
+        int before = numItems;
+        ArbObj deleted = (table == null) ? null : deleteHashed(strategy.hash(key), key);
+        metrics.recordDelete(start, numItems < before);
+        return deleted;
+    }
+
+    /**
+     * Helper function chainLengthHistogram counts the buckets by chain length, with
+     * empty buckets at index 0.
+     */
+    private int[] chainLengthHistogram() {
+        if (table == null) return new int[0];
+
+        // Read-only, so during a resize the unmoved old buckets are counted as well
+        Object[] old = oldTable;
+        int from = (old == null) ? 0 : migrateIndex;
+        int longest = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null) longest = Math.max(longest, bucket(table, i).size);
+        }
+        for (int i = from; old != null && i < old.length; i++) {
+            if (old[i] != null) longest = Math.max(longest, bucket(old, i).size);
+        }
+
+        int[] counts = new int[longest + 1];
+        for (int i = 0; i < table.length; i++) {
+            counts[(table[i] == null) ? 0 : bucket(table, i).size]++;
+        }
+        for (int i = from; old != null && i < old.length; i++) {
+            if (old[i] != null) counts[bucket(old, i).size]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Function setAll will set a batch of key-value pairs in one call. All hashes are
+     * computed up front and the pairs are then applied grouped by bucket index, so
+     * consecutive sets touch neighbouring parts of the table. Pairs that land in the
+     * same bucket keep their batch order, so a key repeated in the batch ends up with
+     * its last value, just like a loop of set() calls.
+     *
+     * If the batch holds more new keys than there is room left, the new keys reached
+     * last in bucket order are the ones rejected; results reports exactly which.
+     *
+     * @param keys
+     *      Keys to set.
+     * @param values
+     *      Values to set, values[i] is the value for keys[i].
+     * @param results
+     *      Optional output, results[i] receives what set(keys[i], values[i]) would
+     *      return. May be null.
+     *
+     * @return number of pairs rejected because the map was full.
+     */
+    public int setAll(String[] keys, ArbObj[] values, boolean[] results) {
+        if (values.length != keys.length) {
+            throw new IllegalArgumentException("keys and values must have the same length");
+        }
+
+        int rejected = 0;
+        if (table == null && !allocateTable()) {
+            if (results != null) Arrays.fill(results, 0, keys.length, false);
+            return keys.length;
+        }
+
+        int[] hashes = new int[keys.length];
+        long[] order = bucketOrder(keys, hashes);
+
+        for (int k = 0; k < keys.length; k++) {
+            int i = (order == null) ? k : (int) order[k];
+            boolean stored = setHashed(hashes[i], keys[i], values[i]);
+            if (!stored) rejected++;
+            if (results != null) results[i] = stored;
+        }
+
+        return rejected;
+    }
+
+    /**
+     * Function getAll will look up a batch of keys in one call, visiting the table in
+     * bucket order like setAll().
+     *
+     * @param keys
+     *      Keys to look up.
+     * @param results
+     *      Output, results[i] receives the value of keys[i], or null if absent.
+     *
+     * @return number of keys found.
+     */
+    public int getAll(String[] keys, ArbObj[] results) {
+        int found = 0;
+        if (table == null) {
+            Arrays.fill(results, 0, keys.length, null);
+            return 0;
+        }
+
+        int[] hashes = new int[keys.length];
+        long[] order = bucketOrder(keys, hashes);
+
+        for (int k = 0; k < keys.length; k++) {
+            int i = (order == null) ? k : (int) order[k];
+            HashmapNode<ArbObj> target = findNode(hashes[i], keys[i]);
+            if (target != null) found++;
+            results[i] = (target == null) ? null : target.getValue();
+        }
+
+        return found;
+    }
+
+    /**
+     * Function deleteAll will delete a batch of keys in one call, visiting the table
+     * in bucket order like setAll().
+     *
+     * @param keys
+     *      Keys to delete.
+     * @param results
+     *      Optional output, results[i] receives the deleted value of keys[i], or null
+     *      if it was absent. May be null.
+     *
+     * @return number of entries deleted.
+     */
+    public int deleteAll(String[] keys, ArbObj[] results) {
+        int deleted = 0;
+        if (table == null) {
+            if (results != null) Arrays.fill(results, 0, keys.length, null);
+            return 0;
+        }
+
+        int[] hashes = new int[keys.length];
+        long[] order = bucketOrder(keys, hashes);
+
+        for (int k = 0; k < keys.length; k++) {
+            int i = (order == null) ? k : (int) order[k];
+            int before = numItems;
+            ArbObj value = deleteHashed(hashes[i], keys[i]);
+            if (numItems < before) deleted++;
+            if (results != null) results[i] = value;
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Helper function for the batch operations. It hashes every key and, for batches
+     * large enough to benefit, returns the batch indices sorted by bucket index. Each
+     * entry packs the bucket index in the high 32 bits and the batch index in the low
+     * 32 bits, so one primitive sort orders by bucket and keeps batch order within it.
+     *
+     * @param keys
+     *      Keys of the batch.
+     * @param hashes
+     *      Output, hashes[i] receives the hash of keys[i].
+     *
+     * @return the sorted order (batch index in the low 32 bits of each entry), or null
+     *         if the batch should simply be applied in order.
+     */
+    private long[] bucketOrder(String[] keys, int[] hashes) {
+        for (int i = 0; i < keys.length; i++) {
+            hashes[i] = strategy.hash(keys[i]);
+        }
+        if (keys.length < BATCH_SORT_THRESHOLD) return null;
+
+        long[] order = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = ((long) findHashIndex(hashes[i]) << 32) | i;
+        }
+        Arrays.sort(order);
+        return order;
+    }
+
+    /**
+     * Function forEach will call an action on every key-value pair in the map, walking
+     * the table directly without creating an iterator or entry objects.
+     *
+     * @param action
+     *      Called with each key and its value. Must not modify the map.
+     */
+    public void forEach(BiConsumer<? super String, ? super ArbObj> action) {
+        for (int i = 0; i < scanLength(); i++) {
+            NodeList list = scanBucket(i);
+            if (list == null) continue;
+
+            for (HashmapNode<ArbObj> iter = list.getFirst(); iter != null; iter = iter.next()) {
+                action.accept(iter.getOriginKey(), iter.getValue());
+            }
+        }
+    }
+
+    /**
+     * Function cursor returns a cursor positioned before the first entry of the map.
+     * A cursor can be rewound with reset() and reused for any number of scans, so a
+     * periodic job needs just one.
+     *
+     * @return a new cursor over this map.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Function freeze copies the current contents into an immutable FrozenPrimHashmap,
+     * laid out for fast lookups and safe to share between threads without locking.
+     * This map stays usable, and later changes to it do not affect the copy.
+     *
+     * @return a frozen copy of this map.
+     */
+    public FrozenPrimHashmap<ArbObj> freeze() {
+        return new FrozenPrimHashmap<ArbObj>(new Cursor(), numItems, strategy);
+    }
+
+    /**
+     * Function keySet returns a read-only view of the keys in the map. The view is
+     * backed by the table, so it reflects later changes and copies nothing.
+     *
+     * @return a Set view of the keys.
+     */
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            public int size() {
+                return numItems;
+            }
+
+            public boolean contains(Object key) {
+                return (key instanceof String) && containsKey((String) key);
+            }
+
+            public Iterator<String> iterator() {
+                return new ViewIterator<String>(true);
+            }
+        };
+    }
+
+    /**
+     * Function values returns a read-only view of the values in the map. The view is
+     * backed by the table, so it reflects later changes and copies nothing.
+     *
+     * @return a Collection view of the values.
+     */
+    public Collection<ArbObj> values() {
+        return new AbstractCollection<ArbObj>() {
+            public int size() {
+                return numItems;
+            }
+
+            public Iterator<ArbObj> iterator() {
+                return new ViewIterator<ArbObj>(false);
+            }
+        };
+    }
+
+    /**
+     * Function parallelForEach will call an action on every key-value pair, using the
+     * common fork-join pool. The table is split into ranges of bucket indices and
+     * each range is walked by one task, so the map must not be modified meanwhile.
+     *
+     * @param action
+     *      Called with each key and its value, possibly from several threads at once.
+     */
+    public void parallelForEach(final BiConsumer<? super String, ? super ArbObj> action) {
+        if (table == null) return;
+
+        invoke(new RangeWork<Void>() {
+            Void leaf(int lo, int hi) {
+                walkRange(lo, hi, action);
+                return null;
+            }
+
+            Void combine(Void left, Void right) {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Function parallelReduce will transform every key-value pair and combine the
+     * results, using the common fork-join pool. Pairs for which the transformer
+     * returns null are skipped.
+     *
+     * @param transformer
+     *      Turns a key and its value into a partial result, or null to skip it.
+     * @param reducer
+     *      Combines two partial results; must be associative.
+     *
+     * @return the combined result, or null if there was nothing to combine.
+     */
+    public <U> U parallelReduce(final BiFunction<? super String, ? super ArbObj, ? extends U> transformer,
+                                final BinaryOperator<U> reducer) {
+        if (table == null) return null;
+
+        return invoke(new RangeWork<U>() {
+            U leaf(int lo, int hi) {
+                U result = null;
+                for (int i = lo; i < hi; i++) {
+                    NodeList list = scanBucket(i);
+                    if (list == null) continue;
+
+                    for (HashmapNode<ArbObj> iter = list.getFirst(); iter != null; iter = iter.next()) {
+                        U mapped = transformer.apply(iter.getOriginKey(), iter.getValue());
+                        if (mapped != null) result = (result == null) ? mapped : reducer.apply(result, mapped);
+                    }
+                }
+                return result;
+            }
+
+            U combine(U left, U right) {
+                if (left == null) return right;
+                if (right == null) return left;
+                return reducer.apply(left, right);
+            }
+        });
+    }
+
+    /**
+     * Function parallelSearch will look for a key-value pair for which the search
+     * function returns a non-null result, using the common fork-join pool. As soon as
+     * one task finds a result, the others stop scanning.
+     *
+     * @param searchFunction
+     *      Returns a non-null result for a matching pair, null otherwise.
+     *
+     * @return a non-null result from some matching pair (not necessarily the first in
+     *         table order), or null if no pair matches.
+     */
+    public <U> U parallelSearch(final BiFunction<? super String, ? super ArbObj, ? extends U> searchFunction) {
+        if (table == null) return null;
+
+        final AtomicReference<U> found = new AtomicReference<U>();
+        invoke(new RangeWork<Void>() {
+            Void leaf(int lo, int hi) {
+                for (int i = lo; i < hi && found.get() == null; i++) {
+                    NodeList list = scanBucket(i);
+                    if (list == null) continue;
+
+                    for (HashmapNode<ArbObj> iter = list.getFirst(); iter != null; iter = iter.next()) {
+                        U result = searchFunction.apply(iter.getOriginKey(), iter.getValue());
+                        if (result != null) {
+                            found.compareAndSet(null, result);
+                            return null;
+                        }
+                    }
+                }
+                return null;
+            }
+
+            Void combine(Void left, Void right) {
+                return null;
+            }
+
+            boolean cancelled() {
+                return found.get() != null;
+            }
+        });
+
+        return found.get();
+    }
+
+    /**
+     * Function spliterator returns a Spliterator over the entries of the map. It
+     * splits the table into halves of bucket indices, so parallel streams get
+     * balanced work. The top-level spliterator is SIZED from the item count.
+     *
+     * @return a Spliterator over the map's entries.
+     */
+    public Spliterator<Map.Entry<String, ArbObj>> spliterator() {
+        return new TableSpliterator(0, scanLength(), numItems, true);
+    }
+
+    /**
+     * Function stream returns a sequential Stream over the entries of the map. Call
+     * parallel() on it to process the entries on several cores.
+     *
+     * @return a Stream over the map's entries.
+     */
+    public Stream<Map.Entry<String, ArbObj>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Helper function invoke runs a bulk operation over the whole table on the common
+     * fork-join pool. Small tables are handled on the calling thread.
+     */
+    private <R> R invoke(RangeWork<R> work) {
+        int length = scanLength();
+        if (length <= PARALLEL_LEAF) return work.leaf(0, length);
+        return ForkJoinPool.commonPool().invoke(new RangeTask<R>(work, 0, length));
+    }
+
+    /**
+     * Helper function scanLength counts the bucket positions a full scan walks: the
+     * current table, followed during a resize by the old table.
+     */
+    private int scanLength() {
+        if (table == null) return 0;
+        return (oldTable == null) ? table.length : table.length + oldTable.length;
+    }
+
+    /**
+     * Helper function scanBucket returns the bucket at a scan position. Old buckets
+     * that were already moved read as empty, so every key is seen exactly once, and
+     * nothing is moved: scans never write to the map.
+     */
+    private NodeList scanBucket(int position) {
+        if (position < table.length) return bucket(table, position);
+
+        int index = position - table.length;
+        return (index >= migrateIndex) ? bucket(oldTable, index) : null;
+    }
+
+    /**
+     * Helper function walkRange calls an action on every entry in a range of buckets.
+     *
+     * @param lo
+     *      First bucket index, inclusive.
+     * @param hi
+     *      Last bucket index, exclusive.
+     * @param action
+     *      Called with each key and its value.
+     */
+    private void walkRange(int lo, int hi, BiConsumer<? super String, ? super ArbObj> action) {
+        for (int i = lo; i < hi; i++) {
+            NodeList list = scanBucket(i);
+            if (list == null) continue;
+
+            for (HashmapNode<ArbObj> iter = list.getFirst(); iter != null; iter = iter.next()) {
+                action.accept(iter.getOriginKey(), iter.getValue());
+            }
+        }
+    }
+
+    /**
+     * Function containsKey tells whether a key is present in the map, even when it
+     * is mapped to null.
+     *
+     * @param key
+     *      The key to look for.
+     *
+     * @return true if the key is in the map.
+     */
+    public boolean containsKey(String key) {
+        if (table == null) return false;
+
+        return findNode(strategy.hash(key), key) != null;
+    }
+
+    /**
+     * Function findHashIndex will return a unique index in the table for a hash value.
+     *
+     * @param hashVal
+     *      A String's hash, from the map's HashStrategy.
+     *
+     * @return The index in the underlying table where this string will be hashed.
+     * 
+     */
+    private int findHashIndex(int hashVal) {
+        return hashVal & (table.length-1);
+    }
+
+    /**
+     * Function load will return the load factor (numItems/capacity) of the hashmap.
+     *
+     * @return Load factor as described above in float format.
+     * 
+     */
+    public float load() {
+        if (table == null || maxCapacity == 0) {
+            return 0;
+        }
+        float loadFactor = (numItems / (float) maxCapacity);
+        return loadFactor;
+    }
+
+    /**
+     * Function findNextPowerOfTwo will find the closest power of 2 to an integer.
+     * If the integer itself is a power of two, the original integer will be returned.
+     * Uses integer bit arithmetic only, so it is exact right up to 2^30, the largest
+     * power of two an array can hold; sizes 0 and below give 0.
+     *
+     * @param paramSize
+     *      The integer to find the closest power of two for.
+     *
+     * @return int closest power of two to the paramSize
+     * 
+     */
+    static int findNextPowerOfTwo(int paramSize) {
+        if (paramSize <= 1) return Math.max(paramSize, 0);
+        if (paramSize > MAX_TABLE_SIZE) return MAX_TABLE_SIZE;
+
+        return Integer.highestOneBit(paramSize - 1) << 1;
+    }
+
+    /**
+     * Class Cursor walks the entries of the map in table order. It holds nothing but
+     * its position, so advancing allocates nothing. The map must not be modified
+     * while a scan is in progress.
+     *
+     * Will support the following operations:
+     *  advance to the next entry
+     *  get the key and value of the current entry
+     *  reset to before the first entry
+     */
+    public final class Cursor {
+
+        private int bucket;                 // scan position of the current bucket
+        private HashmapNode<ArbObj> node;   // current entry, null before/after a scan
+
+        /**
+         * Constructor Cursor positions the cursor before the first entry.
+         */
+        private Cursor() {
+            reset();
+        }
+
+        /**
+         * Function advance moves the cursor to the next entry.
+         *
+         * @return true if the cursor is on an entry, false once every entry was seen.
+         */
+        public boolean advance() {
+            if (node != null) node = node.next();
+
+            while (node == null) {
+                if (bucket + 1 >= scanLength()) {
+                    bucket = scanLength();
+                    return false;
+                }
+
+                NodeList list = scanBucket(++bucket);
+                if (list != null) node = list.getFirst();
+            }
+
+            return true;
+        }
+
+        /**
+         * Function key returns the key of the current entry.
+         *
+         * @return String key of the entry the cursor is on.
+         */
+        public String key() {
+            return current().getOriginKey();
+        }
+
+        /**
+         * Function value returns the value of the current entry.
+         *
+         * @return value of the entry the cursor is on.
+         */
+        public ArbObj value() {
+            return current().getValue();
+        }
+
+        /**
+         * Function reset moves the cursor back before the first entry.
+         */
+        public void reset() {
+            bucket = -1;
+            node = null;
+        }
+
+        /**
+         * Function hash returns the cached hash of the current entry's key.
+         *
+         * @return hash of the key of the entry the cursor is on.
+         */
+        int hash() {
+            return current().getHash();
+        }
+
+        /**
+         * Helper function current returns the current node, or throws if the cursor
+         * is not on an entry.
+         */
+        private HashmapNode<ArbObj> current() {
+            if (node == null) {
+                throw new IllegalStateException("Cursor is not on an entry, call advance()");
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Class ViewIterator drives the keySet() and values() views with a Cursor, so
+     * an iteration allocates one iterator and no per-element objects.
+     */
+    private final class ViewIterator<T> implements Iterator<T> {
+
+        private final Cursor cursor = new Cursor(); // position in the table
+        private final boolean keys;                 // true for keys, false for values
+        private boolean ready;                      // true if cursor is on the next element
+        private boolean more;                       // result of the last advance()
+
+        /**
+         * Constructor ViewIterator starts before the first entry.
+         *
+         * @param keys
+         *      true to return keys, false to return values.
+         */
+        ViewIterator(boolean keys) {
+            this.keys = keys;
+        }
+
+        public boolean hasNext() {
+            if (!ready) {
+                more = cursor.advance();
+                ready = true;
+            }
+            return more;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            ready = false;
+            return keys ? (T) cursor.key() : (T) cursor.value();
+        }
+    }
+
+    /**
+     * Class RangeWork describes one parallel bulk operation: what to do with a range
+     * of buckets and how to merge the results of two adjacent ranges.
+     */
+    private abstract class RangeWork<R> {
+
+        /**
+         * Function leaf processes the buckets [lo, hi) on the current thread.
+         */
+        abstract R leaf(int lo, int hi);
+
+        /**
+         * Function combine merges the results of two adjacent ranges.
+         */
+        abstract R combine(R left, R right);
+
+        /**
+         * Function cancelled lets a search stop splitting once it has a result.
+         */
+        boolean cancelled() {
+            return false;
+        }
+    }
+
+    /**
+     * Class RangeTask is the fork-join task behind the parallel bulk operations. It
+     * halves its range of bucket indices until the range is at most PARALLEL_LEAF
+     * buckets, then hands each piece to the RangeWork.
+     */
+    private final class RangeTask<R> extends RecursiveTask<R> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RangeWork<R> work;
+        private final int lo;   // first bucket index, inclusive
+        private final int hi;   // last bucket index, exclusive
+
+        /**
+         * Constructor RangeTask covers the buckets [lo, hi).
+         */
+        RangeTask(RangeWork<R> work, int lo, int hi) {
+            this.work = work;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected R compute() {
+            if (hi - lo <= PARALLEL_LEAF || work.cancelled()) return work.leaf(lo, hi);
+
+            int mid = (lo + hi) >>> 1;
+            RangeTask<R> right = new RangeTask<R>(work, mid, hi);
+            right.fork();
+            R left = new RangeTask<R>(work, lo, mid).compute();
+            return work.combine(left, right.join());
+        }
+    }
+
+    /**
+     * Class TableSpliterator covers a range of bucket indices. trySplit() hands the
+     * lower half of the remaining range to a new spliterator. Only the top-level
+     * spliterator knows its exact size; split halves report an estimate, since the
+     * entries are not spread evenly over the buckets.
+     */
+    private final class TableSpliterator implements Spliterator<Map.Entry<String, ArbObj>> {
+
+        private int index;                  // next bucket to visit
+        private int fence;                  // one past the last bucket to visit
+        private HashmapNode<ArbObj> node;   // next entry within the current bucket
+        private long estimate;              // (estimated) number of remaining entries
+        private boolean exact;              // true while estimate is the exact size
+
+        /**
+         * Constructor TableSpliterator covers the buckets [index, fence).
+         */
+        TableSpliterator(int index, int fence, long estimate, boolean exact) {
+            this.index = index;
+            this.fence = fence;
+            this.estimate = estimate;
+            this.exact = exact;
+        }
+
+        public boolean tryAdvance(Consumer<? super Map.Entry<String, ArbObj>> action) {
+            while (node == null) {
+                if (index >= fence) return false;
+
+                NodeList list = scanBucket(index++);
+                if (list != null) node = list.getFirst();
+            }
+
+            HashmapNode<ArbObj> current = node;
+            node = node.next();
+            action.accept(new AbstractMap.SimpleImmutableEntry<String, ArbObj>(
+                    current.getOriginKey(), current.getValue()));
+            return true;
+        }
+
+        public Spliterator<Map.Entry<String, ArbObj>> trySplit() {
+            // Only split ranges that have not been started and are worth splitting
+            if (node != null || fence - index <= PARALLEL_LEAF) return null;
+
+            int mid = (index + fence) >>> 1;
+            estimate >>>= 1;
+            exact = false;
+
+            TableSpliterator lower = new TableSpliterator(index, mid, estimate, false);
+            index = mid;
+            return lower;
+        }
+
+        public long estimateSize() {
+            return estimate;
+        }
+
+        public int characteristics() {
+            return Spliterator.DISTINCT | Spliterator.NONNULL | (exact ? Spliterator.SIZED : 0);
+        }
+    }
+
+    /**
+     * Class NodeList will serve as the LinkedList connections in each of the underlying 
+     * table indices of the hashmap. This linked list design is how the map avoids
+     * collisions. It consists of HashmapNodes, defined after this class. This will be
+     * a doubly linked list.
+     *
+     * Will support the following operations:
+     *  append a HashmapNode
+     *  delete a HashmapNode in constant time
+     *  check whether the list is empty
+     *  get the first HashmapNode in list
+     *  get the last HashmapNode in list
+     *  find the HashmapNode holding a key
+     */
+    private class NodeList {
+        private HashmapNode<ArbObj> front;  // leading node in the linked list
+        private HashmapNode<ArbObj> back;   // tail node in the linked list
+        private int size;                   // number of nodes in the list
+
+        /**
+         * Constructor initializes all member variables.
+         */
+        public NodeList() {
+            this.front = null;
+            this.back = null;
+            this.size = 0;
+        }
+
+        /**
+         * Function append will append a node to the end of the list.
          *
          * @param node
          *      Reference to the node to add to the end of this list.
          *
          */
-        private void append(HashmapNode node) {
+        void append(HashmapNode<ArbObj> node) {
 
             if (front == null) {
                 // If first node, create front and back
@@ -316,7 +1669,7 @@ public class PrimHashmap<ArbObj> {
             } else {
                 // Else, append to tail.
                 back.setNext(node);
-                node.prevNode = back;
+                node.setPrev(back);
                 back = node;
             }
 
@@ -324,35 +1677,43 @@ public class PrimHashmap<ArbObj> {
         }
 
         /**
-         * Function deleteNode will find and delete a node in the list. If it cannot
-         * find the node, it will do nothing.
+         * Function deleteNode will unlink a node from the list in constant time, using
+         * the node's own prev/next pointers. The node must belong to this list.
          *
          * @param node
-         *      The reference to the node in the list to delete, if it exists.
+         *      The reference to the node in the list to delete.
          *
          */
-        private void deleteNode(HashmapNode node) {
-
-            if (front == null) return;
+        void deleteNode(HashmapNode<ArbObj> node) {
+            HashmapNode<ArbObj> prev = node.prev();
+            HashmapNode<ArbObj> next = node.next();
 
-            HashmapNode iter = front;
+            // Manipulate pointers around node to delete from list
+            if (prev == null) {
+                front = next;
+            } else {
+                prev.setNext(next);
+            }
 
-            // Iterate through the list until the node with the same origin
-            // key is found
-            while (iter != null) {
-                if (iter.getOriginKey().equals(node.getOriginKey())) {
+            if (next == null) {
+                back = prev;
+            } else {
+                next.setPrev(prev);
+            }
 
-                    // Manipulate pointers around node to delete from list
-                    HashmapNode prev = iter.prev();
-                    if (prev == null) {
-                        front = iter.next();
-                    } else {
-                        prev.setNext(iter.next());
-                    }
-                }
+            node.setNext(null);
+            node.setPrev(null);
+            size--;
+        }
 
-                iter = iter.next();
-            }
+        /**
+         * Function isEmpty will tell whether the list holds no nodes.
+         *
+         * @return true if the list is empty.
+         *
+         */
+        public boolean isEmpty() {
+            return size == 0;
         }
 
         /**
@@ -361,7 +1722,7 @@ public class PrimHashmap<ArbObj> {
          * @return reference to front node.
          *
          */
-        public HashmapNode getFirst() {
+        public HashmapNode<ArbObj> getFirst() {
             return front;
         }
 
@@ -371,9 +1732,243 @@ public class PrimHashmap<ArbObj> {
          * @return reference to back node.
          *
          */
-        public HashmapNode getLast() {
+        public HashmapNode<ArbObj> getLast() {
             return back;
         }
+
+        /**
+         * Function isTree will tell whether this bucket is a TreeBucket.
+         *
+         * @return false for a plain list.
+         *
+         */
+        boolean isTree() {
+            return false;
+        }
+
+        /**
+         * Function takeOver will make this empty list hold the nodes of another list,
+         * without copying or relinking them.
+         *
+         * @param other
+         *      The list whose nodes to take; it must not be used afterwards.
+         *
+         */
+        void takeOver(NodeList other) {
+            this.front = other.front;
+            this.back = other.back;
+            this.size = other.size;
+        }
+
+        /**
+         * Function find will scan the list for the node holding a key.
+         *
+         * @param hashVal
+         *      The key's hash, from the map's HashStrategy.
+         * @param key
+         *      The key to look for.
+         *
+         * @return the node holding the key, or null.
+         *
+         */
+        HashmapNode<ArbObj> find(int hashVal, String key) {
+            // Iterates through list and finds value with this origin key
+            for (HashmapNode<ArbObj> iter = front; iter != null; iter = iter.next()) {
+                if (iter.getHash() == hashVal && iter.getOriginKey().equals(key)) {
+                    return iter;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Class TreeBucket is a NodeList with an AVL tree on top, used for buckets whose
+     * chain grew past TREEIFY_THRESHOLD. The nodes stay linked in the list, so
+     * iteration does not change; the tree indexes them by (hash, key), which bounds
+     * find, append and deleteNode at O(log n) even when every key in the bucket has
+     * the same hash. Buckets shrinking below UNTREEIFY_THRESHOLD drop the tree again.
+     */
+    private final class TreeBucket extends NodeList {
+        private TreeEntry root;     // root of the AVL index over the list's nodes
+
+        /**
+         * Constructor TreeBucket takes over the nodes of a list and indexes them.
+         *
+         * @param list
+         *      The list to treeify; it must not be used afterwards.
+         */
+        TreeBucket(NodeList list) {
+            super();
+            for (HashmapNode<ArbObj> iter = list.getFirst(); iter != null; iter = iter.next()) {
+                root = insert(root, iter);
+            }
+            takeOver(list);
+        }
+
+        @Override
+        void append(HashmapNode<ArbObj> node) {
+            super.append(node);
+            root = insert(root, node);
+        }
+
+        @Override
+        void deleteNode(HashmapNode<ArbObj> node) {
+            root = remove(root, node.getHash(), node.getOriginKey());
+            super.deleteNode(node);
+        }
+
+        @Override
+        boolean isTree() {
+            return true;
+        }
+
+        @Override
+        HashmapNode<ArbObj> find(int hashVal, String key) {
+            TreeEntry entry = root;
+            while (entry != null) {
+                int order = compare(hashVal, key, entry.node);
+                if (order == 0) return entry.node;
+
+                entry = (order < 0) ? entry.left : entry.right;
+            }
+            return null;
+        }
+
+        /**
+         * Function untreeify hands the nodes back to a plain list.
+         *
+         * @return a NodeList holding the same nodes in the same order.
+         */
+        NodeList untreeify() {
+            NodeList list = new NodeList();
+            list.takeOver(this);
+            return list;
+        }
+
+        /**
+         * Helper function compare orders a (hash, key) pair against a node: by hash
+         * first, then by key, so keys with equal hashes still have a total order.
+         */
+        private int compare(int hashVal, String key, HashmapNode<ArbObj> node) {
+            int order = Integer.compare(hashVal, node.getHash());
+            return (order != 0) ? order : key.compareTo(node.getOriginKey());
+        }
+
+        /**
+         * Helper function insert adds a node below an entry and rebalances.
+         */
+        private TreeEntry insert(TreeEntry entry, HashmapNode<ArbObj> node) {
+            if (entry == null) return new TreeEntry(node);
+
+            if (compare(node.getHash(), node.getOriginKey(), entry.node) < 0) {
+                entry.left = insert(entry.left, node);
+            } else {
+                entry.right = insert(entry.right, node);
+            }
+            return rebalance(entry);
+        }
+
+        /**
+         * Helper function remove deletes the entry for a (hash, key) pair below an
+         * entry and rebalances.
+         */
+        private TreeEntry remove(TreeEntry entry, int hashVal, String key) {
+            if (entry == null) return null;
+
+            int order = compare(hashVal, key, entry.node);
+            if (order < 0) {
+                entry.left = remove(entry.left, hashVal, key);
+            } else if (order > 0) {
+                entry.right = remove(entry.right, hashVal, key);
+            } else {
+                if (entry.left == null) return entry.right;
+                if (entry.right == null) return entry.left;
+
+                // Replace with the smallest entry of the right subtree
+                TreeEntry successor = entry.right;
+                while (successor.left != null) successor = successor.left;
+                entry.node = successor.node;
+                entry.right = remove(entry.right, successor.node.getHash(), successor.node.getOriginKey());
+            }
+            return rebalance(entry);
+        }
+
+        /**
+         * Helper function rebalance restores the AVL height invariant at an entry
+         * whose subtrees differ in height by at most two.
+         */
+        private TreeEntry rebalance(TreeEntry entry) {
+            updateHeight(entry);
+            int balance = heightOf(entry.left) - heightOf(entry.right);
+
+            if (balance > 1) {
+                if (heightOf(entry.left.left) < heightOf(entry.left.right)) {
+                    entry.left = rotateLeft(entry.left);
+                }
+                return rotateRight(entry);
+            }
+            if (balance < -1) {
+                if (heightOf(entry.right.right) < heightOf(entry.right.left)) {
+                    entry.right = rotateRight(entry.right);
+                }
+                return rotateLeft(entry);
+            }
+            return entry;
+        }
+
+        /**
+         * Helper function heightOf returns the height of a subtree, 0 if empty.
+         */
+        private int heightOf(TreeEntry entry) {
+            return (entry == null) ? 0 : entry.height;
+        }
+
+        /**
+         * Helper function updateHeight recomputes an entry's height from its children.
+         */
+        private void updateHeight(TreeEntry entry) {
+            entry.height = Math.max(heightOf(entry.left), heightOf(entry.right)) + 1;
+        }
+
+        private TreeEntry rotateLeft(TreeEntry entry) {
+            TreeEntry pivot = entry.right;
+            entry.right = pivot.left;
+            pivot.left = entry;
+            updateHeight(entry);
+            updateHeight(pivot);
+            return pivot;
+        }
+
+        private TreeEntry rotateRight(TreeEntry entry) {
+            TreeEntry pivot = entry.left;
+            entry.left = pivot.right;
+            pivot.right = entry;
+            updateHeight(entry);
+            updateHeight(pivot);
+            return pivot;
+        }
+    }
+
+    /**
+     * Class TreeEntry is one entry of a TreeBucket's AVL index, pointing at a node
+     * of the bucket's list.
+     */
+    private final class TreeEntry {
+        private HashmapNode<ArbObj> node;   // node this entry indexes
+        private TreeEntry left;             // entries ordered before this one
+        private TreeEntry right;            // entries ordered after this one
+        private int height;                 // height of the subtree rooted here, 1 for a leaf
+
+        /**
+         * Constructor TreeEntry creates a leaf for a node.
+         */
+        TreeEntry(HashmapNode<ArbObj> node) {
+            this.node = node;
+            this.height = 1;
+        }
+
     }
 
     /**
@@ -386,26 +1981,32 @@ public class PrimHashmap<ArbObj> {
      *      getting the previous node in its list
      *      getting the next node in its list
      *      setting the next node to this one
+     *      setting the previous node to this one
      *      getting the String key origin of the value in this node
+     *      getting the cached hash of the key origin
      *      getting the value stored in this node.
      *      setting the value stored in this node.
      */
     private class HashmapNode<ArbObj> {
 
-        private HashmapNode nextNode;   // reference to next node in list
-        private HashmapNode prevNode;   // reference to prev node in list
-        private String fromKey;         // origin key for this value
-        private ArbObj value;           // value stored in the node.
+        private HashmapNode<ArbObj> nextNode;   // reference to next node in list
+        private HashmapNode<ArbObj> prevNode;   // reference to prev node in list
+        private final int hash;                 // cached hash of the origin key
+        private String fromKey;                 // origin key for this value
+        private ArbObj value;                   // value stored in the node.
 
         /**
          * Constructor HashmapNode will initialize all member variables.
          *
+         * @param hash
+         *      The hash of the origin key, cached to skip equals() on mismatch.
          * @param fromKey 
          *      The origin key for the value stored in this node.
          * @param value
          *      The value to be stored in this hashmap node.
          */
-        public HashmapNode(String fromKey, ArbObj value) {
+        public HashmapNode(int hash, String fromKey, ArbObj value) {
+            this.hash = hash;
             this.fromKey = fromKey;
             this.value = value;
             this.nextNode = null;
@@ -417,7 +2018,7 @@ public class PrimHashmap<ArbObj> {
          *
          * @return reference to previous node in the list, or null if no prev.
          */
-        public HashmapNode prev() {
+        public HashmapNode<ArbObj> prev() {
             return this.prevNode;
         }
 
@@ -426,7 +2027,7 @@ public class PrimHashmap<ArbObj> {
          *
          * @return reference to next node in the list, or null if no next.
          */
-        public HashmapNode next() {
+        public HashmapNode<ArbObj> next() {
             return this.nextNode;
         }
 
@@ -436,10 +2037,20 @@ public class PrimHashmap<ArbObj> {
          * @param next
          *      Reference to the HashmapNode to set as the next node in the list.
          */
-        public void setNext(HashmapNode next) {
+        public void setNext(HashmapNode<ArbObj> next) {
             this.nextNode = next;
         }
 
+        /**
+         * Function setPrev sets the previous node to the current node in the list.
+         *
+         * @param prev
+         *      Reference to the HashmapNode to set as the previous node in the list.
+         */
+        public void setPrev(HashmapNode<ArbObj> prev) {
+            this.prevNode = prev;
+        }
+
         /**
          * Function getOriginKey returns the origin key for the value stored in this node.
          *
@@ -449,6 +2060,15 @@ public class PrimHashmap<ArbObj> {
             return this.fromKey;
         }
 
+        /**
+         * Function getHash returns the cached hash of the origin key.
+         *
+         * @return hash of the String key for the value stored in the node.
+         */
+        public int getHash() {
+            return this.hash;
+        }
+
         /**
          * Function getValue() returns the value stored in this node.
          *
@@ -0,0 +1,366 @@
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class PrimHashmapMetrics holds the optional instrumentation of a PrimHashmap or
+ * PrimProbeHashmap, obtained from the map's enableMetrics(). A map without metrics
+ * only pays a null check per operation.
+ *
+ * Counted on every single-key operation: get hits and misses, sets, sets rejected
+ * because the map was full, and deletes. Batch and bulk operations are not counted.
+ *
+ * Sampled: one operation in every sampleInterval is timed with System.nanoTime()
+ * and recorded in a LatencyHistogram per operation type, which keeps the timing
+ * cost off most calls.
+ *
+ * Computed on demand: chain (or probe) length distribution and the empty bucket
+ * ratio, by one pass over the table when snapshot() or a JMX getter asks for them.
+ *
+ * The figures can be read through snapshot(), or exported as a JMX MBean with
+ * register(). Like the maps, the counters are written without synchronization;
+ * readers on other threads see approximate values while the map is in use.
+ */
+public final class PrimHashmapMetrics implements PrimHashmapMetricsMBean {
+
+    static final long NOT_SAMPLED = Long.MIN_VALUE; // startSample() result when not timed
+
+    /**
+     * Interface Source is implemented by the maps so that chain statistics can be
+     * computed on demand.
+     */
+    interface Source {
+
+        /**
+         * Function lengthHistogram counts table positions by chain or probe length.
+         *
+         * @return counts, where [0] is the number of empty buckets or slots and [k]
+         *         the number of chains (or entries) of length k.
+         */
+        int[] lengthHistogram();
+
+        /**
+         * Function getNumItems returns the number of items in the map.
+         */
+        int getNumItems();
+    }
+
+    private final Source source;          // map being measured
+    private final int sampleMask;         // time an operation when (ops & mask) == 0
+    private ObjectName registeredName;    // name under which register() exported this
+
+    private long ops;                     // operations seen, for sampling
+    private long hits;                    // get() calls that found their key
+    private long misses;                  // get() calls that did not
+    private long sets;                    // set() calls accepted
+    private long setRejections;           // set() calls rejected at full capacity
+    private long deletes;                 // delete() calls that removed an entry
+
+    private final LatencyHistogram getLatency = new LatencyHistogram();
+    private final LatencyHistogram setLatency = new LatencyHistogram();
+    private final LatencyHistogram deleteLatency = new LatencyHistogram();
+
+    /**
+     * Constructor PrimHashmapMetrics measures a map, timing one operation in every
+     * sampleInterval.
+     *
+     * @param source
+     *      The map being measured.
+     * @param sampleInterval
+     *      Time one in this many operations; rounded up to a power of two.
+     */
+    PrimHashmapMetrics(Source source, int sampleInterval) {
+        if (sampleInterval < 1) throw new IllegalArgumentException("Sample interval must be positive");
+
+        this.source = source;
+        this.sampleMask = PrimHashmap.findNextPowerOfTwo(sampleInterval) - 1;
+    }
+
+    /**
+     * Function startSample decides whether the operation about to run is timed.
+     *
+     * @return the start time, or NOT_SAMPLED.
+     */
+    long startSample() {
+        return ((ops++ & sampleMask) == 0) ? System.nanoTime() : NOT_SAMPLED;
+    }
+
+    /**
+     * Function recordGet counts a get() and records its latency if sampled.
+     */
+    void recordGet(long start, boolean hit) {
+        if (hit) hits++; else misses++;
+        if (start != NOT_SAMPLED) getLatency.recordValue(System.nanoTime() - start);
+    }
+
+    /**
+     * Function recordSet counts a set() and records its latency if sampled.
+     */
+    void recordSet(long start, boolean accepted) {
+        if (accepted) sets++; else setRejections++;
+        if (start != NOT_SAMPLED) setLatency.recordValue(System.nanoTime() - start);
+    }
+
+    /**
+     * Function recordDelete counts a delete() and records its latency if sampled.
+     */
+    void recordDelete(long start, boolean removed) {
+        if (removed) deletes++;
+        if (start != NOT_SAMPLED) deleteLatency.recordValue(System.nanoTime() - start);
+    }
+
+    /**
+     * Function snapshot copies every figure, computing the chain statistics with one
+     * pass over the table.
+     *
+     * @return an immutable Snapshot.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this, source.lengthHistogram());
+    }
+
+    /**
+     * Function register exports these metrics to the platform MBean server.
+     *
+     * @param name
+     *      JMX object name, e.g. "kpcb:type=PrimHashmap,name=sessions".
+     *
+     * @return the ObjectName it was registered under.
+     */
+    public synchronized ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        registeredName = objectName;
+        return objectName;
+    }
+
+    /**
+     * Function unregister removes these metrics from the platform MBean server, if
+     * register() was called.
+     */
+    public synchronized void unregister() throws JMException {
+        if (registeredName == null) return;
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(registeredName)) server.unregisterMBean(registeredName);
+        registeredName = null;
+    }
+
+    /**
+     * Function reset zeroes every counter and histogram.
+     */
+    public void reset() {
+        ops = 0;
+        hits = 0;
+        misses = 0;
+        sets = 0;
+        setRejections = 0;
+        deletes = 0;
+        getLatency.reset();
+        setLatency.reset();
+        deleteLatency.reset();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return (lookups == 0) ? 0 : (double) hits / lookups;
+    }
+
+    public long getSets() {
+        return sets;
+    }
+
+    public long getSetRejections() {
+        return setRejections;
+    }
+
+    public long getDeletes() {
+        return deletes;
+    }
+
+    public int getNumItems() {
+        return source.getNumItems();
+    }
+
+    public int getMaxChainLength() {
+        return snapshot().getMaxChainLength();
+    }
+
+    public int getChainLength50() {
+        return snapshot().getChainLengthAtPercentile(50);
+    }
+
+    public int getChainLength99() {
+        return snapshot().getChainLengthAtPercentile(99);
+    }
+
+    public double getEmptyBucketRatio() {
+        return snapshot().getEmptyBucketRatio();
+    }
+
+    public int getSampleInterval() {
+        return sampleMask + 1;
+    }
+
+    public long getGetLatency50Nanos() {
+        return getLatency.getValueAtPercentile(50);
+    }
+
+    public long getGetLatency99Nanos() {
+        return getLatency.getValueAtPercentile(99);
+    }
+
+    public long getGetLatencyMaxNanos() {
+        return getLatency.getMaxValue();
+    }
+
+    public long getSetLatency50Nanos() {
+        return setLatency.getValueAtPercentile(50);
+    }
+
+    public long getSetLatency99Nanos() {
+        return setLatency.getValueAtPercentile(99);
+    }
+
+    public long getSetLatencyMaxNanos() {
+        return setLatency.getMaxValue();
+    }
+
+    /**
+     * Class Snapshot is an immutable copy of the metrics at one point in time.
+     */
+    public static final class Snapshot {
+
+        private final long hits;
+        private final long misses;
+        private final long sets;
+        private final long setRejections;
+        private final long deletes;
+        private final int numItems;
+        private final int[] lengths;           // table positions by chain length
+        private final int buckets;             // number of buckets (or slots)
+        private final int chains;              // number of non-empty chains counted
+        private final LatencyHistogram getLatency;
+        private final LatencyHistogram setLatency;
+        private final LatencyHistogram deleteLatency;
+
+        /**
+         * Constructor Snapshot copies the counters of a metrics object.
+         */
+        private Snapshot(PrimHashmapMetrics metrics, int[] lengths) {
+            this.hits = metrics.hits;
+            this.misses = metrics.misses;
+            this.sets = metrics.sets;
+            this.setRejections = metrics.setRejections;
+            this.deletes = metrics.deletes;
+            this.numItems = metrics.source.getNumItems();
+            this.lengths = lengths;
+            this.getLatency = metrics.getLatency.copy();
+            this.setLatency = metrics.setLatency.copy();
+            this.deleteLatency = metrics.deleteLatency.copy();
+
+            int chainCount = 0;
+            for (int i = 1; i < lengths.length; i++) {
+                chainCount += lengths[i];
+            }
+            this.chains = chainCount;
+            this.buckets = (lengths.length == 0) ? 0 : lengths[0] + chainCount;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getSets() {
+            return sets;
+        }
+
+        public long getSetRejections() {
+            return setRejections;
+        }
+
+        public long getDeletes() {
+            return deletes;
+        }
+
+        public int getNumItems() {
+            return numItems;
+        }
+
+        /**
+         * Function getMaxChainLength returns the longest chain (or probe sequence).
+         */
+        public int getMaxChainLength() {
+            for (int i = lengths.length - 1; i > 0; i--) {
+                if (lengths[i] != 0) return i;
+            }
+            return 0;
+        }
+
+        /**
+         * Function getChainLengthAtPercentile finds the chain length that the given
+         * percentage of non-empty chains (or, for probing, entries) are at or below.
+         *
+         * @param percentile
+         *      A percentage between 0 and 100.
+         *
+         * @return that length, or 0 if the map is empty.
+         */
+        public int getChainLengthAtPercentile(double percentile) {
+            if (chains == 0) return 0;
+
+            double clamped = Math.min(100, Math.max(0, percentile));
+            long rank = Math.max(1, (long) Math.ceil(clamped / 100 * chains));
+            long seen = 0;
+            for (int i = 1; i < lengths.length; i++) {
+                seen += lengths[i];
+                if (seen >= rank) return i;
+            }
+            return getMaxChainLength();
+        }
+
+        /**
+         * Function getEmptyBucketRatio returns the fraction of buckets (or slots)
+         * that hold nothing.
+         */
+        public double getEmptyBucketRatio() {
+            return (buckets == 0) ? 0 : (double) lengths[0] / buckets;
+        }
+
+        /**
+         * Function getChainLengthCounts returns a copy of the raw distribution: [0] is
+         * the number of empty buckets, [k] the number of chains of length k.
+         */
+        public int[] getChainLengthCounts() {
+            return lengths.clone();
+        }
+
+        public LatencyHistogram getGetLatency() {
+            return getLatency.copy();
+        }
+
+        public LatencyHistogram getSetLatency() {
+            return setLatency.copy();
+        }
+
+        public LatencyHistogram getDeleteLatency() {
+            return deleteLatency.copy();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Interface PrimHashmapMetricsMBean lists the figures PrimHashmapMetrics exports
+ * over JMX. Latencies are in nanoseconds and come from sampled operations only.
+ * Chain lengths are chain lengths for PrimHashmap and probe lengths (slots
+ * inspected to find an entry) for PrimProbeHashmap.
+ */
+public interface PrimHashmapMetricsMBean {
+
+    long getHits();
+
+    long getMisses();
+
+    double getHitRatio();
+
+    long getSets();
+
+    long getSetRejections();
+
+    long getDeletes();
+
+    int getNumItems();
+
+    int getMaxChainLength();
+
+    int getChainLength50();
+
+    int getChainLength99();
+
+    double getEmptyBucketRatio();
+
+    int getSampleInterval();
+
+    long getGetLatency50Nanos();
+
+    long getGetLatency99Nanos();
+
+    long getGetLatencyMaxNanos();
+
+    long getSetLatency50Nanos();
+
+    long getSetLatency99Nanos();
+
+    long getSetLatencyMaxNanos();
+
+    void reset();
+}
@@ -0,0 +1,148 @@
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * PrimHashmapMetricsTest will serve as the JUnit Test Suite corresponding to the
+ * optional instrumentation, PrimHashmapMetrics and LatencyHistogram.
+ *
+ * Functions tested: enableMetrics(), snapshot(), register(name), recordValue(v),
+ * getValueAtPercentile(p)
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class PrimHashmapMetricsTest {
+
+    /**
+     * Test #1: Tests the counters of a chained map, including a rejected set and a
+     * key mapped to null, which is still a hit.
+     */
+    @Test
+    public void testCounters() throws Exception {
+        PrimHashmap<String> hashmap = new PrimHashmap<>(2);
+        assertEquals(null, hashmap.getMetrics());
+        PrimHashmapMetrics metrics = hashmap.enableMetrics(1);
+        assertSame(metrics, hashmap.enableMetrics());
+
+        assertTrue(hashmap.set("a", "1"));
+        assertTrue(hashmap.set("b", null));
+        assertFalse(hashmap.set("c", "3"));
+        assertEquals("1", hashmap.get("a"));
+        assertEquals(null, hashmap.get("b"));
+        assertEquals(null, hashmap.get("c"));
+        assertEquals("1", hashmap.delete("a"));
+        assertEquals(null, hashmap.delete("a"));
+
+        PrimHashmapMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getHits());
+        assertEquals(1, snapshot.getMisses());
+        assertEquals(2, snapshot.getSets());
+        assertEquals(1, snapshot.getSetRejections());
+        assertEquals(1, snapshot.getDeletes());
+        assertEquals(1, snapshot.getNumItems());
+        assertEquals(3, snapshot.getGetLatency().getTotalCount());
+
+        hashmap.disableMetrics();
+        hashmap.get("b");
+        assertEquals(2, metrics.getHits());
+    }
+
+    /**
+     * Test #2: Tests chain statistics expose a collision chain.
+     */
+    @Test
+    public void testChainStatistics() throws Exception {
+        PrimHashmap<Integer> hashmap = new PrimHashmap<>(8);
+        PrimHashmapMetrics metrics = hashmap.enableMetrics();
+
+        // "FB", "Ea" and "G#" all have the same hashCode(), so they share one chain
+        hashmap.set("FB", 1);
+        hashmap.set("Ea", 2);
+        hashmap.set("G#", 3);
+        hashmap.set("a", 4);
+
+        PrimHashmapMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(3, snapshot.getMaxChainLength());
+        assertEquals(1, snapshot.getChainLengthAtPercentile(50));
+        assertEquals(3, snapshot.getChainLengthAtPercentile(99));
+        assertEquals(6 / 8.0, snapshot.getEmptyBucketRatio(), 1e-9);
+        assertArrayEquals(new int[] {6, 1, 0, 1}, snapshot.getChainLengthCounts());
+    }
+
+    /**
+     * Test #3: Tests probe length statistics of the open-addressing map.
+     */
+    @Test
+    public void testProbeStatistics() throws Exception {
+        PrimProbeHashmap<Integer> hashmap = new PrimProbeHashmap<>(8);
+        PrimHashmapMetrics metrics = hashmap.enableMetrics(1);
+        hashmap.set("FB", 1);
+        hashmap.set("Ea", 2);
+        hashmap.set("G#", 3);
+        hashmap.get("G#");
+        hashmap.get("zz");
+
+        PrimHashmapMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(3, snapshot.getMaxChainLength());
+        assertArrayEquals(new int[] {5, 1, 1, 1}, snapshot.getChainLengthCounts());
+        assertEquals(1, snapshot.getHits());
+        assertEquals(1, snapshot.getMisses());
+        assertEquals(3, snapshot.getSets());
+    }
+
+    /**
+     * Test #4: Tests the histogram stays within its relative error and reports the
+     * exact maximum and mean.
+     */
+    @Test
+    public void testLatencyHistogram() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        for (long value = 1; value <= 100000; value++) {
+            histogram.recordValue(value);
+        }
+
+        assertEquals(100000, histogram.getTotalCount());
+        assertEquals(100000, histogram.getMaxValue());
+        assertEquals(50000.5, histogram.getMean(), 1e-9);
+        assertEquals(50000, histogram.getValueAtPercentile(50), 50000 * 0.04);
+        assertEquals(99000, histogram.getValueAtPercentile(99), 99000 * 0.04);
+        assertEquals(100000, histogram.getValueAtPercentile(100));
+
+        for (long value : new long[] {0, 31, 32, 1000, 1L << 40, Long.MAX_VALUE}) {
+            long reported = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+            assertTrue(reported >= value);
+            assertTrue(reported - value <= value / 32);
+        }
+    }
+
+    /**
+     * Test #5: Tests the metrics can be read over JMX.
+     */
+    @Test
+    public void testJmxExport() throws Exception {
+        PrimHashmap<Integer> hashmap = new PrimHashmap<>(4);
+        PrimHashmapMetrics metrics = hashmap.enableMetrics();
+        hashmap.set("a", 1);
+        hashmap.get("a");
+
+        ObjectName name = metrics.register("kpcb:type=PrimHashmap,name=test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(name, "Hits"));
+            assertEquals(1, server.getAttribute(name, "NumItems"));
+            assertEquals(1, server.getAttribute(name, "MaxChainLength"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}
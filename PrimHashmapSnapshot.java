@@ -0,0 +1,461 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class PrimHashmapSnapshot saves a PrimHashmap to a compact binary stream and loads
+ * it back, so a map can be persisted or shipped instead of rebuilt one set at a time.
+ * Values are turned into bytes by a ValueCodec, the same codecs OffHeapPrimHashmap
+ * uses.
+ *
+ * Layout, big-endian:
+ *
+ * header (40 bytes) - magic "PHS1", version, max capacity, number of entries,
+ *                     hash strategy kind and its seed or 128-bit key, CRC32 of
+ *                     the header
+ * entries - per entry: key hash (4 bytes), key length (varint), key (WTF-8),
+ *           value length + 1 (varint, 0 for a null value), value (codec bytes)
+ * trailer (4 bytes) - CRC32 of every entry byte
+ *
+ * Keys are written in Utf8's WTF-8 form, so a key with an unpaired surrogate comes
+ * back exactly as it was, with the same hash, instead of being mangled on load.
+ *
+ * Streams are written and read through a reusable NIO buffer, so the cost is one
+ * channel call per 64KB. The strategy is stored with the map: IDENTITY, SPREAD,
+ * seeded() and sipHash() maps come back with the same strategy, and their entries
+ * are loaded with the stored hashes instead of hashing every key again. A map with
+ * a custom strategy can only be read back by passing a strategy to readFrom, which
+ * then hashes each key. Note that a sipHash() snapshot contains the secret key.
+ *
+ * A damaged header, a truncated stream or any changed entry byte makes readFrom
+ * throw an IOException rather than return a partial map.
+ */
+public final class PrimHashmapSnapshot {
+
+    static final int MAGIC = 0x50485331;  // "PHS1"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 40;
+
+    private static final int KIND_IDENTITY = 0; // HashStrategy.IDENTITY
+    private static final int KIND_SPREAD = 1;   // HashStrategy.Spread, seed in the first long
+    private static final int KIND_SIPHASH = 2;  // HashStrategy.SipHash, key in both longs
+    static final int KIND_CUSTOM = 3;           // any other strategy, not restorable
+    static final int STRATEGY_BYTES = 20;       // kind, then two longs
+
+    private static final int BUFFER_BYTES = 64 * 1024; // stream buffer size
+
+    private PrimHashmapSnapshot() {}
+
+    /**
+     * Function writeTo saves a map to a channel. The channel is left open.
+     *
+     * @param map
+     *      The map to save; it must not be modified while it is being written.
+     * @param codec
+     *      Turns each value into bytes.
+     * @param channel
+     *      Destination of the snapshot.
+     */
+    public static <V> void writeTo(PrimHashmap<V> map, ValueCodec<V> codec, WritableByteChannel channel)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        writeHeader(map, buffer);
+        drain(buffer, channel);
+
+        CRC32 crc = new CRC32();
+        int written = 0;
+        PrimHashmap<V>.Cursor cursor = map.cursor();
+        while (cursor.advance()) {
+            String key = cursor.key();
+            V value = cursor.value();
+            int keyBytes = Utf8.encodedLength(key);
+            int valueBytes = (value == null) ? 0 : codec.encodedLength(value);
+
+            int recordBytes = 4 + 5 + keyBytes + 5 + valueBytes;
+            if (recordBytes > buffer.remaining()) {
+                crc.update(buffer.array(), 0, buffer.position());
+                drain(buffer, channel);
+                if (recordBytes > buffer.capacity()) buffer = ByteBuffer.allocate(recordBytes);
+            }
+
+            buffer.putInt(cursor.hash());
+            putVarInt(buffer, keyBytes);
+            Utf8.encode(key, buffer, buffer.position());
+            buffer.position(buffer.position() + keyBytes);
+            putVarInt(buffer, (value == null) ? 0 : valueBytes + 1);
+            if (value != null) {
+                codec.encode(value, buffer, buffer.position());
+                buffer.position(buffer.position() + valueBytes);
+            }
+            written++;
+        }
+
+        if (written != map.getNumItems()) {
+            throw new IllegalStateException("Hashmap was modified while a snapshot was written");
+        }
+
+        crc.update(buffer.array(), 0, buffer.position());
+        if (buffer.remaining() < 4) drain(buffer, channel);
+        buffer.putInt((int) crc.getValue());
+        drain(buffer, channel);
+    }
+
+    /**
+     * Function writeTo saves a map to an output stream. The stream is flushed but
+     * left open.
+     *
+     * @param map
+     *      The map to save; it must not be modified while it is being written.
+     * @param codec
+     *      Turns each value into bytes.
+     * @param out
+     *      Destination of the snapshot.
+     */
+    public static <V> void writeTo(PrimHashmap<V> map, ValueCodec<V> codec, OutputStream out)
+            throws IOException {
+        writeTo(map, codec, Channels.newChannel(out));
+        out.flush();
+    }
+
+    /**
+     * Function readFrom loads a map from a channel, with the capacity and hash
+     * strategy it was saved with.
+     *
+     * @param channel
+     *      Source of the snapshot. It is read in 64KB blocks, so bytes after the
+     *      snapshot may be consumed too.
+     * @param codec
+     *      Turns bytes back into values; must match the codec used by writeTo.
+     *
+     * @return the loaded map.
+     *
+     * @throws IOException if the stream is not a snapshot, is damaged or truncated,
+     *         or was written with a custom hash strategy.
+     */
+    public static <V> PrimHashmap<V> readFrom(ReadableByteChannel channel, ValueCodec<V> codec)
+            throws IOException {
+        return read(channel, codec, null);
+    }
+
+    /**
+     * Function readFrom loads a map from a channel, hashing its keys with the given
+     * strategy instead of the one it was saved with.
+     *
+     * @param channel
+     *      Source of the snapshot. It is read in 64KB blocks, so bytes after the
+     *      snapshot may be consumed too.
+     * @param codec
+     *      Turns bytes back into values; must match the codec used by writeTo.
+     * @param strategy
+     *      Hash strategy of the loaded map.
+     *
+     * @return the loaded map.
+     *
+     * @throws IOException if the stream is not a snapshot, or is damaged or truncated.
+     */
+    public static <V> PrimHashmap<V> readFrom(ReadableByteChannel channel, ValueCodec<V> codec,
+                                              HashStrategy strategy) throws IOException {
+        if (strategy == null) throw new NullPointerException("strategy");
+        return read(channel, codec, strategy);
+    }
+
+    /**
+     * Function readFrom loads a map from an input stream, with the capacity and hash
+     * strategy it was saved with.
+     *
+     * @param in
+     *      Source of the snapshot. It is read in 64KB blocks, so bytes after the
+     *      snapshot may be consumed too.
+     * @param codec
+     *      Turns bytes back into values; must match the codec used by writeTo.
+     *
+     * @return the loaded map.
+     *
+     * @throws IOException if the stream is not a snapshot, is damaged or truncated,
+     *         or was written with a custom hash strategy.
+     */
+    public static <V> PrimHashmap<V> readFrom(InputStream in, ValueCodec<V> codec) throws IOException {
+        return read(Channels.newChannel(in), codec, null);
+    }
+
+    /**
+     * Helper function read loads a map, reusing the stored hashes unless the caller
+     * asked for a different strategy.
+     */
+    private static <V> PrimHashmap<V> read(ReadableByteChannel channel, ValueCodec<V> codec,
+                                           HashStrategy override) throws IOException {
+        Reader reader = new Reader(channel);
+        ByteBuffer header = reader.require(HEADER_BYTES);
+        int start = header.position();
+
+        CRC32 headerCrc = new CRC32();
+        headerCrc.update(header.array(), start, HEADER_BYTES - 4);
+        if (header.getInt(start) != MAGIC || header.getInt(start + 4) != VERSION) {
+            throw new IOException("Not a PrimHashmap snapshot");
+        }
+        if (header.getInt(start + HEADER_BYTES - 4) != (int) headerCrc.getValue()) {
+            throw new IOException("Snapshot header is corrupt");
+        }
+
+        int capacity = header.getInt(start + 8);
+        int count = header.getInt(start + 12);
+        header.position(start + HEADER_BYTES);
+        if (capacity < 0 || count < 0 || count > capacity) {
+            throw new IOException("Snapshot header is corrupt");
+        }
+
+        HashStrategy strategy = (override != null) ? override : getStrategy(header, start + 16);
+        boolean reuseHashes = (override == null);
+        PrimHashmap<V> map = new PrimHashmap<V>(capacity, strategy);
+
+        reader.startChecksum();
+        for (int i = 0; i < count; i++) {
+            int hashVal = reader.require(4).getInt();
+
+            int keyBytes = reader.getVarInt();
+            ByteBuffer buffer = reader.require(keyBytes);
+            String key = Utf8.decode(buffer, buffer.position(), keyBytes);
+            buffer.position(buffer.position() + keyBytes);
+
+            int valueBytes = reader.getVarInt() - 1;
+            V value = null;
+            if (valueBytes >= 0) {
+                if (codec.fixedLength() >= 0 && valueBytes != codec.fixedLength()) {
+                    throw new IOException("Snapshot is corrupt: entry " + i + " has a bad value length");
+                }
+                buffer = reader.require(valueBytes);
+                value = codec.decode(buffer, buffer.position(), valueBytes);
+                buffer.position(buffer.position() + valueBytes);
+            }
+
+            boolean stored = reuseHashes ? map.setRestored(hashVal, key, value) : map.set(key, value);
+            if (!stored || map.getNumItems() != i + 1) {
+                throw new IOException("Snapshot is corrupt: entry " + i + " could not be loaded");
+            }
+        }
+
+        int expected = reader.finishChecksum();
+        if (reader.require(4).getInt() != expected) {
+            throw new IOException("Snapshot is corrupt: checksum mismatch");
+        }
+        return map;
+    }
+
+    /**
+     * Helper function writeHeader puts the fixed-size header in an empty buffer.
+     */
+    private static void writeHeader(PrimHashmap<?> map, ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(map.getHashmapSize());
+        buffer.putInt(map.getNumItems());
+        putStrategy(buffer, buffer.position(), map.getHashStrategy());
+        buffer.position(buffer.position() + STRATEGY_BYTES);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Function putStrategy stores a hash strategy as its kind followed by its seed or
+     * 128-bit key, STRATEGY_BYTES at an absolute offset. MappedPrimHashmap files use
+     * the same encoding in their header.
+     *
+     * @param buffer
+     *      Buffer to write into.
+     * @param offset
+     *      Absolute offset of the first byte.
+     * @param strategy
+     *      The strategy; one that is not built in is stored as KIND_CUSTOM.
+     */
+    static void putStrategy(ByteBuffer buffer, int offset, HashStrategy strategy) {
+        long first = 0;
+        long second = 0;
+        if (strategy instanceof HashStrategy.Spread) {
+            first = ((HashStrategy.Spread) strategy).getSeed();
+        } else if (strategy instanceof HashStrategy.SipHash) {
+            first = ((HashStrategy.SipHash) strategy).getK0();
+            second = ((HashStrategy.SipHash) strategy).getK1();
+        }
+
+        buffer.putInt(offset, kindOf(strategy));
+        buffer.putLong(offset + 4, first);
+        buffer.putLong(offset + 12, second);
+    }
+
+    /**
+     * Function kindOf tells how putStrategy stores a hash strategy.
+     *
+     * @param strategy
+     *      The strategy to store.
+     *
+     * @return its KIND_ constant, KIND_CUSTOM if it cannot be restored.
+     */
+    static int kindOf(HashStrategy strategy) {
+        if (strategy == HashStrategy.IDENTITY) return KIND_IDENTITY;
+        if (strategy instanceof HashStrategy.Spread) return KIND_SPREAD;
+        if (strategy instanceof HashStrategy.SipHash) return KIND_SIPHASH;
+        return KIND_CUSTOM;
+    }
+
+    /**
+     * Function getStrategy rebuilds a hash strategy stored by putStrategy.
+     *
+     * @param buffer
+     *      Buffer to read from.
+     * @param offset
+     *      Absolute offset of the first byte.
+     *
+     * @return the stored strategy.
+     *
+     * @throws IOException if the strategy was a custom one, or the kind is unknown.
+     */
+    static HashStrategy getStrategy(ByteBuffer buffer, int offset) throws IOException {
+        long first = buffer.getLong(offset + 4);
+        long second = buffer.getLong(offset + 12);
+        int kind = buffer.getInt(offset);
+        switch (kind) {
+            case KIND_IDENTITY:
+                return HashStrategy.IDENTITY;
+            case KIND_SPREAD:
+                return (first == 0) ? HashStrategy.SPREAD : new HashStrategy.Spread((int) first);
+            case KIND_SIPHASH:
+                return new HashStrategy.SipHash(first, second);
+            case KIND_CUSTOM:
+                throw new IOException("Snapshot was written with a custom HashStrategy, pass one to readFrom");
+            default:
+                throw new IOException("Unknown hash strategy kind: " + kind);
+        }
+    }
+
+    /**
+     * Helper function drain writes out everything in a buffer and clears it.
+     */
+    private static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Helper function putVarInt writes a non-negative int in 7-bit groups, low group
+     * first, so short lengths take a single byte.
+     */
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Class Reader hands out the bytes of a channel through one heap buffer, reading
+     * more only when the next field is not buffered yet. Once startChecksum() is
+     * called, every byte consumed is added to a CRC32 just before it leaves the buffer.
+     */
+    private static final class Reader {
+
+        private final ReadableByteChannel channel; // source of the snapshot
+        private final CRC32 crc = new CRC32();     // checksum of the bytes consumed
+        private ByteBuffer buffer;                 // read bytes between position and limit
+        private int checksummed = -1;              // bytes before this offset are in the CRC, -1 if off
+
+        /**
+         * Constructor Reader starts with an empty buffer.
+         */
+        Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(BUFFER_BYTES);
+            this.buffer.limit(0);
+        }
+
+        /**
+         * Function require makes sure the next bytes are buffered. The buffer grows
+         * in doubling steps while the bytes arrive, never straight to a length read
+         * from the stream.
+         *
+         * @param bytes
+         *      Number of bytes the caller is about to read.
+         *
+         * @return the buffer, positioned at the first of those bytes.
+         *
+         * @throws IOException if the channel ends first.
+         */
+        ByteBuffer require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return buffer;
+
+            updateChecksum();
+            buffer.compact();
+            if (checksummed >= 0) checksummed = 0;
+
+            while (buffer.position() < bytes) {
+                if (!buffer.hasRemaining()) {
+                    // Grow only as bytes arrive, so a damaged length cannot allocate
+                    // much more than the stream really holds
+                    ByteBuffer larger = ByteBuffer.allocate((int) Math.min(bytes, 2L * buffer.capacity()));
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                }
+                if (channel.read(buffer) < 0) throw new IOException("Snapshot is truncated");
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        /**
+         * Function getVarInt reads a length written by putVarInt.
+         */
+        int getVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = require(1).get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    if (value < 0) break;
+                    return value;
+                }
+            }
+            throw new IOException("Snapshot is corrupt: bad length");
+        }
+
+        /**
+         * Function startChecksum starts checksumming at the next byte.
+         */
+        void startChecksum() {
+            checksummed = buffer.position();
+        }
+
+        /**
+         * Function finishChecksum stops checksumming.
+         *
+         * @return the CRC32 of every byte consumed since startChecksum().
+         */
+        int finishChecksum() {
+            updateChecksum();
+            checksummed = -1;
+            return (int) crc.getValue();
+        }
+
+        /**
+         * Helper function updateChecksum adds the bytes consumed since the last update.
+         */
+        private void updateChecksum() {
+            if (checksummed < 0) return;
+
+            crc.update(buffer.array(), checksummed, buffer.position() - checksummed);
+            checksummed = buffer.position();
+        }
+    }
+}
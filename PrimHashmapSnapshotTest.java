@@ -0,0 +1,230 @@
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * PrimHashmapSnapshotTest will serve as the JUnit Test Suite corresponding to the
+ * binary dump/load format, PrimHashmapSnapshot.
+ *
+ * Functions tested: writeTo(map, codec, out), readFrom(in, codec),
+ * readFrom(channel, codec, strategy)
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class PrimHashmapSnapshotTest {
+
+    /**
+     * Test #1: Tests a map round-trips through a stream with its capacity, entries,
+     * null values and non-ASCII keys intact.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        PrimHashmap<String> hashmap = new PrimHashmap<>(100);
+        for (int i = 0; i < 60; i++) {
+            hashmap.set("key" + i, "value" + i);
+        }
+        hashmap.set("caf\u00e9 \ud83d\ude00", "\u65e5\u672c");
+        hashmap.set("nothing", null);
+        hashmap.set("", "empty key");
+
+        PrimHashmap<String> loaded = PrimHashmapSnapshot.readFrom(
+                new ByteArrayInputStream(write(hashmap, ValueCodec.STRING)), ValueCodec.STRING);
+        assertEquals(100, loaded.getHashmapSize());
+        assertEquals(hashmap.getNumItems(), loaded.getNumItems());
+        for (int i = 0; i < 60; i++) {
+            assertEquals("value" + i, loaded.get("key" + i));
+        }
+        assertEquals("\u65e5\u672c", loaded.get("caf\u00e9 \ud83d\ude00"));
+        assertTrue(loaded.containsKey("nothing"));
+        assertNull(loaded.get("nothing"));
+        assertEquals("empty key", loaded.get(""));
+
+        // The loaded map is fully usable, capacity included
+        assertTrue(loaded.set("more", "x"));
+        assertEquals("value7", loaded.delete("key7"));
+
+        PrimHashmap<String> empty = PrimHashmapSnapshot.readFrom(
+                new ByteArrayInputStream(write(new PrimHashmap<String>(0), ValueCodec.STRING)), ValueCodec.STRING);
+        assertEquals(0, empty.getNumItems());
+        assertEquals(0, empty.getHashmapSize());
+    }
+
+    /**
+     * Test #2: Tests the hash strategy is restored, and a custom strategy has to be
+     * passed back in.
+     */
+    @Test
+    public void testStrategies() throws Exception {
+        HashStrategy[] strategies = {HashStrategy.IDENTITY, HashStrategy.SPREAD,
+                HashStrategy.seeded(), HashStrategy.sipHash()};
+        for (HashStrategy strategy : strategies) {
+            PrimHashmap<Integer> hashmap = new PrimHashmap<>(50, strategy);
+            for (int i = 0; i < 50; i++) {
+                hashmap.set("k" + i, i);
+            }
+
+            PrimHashmap<Integer> loaded = PrimHashmapSnapshot.readFrom(
+                    new ByteArrayInputStream(write(hashmap, ValueCodec.INTEGER)), ValueCodec.INTEGER);
+            HashStrategy restored = loaded.getHashStrategy();
+            for (int i = 0; i < 50; i++) {
+                assertEquals(strategy.hash("k" + i), restored.hash("k" + i));
+                assertEquals(Integer.valueOf(i), loaded.get("k" + i));
+            }
+        }
+
+        HashStrategy custom = new HashStrategy() {
+            public int hash(String key) {
+                return key.length();
+            }
+        };
+        PrimHashmap<Integer> hashmap = new PrimHashmap<>(10, custom);
+        hashmap.set("a", 1);
+        hashmap.set("bb", 2);
+        byte[] bytes = write(hashmap, ValueCodec.INTEGER);
+        try {
+            PrimHashmapSnapshot.readFrom(new ByteArrayInputStream(bytes), ValueCodec.INTEGER);
+            fail("A custom strategy cannot be restored");
+        } catch (IOException expected) {
+        }
+
+        PrimHashmap<Integer> rehashed = PrimHashmapSnapshot.readFrom(
+                Channels.newChannel(new ByteArrayInputStream(bytes)), ValueCodec.INTEGER, HashStrategy.sipHash());
+        assertEquals(Integer.valueOf(2), rehashed.get("bb"));
+        assertEquals(2, rehashed.getNumItems());
+    }
+
+    /**
+     * Test #3: Tests a large map spanning many buffers, with a value larger than a
+     * buffer, through a file channel.
+     */
+    @Test
+    public void testLargeMapThroughFile() throws Exception {
+        PrimHashmap<byte[]> hashmap = new PrimHashmap<>(20000);
+        for (int i = 0; i < 20000; i++) {
+            hashmap.set("entry-" + i, new byte[] {(byte) i, (byte) (i >>> 8)});
+        }
+        byte[] big = new byte[200000];
+        big[199999] = 42;
+        hashmap.set("entry-0", big);
+
+        Path file = Files.createTempFile("snapshot", ".phs");
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                PrimHashmapSnapshot.writeTo(hashmap, ValueCodec.BYTES, channel);
+            }
+            PrimHashmap<byte[]> loaded;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                loaded = PrimHashmapSnapshot.readFrom(channel, ValueCodec.BYTES);
+            }
+
+            assertEquals(20000, loaded.getNumItems());
+            assertArrayEquals(big, loaded.get("entry-0"));
+            for (int i = 1; i < 20000; i++) {
+                assertArrayEquals(new byte[] {(byte) i, (byte) (i >>> 8)}, loaded.get("entry-" + i));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test #4: Tests a changed byte anywhere, or a truncated stream, is rejected.
+     */
+    @Test
+    public void testCorruptionDetected() throws Exception {
+        PrimHashmap<Long> hashmap = new PrimHashmap<>(64);
+        for (int i = 0; i < 40; i++) {
+            hashmap.set("counter" + i, (long) i * i);
+        }
+        byte[] bytes = write(hashmap, ValueCodec.LONG);
+
+        for (int position = 0; position < bytes.length; position++) {
+            byte[] damaged = bytes.clone();
+            damaged[position] ^= 0x10;
+            assertRejected(damaged);
+        }
+        assertRejected(Arrays.copyOf(bytes, bytes.length - 1));
+        assertRejected(Arrays.copyOf(bytes, 20));
+        assertRejected(new byte[0]);
+    }
+
+    /**
+     * Test #5: Tests keys with unpaired surrogates round-trip exactly and stay
+     * distinct from each other and from "a?".
+     */
+    @Test
+    public void testUnpairedSurrogateKeys() throws Exception {
+        String[] keys = {"a\uD800", "a\uDC00", "a?", "\uDC00\uD800", "\uD83D\uDE00"};
+        PrimHashmap<Integer> hashmap = new PrimHashmap<>(8);
+        for (int i = 0; i < keys.length; i++) {
+            assertTrue(hashmap.set(keys[i], i));
+        }
+
+        for (HashStrategy override : new HashStrategy[] {null, HashStrategy.SPREAD}) {
+            ByteArrayInputStream in = new ByteArrayInputStream(write(hashmap, ValueCodec.INTEGER));
+            PrimHashmap<Integer> loaded = (override == null)
+                    ? PrimHashmapSnapshot.readFrom(in, ValueCodec.INTEGER)
+                    : PrimHashmapSnapshot.readFrom(Channels.newChannel(in), ValueCodec.INTEGER, override);
+            assertEquals(keys.length, loaded.getNumItems());
+            for (int i = 0; i < keys.length; i++) {
+                assertEquals(Integer.valueOf(i), loaded.get(keys[i]));
+            }
+        }
+    }
+
+    /**
+     * Test #6: Tests a key or value length changed to a huge value is rejected as
+     * truncated instead of allocating that much memory.
+     */
+    @Test
+    public void testHugeLengthRejected() throws Exception {
+        PrimHashmap<Long> hashmap = new PrimHashmap<>(4);
+        hashmap.set("k", 7L);
+        byte[] bytes = write(hashmap, ValueCodec.LONG);
+
+        // Entry: hash (4 bytes), key length 1, "k", value length 9, 8 value bytes
+        int keyLength = PrimHashmapSnapshot.HEADER_BYTES + 4;
+        assertEquals(1, bytes[keyLength]);
+        assertEquals(9, bytes[keyLength + 2]);
+        for (int position : new int[] {keyLength, keyLength + 2}) {
+            byte[] damaged = new byte[bytes.length + 4];
+            System.arraycopy(bytes, 0, damaged, 0, position);
+            System.arraycopy(new byte[] {-1, -1, -1, -1, 0x07}, 0, damaged, position, 5);
+            System.arraycopy(bytes, position + 1, damaged, position + 5, bytes.length - position - 1);
+            assertRejected(damaged);
+        }
+    }
+
+    /**
+     * Helper function write saves a map into a byte array.
+     */
+    private static <V> byte[] write(PrimHashmap<V> hashmap, ValueCodec<V> codec) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrimHashmapSnapshot.writeTo(hashmap, codec, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Helper function assertRejected checks that loading some bytes fails.
+     */
+    private static void assertRejected(byte[] bytes) {
+        try {
+            PrimHashmapSnapshot.readFrom(new ByteArrayInputStream(bytes), ValueCodec.LONG);
+            fail("Damaged snapshot was loaded");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -4,6 +4,18 @@ import org.junit.runner.Result;
 import org.junit.runner.notification.Failure;
 import org.junit.runners.JUnit4;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
 
 import static org.junit.Assert.*;
 
@@ -13,7 +25,8 @@ import static org.junit.Assert.*;
  * PrimHashmapTest will serve as the JUnit Test Suite corresponding to the implementation of
  * PrimHashmap, a hashmap using only primitives and one that is fixed in size.
  *
- * Functions tested: constructor(size), set(key, val), get(key), delete(key), load()
+ * Functions tested: constructor(size), set(key, val), get(key), delete(key), load(),
+ * putIfAbsent, replace, computeIfAbsent, compute, merge
  *
  * Execution of these tests can be done by running the PrimHashmapTestRunner class.
  */
@@ -350,6 +363,611 @@ public class PrimHashmapTest {
         assertEquals(1.0, hashmap.load(), 0);
     }
 
+    /**
+     * Test #21: Tests delete() in the middle and at the tail of a collision chain.
+     * Later set() calls must append to the live tail, so every key stays reachable.
+     */
+    @Test
+    public void testDeleteWithinChain() throws Exception {
+        // "FB", "Ea" and "G#" all have the same hashCode()!
+        PrimHashmap<String> hashmap = new PrimHashmap<>(8);
+        assertTrue(hashmap.set("FB", "aaa"));
+        assertTrue(hashmap.set("Ea", "bbb"));
+        assertTrue(hashmap.set("G#", "ccc"));
+
+        assertEquals("ccc", hashmap.delete("G#"));
+        assertEquals("aaa", hashmap.delete("FB"));
+        assertTrue(hashmap.set("G#", "ddd"));
+        assertTrue(hashmap.set("FB", "eee"));
+
+        assertEquals("bbb", hashmap.get("Ea"));
+        assertEquals("ddd", hashmap.get("G#"));
+        assertEquals("eee", hashmap.get("FB"));
+        assertEquals(3, hashmap.getNumItems());
+    }
+
+    /**
+     * Test #22: Tests that a bucket is released once its last key is deleted,
+     * so churn does not leave empty lists behind in the table.
+     */
+    @Test
+    public void testDeleteReclaimsEmptyBucket() throws Exception {
+        PrimHashmap<String> hashmap = new PrimHashmap<>(4);
+        assertTrue(hashmap.set("FB", "aaa"));
+        assertTrue(hashmap.set("Ea", "bbb"));
+
+        assertEquals("aaa", hashmap.delete("FB"));
+        assertEquals("bbb", hashmap.delete("Ea"));
+
+        Object[] table = hashmap.getTable();
+        for (int i = 0; i < table.length; i++) {
+            assertEquals(null, table[i]);
+        }
+    }
+
+    /**
+     * Test #23: Tests setAll() and getAll() on a batch large enough to be applied
+     * in bucket order. A key repeated in the batch must keep its last value.
+     */
+    @Test
+    public void testBatchSetAndGet() throws Exception {
+        PrimHashmap<Integer> hashmap = new PrimHashmap<>(1000);
+        String[] keys = new String[501];
+        Integer[] values = new Integer[501];
+        for (int i = 0; i < 500; i++) {
+            keys[i] = "key" + i;
+            values[i] = i;
+        }
+        keys[500] = "key0";
+        values[500] = -1;
+
+        boolean[] stored = new boolean[501];
+        assertEquals(0, hashmap.setAll(keys, values, stored));
+        for (int i = 0; i < 501; i++) {
+            assertTrue(stored[i]);
+        }
+        assertEquals(500, hashmap.getNumItems());
+
+        Integer[] found = new Integer[501];
+        assertEquals(501, hashmap.getAll(keys, found));
+        assertEquals(Integer.valueOf(-1), found[0]);
+        assertEquals(Integer.valueOf(250), found[250]);
+        assertEquals(Integer.valueOf(-1), found[500]);
+    }
+
+    /**
+     * Test #24: Tests setAll() past max capacity reports exactly the rejected
+     * entries, and exactly as many as there was no room for.
+     */
+    @Test
+    public void testBatchSetWhenFull() throws Exception {
+        PrimHashmap<Integer> hashmap = new PrimHashmap<>(100);
+        String[] keys = new String[150];
+        Integer[] values = new Integer[150];
+        for (int i = 0; i < 150; i++) {
+            keys[i] = "key" + i;
+            values[i] = i;
+        }
+
+        boolean[] stored = new boolean[150];
+        assertEquals(50, hashmap.setAll(keys, values, stored));
+        assertEquals(100, hashmap.getNumItems());
+        for (int i = 0; i < 150; i++) {
+            Integer expected = stored[i] ? Integer.valueOf(i) : null;
+            assertEquals(expected, hashmap.get(keys[i]));
+        }
+    }
+
+    /**
+     * Test #25: Tests deleteAll() returns the deleted values and skips absent keys.
+     */
+    @Test
+    public void testBatchDelete() throws Exception {
+        PrimHashmap<String> hashmap = new PrimHashmap<>(4);
+        assertTrue(hashmap.set("a", "aaa"));
+        assertTrue(hashmap.set("b", "bbb"));
+
+        String[] deleted = new String[3];
+        assertEquals(2, hashmap.deleteAll(new String[] {"a", "c", "b"}, deleted));
+        assertEquals("aaa", deleted[0]);
+        assertEquals(null, deleted[1]);
+        assertEquals("bbb", deleted[2]);
+        assertEquals(0, hashmap.getNumItems());
+
+        PrimHashmap<String> empty = new PrimHashmap<>();
+        assertEquals(2, empty.setAll(new String[] {"a", "b"}, new String[] {"x", "y"}, null));
+    }
+
+    /**
+     * Test #26: Tests forEach() visits every entry exactly once, including entries
+     * that share a bucket.
+     */
+    @Test
+    public void testForEach() throws Exception {
+        PrimHashmap<Integer> hashmap = new PrimHashmap<>(8);
+        hashmap.set("FB", 1);
+        hashmap.set("Ea", 2);
+        hashmap.set("c", 3);
+
+        final Map<String, Integer> seen = new HashMap<>();
+        hashmap.forEach((key, value) -> assertNull(seen.put(key, value)));
+
+        assertEquals(3, seen.size());
+        assertEquals(Integer.valueOf(1), seen.get("FB"));
+        assertEquals(Integer.valueOf(2), seen.get("Ea"));
+        assertEquals(Integer.valueOf(3), seen.get("c"));
+    }
+
+    /**
+     * Test #27: Tests a cursor walks every entry, stops at the end, and can be
+     * reset and reused for a second scan.
+     */
+    @Test
+    public void testCursor() throws Exception {
+        PrimHashmap<Integer> hashmap = new PrimHashmap<>(100);
+        for (int i = 0; i < 100; i++) {
+            hashmap.set("key" + i, i);
+        }
+
+        PrimHashmap<Integer>.Cursor cursor = hashmap.cursor();
+        for (int scan = 0; scan < 2; scan++) {
+            int count = 0;
+            int sum = 0;
+            while (cursor.advance()) {
+                assertEquals("key" + cursor.value(), cursor.key());
+                sum += cursor.value();
+                count++;
+            }
+            assertFalse(cursor.advance());
+            assertEquals(100, count);
+            assertEquals(4950, sum);
+            cursor.reset();
+        }
+
+        PrimHashmap<Integer>.Cursor empty = new PrimHashmap<Integer>().cursor();
+        assertFalse(empty.advance());
+    }
+
+    /**
+     * Test #28: Tests the keySet() and values() views reflect the map contents.
+     */
+    @Test
+    public void testKeySetAndValues() throws Exception {
+        PrimHashmap<String> hashmap = new PrimHashmap<>(4);
+        hashmap.set("a", "aaa");
+        hashmap.set("b", null);
+
+        Set<String> keys = hashmap.keySet();
+        assertEquals(2, keys.size());
+        assertTrue(keys.contains("b"));
+        assertFalse(keys.contains("c"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), new HashSet<>(keys));
+        assertEquals(new HashSet<>(Arrays.asList("aaa", null)), new HashSet<>(hashmap.values()));
+
+        hashmap.delete("a");
+        assertEquals(1, keys.size());
+        assertEquals(Collections.singletonList("b"), new ArrayList<>(keys));
+    }
+
+    /**
+     * Test #29: Tests parallelForEach, parallelReduce and parallelSearch over a table
+     * large enough to be split across fork-join tasks.
+     */
+    @Test
+    public void testParallelBulkOperations() throws Exception {
+        PrimHashmap<Integer> hashmap = new PrimHashmap<>(20000);
+        for (int i = 0; i < 20000; i++) {
+            hashmap.set("key" + i, i);
+        }
+
+        final AtomicLong visited = new AtomicLong();
+        hashmap.parallelForEach((key, value) -> visited.addAndGet(value));
+        assertEquals(199990000L, visited.get());
+
+        Long sum = hashmap.parallelReduce((key, value) -> (long) value, Long::sum);
+        assertEquals(Long.valueOf(199990000L), sum);
+
+        Integer odd = hashmap.parallelReduce((key, value) -> value % 2 == 1 ? 1 : null, Integer::sum);
+        assertEquals(Integer.valueOf(10000), odd);
+
+        assertEquals("key12345", hashmap.parallelSearch((key, value) -> value == 12345 ? key : null));
+        String missing = hashmap.parallelSearch((key, value) -> value < 0 ? key : null);
+        assertEquals(null, missing);
+
+        PrimHashmap<Integer> empty = new PrimHashmap<>(0);
+        assertEquals(null, empty.parallelReduce((key, value) -> value, Integer::sum));
+    }
+
+    /**
+     * Test #30: Tests stream() visits every entry, sequentially and in parallel.
+     */
+    @Test
+    public void testStream() throws Exception {
+        PrimHashmap<Integer> hashmap = new PrimHashmap<>(20000);
+        for (int i = 0; i < 20000; i++) {
+            hashmap.set("key" + i, i);
+        }
+
+        assertEquals(20000, hashmap.spliterator().getExactSizeIfKnown());
+        assertEquals(20000, hashmap.stream().count());
+        assertEquals(199990000L, hashmap.stream().parallel().mapToLong(Map.Entry::getValue).sum());
+
+        Set<String> keys = hashmap.stream().parallel().map(Map.Entry::getKey).collect(Collectors.toSet());
+        assertEquals(20000, keys.size());
+        assertTrue(keys.contains("key19999"));
+    }
+
+    /**
+     * Test #31: Tests a bucket of colliding keys turns into a tree past 8 entries and
+     * back into a list below 6, while every operation keeps working.
+     */
+    @Test
+    public void testTreeifiedBucket() throws Exception {
+        // All 64 keys have the same hashCode(), built from "Aa" and "BB" blocks
+        String[] keys = new String[64];
+        for (int i = 0; i < keys.length; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int bit = 0; bit < 6; bit++) {
+                key.append(((i >>> bit) & 1) == 0 ? "Aa" : "BB");
+            }
+            keys[i] = key.toString();
+        }
+
+        PrimHashmap<Integer> hashmap = new PrimHashmap<>(100);
+        for (int i = 0; i < keys.length; i++) {
+            assertTrue(hashmap.set(keys[i], i));
+            assertEquals(i < 8 ? "NodeList" : "TreeBucket", collidingBucket(hashmap, keys[0]));
+        }
+        assertTrue(hashmap.set(keys[10], -10));
+        assertEquals(64, hashmap.getNumItems());
+        assertEquals(null, hashmap.get("AaAaAaAaAaBa"));
+
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(Integer.valueOf(i == 10 ? -10 : i), hashmap.get(keys[i]));
+        }
+
+        // Iteration still follows insertion order within the bucket
+        final List<String> visited = new ArrayList<>();
+        hashmap.forEach((key, value) -> visited.add(key));
+        assertEquals(Arrays.asList(keys), visited);
+
+        for (int i = 0; i < 59; i++) {
+            assertEquals(Integer.valueOf(i == 10 ? -10 : i), hashmap.delete(keys[i]));
+            assertEquals(null, hashmap.get(keys[i]));
+            assertEquals(i < 58 ? "TreeBucket" : "NodeList", collidingBucket(hashmap, keys[63]));
+        }
+        for (int i = 59; i < keys.length; i++) {
+            assertEquals(Integer.valueOf(i), hashmap.get(keys[i]));
+        }
+    }
+
+    /**
+     * Test #32: Tests the table is only allocated by the first set, and that an
+     * unallocated map behaves as an empty one.
+     */
+    @Test
+    public void testLazyAllocation() throws Exception {
+        PrimHashmap<String> hashmap = PrimHashmap.withCapacity(1 << 20);
+        assertNull(hashmap.getTable());
+        assertEquals(1 << 20, hashmap.getTrueSize());
+        assertEquals(null, hashmap.get("a"));
+        assertEquals(null, hashmap.delete("a"));
+        assertFalse(hashmap.containsKey("a"));
+        assertFalse(hashmap.cursor().advance());
+        assertEquals(0, hashmap.stream().count());
+        assertNull(hashmap.getTable());
+
+        assertTrue(hashmap.set("a", "aaa"));
+        assertEquals(1 << 20, hashmap.getTable().length);
+        assertEquals("aaa", hashmap.get("a"));
+
+        PrimHashmap<String> empty = new PrimHashmap<>(0);
+        assertFalse(empty.set("a", "aaa"));
+        assertNull(empty.getTable());
+    }
+
+    /**
+     * Test #33: Tests findNextPowerOfTwo is exact at and around powers of two.
+     */
+    @Test
+    public void testFindNextPowerOfTwo() throws Exception {
+        assertEquals(0, PrimHashmap.findNextPowerOfTwo(-5));
+        assertEquals(0, PrimHashmap.findNextPowerOfTwo(0));
+        assertEquals(1, PrimHashmap.findNextPowerOfTwo(1));
+        assertEquals(2, PrimHashmap.findNextPowerOfTwo(2));
+        assertEquals(4, PrimHashmap.findNextPowerOfTwo(3));
+        assertEquals(1 << 29, PrimHashmap.findNextPowerOfTwo(1 << 29));
+        assertEquals(1 << 30, PrimHashmap.findNextPowerOfTwo((1 << 29) + 1));
+        assertEquals(1 << 30, PrimHashmap.findNextPowerOfTwo(1 << 30));
+        assertEquals(1 << 30, PrimHashmap.findNextPowerOfTwo(Integer.MAX_VALUE));
+        for (int shift = 2; shift < 30; shift++) {
+            assertEquals(1 << shift, PrimHashmap.findNextPowerOfTwo((1 << shift) - 1));
+            assertEquals(1 << shift, PrimHashmap.findNextPowerOfTwo(1 << shift));
+            assertEquals(2 << shift, PrimHashmap.findNextPowerOfTwo((1 << shift) + 1));
+        }
+    }
+
+    /**
+     * Test #34: Tests a growable map doubles instead of rejecting sets, moving the old
+     * buckets a few at a time while every key stays reachable.
+     */
+    @Test
+    public void testGrowableResize() throws Exception {
+        PrimHashmap<Integer> hashmap = PrimHashmap.growable(4);
+        assertTrue(hashmap.isGrowable());
+        assertFalse(new PrimHashmap<Integer>(4).isGrowable());
+
+        boolean sawResize = false;
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(hashmap.set("key" + i, i));
+            sawResize |= hashmap.isResizing();
+
+            // Spot-check old and new keys mid-resize, without moving any bucket
+            assertEquals(Integer.valueOf(i / 2), hashmap.get("key" + (i / 2)));
+            assertEquals(Integer.valueOf(i), hashmap.get("key" + i));
+        }
+        assertTrue(sawResize);
+        assertEquals(5000, hashmap.getNumItems());
+        assertEquals(8192, hashmap.getHashmapSize());
+        assertEquals(8192, hashmap.getTrueSize());
+
+        // A set that triggers a resize only moves a few buckets
+        PrimHashmap<Integer> sized = PrimHashmap.growable(1024);
+        for (int i = 0; i < 1025; i++) {
+            sized.set("key" + i, i);
+        }
+        assertTrue(sized.isResizing());
+        assertEquals(2048, sized.getTrueSize());
+        for (int i = 0; i < 1025; i++) {
+            assertEquals(Integer.valueOf(i), sized.get("key" + i));
+        }
+
+        // Deletes and overrides during the resize, then a scan sees both tables
+        for (int i = 0; i < 1025; i += 9) {
+            assertEquals(Integer.valueOf(i), sized.delete("key" + i));
+        }
+        assertTrue(sized.set("key1", -1));
+        assertTrue(sized.isResizing());
+        final AtomicLong seen = new AtomicLong();
+        sized.forEach((key, value) -> seen.incrementAndGet());
+        assertTrue(sized.isResizing());
+        assertEquals(sized.getNumItems(), seen.get());
+        assertEquals(Integer.valueOf(-1), sized.get("key1"));
+        assertEquals(null, sized.get("key9"));
+
+        // The fixed-size default still rejects a set when full
+        PrimHashmap<Integer> fixed = new PrimHashmap<>(2);
+        assertTrue(fixed.set("a", 1));
+        assertTrue(fixed.set("b", 2));
+        assertFalse(fixed.set("c", 3));
+    }
+
+    /**
+     * Test #35: Tests colliding keys held in a TreeBucket survive resizes, and that
+     * batch operations and metrics see both tables.
+     */
+    @Test
+    public void testGrowableResizeWithTreesAndBatches() throws Exception {
+        String[] keys = new String[64];
+        for (int i = 0; i < keys.length; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int bit = 0; bit < 6; bit++) {
+                key.append(((i >>> bit) & 1) == 0 ? "Aa" : "BB");
+            }
+            keys[i] = key.toString();
+        }
+
+        PrimHashmap<Integer> hashmap = PrimHashmap.growable(2);
+        Integer[] values = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = i;
+        }
+        assertEquals(0, hashmap.setAll(keys, values, null));
+        assertEquals(64, hashmap.getNumItems());
+        assertEquals("TreeBucket", collidingBucket(hashmap, keys[0]));
+
+        String[] extra = new String[300];
+        for (int i = 0; i < extra.length; i++) {
+            extra[i] = "extra" + i;
+        }
+        assertEquals(0, hashmap.setAll(extra, new Integer[extra.length], null));
+
+        Integer[] found = new Integer[keys.length];
+        assertEquals(64, hashmap.getAll(keys, found));
+        assertArrayEquals(values, found);
+
+        // Chain statistics count every entry, moved or not
+        int[] counts = hashmap.enableMetrics().snapshot().getChainLengthCounts();
+        int counted = 0;
+        for (int length = 1; length < counts.length; length++) {
+            counted += length * counts[length];
+        }
+        assertEquals(364, counted);
+        assertTrue(counts.length > 64);
+        hashmap.disableMetrics();
+
+        assertEquals(64, hashmap.deleteAll(keys, null));
+        assertEquals(300, hashmap.getNumItems());
+        assertEquals(300, hashmap.stream().count());
+    }
+
+    /**
+     * Test #36: Tests putIfAbsent(), replace(), computeIfAbsent(), compute() and
+     * merge(), including null results and the max capacity rule.
+     */
+    @Test
+    public void testComputeOperations() throws Exception {
+        PrimHashmap<Integer> hashmap = new PrimHashmap<>(3);
+        assertTrue(hashmap.putIfAbsent("a", 1));
+        assertFalse(hashmap.putIfAbsent("a", 2));
+        assertEquals(Integer.valueOf(1), hashmap.get("a"));
+
+        assertFalse(hashmap.replace("a", 5, 6));
+        assertTrue(hashmap.replace("a", 1, 7));
+        assertEquals(Integer.valueOf(7), hashmap.get("a"));
+        assertFalse(hashmap.replace("missing", null, 1));
+
+        final int[] calls = new int[1];
+        assertEquals(Integer.valueOf(10), hashmap.computeIfAbsent("b", key -> { calls[0]++; return 10; }));
+        assertEquals(Integer.valueOf(10), hashmap.computeIfAbsent("b", key -> { calls[0]++; return 11; }));
+        assertEquals(1, calls[0]);
+        assertNull(hashmap.computeIfAbsent("c", key -> null));
+        assertFalse(hashmap.containsKey("c"));
+
+        assertEquals(Integer.valueOf(8), hashmap.compute("a", (key, old) -> old + 1));
+        assertEquals(Integer.valueOf(1), hashmap.compute("c", (key, old) -> (old == null) ? 1 : old + 1));
+        assertEquals(3, hashmap.getNumItems());
+
+        // A full map neither adds keys nor calls the function for them
+        assertFalse(hashmap.putIfAbsent("d", 1));
+        assertNull(hashmap.computeIfAbsent("d", key -> { calls[0]++; return 1; }));
+        assertNull(hashmap.compute("d", (key, old) -> { calls[0]++; return 1; }));
+        assertNull(hashmap.merge("d", 1, Integer::sum));
+        assertEquals(1, calls[0]);
+        assertFalse(hashmap.containsKey("d"));
+
+        // Existing keys still update, and a null result removes them
+        assertEquals(Integer.valueOf(15), hashmap.merge("b", 5, Integer::sum));
+        assertNull(hashmap.compute("c", (key, old) -> null));
+        assertFalse(hashmap.containsKey("c"));
+        assertNull(hashmap.merge("b", 5, (old, value) -> null));
+        assertEquals(1, hashmap.getNumItems());
+        assertEquals(Integer.valueOf(4), hashmap.merge("e", 4, Integer::sum));
+
+        // A key mapped to null counts as present for putIfAbsent and computeIfAbsent
+        hashmap.set("f", null);
+        assertFalse(hashmap.putIfAbsent("f", 1));
+        assertNull(hashmap.computeIfAbsent("f", key -> 1));
+        assertTrue(hashmap.replace("f", null, 2));
+        hashmap.set("f", null);
+        assertEquals(Integer.valueOf(3), hashmap.merge("f", 3, Integer::sum));
+
+        PrimHashmap<Integer> emptyHashmap = new PrimHashmap<>(0);
+        assertFalse(emptyHashmap.putIfAbsent("a", 1));
+        assertNull(emptyHashmap.merge("a", 1, Integer::sum));
+        assertFalse(emptyHashmap.replace("a", null, 1));
+    }
+
+    /**
+     * Test #37: Tests counting with merge() and compute() on colliding keys in a
+     * growable map while it resizes, against java.util.HashMap.
+     */
+    @Test
+    public void testComputeWhileResizing() throws Exception {
+        PrimHashmap<Integer> hashmap = PrimHashmap.growable(4);
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            String key = ((i % 3 == 0) ? "Aa" : "BB") + (i % 701);
+            if (i % 5 == 0) {
+                assertEquals(expected.compute(key, (k, old) -> (old == null) ? 100 : old - 1),
+                        hashmap.compute(key, (k, old) -> (old == null) ? 100 : old - 1));
+            } else if (i % 7 == 0) {
+                assertEquals(expected.merge(key, 1, (old, one) -> (old > 50) ? null : old + one),
+                        hashmap.merge(key, 1, (old, one) -> (old > 50) ? null : old + one));
+            } else {
+                assertEquals(expected.merge(key, 1, Integer::sum), hashmap.merge(key, 1, Integer::sum));
+            }
+            assertEquals(expected.size(), hashmap.getNumItems());
+        }
+
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), hashmap.get(entry.getKey()));
+        }
+        assertTrue(hashmap.getHashmapSize() >= 701);
+    }
+
+    /**
+     * Test #38: Tests a full growable map only starts a resize once computeIfAbsent()
+     * or compute() has a value to add, not when the function returns null.
+     */
+    @Test
+    public void testComputeGrowsOnlyForNewValues() throws Exception {
+        PrimHashmap<Integer> hashmap = PrimHashmap.growable(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(hashmap.set("key" + i, i));
+        }
+        int trueSize = hashmap.getTrueSize();
+
+        assertNull(hashmap.computeIfAbsent("absent", key -> null));
+        assertNull(hashmap.compute("absent", (key, old) -> null));
+        assertEquals(trueSize, hashmap.getTrueSize());
+        assertEquals(4, hashmap.getHashmapSize());
+        assertFalse(hashmap.isResizing());
+
+        assertEquals(Integer.valueOf(4), hashmap.computeIfAbsent("key4", key -> 4));
+        assertEquals(Integer.valueOf(5), hashmap.compute("key5", (key, old) -> 5));
+        assertEquals(8, hashmap.getHashmapSize());
+        assertEquals(6, hashmap.getNumItems());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(Integer.valueOf(i), hashmap.get("key" + i));
+        }
+    }
+
+    /**
+     * Test #39: Tests every kind of scan of a map in mid-resize sees each key once
+     * without moving a bucket, so several threads can scan it at the same time.
+     */
+    @Test
+    public void testScansDuringResizeOnlyRead() throws Exception {
+        final PrimHashmap<Integer> hashmap = PrimHashmap.growable(4096);
+        for (int i = 0; i < 4097; i++) {
+            assertTrue(hashmap.set("key" + i, i));
+        }
+        assertTrue(hashmap.isResizing());
+        final long expectedSum = 4096L * 4097 / 2;
+
+        Thread[] threads = new Thread[4];
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        for (int t = 0; t < threads.length; t++) {
+            final int kind = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int round = 0; round < 20; round++) {
+                        final AtomicLong sum = new AtomicLong();
+                        if (kind == 0) {
+                            hashmap.forEach((key, value) -> sum.addAndGet(value));
+                        } else if (kind == 1) {
+                            FrozenPrimHashmap<Integer> frozen = hashmap.freeze();
+                            assertEquals(4097, frozen.getNumItems());
+                            sum.set(expectedSum);
+                        } else if (kind == 2) {
+                            sum.set(hashmap.stream().parallel().mapToLong(entry -> entry.getValue()).sum());
+                        } else {
+                            sum.set(hashmap.parallelReduce((key, value) -> (long) value, Long::sum));
+                        }
+                        assertEquals(expectedSum, sum.get());
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(error.get());
+
+        assertTrue(hashmap.isResizing());
+        int count = 0;
+        PrimHashmap<Integer>.Cursor cursor = hashmap.cursor();
+        while (cursor.advance()) {
+            assertEquals(Integer.valueOf(cursor.key().substring(3)), cursor.value());
+            count++;
+        }
+        assertEquals(4097, count);
+        assertEquals(4097, hashmap.keySet().size());
+        assertTrue(hashmap.isResizing());
+    }
+
+    /**
+     * Helper function collidingBucket names the class of the bucket a key is in.
+     */
+    private String collidingBucket(PrimHashmap<?> hashmap, String key) {
+        Object[] table = hashmap.getTable();
+        return table[findHashIndex(key.hashCode(), table.length)].getClass().getSimpleName();
+    }
+
     /**
      * Helper function findHashIndex will mock hashing, just as it is done
      * within the PrimHashmap definition for test cases.
@@ -362,6 +980,6 @@ public class PrimHashmapTest {
      * @return index (int) that this key has been hashed to in table.
      */
     private int findHashIndex(int hashVal, int size) {
-        return hashVal & (size-1);
+        return HashStrategy.mix(hashVal) & (size-1);
     }
 }
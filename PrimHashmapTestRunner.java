@@ -7,7 +7,8 @@ import org.junit.runner.notification.Failure;
  * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
  * 
  * Class PrimHashmapTestRunner will simply serve as a wrapper class for the 
- * execution of all the unit tests defined in PrimHashmapTest.java.
+ * execution of all the unit tests defined in PrimHashmapTest.java and the
+ * test suites of the other hashmap variants.
  */
 
 public class PrimHashmapTestRunner {
@@ -16,7 +17,14 @@ public class PrimHashmapTestRunner {
 
     	System.out.println("\nNow running tests for PrimHashmap...\n");
 
-        Result result = new JUnitCore().runClasses(PrimHashmapTest.class);
+        Result result = new JUnitCore().runClasses(PrimHashmapTest.class, PrimProbeHashmapTest.class,
+                ConcurrentPrimHashmapTest.class, PrimPrimitiveHashmapTest.class,
+                OffHeapPrimHashmapTest.class, MappedPrimHashmapTest.class,
+                PrimCacheHashmapTest.class, PrimExpiringHashmapTest.class,
+                PrimHashmapMetricsTest.class, HashStrategyTest.class,
+                PrimArenaHashmapTest.class, PrimHashmapSnapshotTest.class,
+                FrozenPrimHashmapTest.class, PerfectHashIndexTest.class, ShardedPrimHashmapTest.class,
+                DurablePrimHashmapTest.class);
 
         for (Failure fail : result.getFailures()) {
         	System.err.println("Failure detected! -> " + fail.getDescription());
@@ -0,0 +1,149 @@
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class PrimIntHashmap defines a fixed-size hashmap from String keys to int values.
+ * Values are stored unboxed in an int[] parallel to the key slots of PrimProbeTable,
+ * so counters and IDs can be updated without allocating anything. It follows the
+ * same fixed-capacity contract as PrimHashmap:
+ *
+ * constructor (size) - Initializes new hashmap
+ * set(key, val) - Maps a String key to an int val
+ * getInt(key, default) - Retrieves the int this String key maps to, or default
+ * addTo(key, delta) - Adds delta to the value of key, starting from 0 if absent
+ * containsKey(key) - Checks whether the key is mapped
+ * delete(key) - deletes the key-val mapping
+ * load() - finds the load factor, a measure of how full the map is
+ */
+public class PrimIntHashmap extends PrimProbeTable {
+
+    private int[] values; // Values stored in each slot, parallel to the keys
+
+    /**
+     * Constructor PrimIntHashmap initializes all fields to 0 or null if no size is
+     * specified, and waits for the constructor(size) function to be called on the
+     * object for any operations to be performed.
+     */
+    public PrimIntHashmap() {
+        super();
+        this.values = null;
+    }
+
+    /**
+     * Constructor PrimIntHashmap(sz) initializes all fields given the user-specified
+     * max capacity of the hashmap.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     */
+    public PrimIntHashmap(int size) {
+        this(size, HashStrategy.SPREAD);
+    }
+
+    /**
+     * Constructor PrimIntHashmap(sz, strategy) initializes all fields given the user-specified
+     * max capacity of the hashmap and the strategy used to hash its keys.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     * @param strategy
+     *  Hashes the keys, e.g. HashStrategy.sipHash() for keys an attacker controls.
+     */
+    public PrimIntHashmap(int size, HashStrategy strategy) {
+        super(size, strategy);
+        this.values = new int[getTrueSize()];
+    }
+
+    /**
+     * Function constructor() will call the PrimIntHashmap constructor taking size as
+     * a parameter, which specified the max capacity of the hashmap to be created.
+     *
+     * @param size
+     *      Specifies max capacity of hashmap to be created.
+     *
+     * @return a PrimIntHashmap object with specified size
+     */
+    public final PrimIntHashmap constructor(int size) {
+        return new PrimIntHashmap(size);
+    }
+
+    /**
+     * Function set will map a String to an int value.
+     *
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to.
+     *
+     * @return true on successful set, false if the key is new and the map is full
+     */
+    public boolean set(String key, int value) {
+        int slot = claimSlot(key);
+        if (slot == FULL) return false;
+
+        values[slot < 0 ? -slot - 1 : slot] = value;
+        return true;
+    }
+
+    /**
+     * Function getInt will retrieve the int value associated with a given key.
+     *
+     * @param key
+     *      Key whose value is to be retrieved.
+     * @param defaultValue
+     *      Value to return when the key is not in the map.
+     *
+     * @return The value associated with the specified key, or defaultValue.
+     */
+    public int getInt(String key, int defaultValue) {
+        int slot = findSlot(key);
+        if (slot < 0) return defaultValue;
+
+        return values[slot];
+    }
+
+    /**
+     * Function addTo will add delta to the value of a key in a single probe. A key
+     * that is not yet mapped starts out at 0, so this doubles as a counter insert.
+     *
+     * @param key
+     *      Key whose value is to be incremented.
+     * @param delta
+     *      Amount to add to the value.
+     *
+     * @return true on success, false if the key is new and the map is full
+     */
+    public boolean addTo(String key, int delta) {
+        int slot = claimSlot(key);
+        if (slot == FULL) return false;
+
+        // Freshly claimed slots are always cleared to 0
+        values[slot < 0 ? -slot - 1 : slot] += delta;
+        return true;
+    }
+
+    /**
+     * Function delete will remove the key-value entry for a given key.
+     *
+     * @param key
+     *      Key for which the key-value entry in the map is to be deleted.
+     *
+     * @return true if an entry was deleted, false if the key was not in the map.
+     */
+    public boolean delete(String key) {
+        int slot = findSlot(key);
+        if (slot < 0) return false;
+
+        removeSlot(slot);
+        return true;
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    void clearValue(int slot) {
+        values[slot] = 0;
+    }
+}
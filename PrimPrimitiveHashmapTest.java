@@ -0,0 +1,109 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * PrimPrimitiveHashmapTest will serve as the JUnit Test Suite corresponding to the
+ * primitive-valued maps PrimIntHashmap, PrimLongHashmap and PrimDoubleHashmap.
+ *
+ * Functions tested: constructor(size), set(key, val), getInt/getLong/getDouble(key, default),
+ * addTo(key, delta), containsKey(key), delete(key), load()
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class PrimPrimitiveHashmapTest {
+
+    /**
+     * Test #1: Tests set(), override and getInt() with defaults for missing keys.
+     */
+    @Test
+    public void testIntSetAndGet() throws Exception {
+        PrimIntHashmap hashmap = new PrimIntHashmap().constructor(4);
+        assertTrue(hashmap.set("a", 1));
+        assertTrue(hashmap.set("b", 2));
+        assertTrue(hashmap.set("a", 3));
+
+        assertEquals(3, hashmap.getInt("a", -1));
+        assertEquals(2, hashmap.getInt("b", -1));
+        assertEquals(-1, hashmap.getInt("c", -1));
+        assertTrue(hashmap.containsKey("a"));
+        assertFalse(hashmap.containsKey("c"));
+        assertEquals(0.5, hashmap.load(), 0.01);
+    }
+
+    /**
+     * Test #2: Tests addTo() as a counter: absent keys start at 0, and a new key is
+     * rejected once the map is full while existing keys keep counting.
+     */
+    @Test
+    public void testIntAddTo() throws Exception {
+        PrimIntHashmap hashmap = new PrimIntHashmap(2);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(hashmap.addTo("hits", 1));
+        }
+        assertTrue(hashmap.addTo("misses", -2));
+        assertFalse(hashmap.addTo("errors", 1));
+
+        assertEquals(5, hashmap.getInt("hits", 0));
+        assertEquals(-2, hashmap.getInt("misses", 0));
+        assertFalse(hashmap.containsKey("errors"));
+        assertEquals(2, hashmap.getNumItems());
+    }
+
+    /**
+     * Test #3: Tests a deleted counter restarts from 0 and colliding keys survive
+     * deletion of their neighbours.
+     */
+    @Test
+    public void testLongDeleteAndRecount() throws Exception {
+        // "FB", "Ea" and "G#" all have the same hashCode()!
+        PrimLongHashmap hashmap = new PrimLongHashmap(4);
+        assertTrue(hashmap.set("FB", 1L << 40));
+        assertTrue(hashmap.set("Ea", 7L));
+        assertTrue(hashmap.set("G#", 9L));
+
+        assertTrue(hashmap.delete("FB"));
+        assertFalse(hashmap.delete("FB"));
+        assertEquals(7L, hashmap.getLong("Ea", 0L));
+        assertEquals(9L, hashmap.getLong("G#", 0L));
+
+        assertTrue(hashmap.addTo("FB", 5L));
+        assertEquals(5L, hashmap.getLong("FB", 0L));
+        assertEquals(3, hashmap.getNumItems());
+    }
+
+    /**
+     * Test #4: Tests double values, including addTo() on a fresh key.
+     */
+    @Test
+    public void testDoubleValues() throws Exception {
+        PrimDoubleHashmap hashmap = new PrimDoubleHashmap(3);
+        assertTrue(hashmap.set("pi", 3.14));
+        assertTrue(hashmap.addTo("sum", 0.5));
+        assertTrue(hashmap.addTo("sum", 0.25));
+
+        assertEquals(3.14, hashmap.getDouble("pi", 0), 0);
+        assertEquals(0.75, hashmap.getDouble("sum", 0), 0);
+        assertEquals(-1.0, hashmap.getDouble("e", -1.0), 0);
+    }
+
+    /**
+     * Test #5: Tests operations on maps with no allocated space.
+     */
+    @Test
+    public void testNonexistentMaps() throws Exception {
+        PrimIntHashmap ints = new PrimIntHashmap();
+        assertFalse(ints.set("a", 1));
+        assertFalse(ints.addTo("a", 1));
+        assertEquals(-1, ints.getInt("a", -1));
+        assertFalse(ints.delete("a"));
+        assertEquals(0, ints.load(), 0);
+
+        PrimLongHashmap longs = new PrimLongHashmap(0);
+        assertFalse(longs.set("a", 1L));
+        assertFalse(longs.containsKey("a"));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class PrimProbeHashmap defines an open-addressing storage mode for the fixed-size
+ * hashmap. Instead of chaining HashmapNodes inside NodeLists, keys and values live
+ * in parallel arrays and collisions are resolved with linear probing, so an
+ * insert never allocates and a hit usually touches a single cache line. The probing
+ * itself is done by PrimProbeTable; this class only keeps the values.
+ *
+ * The map supports exactly the same functions (and semantics) as PrimHashmap:
+ *
+ * constructor (size) - Initializes new hashmap
+ * set(key, val) - Maps a String key to an ArbObj val
+ * get(key) - Retrieves the ArbObj that this String key maps to
+ * delete(key) - deletes the key-val mapping
+ * load() - finds the load factor, a measure of how full the map is
+ * enableMetrics() - optional counters, latency sampling and probe length statistics
+ */
+public class PrimProbeHashmap<ArbObj> extends PrimProbeTable {
+
+    private Object[] values; // Values stored in each slot, parallel to the keys
+    private PrimHashmapMetrics metrics; // instrumentation, null unless enabled
+
+    /**
+     * Constructor PrimProbeHashmap initializes all fields to 0 or null if no size is
+     * specified, and waits for the constructor(size) function to be called on the
+     * object for any operations to be performed.
+     */
+    public PrimProbeHashmap() {
+        super();
+        this.values = null;
+    }
+
+    /**
+     * Constructor PrimProbeHashmap(sz) initializes all fields given the user-specified
+     * max capacity of the hashmap.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     */
+    public PrimProbeHashmap(int size) {
+        this(size, HashStrategy.SPREAD);
+    }
+
+    /**
+     * Constructor PrimProbeHashmap(sz, strategy) initializes all fields given the user-specified
+     * max capacity of the hashmap and the strategy used to hash its keys.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     * @param strategy
+     *  Hashes the keys, e.g. HashStrategy.sipHash() for keys an attacker controls.
+     */
+    public PrimProbeHashmap(int size, HashStrategy strategy) {
+        super(size, strategy);
+        this.values = new Object[getTrueSize()];
+    }
+
+    /**
+     * Function constructor() will call the PrimProbeHashmap constructor taking size as
+     * a parameter, which specified the max capacity of the hashmap to be created.
+     *
+     * @param size
+     *      Specifies max capacity of hashmap to be created.
+     *
+     * @return a PrimProbeHashmap object with specified size
+     */
+    public final PrimProbeHashmap<ArbObj> constructor(int size) {
+        return new PrimProbeHashmap<ArbObj>(size);
+    }
+
+    /**
+     * Function set will map a String to an arbitrary object value, and put the pair
+     * within the hashmap for the user to access later.
+     *
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to, arbitrary object of user's choice
+     *
+     * @return true on successful set, false on unsuccessful set
+     */
+    public boolean set(String key, ArbObj value) {
+        long start = (metrics == null) ? 0 : metrics.startSample();
+
+        int slot = claimSlot(key);
+        if (slot != FULL) {
+            // Both a duplicate and a freshly claimed slot simply take the new value
+            values[slot < 0 ? -slot - 1 : slot] = value;
+        }
+
+        if (metrics != null) metrics.recordSet(start, slot != FULL);
+        return slot != FULL;
+    }
+
+    /**
+     * Function get will retrieve the arbitrary object associated with a given key.
+     *
+     * @param key
+     *      Key whose value is to be retrieved.
+     *
+     * @return The value associated with the specified key, or null if no such value
+     *         exists for this particular key.
+     */
+    @SuppressWarnings("unchecked")
+    public ArbObj get(String key) {
+        long start = (metrics == null) ? 0 : metrics.startSample();
+
+        int slot = findSlot(key);
+
+        if (metrics != null) metrics.recordGet(start, slot >= 0);
+        return (slot < 0) ? null : (ArbObj) values[slot];
+    }
+
+    /**
+     * Function delete will remove the key-value entry for a given key.
+     *
+     * @param key
+     *      Key for which the key-value entry in the map is to be deleted.
+     *
+     * @return The value associated with the specified key on succesful delete,
+     *         or null if there was no such key-value pair to begin with.
+     */
+    @SuppressWarnings("unchecked")
+    public ArbObj delete(String key) {
+        long start = (metrics == null) ? 0 : metrics.startSample();
+
+        int slot = findSlot(key);
+        ArbObj deleted = null;
+        if (slot >= 0) {
+            deleted = (ArbObj) values[slot];
+            removeSlot(slot);
+        }
+
+        if (metrics != null) metrics.recordDelete(start, slot >= 0);
+        return deleted;
+    }
+
+    /**
+     * Function enableMetrics turns on instrumentation of set(), get() and delete(),
+     * timing one in every 64 operations. Calling it again returns the same metrics.
+     * The chain statistics report probe lengths.
+     *
+     * @return the metrics of this map.
+     */
+    public PrimHashmapMetrics enableMetrics() {
+        return enableMetrics(64);
+    }
+
+    /**
+     * Function enableMetrics turns on instrumentation of set(), get() and delete().
+     * Calling it again returns the existing metrics, whatever the interval.
+     *
+     * @param sampleInterval
+     *      Time one in this many operations; rounded up to a power of two.
+     *
+     * @return the metrics of this map.
+     */
+    public PrimHashmapMetrics enableMetrics(int sampleInterval) {
+        if (metrics == null) {
+            metrics = new PrimHashmapMetrics(new PrimHashmapMetrics.Source() {
+                public int[] lengthHistogram() {
+                    return probeLengthHistogram();
+                }
+
+                public int getNumItems() {
+                    return PrimProbeHashmap.this.getNumItems();
+                }
+            }, sampleInterval);
+        }
+        return metrics;
+    }
+
+    /**
+     * Function disableMetrics turns instrumentation off again.
+     */
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * Function getMetrics returns the metrics of this map, or null if not enabled.
+     */
+    public PrimHashmapMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    void clearValue(int slot) {
+        values[slot] = null;
+    }
+}
@@ -0,0 +1,124 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * PrimProbeHashmapTest will serve as the JUnit Test Suite corresponding to the
+ * open-addressing storage mode, PrimProbeHashmap.
+ *
+ * Functions tested: constructor(size), set(key, val), get(key), delete(key), load()
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class PrimProbeHashmapTest {
+
+    /**
+     * Test #1: Tests the constructor function allocates the closest power of 2 in
+     * slots, but keeps max capacity as size.
+     */
+    @Test
+    public void testConstructor() throws Exception {
+        PrimProbeHashmap<String> emptyHashmap = new PrimProbeHashmap<String>().constructor(0);
+        assertEquals(0, emptyHashmap.getHashmapSize());
+        assertEquals(0, emptyHashmap.getTrueSize());
+        assertFalse(emptyHashmap.set("a", "aaa"));
+
+        PrimProbeHashmap<String> hashmap = new PrimProbeHashmap<String>().constructor(129);
+        assertEquals(129, hashmap.getHashmapSize());
+        assertEquals(256, hashmap.getTrueSize());
+    }
+
+    /**
+     * Test #2: Tests set(), override and get() in a valid, basic case.
+     */
+    @Test
+    public void testBasicSetAndOverride() throws Exception {
+        PrimProbeHashmap<String> hashmap = new PrimProbeHashmap<>(5);
+        assertTrue(hashmap.set("1", "first"));
+        assertTrue(hashmap.set("2", "second"));
+        assertTrue(hashmap.set("1", "newfirst"));
+
+        assertEquals("newfirst", hashmap.get("1"));
+        assertEquals("second", hashmap.get("2"));
+        assertEquals(null, hashmap.get("3"));
+        assertEquals(2, hashmap.getNumItems());
+    }
+
+    /**
+     * Test #3: Tests set() when the map is full. New keys are rejected, but
+     * duplicates may still be overridden, even when every slot is taken.
+     */
+    @Test
+    public void testSetWhenFull() throws Exception {
+        PrimProbeHashmap<Integer> hashmap = new PrimProbeHashmap<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(hashmap.set("" + i, i));
+        }
+
+        assertFalse(hashmap.set("4", 4));
+        assertEquals(null, hashmap.get("4"));
+        assertTrue(hashmap.set("2", 22));
+        assertEquals(Integer.valueOf(22), hashmap.get("2"));
+        assertEquals(1.0, hashmap.load(), 0);
+    }
+
+    /**
+     * Test #4: Tests keys with the same hashCode() land in one probe cluster and
+     * stay reachable after an earlier member of the cluster is deleted.
+     */
+    @Test
+    public void testDeleteWithCollisions() throws Exception {
+        // "FB", "Ea" and "G#" all have the same hashCode()!
+        PrimProbeHashmap<String> hashmap = new PrimProbeHashmap<>(8);
+        assertTrue(hashmap.set("FB", "aaa"));
+        assertTrue(hashmap.set("Ea", "bbb"));
+        assertTrue(hashmap.set("G#", "ccc"));
+
+        assertEquals("aaa", hashmap.delete("FB"));
+        assertEquals(null, hashmap.get("FB"));
+        assertEquals("bbb", hashmap.get("Ea"));
+        assertEquals("ccc", hashmap.get("G#"));
+
+        assertEquals("ccc", hashmap.delete("G#"));
+        assertEquals("bbb", hashmap.get("Ea"));
+        assertEquals(1, hashmap.getNumItems());
+    }
+
+    /**
+     * Test #5: Tests heavy churn of set() and delete() keeps every remaining
+     * key reachable and the count exact.
+     */
+    @Test
+    public void testChurn() throws Exception {
+        PrimProbeHashmap<Integer> hashmap = new PrimProbeHashmap<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(hashmap.set("key" + i, i));
+        }
+        assertFalse(hashmap.set("key1000", 1000));
+
+        for (int i = 0; i < 1000; i += 2) {
+            assertEquals(Integer.valueOf(i), hashmap.delete("key" + i));
+        }
+        assertEquals(500, hashmap.getNumItems());
+
+        for (int i = 0; i < 1000; i++) {
+            Integer expected = (i % 2 == 0) ? null : Integer.valueOf(i);
+            assertEquals(expected, hashmap.get("key" + i));
+        }
+    }
+
+    /**
+     * Test #6: Tests operations on a PrimProbeHashmap with no allocated space.
+     */
+    @Test
+    public void testNonexistentMap() throws Exception {
+        PrimProbeHashmap<String> hashmap = new PrimProbeHashmap<>();
+        assertFalse(hashmap.set("can't", "do"));
+        assertEquals(null, hashmap.get("can't"));
+        assertEquals(null, hashmap.delete("can't"));
+        assertEquals(0, hashmap.load(), 0);
+    }
+}
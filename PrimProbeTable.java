@@ -0,0 +1,280 @@
+import java.util.Arrays;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class PrimProbeTable is the open-addressing engine shared by PrimProbeHashmap and
+ * the primitive-valued maps (PrimIntHashmap, PrimLongHashmap, PrimDoubleHashmap).
+ * It owns the key slots, their cached hashes and the fixed-capacity bookkeeping;
+ * subclasses keep the values in a parallel array of their choice and only have to
+ * move or clear a value when the engine asks them to.
+ *
+ * Collisions are resolved with linear probing, and deletion shifts the following
+ * entries of the cluster back instead of leaving tombstones.
+ */
+abstract class PrimProbeTable {
+
+    static final int FULL = Integer.MIN_VALUE; // claimSlot result when the map is full
+
+    private int hashmapSize; // The true size of the hashmap - underlying array length
+    private String[] keys;   // Keys stored in each slot, null marks an empty slot
+    private int[] hashes;    // Cached hash of the key in each slot
+    private int numItems;    // Number of items currently in hashmap
+    private int maxCapacity; // max capacity as specified by user
+    private HashStrategy strategy; // turns a key into the hash that picks its slot
+
+    /**
+     * Constructor PrimProbeTable initializes all fields to 0 or null, leaving a table
+     * on which every operation fails.
+     */
+    PrimProbeTable() {
+        this.hashmapSize = 0;
+        this.keys = null;
+        this.hashes = null;
+        this.numItems = 0;
+        this.maxCapacity = 0;
+        this.strategy = HashStrategy.SPREAD;
+    }
+
+    /**
+     * Constructor PrimProbeTable(sz) allocates the key slots given the user-specified
+     * max capacity. Since the capacity never exceeds the number of slots, a probe
+     * sequence always terminates.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     */
+    PrimProbeTable(int size) {
+        this(size, HashStrategy.SPREAD);
+    }
+
+    /**
+     * Constructor PrimProbeTable(sz, strategy) allocates the key slots given the
+     * user-specified max capacity and the strategy used to hash the keys.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     * @param strategy
+     *  Hashes the keys, e.g. HashStrategy.sipHash() for keys an attacker controls.
+     */
+    PrimProbeTable(int size, HashStrategy strategy) {
+        if (strategy == null) throw new NullPointerException("strategy");
+
+        hashmapSize = PrimHashmap.findNextPowerOfTwo(size);
+        keys = new String[hashmapSize];
+        hashes = new int[hashmapSize];
+        numItems = 0;
+        maxCapacity = size;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Function moveValue moves the value held in one slot into another slot.
+     *
+     * @param from
+     *      Slot to read the value from.
+     * @param to
+     *      Slot to write the value to.
+     */
+    abstract void moveValue(int from, int to);
+
+    /**
+     * Function clearValue resets the value held in a slot to its zero value, so
+     * that a freshly claimed slot always starts out as 0 / null.
+     *
+     * @param slot
+     *      Slot whose value is to be cleared.
+     */
+    abstract void clearValue(int slot);
+
+    /**
+     * Function findSlot finds the slot holding a specified key. Cached hashes are
+     * compared before calling String.equals.
+     *
+     * @param key
+     *      The key to look for.
+     *
+     * @return index of the slot holding the key, or -1 if the key is absent.
+     */
+    final int findSlot(String key) {
+        if (keys == null || hashmapSize == 0) return -1;
+
+        int hashVal = strategy.hash(key);
+        int mask = hashmapSize - 1;
+        int index = hashVal & mask;
+
+        for (int probes = 0; probes < hashmapSize; probes++) {
+            String slotKey = keys[index];
+            if (slotKey == null) return -1;
+            if (hashes[index] == hashVal && slotKey.equals(key)) return index;
+
+            index = (index + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Function claimSlot finds the slot of a key, or claims an empty one for it in
+     * a single walk of the probe sequence.
+     *
+     * @param key
+     *      The key to look for or insert.
+     *
+     * @return index of the slot if the key was already present, -(index + 1) if the
+     *         key was just inserted into an empty slot, or FULL if the key is absent
+     *         and the max capacity has been reached.
+     */
+    final int claimSlot(String key) {
+        if (keys == null || hashmapSize == 0) return FULL;
+
+        int hashVal = strategy.hash(key);
+        int mask = hashmapSize - 1;
+        int index = hashVal & mask;
+
+        // Walk the probe sequence until the key or an empty slot is found
+        for (int probes = 0; probes < hashmapSize; probes++) {
+            String slotKey = keys[index];
+
+            if (slotKey == null) {
+                // Max capacity check
+                if (numItems >= maxCapacity) return FULL;
+
+                keys[index] = key;
+                hashes[index] = hashVal;
+                numItems++;
+                return -(index + 1);
+            }
+
+            if (hashes[index] == hashVal && slotKey.equals(key)) return index;
+
+            index = (index + 1) & mask;
+        }
+
+        // Every slot is taken by another key, so the map is full
+        return FULL;
+    }
+
+    /**
+     * Function removeSlot deletes the entry in a slot. The slots following it are
+     * shifted back when their home slot does not lie between the hole and their
+     * current slot, so every probe sequence stays unbroken.
+     *
+     * @param hole
+     *      Index of an occupied slot, as returned by findSlot.
+     */
+    final void removeSlot(int hole) {
+        keys[hole] = null;
+        clearValue(hole);
+        numItems--;
+
+        int mask = hashmapSize - 1;
+        int index = hole;
+        while (true) {
+            index = (index + 1) & mask;
+            String slotKey = keys[index];
+            if (slotKey == null) break;
+
+            int home = hashes[index] & mask;
+            boolean homeBetween = (hole <= index)
+                    ? (hole < home && home <= index)
+                    : (hole < home || home <= index);
+
+            if (!homeBetween) {
+                keys[hole] = slotKey;
+                hashes[hole] = hashes[index];
+                moveValue(index, hole);
+                keys[index] = null;
+                clearValue(index);
+                hole = index;
+            }
+        }
+    }
+
+    /**
+     * Function probeLengthHistogram counts the entries by probe length, the number of
+     * slots a lookup inspects to find them, with empty slots at index 0.
+     *
+     * @return counts, where [0] is the number of empty slots and [k] the number of
+     *         entries found on the k-th probe.
+     */
+    final int[] probeLengthHistogram() {
+        if (keys == null) return new int[0];
+
+        int mask = hashmapSize - 1;
+        int[] counts = new int[2];
+        for (int index = 0; index < hashmapSize; index++) {
+            int length = (keys[index] == null) ? 0 : ((index - (hashes[index] & mask)) & mask) + 1;
+            if (length >= counts.length) counts = Arrays.copyOf(counts, Math.max(length + 1, counts.length * 2));
+            counts[length]++;
+        }
+
+        int longest = counts.length - 1;
+        while (longest > 1 && counts[longest] == 0) longest--;
+        return Arrays.copyOf(counts, longest + 1);
+    }
+
+    /**
+     * Function getHashStrategy returns the strategy that hashes the keys.
+     *
+     * @return the hash strategy.
+     */
+    public HashStrategy getHashStrategy() {
+        return this.strategy;
+    }
+
+    /**
+     * Function containsKey tells whether a key is present in the map.
+     *
+     * @param key
+     *      The key to look for.
+     *
+     * @return true if the key is mapped to a value.
+     */
+    public boolean containsKey(String key) {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * Function getNumItems() is a getter function for the number of items
+     * currently in the hashmap (occupancy).
+     *
+     * @return number of items in hashmap.
+     */
+    public int getNumItems() {
+        return this.numItems;
+    }
+
+    /**
+     * Function getHashmapSize() is a getter function for the max capacity
+     * of this hashmap.
+     *
+     * @return user-specified max capacity of current hashmap.
+     */
+    public int getHashmapSize() {
+        return this.maxCapacity;
+    }
+
+    /**
+     * Function getTrueSize() is a getter function for the true size
+     * (closest power of 2) of the underlying slot arrays of the hashmap.
+     * This is used for test purposes!
+     *
+     * @return true size of hashmap.
+     */
+    public int getTrueSize() {
+        return this.hashmapSize;
+    }
+
+    /**
+     * Function load will return the load factor (numItems/capacity) of the hashmap.
+     *
+     * @return Load factor as described above in float format.
+     */
+    public float load() {
+        if (keys == null || maxCapacity == 0) {
+            return 0;
+        }
+        return numItems / (float) maxCapacity;
+    }
+}
@@ -0,0 +1,536 @@
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class ShardedPrimHashmap spreads its entries over N independent PrimHashmap shards,
+ * each with its own table and its own lock, so writers working on different shards
+ * never touch the same cache lines. A key's shard is picked by the top bits of its
+ * hash, while each shard picks the bucket from the bottom bits of the same hash, so
+ * the two choices are independent. N is a power of two, by default the number of
+ * cores rounded up. The shard hashes the key again to find its bucket, which for
+ * the default strategy costs a few multiplies on the cached String.hashCode().
+ *
+ * The max capacity is enforced by a CapacityPolicy:
+ *
+ * PER_SHARD - every shard holds up to size / N keys and rejects sets beyond that,
+ *             so one hot shard can fill up while others still have room
+ * GLOBAL    - the map as a whole holds up to size keys wherever they land; the
+ *             shards are growable and a StripedCapacity counter hands out the slots
+ *
+ * Every single-key operation locks one shard. Bulk operations (setAll, getAll,
+ * deleteAll) group their keys by shard and lock each shard once; forEach and
+ * parallelForEach walk the shards one at a time, or one per core. Metrics are
+ * kept per shard, so an unbalanced key distribution shows up directly.
+ *
+ * The map supports the following functions:
+ *
+ * constructor (size), (size, shards, policy), (size, shards, policy, strategy)
+ * set(key, val), get(key), delete(key), containsKey(key), merge(key, val, fn)
+ * setAll/getAll/deleteAll(keys, ...) - batch versions, one lock per shard
+ * forEach(action), parallelForEach(action) - iteration shard by shard
+ * enableMetrics(), metricsSnapshots(), getShardSizes() - per-shard statistics
+ */
+public class ShardedPrimHashmap<ArbObj> {
+
+    /**
+     * Enum CapacityPolicy tells how the max capacity is shared between the shards.
+     */
+    public enum CapacityPolicy { PER_SHARD, GLOBAL }
+
+    private final PrimHashmap<ArbObj>[] shards; // the shards, also used as their locks
+    private final int shardShift;               // hash >>> shardShift is the shard index
+    private final int maxCapacity;              // max capacity of the whole map
+    private final CapacityPolicy policy;        // how the max capacity is enforced
+    private final StripedCapacity capacity;     // slots of a GLOBAL map, null for PER_SHARD
+    private final HashStrategy strategy;        // hashes the keys, shared with every shard
+
+    /**
+     * Constructor ShardedPrimHashmap(sz) creates a map of one shard per core, each
+     * holding an equal part of the max capacity.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     */
+    public ShardedPrimHashmap(int size) {
+        this(size, Runtime.getRuntime().availableProcessors(), CapacityPolicy.PER_SHARD);
+    }
+
+    /**
+     * Constructor ShardedPrimHashmap(sz, shards, policy) creates a map with a chosen
+     * number of shards.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     * @param shards
+     *  Number of shards, rounded up to a power of two.
+     * @param policy
+     *  How the max capacity is shared between the shards.
+     */
+    public ShardedPrimHashmap(int size, int shards, CapacityPolicy policy) {
+        this(size, shards, policy, HashStrategy.SPREAD);
+    }
+
+    /**
+     * Constructor ShardedPrimHashmap(sz, shards, policy, strategy) creates a map with
+     * a chosen number of shards whose keys are hashed by a HashStrategy.
+     *
+     * @param size
+     *  Specifies the max capacity of the hashmap to be created.
+     * @param shards
+     *  Number of shards, rounded up to a power of two.
+     * @param policy
+     *  How the max capacity is shared between the shards.
+     * @param strategy
+     *  Hashes the keys, e.g. HashStrategy.sipHash() for keys an attacker controls.
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedPrimHashmap(int size, int shards, CapacityPolicy policy, HashStrategy strategy) {
+        if (shards < 1 || shards > (1 << 16)) throw new IllegalArgumentException("Shard count must be between 1 and 65536: " + shards);
+        if (policy == null) throw new NullPointerException("policy");
+        if (strategy == null) throw new NullPointerException("strategy");
+
+        int count = PrimHashmap.findNextPowerOfTwo(shards);
+        int perShard = (Math.max(size, 0) + count - 1) / count;
+
+        this.shards = (PrimHashmap<ArbObj>[]) new PrimHashmap<?>[count];
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = (policy == CapacityPolicy.GLOBAL)
+                    ? PrimHashmap.<ArbObj>growable(perShard, strategy)
+                    : new PrimHashmap<ArbObj>(perShard, strategy);
+        }
+        this.shardShift = 32 - Integer.numberOfTrailingZeros(count);
+        this.maxCapacity = (policy == CapacityPolicy.GLOBAL) ? Math.max(size, 0) : perShard * count;
+        this.policy = policy;
+        this.capacity = (policy == CapacityPolicy.GLOBAL) ? new StripedCapacity(maxCapacity, count) : null;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Function set will map a String to an arbitrary object value, locking only the
+     * key's shard.
+     *
+     * @param key
+     *      String to use as key.
+     * @param value
+     *      value that the key should map to, arbitrary object of user's choice
+     *
+     * @return true on successful set, false on unsuccessful set
+     */
+    public boolean set(String key, ArbObj value) {
+        int index = shardIndex(key);
+        PrimHashmap<ArbObj> shard = shards[index];
+        synchronized (shard) {
+            return setLocked(index, shard, key, value);
+        }
+    }
+
+    /**
+     * Function get will retrieve the arbitrary object associated with a given key.
+     *
+     * @param key
+     *      Key whose value is to be retrieved.
+     *
+     * @return The value associated with the specified key, or null if no such value
+     *         exists for this particular key.
+     */
+    public ArbObj get(String key) {
+        PrimHashmap<ArbObj> shard = shards[shardIndex(key)];
+        synchronized (shard) {
+            return shard.get(key);
+        }
+    }
+
+    /**
+     * Function delete will remove the key-value entry for a given key.
+     *
+     * @param key
+     *      Key for which the key-value entry in the map is to be deleted.
+     *
+     * @return The value associated with the specified key on succesful delete,
+     *         or null if there was no such key-value pair to begin with.
+     */
+    public ArbObj delete(String key) {
+        int index = shardIndex(key);
+        PrimHashmap<ArbObj> shard = shards[index];
+        synchronized (shard) {
+            return deleteLocked(index, shard, key);
+        }
+    }
+
+    /**
+     * Function containsKey tells whether a key is present in the map, even when it
+     * is mapped to null.
+     *
+     * @param key
+     *      The key to look for.
+     *
+     * @return true if the key is in the map.
+     */
+    public boolean containsKey(String key) {
+        PrimHashmap<ArbObj> shard = shards[shardIndex(key)];
+        synchronized (shard) {
+            return shard.containsKey(key);
+        }
+    }
+
+    /**
+     * Function merge works like PrimHashmap.merge, atomically within the key's shard:
+     * an absent key is mapped to value, otherwise the function combines the current
+     * value with value, and a null result removes the key. The function runs while
+     * the shard is locked, so it must be short and must not use this map.
+     *
+     * @param key
+     *      Key whose value is to be merged.
+     * @param value
+     *      Value of an absent key, and second argument of the function; not null.
+     * @param remappingFunction
+     *      Combines the current value with value.
+     *
+     * @return The new value of the key, or null if the key is now absent.
+     */
+    public ArbObj merge(String key, ArbObj value,
+                        BiFunction<? super ArbObj, ? super ArbObj, ? extends ArbObj> remappingFunction) {
+        if (value == null) throw new NullPointerException("value");
+
+        int index = shardIndex(key);
+        PrimHashmap<ArbObj> shard = shards[index];
+        synchronized (shard) {
+            if (capacity == null) return shard.merge(key, value, remappingFunction);
+
+            int before = shard.getNumItems();
+            boolean reserved = capacity.reserve(index);
+            if (!reserved && !shard.containsKey(key)) return null;
+
+            ArbObj merged = shard.merge(key, value, remappingFunction);
+            settle(index, reserved, shard.getNumItems() - before);
+            return merged;
+        }
+    }
+
+    /**
+     * Function setAll will set a batch of key-value pairs, locking each shard once
+     * for all of its pairs. Pairs of the same shard keep their batch order.
+     *
+     * @param keys
+     *      Keys to set.
+     * @param values
+     *      Values to set, values[i] is the value for keys[i].
+     * @param results
+     *      Optional output, results[i] receives what set(keys[i], values[i]) would
+     *      return. May be null.
+     *
+     * @return number of pairs rejected because the map or their shard was full.
+     */
+    public int setAll(String[] keys, ArbObj[] values, boolean[] results) {
+        if (values.length != keys.length) {
+            throw new IllegalArgumentException("keys and values must have the same length");
+        }
+
+        int[] order = new int[keys.length];
+        int[] starts = groupByShard(keys, order);
+        int rejected = 0;
+        for (int index = 0; index < shards.length; index++) {
+            if (starts[index] == starts[index + 1]) continue;
+
+            PrimHashmap<ArbObj> shard = shards[index];
+            synchronized (shard) {
+                for (int k = starts[index]; k < starts[index + 1]; k++) {
+                    int i = order[k];
+                    boolean stored = setLocked(index, shard, keys[i], values[i]);
+                    if (!stored) rejected++;
+                    if (results != null) results[i] = stored;
+                }
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Function getAll will look up a batch of keys, locking each shard once for all
+     * of its keys.
+     *
+     * @param keys
+     *      Keys to look up.
+     * @param results
+     *      Output, results[i] receives get(keys[i]).
+     *
+     * @return number of keys found.
+     */
+    public int getAll(String[] keys, ArbObj[] results) {
+        int[] order = new int[keys.length];
+        int[] starts = groupByShard(keys, order);
+        int found = 0;
+        for (int index = 0; index < shards.length; index++) {
+            if (starts[index] == starts[index + 1]) continue;
+
+            PrimHashmap<ArbObj> shard = shards[index];
+            synchronized (shard) {
+                for (int k = starts[index]; k < starts[index + 1]; k++) {
+                    int i = order[k];
+                    results[i] = shard.get(keys[i]);
+                    if (results[i] != null || shard.containsKey(keys[i])) found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Function deleteAll will delete a batch of keys, locking each shard once for
+     * all of its keys.
+     *
+     * @param keys
+     *      Keys to delete.
+     * @param results
+     *      Optional output, results[i] receives delete(keys[i]). May be null.
+     *
+     * @return number of entries deleted.
+     */
+    public int deleteAll(String[] keys, ArbObj[] results) {
+        int[] order = new int[keys.length];
+        int[] starts = groupByShard(keys, order);
+        int deleted = 0;
+        for (int index = 0; index < shards.length; index++) {
+            if (starts[index] == starts[index + 1]) continue;
+
+            PrimHashmap<ArbObj> shard = shards[index];
+            synchronized (shard) {
+                for (int k = starts[index]; k < starts[index + 1]; k++) {
+                    int i = order[k];
+                    int before = shard.getNumItems();
+                    ArbObj value = deleteLocked(index, shard, keys[i]);
+                    if (shard.getNumItems() < before) deleted++;
+                    if (results != null) results[i] = value;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Function forEach will call an action on every key-value pair, one shard at a
+     * time. Each shard stays locked while its pairs are visited, so the action must
+     * not use this map.
+     *
+     * @param action
+     *      Called with each key and its value.
+     */
+    public void forEach(BiConsumer<? super String, ? super ArbObj> action) {
+        for (PrimHashmap<ArbObj> shard : shards) {
+            synchronized (shard) {
+                shard.forEach(action);
+            }
+        }
+    }
+
+    /**
+     * Function parallelForEach will call an action on every key-value pair, walking
+     * the shards in parallel on the common fork-join pool, each one locked by the
+     * thread walking it. The action may be called from several threads at once.
+     *
+     * @param action
+     *      Called with each key and its value; must be thread-safe.
+     */
+    public void parallelForEach(final BiConsumer<? super String, ? super ArbObj> action) {
+        IntStream.range(0, shards.length).parallel().forEach(index -> {
+            PrimHashmap<ArbObj> shard = shards[index];
+            synchronized (shard) {
+                shard.forEach(action);
+            }
+        });
+    }
+
+    /**
+     * Function enableMetrics turns on the instrumentation of every shard, timing one
+     * in every 64 operations.
+     *
+     * @return the metrics of each shard, in shard order, e.g. to register over JMX.
+     */
+    public PrimHashmapMetrics[] enableMetrics() {
+        PrimHashmapMetrics[] metrics = new PrimHashmapMetrics[shards.length];
+        for (int index = 0; index < shards.length; index++) {
+            synchronized (shards[index]) {
+                metrics[index] = shards[index].enableMetrics();
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Function disableMetrics turns the instrumentation of every shard off again.
+     */
+    public void disableMetrics() {
+        for (PrimHashmap<ArbObj> shard : shards) {
+            synchronized (shard) {
+                shard.disableMetrics();
+            }
+        }
+    }
+
+    /**
+     * Function metricsSnapshots copies the metrics of every shard, each while its
+     * shard is locked, so the chain statistics are consistent.
+     *
+     * @return a Snapshot per shard in shard order, null for shards without metrics.
+     */
+    public PrimHashmapMetrics.Snapshot[] metricsSnapshots() {
+        PrimHashmapMetrics.Snapshot[] snapshots = new PrimHashmapMetrics.Snapshot[shards.length];
+        for (int index = 0; index < shards.length; index++) {
+            synchronized (shards[index]) {
+                PrimHashmapMetrics metrics = shards[index].getMetrics();
+                if (metrics != null) snapshots[index] = metrics.snapshot();
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Function getShardSizes counts the items of every shard, to check how evenly the
+     * keys spread.
+     *
+     * @return number of items per shard, in shard order.
+     */
+    public int[] getShardSizes() {
+        int[] sizes = new int[shards.length];
+        for (int index = 0; index < shards.length; index++) {
+            synchronized (shards[index]) {
+                sizes[index] = shards[index].getNumItems();
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Function getNumItems() is a getter function for the number of items currently
+     * in the hashmap (occupancy). The count is exact when no writer is running.
+     *
+     * @return number of items in hashmap.
+     */
+    public int getNumItems() {
+        int total = 0;
+        for (int size : getShardSizes()) {
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+     * Function getHashmapSize() is a getter function for the max capacity of the
+     * whole hashmap; with PER_SHARD it is rounded up to a multiple of the shard count.
+     *
+     * @return max capacity of the hashmap.
+     */
+    public int getHashmapSize() {
+        return this.maxCapacity;
+    }
+
+    /**
+     * Function getShardCount() is a getter function for the number of shards.
+     *
+     * @return number of shards, a power of two.
+     */
+    public int getShardCount() {
+        return this.shards.length;
+    }
+
+    /**
+     * Function getCapacityPolicy() is a getter function for how the max capacity is
+     * shared between the shards.
+     *
+     * @return the capacity policy.
+     */
+    public CapacityPolicy getCapacityPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * Function load will return the load factor (numItems/capacity) of the hashmap.
+     *
+     * @return Load factor as described above in float format.
+     */
+    public float load() {
+        if (maxCapacity == 0) return 0;
+
+        return getNumItems() / (float) maxCapacity;
+    }
+
+    /**
+     * Helper function shardIndex picks a key's shard from the top bits of its hash.
+     * A single shard needs no hash, and its shift of 32 would act as a shift of 0.
+     */
+    private int shardIndex(String key) {
+        return (shards.length == 1) ? 0 : strategy.hash(key) >>> shardShift;
+    }
+
+    /**
+     * Helper function setLocked is set() on a shard whose lock is held. A GLOBAL map
+     * reserves a slot first and gives it back if the key was already present.
+     */
+    private boolean setLocked(int index, PrimHashmap<ArbObj> shard, String key, ArbObj value) {
+        if (capacity == null) return shard.set(key, value);
+
+        int before = shard.getNumItems();
+        if (capacity.reserve(index)) {
+            boolean stored = shard.set(key, value);
+            settle(index, true, shard.getNumItems() - before);
+            return stored;
+        }
+
+        // No slot left for a new key, but an existing key can still change
+        return shard.containsKey(key) && shard.set(key, value);
+    }
+
+    /**
+     * Helper function deleteLocked is delete() on a shard whose lock is held. A
+     * GLOBAL map returns the slot of a deleted key.
+     */
+    private ArbObj deleteLocked(int index, PrimHashmap<ArbObj> shard, String key) {
+        int before = shard.getNumItems();
+        ArbObj value = shard.delete(key);
+        if (capacity != null && shard.getNumItems() < before) capacity.release(index);
+        return value;
+    }
+
+    /**
+     * Helper function settle squares the slots of a GLOBAL map with the change in a
+     * shard's item count after a write: a slot reserved for a key that turned out to
+     * be present goes back, and so does the slot of a removed key.
+     */
+    private void settle(int index, boolean reserved, int added) {
+        for (int unused = (reserved ? 1 : 0) - added; unused > 0; unused--) {
+            capacity.release(index);
+        }
+    }
+
+    /**
+     * Helper function groupByShard sorts the indices of a batch of keys by shard with
+     * a counting sort, which keeps the batch order within each shard.
+     *
+     * @param keys
+     *      Keys of the batch.
+     * @param order
+     *      Output, the key indices grouped by shard.
+     *
+     * @return starts, where the keys of shard s are order[starts[s]] to order[starts[s + 1] - 1].
+     */
+    private int[] groupByShard(String[] keys, int[] order) {
+        int[] shardOf = new int[keys.length];
+        int[] starts = new int[shards.length + 1];
+        for (int i = 0; i < keys.length; i++) {
+            shardOf[i] = shardIndex(keys[i]);
+            starts[shardOf[i] + 1]++;
+        }
+        for (int index = 0; index < shards.length; index++) {
+            starts[index + 1] += starts[index];
+        }
+
+        int[] next = starts.clone();
+        for (int i = 0; i < keys.length; i++) {
+            order[next[shardOf[i]]++] = i;
+        }
+        return starts;
+    }
+}
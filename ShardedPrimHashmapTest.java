@@ -0,0 +1,221 @@
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * ShardedPrimHashmapTest will serve as the JUnit Test Suite corresponding to the
+ * sharded multi-map facade, ShardedPrimHashmap.
+ *
+ * Functions tested: constructor(size, shards, policy), set(key, val), get(key),
+ * delete(key), merge(key, val, fn), setAll/getAll/deleteAll, forEach,
+ * parallelForEach, enableMetrics(), getShardSizes(), load()
+ *
+ * Execution of these tests can be done by running the PrimHashmapTestRunner class.
+ */
+
+public class ShardedPrimHashmapTest {
+
+    /**
+     * Test #1: Tests the single-threaded semantics match PrimHashmap, and that the
+     * keys spread over every shard.
+     */
+    @Test
+    public void testSingleThreaded() throws Exception {
+        ShardedPrimHashmap<String> hashmap =
+                new ShardedPrimHashmap<>(4000, 6, ShardedPrimHashmap.CapacityPolicy.PER_SHARD);
+        assertEquals(8, hashmap.getShardCount());
+        assertEquals(4000, hashmap.getHashmapSize());
+
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(hashmap.set("key" + i, "value" + i));
+        }
+        assertTrue(hashmap.set("key5", null));
+        assertEquals(2000, hashmap.getNumItems());
+        assertEquals(0.5f, hashmap.load(), 0.0f);
+        assertTrue(hashmap.containsKey("key5"));
+        assertNull(hashmap.get("key5"));
+        assertEquals("value6", hashmap.get("key6"));
+        assertEquals("value6", hashmap.delete("key6"));
+        assertNull(hashmap.delete("key6"));
+        assertFalse(hashmap.containsKey("key6"));
+
+        int[] sizes = hashmap.getShardSizes();
+        int total = 0;
+        for (int size : sizes) {
+            assertTrue("Unbalanced shards", size > 150 && size < 350);
+            total += size;
+        }
+        assertEquals(1999, total);
+
+        final Map<String, String> seen = new HashMap<>();
+        hashmap.forEach((key, value) -> seen.put(key, value));
+        assertEquals(1999, seen.size());
+        assertEquals("value1999", seen.get("key1999"));
+
+        final AtomicInteger visited = new AtomicInteger();
+        hashmap.parallelForEach((key, value) -> visited.incrementAndGet());
+        assertEquals(1999, visited.get());
+
+        ShardedPrimHashmap<String> single = new ShardedPrimHashmap<>(2, 1, ShardedPrimHashmap.CapacityPolicy.PER_SHARD);
+        assertTrue(single.set("a", "1"));
+        assertTrue(single.set("b", "2"));
+        assertFalse(single.set("c", "3"));
+        assertEquals("2", single.get("b"));
+    }
+
+    /**
+     * Test #2: Tests PER_SHARD rejects a key once its own shard is full, while GLOBAL
+     * accepts exactly the max capacity wherever the keys land.
+     */
+    @Test
+    public void testCapacityPolicies() throws Exception {
+        ShardedPrimHashmap<Integer> perShard =
+                new ShardedPrimHashmap<>(64, 4, ShardedPrimHashmap.CapacityPolicy.PER_SHARD);
+        int accepted = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (perShard.set("k" + i, i)) accepted++;
+        }
+        assertEquals(64, accepted);
+        for (int size : perShard.getShardSizes()) {
+            assertEquals(16, size);
+        }
+
+        ShardedPrimHashmap<Integer> global =
+                new ShardedPrimHashmap<>(100, 4, ShardedPrimHashmap.CapacityPolicy.GLOBAL);
+        accepted = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (global.set("k" + i, i)) accepted++;
+        }
+        assertEquals(100, accepted);
+        assertEquals(100, global.getNumItems());
+
+        // A full map still updates existing keys, and a delete frees a slot
+        String present = null;
+        for (int i = 0; present == null; i++) {
+            if (global.containsKey("k" + i)) present = "k" + i;
+        }
+        assertTrue(global.set(present, -1));
+        assertEquals(Integer.valueOf(-1), global.get(present));
+        assertEquals(Integer.valueOf(0), global.merge(present, 1, Integer::sum));
+        assertFalse(global.set("new", 1));
+        assertNull(global.merge("new", 1, Integer::sum));
+        assertEquals(Integer.valueOf(0), global.delete(present));
+        assertTrue(global.set("new", 1));
+        assertFalse(global.set("newer", 1));
+
+        // A merge that removes its key frees the slot too
+        assertNull(global.merge("new", 1, (old, value) -> null));
+        assertTrue(global.set("newer", 1));
+        assertEquals(100, global.getNumItems());
+    }
+
+    /**
+     * Test #3: Tests many threads racing on a GLOBAL map: exactly maxCapacity keys
+     * are accepted, and counters merged from every thread add up.
+     */
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        final ShardedPrimHashmap<Integer> hashmap =
+                new ShardedPrimHashmap<>(5000, 8, ShardedPrimHashmap.CapacityPolicy.GLOBAL);
+        final AtomicInteger accepted = new AtomicInteger();
+        ConcurrentPrimHashmapTest.runThreads(8, id -> {
+            for (int i = 0; i < 2000; i++) {
+                if (hashmap.set(id + ":" + i, i)) accepted.incrementAndGet();
+            }
+        });
+        assertEquals(5000, accepted.get());
+        assertEquals(5000, hashmap.getNumItems());
+
+        final ShardedPrimHashmap<Integer> counters =
+                new ShardedPrimHashmap<>(1000, 16, ShardedPrimHashmap.CapacityPolicy.GLOBAL);
+        ConcurrentPrimHashmapTest.runThreads(8, id -> {
+            for (int i = 0; i < 20000; i++) {
+                assertNotNull(counters.merge("counter" + (i % 500), 1, Integer::sum));
+            }
+        });
+        assertEquals(500, counters.getNumItems());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(Integer.valueOf(8 * 40), counters.get("counter" + i));
+        }
+
+        final ConcurrentHashMap<String, Integer> expected = new ConcurrentHashMap<>();
+        final ShardedPrimHashmap<Integer> churn = new ShardedPrimHashmap<>(4000);
+        ConcurrentPrimHashmapTest.runThreads(4, id -> {
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < 500; i++) {
+                    String key = id + ":" + i;
+                    if ((i + round) % 3 == 0) {
+                        churn.delete(key);
+                        expected.remove(key);
+                    } else {
+                        assertTrue(churn.set(key, round));
+                        expected.put(key, round);
+                    }
+                }
+            }
+        });
+        assertEquals(expected.size(), churn.getNumItems());
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), churn.get(entry.getKey()));
+        }
+    }
+
+    /**
+     * Test #4: Tests the batch operations, which lock each shard once, and the
+     * per-shard metrics.
+     */
+    @Test
+    public void testBatchesAndMetrics() throws Exception {
+        ShardedPrimHashmap<Integer> hashmap =
+                new ShardedPrimHashmap<>(300, 4, ShardedPrimHashmap.CapacityPolicy.GLOBAL);
+        PrimHashmapMetrics[] metrics = hashmap.enableMetrics();
+        assertEquals(4, metrics.length);
+
+        String[] keys = new String[400];
+        Integer[] values = new Integer[400];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "batch" + (i % 350);
+            values[i] = i;
+        }
+        boolean[] stored = new boolean[400];
+        assertEquals(50, hashmap.setAll(keys, values, stored));
+        assertEquals(300, hashmap.getNumItems());
+
+        // A repeated key keeps its last value, like a loop of set() calls
+        Integer[] found = new Integer[350];
+        String[] distinct = new String[350];
+        for (int i = 0; i < distinct.length; i++) {
+            distinct[i] = "batch" + i;
+        }
+        assertEquals(300, hashmap.getAll(distinct, found));
+        for (int i = 0; i < 50; i++) {
+            if (found[i] != null) assertEquals(Integer.valueOf(i + 350), found[i]);
+        }
+
+        long sets = 0;
+        long hits = 0;
+        for (PrimHashmapMetrics.Snapshot snapshot : hashmap.metricsSnapshots()) {
+            sets += snapshot.getSets();
+            hits += snapshot.getHits();
+        }
+        assertEquals(350, sets);
+        assertEquals(300, hits);
+
+        Integer[] deleted = new Integer[350];
+        assertEquals(300, hashmap.deleteAll(distinct, deleted));
+        assertEquals(0, hashmap.getNumItems());
+        assertEquals(50, hashmap.setAll(distinct, new Integer[350], null));
+
+        hashmap.disableMetrics();
+        for (PrimHashmapMetrics.Snapshot snapshot : hashmap.metricsSnapshots()) {
+            assertNull(snapshot);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class StripedCapacity is a LongAdder-style counter that hands out the slots of a
+ * fixed max capacity to concurrent writers. Each stripe keeps a small local quota of
+ * reserved-but-unused slots, so most inserts and deletes only touch their own cell.
+ * The invariant  items + local quotas + global pool <= maxCapacity  always holds, so
+ * the number of items can never exceed the max capacity, even under contention. It
+ * is only short by a chunk that is moving from the pool to a quota, and reserve waits
+ * for such chunks before it reports the capacity as reached, so every slot can be
+ * filled.
+ *
+ * Will support the following operations:
+ *  reserve a slot for an insert in a stripe
+ *  release a slot after a delete in a stripe
+ *  get the number of reserved slots (items)
+ */
+class StripedCapacity {
+
+    private static final int CHUNK = 16;   // slots borrowed from the pool at once
+    private static final int PADDING = 16; // ints between cells, avoids false sharing
+
+    private final int maxCapacity;          // total slots that can be handed out
+    private final int stripeMask;           // number of stripes - 1
+    private final AtomicInteger pool;       // slots not yet handed to any stripe
+    private final AtomicIntegerArray quotas; // per-stripe local quota, padded
+    private final AtomicInteger started;    // chunk borrows begun
+    private final AtomicInteger finished;   // chunk borrows whose quota is banked
+
+    /**
+     * Constructor StripedCapacity initializes the pool with every slot.
+     *
+     * @param maxCapacity
+     *      The max capacity to enforce.
+     * @param stripes
+     *      Number of stripes, must be a power of two.
+     */
+    StripedCapacity(int maxCapacity, int stripes) {
+        this.maxCapacity = maxCapacity;
+        this.stripeMask = stripes - 1;
+        this.pool = new AtomicInteger(maxCapacity);
+        this.quotas = new AtomicIntegerArray(stripes * PADDING);
+        this.started = new AtomicInteger();
+        this.finished = new AtomicInteger();
+    }
+
+    /**
+     * Function reserve takes one slot for an insert. The stripe's own quota is tried
+     * first, then a chunk is borrowed from the global pool, and finally a single slot
+     * is stolen from any other stripe. Fails only when every slot is in use.
+     *
+     * @param stripe
+     *      The stripe (e.g. lock index) of the inserting writer.
+     *
+     * @return true if a slot was reserved, false if the max capacity is reached.
+     */
+    boolean reserve(int stripe) {
+        int cell = (stripe & stripeMask) * PADDING;
+        while (true) {
+            if (takeOne(cell)) return true;
+
+            // Borrow a chunk from the pool, keep one and bank the rest locally
+            int free;
+            while ((free = pool.get()) > 0) {
+                int take = Math.min(CHUNK, free);
+                started.incrementAndGet();
+                boolean taken = pool.compareAndSet(free, free - take);
+                if (taken && take > 1) quotas.addAndGet(cell, take - 1);
+                finished.incrementAndGet();
+                if (taken) return true;
+            }
+
+            // Pool is empty, the remaining slots sit in other stripes' quotas
+            int done = finished.get();
+            for (int i = 0; i <= stripeMask; i++) {
+                if (takeOne(i * PADDING)) return true;
+            }
+
+            // A chunk that left the pool before or during the scan may have been
+            // banked in a quota already scanned: only give up if none was moving
+            if (started.get() == done && pool.get() == 0) return false;
+        }
+    }
+
+    /**
+     * Function release gives one slot back after a delete.
+     *
+     * @param stripe
+     *      The stripe (e.g. lock index) of the deleting writer.
+     */
+    void release(int stripe) {
+        quotas.incrementAndGet((stripe & stripeMask) * PADDING);
+    }
+
+    /**
+     * Function reserved returns the number of slots currently in use. The value
+     * is exact when no writer is running and a close estimate otherwise.
+     *
+     * @return number of reserved slots (items).
+     */
+    int reserved() {
+        int free = pool.get();
+        for (int i = 0; i <= stripeMask; i++) {
+            free += quotas.get(i * PADDING);
+        }
+        return maxCapacity - free;
+    }
+
+    /**
+     * Helper function takeOne decrements a cell if it has quota left.
+     *
+     * @param cell
+     *      Index of the cell in the quotas array.
+     *
+     * @return true if one slot was taken from the cell.
+     */
+    private boolean takeOne(int cell) {
+        while (true) {
+            int local = quotas.get(cell);
+            if (local == 0) return false;
+            if (quotas.compareAndSet(cell, local, local - 1)) return true;
+        }
+    }
+}
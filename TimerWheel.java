@@ -0,0 +1,239 @@
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class TimerWheel is a hierarchical hashed timing wheel, used by
+ * PrimExpiringHashmap to find expired entries without scanning the table.
+ *
+ * Time is measured in whole ticks. Level 0 has one slot per tick for the current
+ * block of 64 ticks, level 1 one slot per 64 ticks for the current block of 4096,
+ * and so on. A node is filed in the lowest level whose current block holds its
+ * deadline; whenever time crosses into a new block of a level, that level's slot
+ * is cascaded down a level. Scheduling and cancelling are O(1), and each node is
+ * cascaded at most LEVELS - 1 times before it fires.
+ *
+ * Deadlines beyond the top level's block wait in an overflow list that is placed
+ * again once per top block. Each level keeps a bitmap of its non-empty slots, so
+ * advance() jumps straight from one occupied slot to the next instead of stepping
+ * through empty ticks.
+ */
+final class TimerWheel {
+
+    private static final int BITS = 6;                  // log2 of the slots per level
+    private static final int SLOTS = 1 << BITS;         // slots per level
+    private static final int LEVELS = 5;                // levels before the overflow list
+    private static final long SPAN = 1L << (BITS * LEVELS); // ticks covered by the top level
+
+    /**
+     * Class Node is an entry that can be filed in the wheel. Nodes form circular,
+     * doubly linked lists around a sentinel per slot, so a node can be cancelled
+     * without knowing anything but itself.
+     */
+    static class Node {
+        long deadline;   // tick at which the node fires
+        Node prev;       // previous node in its slot, null if not scheduled
+        Node next;       // next node in its slot, null if not scheduled
+        int level;       // level of the slot holding the node
+        int slot;        // index of the slot holding the node
+
+        /**
+         * Function isScheduled tells whether the node is filed in a wheel.
+         */
+        final boolean isScheduled() {
+            return next != null;
+        }
+    }
+
+    /**
+     * Interface Expiry receives the nodes that fire during advance().
+     */
+    interface Expiry {
+        void expired(Node node);
+    }
+
+    private final Node[][] heads = new Node[LEVELS + 1][];  // sentinel per slot, then overflow
+    private final long[] occupied = new long[LEVELS + 1];   // bitmap of non-empty slots
+    private long currentTick;                               // last tick processed
+    private int size;                                       // number of scheduled nodes
+
+    /**
+     * Constructor TimerWheel starts an empty wheel at tick 0.
+     */
+    TimerWheel() {
+        for (int level = 0; level <= LEVELS; level++) {
+            heads[level] = new Node[(level == LEVELS) ? 1 : SLOTS];
+            for (int slot = 0; slot < heads[level].length; slot++) {
+                Node head = new Node();
+                head.prev = head;
+                head.next = head;
+                heads[level][slot] = head;
+            }
+        }
+    }
+
+    /**
+     * Function schedule files a node to fire at a tick. A deadline that has already
+     * passed fires on the next tick. A node that is already scheduled is moved.
+     *
+     * @param node
+     *      The node to schedule.
+     * @param deadline
+     *      Tick at which the node fires.
+     */
+    void schedule(Node node, long deadline) {
+        if (node.isScheduled()) cancel(node);
+
+        node.deadline = Math.max(deadline, currentTick + 1);
+        place(node);
+        size++;
+    }
+
+    /**
+     * Function cancel removes a node from the wheel. Cancelling a node that is not
+     * scheduled does nothing.
+     *
+     * @param node
+     *      The node to cancel.
+     */
+    void cancel(Node node) {
+        if (!node.isScheduled()) return;
+
+        unlink(node);
+        size--;
+    }
+
+    /**
+     * Function advance moves time forward and hands every node whose deadline is at
+     * or before the new tick to the expiry callback, in deadline order.
+     *
+     * @param now
+     *      The tick to advance to; ticks at or before the current one are ignored.
+     * @param expiry
+     *      Receives each node as it fires, after it has left the wheel.
+     */
+    void advance(long now, Expiry expiry) {
+        while (currentTick < now) {
+            long next = nextEvent();
+            if (next > now) {
+                currentTick = now;
+                return;
+            }
+
+            // Higher levels first, so cascaded nodes can still fire on this tick
+            currentTick = next;
+            if ((next & (SPAN - 1)) == 0) cascade(LEVELS, 0);
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((next & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((next >>> (BITS * level)) & (SLOTS - 1)));
+                }
+            }
+            fire((int) (next & (SLOTS - 1)), expiry);
+        }
+    }
+
+    /**
+     * Function getCurrentTick returns the last tick advance() processed.
+     */
+    long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Function size returns the number of scheduled nodes.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Helper function nextEvent finds the first tick after the current one at which
+     * an occupied slot is either fired (level 0) or cascaded (higher levels).
+     *
+     * @return that tick, or Long.MAX_VALUE if the wheel is empty.
+     */
+    private long nextEvent() {
+        long next = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = BITS * level;
+            int index = (int) ((currentTick >>> shift) & (SLOTS - 1));
+            long later = (index == SLOTS - 1) ? 0 : occupied[level] & (-2L << index);
+            if (later == 0) continue;
+
+            long blockStart = currentTick & ~((1L << (shift + BITS)) - 1);
+            next = Math.min(next, blockStart + ((long) Long.numberOfTrailingZeros(later) << shift));
+        }
+        if (occupied[LEVELS] != 0) next = Math.min(next, (currentTick | (SPAN - 1)) + 1);
+        return next;
+    }
+
+    /**
+     * Helper function place links a node into the lowest level whose current block
+     * holds its deadline. A deadline past the top level's current block goes to the
+     * overflow list, which is placed again each time a new top block begins.
+     */
+    private void place(Node node) {
+        int level = 0;
+        while (level < LEVELS
+                && (node.deadline >>> (BITS * (level + 1))) != (currentTick >>> (BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (level == LEVELS) ? 0 : (int) ((node.deadline >>> (BITS * level)) & (SLOTS - 1));
+
+        Node head = heads[level][slot];
+        node.level = level;
+        node.slot = slot;
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+        occupied[level] |= 1L << slot;
+    }
+
+    /**
+     * Helper function unlink takes a node out of its slot.
+     */
+    private void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+
+        Node head = heads[node.level][node.slot];
+        if (head.next == head) occupied[node.level] &= ~(1L << node.slot);
+
+        node.prev = null;
+        node.next = null;
+    }
+
+    /**
+     * Helper function cascade files every node of a higher level slot again, now
+     * that time has reached the block it covers. The slot is detached first, since
+     * an overflow node may land back in the overflow list.
+     */
+    private void cascade(int level, int slot) {
+        Node head = heads[level][slot];
+        if (head.next == head) return;
+
+        Node node = head.next;
+        head.prev.next = null;
+        head.prev = head;
+        head.next = head;
+        occupied[level] &= ~(1L << slot);
+
+        while (node != null) {
+            Node following = node.next;
+            place(node);
+            node = following;
+        }
+    }
+
+    /**
+     * Helper function fire expires every node of a level 0 slot.
+     */
+    private void fire(int slot, Expiry expiry) {
+        Node head = heads[0][slot];
+        while (head.next != head) {
+            Node node = head.next;
+            unlink(node);
+            size--;
+            expiry.expired(node);
+        }
+    }
+}
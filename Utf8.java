@@ -0,0 +1,259 @@
+import java.nio.ByteBuffer;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class Utf8 holds the UTF-8 helpers for maps that keep their keys as bytes. Keys
+ * are encoded straight into, and compared straight against, the backing buffer, so
+ * a lookup never allocates a byte[] copy of the key.
+ *
+ * The encoding is WTF-8: UTF-8 generalized so that an unpaired surrogate is written
+ * as the three bytes of its own code unit, where String.getBytes(UTF_8) would write
+ * '?'. Well-formed strings encode to exactly their UTF-8 bytes, and every String,
+ * well-formed or not, encodes to different bytes than every other String, so
+ * decode() gives back the very key that was encoded.
+ */
+final class Utf8 {
+
+    private static final int FNV_BASIS = 0x811c9dc5; // FNV-1a offset basis
+    private static final int FNV_PRIME = 0x01000193;  // FNV-1a prime
+
+    private Utf8() {}
+
+    /**
+     * Function encodedLength computes how many bytes a key takes in UTF-8.
+     *
+     * @param key
+     *      The key to measure.
+     *
+     * @return number of UTF-8 bytes.
+     */
+    static int encodedLength(CharSequence key) {
+        int length = 0;
+        int count = key.length();
+        for (int i = 0; i < count; i++) {
+            char c = key.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (isPair(key, i)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Function encode writes a key in UTF-8 at an absolute offset of a buffer.
+     *
+     * @param key
+     *      The key to write.
+     * @param buffer
+     *      Destination buffer, its position is left untouched.
+     * @param offset
+     *      Absolute offset of the first byte.
+     */
+    static void encode(CharSequence key, ByteBuffer buffer, int offset) {
+        int count = key.length();
+        for (int i = 0; i < count; i++) {
+            int codePoint = codePointAt(key, i);
+            if (codePoint > 0xFFFF) i++;
+
+            long word = encodeCodePoint(codePoint);
+            int bytes = (int) (word >>> 32);
+            for (int b = bytes - 1; b >= 0; b--) {
+                buffer.put(offset++, (byte) (word >>> (8 * b)));
+            }
+        }
+    }
+
+    /**
+     * Function equals compares a key against UTF-8 bytes stored in a buffer,
+     * encoding the key on the fly.
+     *
+     * @param key
+     *      The key to compare.
+     * @param buffer
+     *      Buffer holding the stored bytes.
+     * @param offset
+     *      Absolute offset of the stored bytes.
+     * @param length
+     *      Number of stored bytes.
+     *
+     * @return true if the key encodes to exactly the stored bytes.
+     */
+    static boolean equals(CharSequence key, ByteBuffer buffer, int offset, int length) {
+        int end = offset + length;
+        int count = key.length();
+        for (int i = 0; i < count; i++) {
+            int codePoint = codePointAt(key, i);
+            if (codePoint > 0xFFFF) i++;
+
+            long word = encodeCodePoint(codePoint);
+            int bytes = (int) (word >>> 32);
+            if (offset + bytes > end) return false;
+            for (int b = bytes - 1; b >= 0; b--) {
+                if (buffer.get(offset++) != (byte) (word >>> (8 * b))) return false;
+            }
+        }
+        return offset == end;
+    }
+
+    /**
+     * Function hash computes the hash of a key from its UTF-8 bytes, encoding the key
+     * on the fly. It equals hash(bytes, 0, bytes.length) for the encoded bytes, so a
+     * key can be looked up either as characters or as bytes.
+     *
+     * @param key
+     *      The key to hash.
+     *
+     * @return the 32-bit hash.
+     */
+    static int hash(CharSequence key) {
+        int h = FNV_BASIS;
+        int count = key.length();
+        for (int i = 0; i < count; i++) {
+            int codePoint = codePointAt(key, i);
+            if (codePoint > 0xFFFF) i++;
+
+            long word = encodeCodePoint(codePoint);
+            int bytes = (int) (word >>> 32);
+            for (int b = bytes - 1; b >= 0; b--) {
+                h = (h ^ ((int) (word >>> (8 * b)) & 0xFF)) * FNV_PRIME;
+            }
+        }
+        return HashStrategy.mix(h);
+    }
+
+    /**
+     * Function hash computes the hash of a key given as UTF-8 bytes.
+     *
+     * @param bytes
+     *      Array holding the key.
+     * @param offset
+     *      Index of the first byte of the key.
+     * @param length
+     *      Number of bytes in the key.
+     *
+     * @return the 32-bit hash.
+     */
+    static int hash(byte[] bytes, int offset, int length) {
+        int h = FNV_BASIS;
+        for (int i = offset; i < offset + length; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * FNV_PRIME;
+        }
+        return HashStrategy.mix(h);
+    }
+
+    /**
+     * Function decode reads a key from an absolute offset of a buffer. It is the
+     * inverse of encode(), unpaired surrogates included; bytes that encode() cannot
+     * have written decode to U+FFFD.
+     *
+     * @param buffer
+     *      Buffer holding the bytes.
+     * @param offset
+     *      Absolute offset of the first byte.
+     * @param length
+     *      Number of bytes.
+     *
+     * @return the decoded key.
+     */
+    static String decode(ByteBuffer buffer, int offset, int length) {
+        char[] chars = new char[length];
+        int count = 0;
+        int end = offset + length;
+        while (offset < end) {
+            int b = buffer.get(offset++);
+            if (b >= 0) {
+                chars[count++] = (char) b;
+                continue;
+            }
+
+            int extra;
+            int cp;
+            if ((b & 0xE0) == 0xC0) {
+                extra = 1;
+                cp = b & 0x1F;
+            } else if ((b & 0xF0) == 0xE0) {
+                extra = 2;
+                cp = b & 0x0F;
+            } else if ((b & 0xF8) == 0xF0) {
+                extra = 3;
+                cp = b & 0x07;
+            } else {
+                chars[count++] = '\uFFFD';
+                continue;
+            }
+
+            int read = 0;
+            while (read < extra && offset + read < end && (buffer.get(offset + read) & 0xC0) == 0x80) {
+                cp = (cp << 6) | (buffer.get(offset + read) & 0x3F);
+                read++;
+            }
+            if (read < extra || cp > Character.MAX_CODE_POINT) {
+                chars[count++] = '\uFFFD';
+                continue;
+            }
+
+            offset += extra;
+            if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                chars[count++] = Character.highSurrogate(cp);
+                chars[count++] = Character.lowSurrogate(cp);
+            } else {
+                chars[count++] = (char) cp;
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Helper function codePointAt reads the code point starting at index i. An
+     * unpaired surrogate is returned as its own code unit, which encodes to three
+     * bytes like any other char of the BMP.
+     */
+    private static int codePointAt(CharSequence key, int i) {
+        char c = key.charAt(i);
+        if (isPair(key, i)) return Character.toCodePoint(c, key.charAt(i + 1));
+        return c;
+    }
+
+    /**
+     * Helper function isPair tells whether index i starts a valid surrogate pair.
+     */
+    private static boolean isPair(CharSequence key, int i) {
+        return Character.isHighSurrogate(key.charAt(i))
+                && i + 1 < key.length()
+                && Character.isLowSurrogate(key.charAt(i + 1));
+    }
+
+    /**
+     * Helper function encodeCodePoint packs the UTF-8 bytes of a code point into the
+     * low four bytes of a long, first byte most significant, and the byte count into
+     * the high word.
+     */
+    private static long encodeCodePoint(int cp) {
+        long bytes;
+        int count;
+        if (cp < 0x80) {
+            bytes = cp;
+            count = 1;
+        } else if (cp < 0x800) {
+            bytes = ((0xC0 | (cp >>> 6)) << 8) | (0x80 | (cp & 0x3F));
+            count = 2;
+        } else if (cp < 0x10000) {
+            bytes = ((0xE0 | (cp >>> 12)) << 16)
+                    | ((0x80 | ((cp >>> 6) & 0x3F)) << 8) | (0x80 | (cp & 0x3F));
+            count = 3;
+        } else {
+            bytes = ((long) (0xF0 | (cp >>> 18)) << 24) | ((0x80 | ((cp >>> 12) & 0x3F)) << 16)
+                    | ((0x80 | ((cp >>> 6) & 0x3F)) << 8) | (0x80 | (cp & 0x3F));
+            count = 4;
+        }
+        return ((long) count << 32) | bytes;
+    }
+}
@@ -0,0 +1,118 @@
+import java.nio.ByteBuffer;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Interface ValueCodec defines how a value object is turned into bytes and back, for
+ * hashmaps that keep their values outside of the Java heap. Codecs with a fixed width
+ * (the primitive ones) report it through fixedLength(); variable-length codecs return
+ * -1 and the map stores each value as a length-prefixed blob.
+ *
+ * Built-in codecs: INTEGER, LONG, DOUBLE (fixed width), STRING (UTF-8), BYTES (raw).
+ */
+public interface ValueCodec<ArbObj> {
+
+    /**
+     * Function fixedLength reports the width of every encoded value.
+     *
+     * @return number of bytes of every encoded value, or -1 if it varies.
+     */
+    int fixedLength();
+
+    /**
+     * Function encodedLength computes how many bytes a value encodes to.
+     *
+     * @param value
+     *      The value to measure.
+     *
+     * @return number of bytes encode() will write for this value.
+     */
+    int encodedLength(ArbObj value);
+
+    /**
+     * Function encode writes a value at an absolute offset of a buffer.
+     *
+     * @param value
+     *      The value to write.
+     * @param buffer
+     *      Destination buffer, its position is left untouched.
+     * @param offset
+     *      Absolute offset of the first byte.
+     */
+    void encode(ArbObj value, ByteBuffer buffer, int offset);
+
+    /**
+     * Function decode reads a value from an absolute offset of a buffer.
+     *
+     * @param buffer
+     *      Buffer holding the bytes, its position is left untouched.
+     * @param offset
+     *      Absolute offset of the first byte.
+     * @param length
+     *      Number of bytes that encode() wrote for this value.
+     *
+     * @return the decoded value.
+     */
+    ArbObj decode(ByteBuffer buffer, int offset, int length);
+
+    ValueCodec<Integer> INTEGER = new ValueCodec<Integer>() {
+        public int fixedLength() { return 4; }
+        public int encodedLength(Integer value) { return 4; }
+        public void encode(Integer value, ByteBuffer buffer, int offset) {
+            buffer.putInt(offset, value);
+        }
+        public Integer decode(ByteBuffer buffer, int offset, int length) {
+            return buffer.getInt(offset);
+        }
+    };
+
+    ValueCodec<Long> LONG = new ValueCodec<Long>() {
+        public int fixedLength() { return 8; }
+        public int encodedLength(Long value) { return 8; }
+        public void encode(Long value, ByteBuffer buffer, int offset) {
+            buffer.putLong(offset, value);
+        }
+        public Long decode(ByteBuffer buffer, int offset, int length) {
+            return buffer.getLong(offset);
+        }
+    };
+
+    ValueCodec<Double> DOUBLE = new ValueCodec<Double>() {
+        public int fixedLength() { return 8; }
+        public int encodedLength(Double value) { return 8; }
+        public void encode(Double value, ByteBuffer buffer, int offset) {
+            buffer.putDouble(offset, value);
+        }
+        public Double decode(ByteBuffer buffer, int offset, int length) {
+            return buffer.getDouble(offset);
+        }
+    };
+
+    ValueCodec<String> STRING = new ValueCodec<String>() {
+        public int fixedLength() { return -1; }
+        public int encodedLength(String value) { return Utf8.encodedLength(value); }
+        public void encode(String value, ByteBuffer buffer, int offset) {
+            Utf8.encode(value, buffer, offset);
+        }
+        public String decode(ByteBuffer buffer, int offset, int length) {
+            return Utf8.decode(buffer, offset, length);
+        }
+    };
+
+    ValueCodec<byte[]> BYTES = new ValueCodec<byte[]>() {
+        public int fixedLength() { return -1; }
+        public int encodedLength(byte[] value) { return value.length; }
+        public void encode(byte[] value, ByteBuffer buffer, int offset) {
+            for (int i = 0; i < value.length; i++) {
+                buffer.put(offset + i, value[i]);
+            }
+        }
+        public byte[] decode(ByteBuffer buffer, int offset, int length) {
+            byte[] value = new byte[length];
+            for (int i = 0; i < length; i++) {
+                value[i] = buffer.get(offset + i);
+            }
+            return value;
+        }
+    };
+}
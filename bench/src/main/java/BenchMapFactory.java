@@ -0,0 +1,124 @@
+import java.util.HashMap;
+
+import bench.BenchMap;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class BenchMapFactory adapts every hashmap variant, and the java.util.HashMap
+ * baseline, to the BenchMap interface the benchmarks drive. It lives in the default
+ * package because that is the only place the hashmap classes can be referenced from.
+ */
+public class BenchMapFactory implements BenchMap.Factory {
+
+    private static final Integer ONE = 1;
+
+    /**
+     * Function create builds the named implementation with the given max capacity.
+     *
+     * @param impl
+     *      One of PrimHashmap, PrimProbeHashmap, PrimArenaHashmap, ConcurrentPrimHashmap,
+     *      HashMap, PrimHashmap:IDENTITY / :SEEDED / :SIPHASH for another HashStrategy,
+     *      PrimHashmap:GROWABLE for a growable map that starts at 16, or
+     *      ShardedPrimHashmap (:GLOBAL) with one shard per core.
+     * @param capacity
+     *      Max capacity of the map.
+     *
+     * @return a fresh, empty map.
+     */
+    public BenchMap create(String impl, final int capacity) {
+        switch (impl) {
+            case "PrimHashmap":
+                return chained(new PrimHashmap<Integer>(capacity));
+            case "PrimHashmap:IDENTITY":
+                return chained(new PrimHashmap<Integer>(capacity, HashStrategy.IDENTITY));
+            case "PrimHashmap:SEEDED":
+                return chained(new PrimHashmap<Integer>(capacity, HashStrategy.seeded()));
+            case "PrimHashmap:SIPHASH":
+                return chained(new PrimHashmap<Integer>(capacity, HashStrategy.sipHash()));
+            case "PrimHashmap:GROWABLE":
+                // Starts small and grows incrementally, so filling it pays for every resize
+                return chained(PrimHashmap.<Integer>growable(16));
+            case "PrimProbeHashmap": {
+                final PrimProbeHashmap<Integer> map = new PrimProbeHashmap<>(capacity);
+                return new BenchMap() {
+                    public boolean set(String key, Integer value) { return map.set(key, value); }
+                    public Integer get(String key) { return map.get(key); }
+                    public Integer delete(String key) { return map.delete(key); }
+                    public float load() { return map.load(); }
+                };
+            }
+            case "PrimArenaHashmap": {
+                final PrimArenaHashmap<Integer> map = new PrimArenaHashmap<>(capacity);
+                return new BenchMap() {
+                    public boolean set(String key, Integer value) { return map.set(key, value); }
+                    public Integer get(String key) { return map.get(key); }
+                    public Integer delete(String key) { return map.delete(key); }
+                    public float load() { return map.load(); }
+                };
+            }
+            case "ConcurrentPrimHashmap": {
+                final ConcurrentPrimHashmap<Integer> map = new ConcurrentPrimHashmap<>(capacity);
+                return new BenchMap() {
+                    public boolean set(String key, Integer value) { return map.set(key, value); }
+                    public Integer get(String key) { return map.get(key); }
+                    public Integer delete(String key) { return map.delete(key); }
+                    public float load() { return map.load(); }
+                };
+            }
+            case "ShardedPrimHashmap":
+                return sharded(new ShardedPrimHashmap<Integer>(capacity));
+            case "ShardedPrimHashmap:GLOBAL":
+                return sharded(new ShardedPrimHashmap<Integer>(capacity,
+                        Runtime.getRuntime().availableProcessors(), ShardedPrimHashmap.CapacityPolicy.GLOBAL));
+            case "HashMap": {
+                // Baseline: presized so it never rehashes, capacity enforced like set()
+                final HashMap<String, Integer> map = new HashMap<>(capacity * 4 / 3 + 1);
+                return new BenchMap() {
+                    public boolean set(String key, Integer value) {
+                        if (map.size() >= capacity && !map.containsKey(key)) return false;
+                        map.put(key, value);
+                        return true;
+                    }
+                    public Integer get(String key) { return map.get(key); }
+                    public Integer delete(String key) { return map.remove(key); }
+                    public float load() { return map.size() / (float) capacity; }
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + impl);
+        }
+    }
+
+    /**
+     * Helper function sharded adapts a ShardedPrimHashmap.
+     */
+    private static BenchMap sharded(final ShardedPrimHashmap<Integer> map) {
+        return new BenchMap() {
+            public boolean set(String key, Integer value) { return map.set(key, value); }
+            public Integer get(String key) { return map.get(key); }
+            public Integer delete(String key) { return map.delete(key); }
+            public float load() { return map.load(); }
+            public Integer increment(String key) { return map.merge(key, ONE, Integer::sum); }
+        };
+    }
+
+    /**
+     * Helper function chained adapts a PrimHashmap, reporting its longest chain.
+     */
+    private static BenchMap chained(final PrimHashmap<Integer> map) {
+        return new BenchMap() {
+            public boolean set(String key, Integer value) { return map.set(key, value); }
+            public Integer get(String key) { return map.get(key); }
+            public Integer delete(String key) { return map.delete(key); }
+            public float load() { return map.load(); }
+            public Integer increment(String key) { return map.merge(key, ONE, Integer::sum); }
+            public int maxChainLength() {
+                // Enabled just for the one table pass, so measured calls stay uninstrumented
+                int longest = map.enableMetrics().snapshot().getMaxChainLength();
+                map.disableMetrics();
+                return longest;
+            }
+        };
+    }
+}
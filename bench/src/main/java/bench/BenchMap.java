@@ -0,0 +1,76 @@
+package bench;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Interface BenchMap is the common shape the benchmarks drive, so every hashmap
+ * variant and the java.util.HashMap baseline run through identical benchmark code.
+ * Each JMH fork only ever sees one implementation, so the call stays monomorphic.
+ *
+ * JMH refuses benchmarks in the default package, while the hashmaps live there and
+ * cannot be imported from a named one. The adapters are therefore built by the
+ * default-package class BenchMapFactory, which is looked up reflectively once.
+ */
+public interface BenchMap {
+
+    boolean set(String key, Integer value);
+
+    Integer get(String key);
+
+    Integer delete(String key);
+
+    float load();
+
+    /**
+     * Function maxChainLength reports the longest collision chain, for the maps that
+     * can tell.
+     *
+     * @return the longest chain, or -1 if unknown.
+     */
+    default int maxChainLength() {
+        return -1;
+    }
+
+    /**
+     * Function increment adds one to the counter of a key, starting from 0 if absent.
+     * The default looks the key up with get() and stores it again with set(); maps
+     * with a single-lookup merge() use that instead.
+     *
+     * @return the new count, or null if the key could not be added.
+     */
+    default Integer increment(String key) {
+        Integer count = get(key);
+        Integer next = (count == null) ? 1 : count + 1;
+        return set(key, next) ? next : null;
+    }
+
+    /**
+     * Interface Factory is implemented by BenchMapFactory in the default package.
+     */
+    interface Factory {
+        BenchMap create(String impl, int capacity);
+    }
+
+    /**
+     * Function create builds the named implementation with the given max capacity.
+     *
+     * @param impl
+     *      One of PrimHashmap, PrimProbeHashmap, PrimArenaHashmap, ConcurrentPrimHashmap,
+     *      HashMap, PrimHashmap:IDENTITY / :SEEDED / :SIPHASH for another HashStrategy,
+     *      PrimHashmap:GROWABLE for a growable map that starts at 16, or
+     *      ShardedPrimHashmap (:GLOBAL) with one shard per core.
+     * @param capacity
+     *      Max capacity of the map.
+     *
+     * @return a fresh, empty map.
+     */
+    static BenchMap create(String impl, int capacity) {
+        try {
+            Factory factory = (Factory) Class.forName("BenchMapFactory")
+                    .getDeclaredConstructor().newInstance();
+            return factory.create(impl, capacity);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchMapFactory is missing from the classpath", e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class ConcurrentReadBenchmark measures read throughput when several threads share
+ * one fully loaded, otherwise read-only map. Only implementations that are safe to
+ * read concurrently once populated are listed. Change the thread count with -t.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@Threads(4)
+public class ConcurrentReadBenchmark {
+
+    /**
+     * Class SharedMap is the map all reader threads share.
+     */
+    @State(Scope.Benchmark)
+    public static class SharedMap {
+
+        @Param({"PrimHashmap", "PrimProbeHashmap", "ConcurrentPrimHashmap", "HashMap"})
+        public String impl;
+
+        @Param({"1024", "1048576", "16777216"})
+        public int capacity;
+
+        @Param({"SHORT", "SHARED_PREFIX"})
+        public KeySets.Shape keyShape;
+
+        BenchMap map;       // filled map shared by every thread
+        String[] present;   // keys stored in the map
+        int mask;           // present.length rounded down to a power of two - 1
+
+        @Setup
+        public void setUp() {
+            present = KeySets.generate(keyShape, capacity, 1);
+            mask = Integer.highestOneBit(capacity) - 1;
+            map = BenchMap.create(impl, capacity);
+            for (int i = 0; i < capacity; i++) {
+                map.set(present[i], i);
+            }
+        }
+    }
+
+    /**
+     * Class Cursor keeps each thread's position in the key array private, so threads
+     * do not contend on a shared counter.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = (int) Thread.currentThread().getId() * 7919;
+    }
+
+    @Benchmark
+    public Integer getHit(SharedMap shared, Cursor cursor) {
+        return shared.map.get(shared.present[cursor.next++ & shared.mask]);
+    }
+}
@@ -0,0 +1,85 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class ConcurrentWriteBenchmark measures write throughput when several threads
+ * update one shared, fully loaded map: set() overwrites of present keys, and
+ * increment() counters. Only thread-safe implementations are listed, though
+ * ConcurrentPrimHashmap has no merge(), so its increment() is a get() and a set()
+ * that may lose updates. Run it with -t 1, 2, 4, ... to see whether throughput
+ * scales with the writer threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@Threads(4)
+public class ConcurrentWriteBenchmark {
+
+    /**
+     * Class SharedMap is the map all writer threads share.
+     */
+    @State(Scope.Benchmark)
+    public static class SharedMap {
+
+        @Param({"ConcurrentPrimHashmap", "ShardedPrimHashmap", "ShardedPrimHashmap:GLOBAL"})
+        public String impl;
+
+        @Param({"1024", "1048576"})
+        public int capacity;
+
+        @Param({"SHORT", "SHARED_PREFIX"})
+        public KeySets.Shape keyShape;
+
+        BenchMap map;       // filled map shared by every thread
+        String[] present;   // keys stored in the map
+        int mask;           // present.length rounded down to a power of two - 1
+
+        @Setup
+        public void setUp() {
+            present = KeySets.generate(keyShape, capacity, 1);
+            mask = Integer.highestOneBit(capacity) - 1;
+            map = BenchMap.create(impl, capacity);
+            for (int i = 0; i < capacity; i++) {
+                map.set(present[i], i);
+            }
+        }
+    }
+
+    /**
+     * Class Cursor keeps each thread's position in the key array private, so threads
+     * do not contend on a shared counter.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = (int) Thread.currentThread().getId() * 7919;
+    }
+
+    @Benchmark
+    public boolean setOverwrite(SharedMap shared, Cursor cursor) {
+        int i = cursor.next++ & shared.mask;
+        return shared.map.set(shared.present[i], i);
+    }
+
+    @Benchmark
+    public Integer increment(SharedMap shared, Cursor cursor) {
+        return shared.map.increment(shared.present[cursor.next++ & shared.mask]);
+    }
+}
@@ -0,0 +1,75 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class CounterBenchmark times counting key occurrences, the read-modify-write
+ * pattern of counters and aggregations: get() followed by set(), which hashes and
+ * walks the bucket twice, against BenchMap.increment(), which PrimHashmap runs as a
+ * single-lookup merge(). For HashMap both benchmarks do a get() and a set().
+ *
+ *   java -jar target/benchmarks.jar CounterBenchmark -p keyShape=LONG
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CounterBenchmark {
+
+    @Param({"PrimHashmap", "HashMap"})
+    public String impl;
+
+    @Param({"1024", "1048576"})
+    public int capacity;
+
+    @Param({"SHORT", "LONG", "SHARED_PREFIX", "COLLIDING"})
+    public KeySets.Shape keyShape;
+
+    private BenchMap map;         // one counter per key
+    private String[] keys;        // keys counted
+    private int mask;             // keys.length rounded down to a power of two - 1
+    private int cursor;           // rotating index into the key array
+
+    /**
+     * Function setUp creates a map with a counter for every key.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = KeySets.generate(keyShape, capacity, 1);
+        mask = Integer.highestOneBit(capacity) - 1;
+
+        map = BenchMap.create(impl, capacity);
+        for (String key : keys) {
+            map.set(key, 0);
+        }
+    }
+
+    @Benchmark
+    public boolean getThenSet() {
+        String key = keys[cursor++ & mask];
+        Integer count = map.get(key);
+        return map.set(key, (count == null) ? 1 : count + 1);
+    }
+
+    @Benchmark
+    public Integer increment() {
+        return map.increment(keys[cursor++ & mask]);
+    }
+}
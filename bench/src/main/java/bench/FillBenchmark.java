@@ -0,0 +1,68 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class FillBenchmark measures building a map from empty to loadFactor * capacity,
+ * one set() per key. Run with -prof gc to see the bytes allocated per insert, which
+ * is where the chained and open-addressing layouts differ the most.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class FillBenchmark {
+
+    @Param({"PrimHashmap", "PrimHashmap:GROWABLE", "PrimProbeHashmap", "ConcurrentPrimHashmap", "HashMap"})
+    public String impl;
+
+    @Param({"16", "1024", "65536", "1048576", "16777216"})
+    public int capacity;
+
+    @Param({"0.25", "0.5", "0.75", "1.0"})
+    public float loadFactor;
+
+    @Param({"SHORT", "LONG", "SHARED_PREFIX", "COLLIDING"})
+    public KeySets.Shape keyShape;
+
+    private String[] keys;      // keys inserted on every invocation
+    private Integer[] values;   // boxed once up front so boxing is not measured
+
+    /**
+     * Function setUp generates the keys and values once per trial.
+     */
+    @Setup
+    public void setUp() {
+        int count = Math.max(1, (int) (capacity * loadFactor));
+        keys = KeySets.generate(keyShape, count, 1);
+        values = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = i;
+        }
+    }
+
+    @Benchmark
+    public BenchMap fill() {
+        BenchMap map = BenchMap.create(impl, capacity);
+        for (int i = 0; i < keys.length; i++) {
+            map.set(keys[i], values[i]);
+        }
+        return map;
+    }
+}
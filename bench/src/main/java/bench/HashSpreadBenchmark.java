@@ -0,0 +1,70 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class HashSpreadBenchmark compares the hash strategies of PrimHashmap on our key
+ * distributions: IDENTITY (raw String.hashCode, the old behavior), the default murmur3
+ * SPREAD, a SEEDED spread and SIPHASH. The map is filled to capacity and get() hits
+ * are timed; the longest chain of each table is printed during setup, so the spread
+ * itself shows up next to the timings.
+ *
+ *   java -jar target/benchmarks.jar HashSpreadBenchmark -p keyShape=SHARED_PREFIX
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class HashSpreadBenchmark {
+
+    @Param({"PrimHashmap:IDENTITY", "PrimHashmap", "PrimHashmap:SEEDED", "PrimHashmap:SIPHASH"})
+    public String impl;
+
+    @Param({"1024", "1048576"})
+    public int capacity;
+
+    @Param({"SHORT", "LONG", "SHARED_PREFIX", "COLLIDING"})
+    public KeySets.Shape keyShape;
+
+    private BenchMap map;         // map filled to capacity
+    private String[] present;     // keys stored in the map
+    private int mask;             // present.length rounded down to a power of two - 1
+    private int cursor;           // rotating index into the key array
+
+    /**
+     * Function setUp fills a fresh map and prints its longest chain.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        present = KeySets.generate(keyShape, capacity, 1);
+        mask = Integer.highestOneBit(capacity) - 1;
+
+        map = BenchMap.create(impl, capacity);
+        for (int i = 0; i < capacity; i++) {
+            map.set(present[i], i);
+        }
+        System.out.println("\nLongest chain: " + map.maxChainLength());
+    }
+
+    @Benchmark
+    public Integer getHit() {
+        return map.get(present[cursor++ & mask]);
+    }
+}
@@ -0,0 +1,93 @@
+package bench;
+
+import java.util.Random;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class KeySets generates the key distributions the benchmarks run against. Every
+ * generator is deterministic for a given seed so results are comparable across runs.
+ * Keys start with, or contain, the seed in base 36 followed by a separator that never
+ * appears in it, so key sets built from different seeds never share a key.
+ *
+ * SHORT         - decimal counters behind the seed tag, "1:0", "1:1", ... (sequential
+ *                 String.hashCode values)
+ * LONG          - 40 random alphanumeric characters, then the seed tag and a counter
+ * SHARED_PREFIX - URL-like paths that only differ in their last few characters
+ * COLLIDING     - groups of 64 keys with identical String.hashCode values, built from
+ *                 the "Aa"/"BB" trick, which is what an attacker would send
+ */
+public final class KeySets {
+
+    private static final String ALPHABET =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final String PREFIX = "/api/v2/accounts/organisation/members/profile/";
+    private static final int COLLISION_BITS = 6; // 2^6 = 64 keys per colliding group
+
+    /**
+     * Enum Shape names the supported key distributions.
+     */
+    public enum Shape { SHORT, LONG, SHARED_PREFIX, COLLIDING }
+
+    private KeySets() {}
+
+    /**
+     * Function generate builds count distinct keys of the given shape.
+     *
+     * @param shape
+     *      Distribution of the keys.
+     * @param count
+     *      Number of keys to generate.
+     * @param seed
+     *      Seed for the random generators, different seeds give disjoint key sets.
+     *
+     * @return array of distinct keys.
+     */
+    public static String[] generate(Shape shape, int count, long seed) {
+        String[] keys = new String[count];
+        Random random = new Random(seed);
+        String tag = Long.toString(seed, 36);
+
+        for (int i = 0; i < count; i++) {
+            switch (shape) {
+                case SHORT:
+                    keys[i] = tag + ":" + i;
+                    break;
+                case LONG:
+                    keys[i] = randomString(random, 40) + tag + ":" + Integer.toString(i, 36);
+                    break;
+                case SHARED_PREFIX:
+                    keys[i] = PREFIX + tag + "/" + i;
+                    break;
+                default:
+                    keys[i] = colliding(i, tag);
+                    break;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Helper function colliding builds key i of the colliding set. The low bits of i
+     * pick "Aa" or "BB" for each block (same hashCode contribution), the high bits
+     * pick a group prefix so different groups land in different buckets.
+     */
+    private static String colliding(int i, String tag) {
+        StringBuilder builder = new StringBuilder(tag).append(':').append(i >>> COLLISION_BITS).append('#');
+        for (int bit = 0; bit < COLLISION_BITS; bit++) {
+            builder.append(((i >>> bit) & 1) == 0 ? "Aa" : "BB");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Helper function randomString builds a random alphanumeric string.
+     */
+    private static String randomString(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        }
+        return new String(chars);
+    }
+}
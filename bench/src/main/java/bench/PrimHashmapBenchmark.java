@@ -0,0 +1,123 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Author: @tgopal - Tejas Gopal, KPCB Engineering Fellow Applicant
+ *
+ * Class PrimHashmapBenchmark measures the single-threaded cost of set, get (hit and
+ * miss), delete and load for every hashmap variant, with java.util.HashMap as the
+ * baseline. The impl parameter puts all implementations side by side in one report.
+ *
+ * The full parameter matrix is large; narrow it from the command line, e.g.
+ *   java -jar target/benchmarks.jar PrimHashmapBenchmark -p capacity=65536 -p keyShape=SHORT
+ * and add -prof gc to report allocation rates alongside the timings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class PrimHashmapBenchmark {
+
+    @Param({"PrimHashmap", "PrimProbeHashmap", "PrimArenaHashmap", "ConcurrentPrimHashmap", "HashMap"})
+    public String impl;
+
+    @Param({"16", "1024", "65536", "1048576", "16777216"})
+    public int capacity;
+
+    @Param({"0.25", "0.5", "0.75", "1.0"})
+    public float loadFactor;
+
+    @Param({"SHORT", "LONG", "SHARED_PREFIX", "COLLIDING"})
+    public KeySets.Shape keyShape;
+
+    private BenchMap map;         // map filled to loadFactor * capacity
+    private String[] present;     // keys stored in the map
+    private String[] absent;      // keys never stored in the map
+    private int mask;             // present.length rounded down to a power of two - 1
+    private int cursor;           // rotating index into the key arrays
+
+    /**
+     * Function setUp fills a fresh map to the requested load factor.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        int count = Math.max(1, (int) (capacity * loadFactor));
+        present = KeySets.generate(keyShape, count, 1);
+        absent = KeySets.generate(keyShape, count, 2);
+        mask = Integer.highestOneBit(count) - 1;
+
+        map = BenchMap.create(impl, capacity);
+        for (int i = 0; i < count; i++) {
+            map.set(present[i], i);
+        }
+    }
+
+    /**
+     * Function nextIndex cycles through the key arrays so consecutive operations
+     * touch different buckets.
+     */
+    private int nextIndex() {
+        return cursor++ & mask;
+    }
+
+    @Benchmark
+    public Integer getHit() {
+        return map.get(present[nextIndex()]);
+    }
+
+    @Benchmark
+    public Integer getMiss() {
+        return map.get(absent[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean setOverwrite() {
+        int i = nextIndex();
+        return map.set(present[i], i);
+    }
+
+    /**
+     * Benchmark deleteAndSet removes a present key and puts it straight back, so the
+     * map stays at its load factor for the whole measurement.
+     */
+    @Benchmark
+    public boolean deleteAndSet() {
+        int i = nextIndex();
+        map.delete(present[i]);
+        return map.set(present[i], i);
+    }
+
+    /**
+     * Benchmark setNewKey measures inserting a key that is not in the map. At a load
+     * factor of 1.0 this is the capacity-full rejection path; below that the key is
+     * inserted and deleted again so the map keeps its load factor.
+     */
+    @Benchmark
+    public boolean setNewKey() {
+        String key = absent[nextIndex()];
+        boolean stored = map.set(key, 0);
+        if (stored) map.delete(key);
+        return stored;
+    }
+
+    @Benchmark
+    public float load() {
+        return map.load();
+    }
+}